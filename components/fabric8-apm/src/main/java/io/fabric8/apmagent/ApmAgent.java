@@ -18,11 +18,13 @@ package io.fabric8.apmagent;
 import java.lang.instrument.Instrumentation;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import io.fabric8.apmagent.metrics.ApmAgentContext;
 import io.fabric8.apmagent.metrics.ThreadMetrics;
 import io.fabric8.apmagent.strategy.sampling.SamplingStrategy;
+import io.fabric8.apmagent.strategy.trace.RetransformPipeline;
 import io.fabric8.apmagent.strategy.trace.TraceStrategy;
 import io.fabric8.apmagent.utils.PropertyUtils;
 
@@ -98,6 +100,18 @@ public class ApmAgent implements ApmAgentMBean, ApmConfigurationChangeListener {
         }
     }
 
+    public static void enterMethod(int methodId) {
+        if (INSTANCE.started.get()) {
+            INSTANCE.apmAgentContext.enterMethod(methodId);
+        }
+    }
+
+    public static void exitMethod(int methodId) {
+        if (INSTANCE.started.get()) {
+            INSTANCE.apmAgentContext.exitMethod(methodId);
+        }
+    }
+
     public List<String> getTransformedMethods() {
         if (isInitialized()) {
             return apmAgentContext.getTransformedMethods();
@@ -112,6 +126,73 @@ public class ApmAgent implements ApmAgentMBean, ApmConfigurationChangeListener {
         return Collections.EMPTY_LIST;
     }
 
+    public String dumpFoldedStacks() {
+        if (isInitialized()) {
+            return apmAgentContext.getFoldedStacks();
+        }
+        return "";
+    }
+
+    public List<String> getExcludedMethods() {
+        return configuration.getExcludedMethods();
+    }
+
+    public void clearExcludedMethods() {
+        configuration.clearExcludedMethods();
+    }
+
+    public double getEstimatedOverhead() {
+        if (isInitialized()) {
+            return apmAgentContext.getEstimatedOverhead();
+        }
+        return 0;
+    }
+
+    public double getHouseKeepingTime() {
+        if (isInitialized()) {
+            return apmAgentContext.getHouseKeepingTime() / (double) TimeUnit.MILLISECONDS.toNanos(1);
+        }
+        return 0;
+    }
+
+    public double getHouseKeepingMeanTime() {
+        if (isInitialized()) {
+            long count = apmAgentContext.getHouseKeepingCount();
+            return count > 0 ? apmAgentContext.getHouseKeepingTotalTime() / (double) count / TimeUnit.MILLISECONDS.toNanos(1) : 0;
+        }
+        return 0;
+    }
+
+    public int getRetransformTotal() {
+        RetransformPipeline pipeline = getRetransformPipeline();
+        return pipeline != null ? pipeline.getTotal() : 0;
+    }
+
+    public int getRetransformCompleted() {
+        RetransformPipeline pipeline = getRetransformPipeline();
+        return pipeline != null ? pipeline.getCompleted() : 0;
+    }
+
+    public int getRetransformFailed() {
+        RetransformPipeline pipeline = getRetransformPipeline();
+        return pipeline != null ? pipeline.getFailed() : 0;
+    }
+
+    public long getRetransformDuration() {
+        RetransformPipeline pipeline = getRetransformPipeline();
+        return pipeline != null ? pipeline.getDuration() : 0;
+    }
+
+    public long getRetransformPrepareDuration() {
+        RetransformPipeline pipeline = getRetransformPipeline();
+        return pipeline != null ? pipeline.getPrepareDuration() : 0;
+    }
+
+    private RetransformPipeline getRetransformPipeline() {
+        Strategy s = this.strategy;
+        return s instanceof TraceStrategy ? ((TraceStrategy) s).getPipeline() : null;
+    }
+
     public List<ThreadMetrics> getThreadMetrics() {
         if (isInitialized()) {
             return apmAgentContext.getThreadMetrics();
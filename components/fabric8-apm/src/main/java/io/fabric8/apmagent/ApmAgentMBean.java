@@ -36,4 +36,61 @@ public interface ApmAgentMBean {
      * @return List of all <className>@<methodName>
      */
     List<String> getAllMethods();
+
+    /**
+     * @return the recorded call tree as folded stacks - one <code>frame;frame;frame value</code>
+     * line per stack, where the value is a sample count or self time in nanoseconds -
+     * suitable as input for flame graph tools
+     */
+    String dumpFoldedStacks();
+
+    /**
+     * @return List of <className>@<methodName>(<arguments>) <returnType> excluded from tracing by the overhead governor
+     */
+    List<String> getExcludedMethods();
+
+    /**
+     * Puts back the tracing of all the methods excluded by the overhead governor
+     */
+    void clearExcludedMethods();
+
+    /**
+     * @return the estimated CPU used by tracing, as a percentage of all processors
+     */
+    double getEstimatedOverhead();
+
+    /**
+     * @return the time in milliseconds taken by the last housekeeping run
+     */
+    double getHouseKeepingTime();
+
+    /**
+     * @return the mean time in milliseconds taken by housekeeping
+     */
+    double getHouseKeepingMeanTime();
+
+    /**
+     * @return the number of classes in the current, or last, retransformation
+     */
+    int getRetransformTotal();
+
+    /**
+     * @return the number of classes retransformed so far in the current, or last, retransformation
+     */
+    int getRetransformCompleted();
+
+    /**
+     * @return the number of classes that failed to retransform in the current, or last, retransformation
+     */
+    int getRetransformFailed();
+
+    /**
+     * @return the time in milliseconds taken by the last retransformation
+     */
+    long getRetransformDuration();
+
+    /**
+     * @return the time in milliseconds spent rewriting byte code in the last retransformation
+     */
+    long getRetransformPrepareDuration();
 }
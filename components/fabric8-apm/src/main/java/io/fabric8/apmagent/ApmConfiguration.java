@@ -23,10 +23,14 @@ import java.beans.PropertyEditorManager;
 import java.lang.reflect.Method;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CopyOnWriteArraySet;
 
 public class ApmConfiguration implements ApmConfigurationMBean {
     public enum STRATEGY {
@@ -43,6 +47,22 @@ public class ApmConfiguration implements ApmConfigurationMBean {
         }
     }
 
+    public enum RECORDER {
+        TIMER,
+        HDR_HISTOGRAM;
+
+        static RECORDER getRecorder(String name) {
+            for (RECORDER v : values()) {
+                if (v.name().equals(name.toUpperCase())) {
+                    return v;
+                }
+            }
+            return TIMER;
+        }
+    }
+
+    private static final int MAX_CACHED_FILTER_DECISIONS = 50000;
+
     final static Logger logger = LoggerFactory.getLogger(ApmConfiguration.class);
     private boolean trace = false;
     private boolean debug = false;
@@ -58,10 +78,29 @@ public class ApmConfiguration implements ApmConfigurationMBean {
     private boolean threadMetricDepthChanged = false;
     private boolean strategyChanged = false;
     private int samplingInterval = 1;
-    private List<FilterItem> whiteFilterList = new ArrayList<>();
-    private List<FilterItem> blackFilterList = new ArrayList<>();
+    private int samplingMaxDepth = 32;
+    private int callTreeMaxNodes = 100000;
+    private boolean recordCallTree = true;
+    private boolean overheadGovernor = false;
+    private double overheadBudget = 5;
+    private double governorMinCallRate = 10000;
+    private double governorMaxMeanTime = 1;
+    private double governorCallCost = 100;
+    private int transformThreads = 0;
+    private int retransformBatchSize = 100;
+    private String prometheusHost;
+    private int prometheusPort = 0;
+    private String statsdHost;
+    private int statsdPort = 8125;
+    private String statsdPrefix = "apm";
+    private int statsdInterval = 10;
+    private final Set<String> excludedMethods = new CopyOnWriteArraySet<>();
+    private final Object filterLock = new Object();
+    private volatile Filters filters = new Filters(new ArrayList<>(), new ArrayList<>());
     private List<ApmConfigurationChangeListener> changeListeners = new CopyOnWriteArrayList<>();
     private STRATEGY strategy = STRATEGY.TRACE;
+    private RECORDER recorder = RECORDER.TIMER;
+    private int histogramPrecision = 2;
 
     ApmConfiguration() {
         addToBlackList("java");
@@ -89,32 +128,39 @@ public class ApmConfiguration implements ApmConfigurationMBean {
         addToBlackList("com.intellij");
         addToBlackList("org.w3c.dom");
         addToBlackList("com.codahale");
+        addToBlackList("org.HdrHistogram");
         //for testing only
         addToWhiteList("io.fabric8.testApp");
     }
 
     @Override
     public String getWhiteList() {
-        return getListAsString(whiteFilterList);
+        return getListAsString(filters.whiteList);
     }
 
     @Override
     public void setWhiteList(String whiteList) {
-        whiteFilterList = new ArrayList<>();
-        initializeList(whiteList, this.whiteFilterList);
+        List<FilterItem> list = new ArrayList<>();
+        initializeList(whiteList, list);
+        synchronized (filterLock) {
+            filters = new Filters(list, filters.blackList);
+        }
         filterChanged = true;
         fireConfigurationChanged();
     }
 
     @Override
     public String getBlackList() {
-        return getListAsString(blackFilterList);
+        return getListAsString(filters.blackList);
     }
 
     @Override
     public void setBlackList(String blackList) {
-        this.blackFilterList = new ArrayList<>();
-        initializeList(blackList, this.blackFilterList);
+        List<FilterItem> list = new ArrayList<>();
+        initializeList(blackList, list);
+        synchronized (filterLock) {
+            filters = new Filters(filters.whiteList, list);
+        }
         filterChanged = true;
         fireConfigurationChanged();
     }
@@ -127,7 +173,11 @@ public class ApmConfiguration implements ApmConfigurationMBean {
         if (classAndMethod.length > 1) {
             filterItem.setMethodName(classAndMethod[1]);
         }
-        blackFilterList.add(filterItem);
+        synchronized (filterLock) {
+            List<FilterItem> list = new ArrayList<>(filters.blackList);
+            list.add(filterItem);
+            filters = new Filters(filters.whiteList, list);
+        }
         filterChanged = true;
         fireConfigurationChanged();
     }
@@ -140,7 +190,11 @@ public class ApmConfiguration implements ApmConfigurationMBean {
         if (classAndMethod.length > 1) {
             filterItem.setMethodName(classAndMethod[1]);
         }
-        whiteFilterList.add(filterItem);
+        synchronized (filterLock) {
+            List<FilterItem> list = new ArrayList<>(filters.whiteList);
+            list.add(filterItem);
+            filters = new Filters(list, filters.blackList);
+        }
         filterChanged = true;
         fireConfigurationChanged();
     }
@@ -207,6 +261,88 @@ public class ApmConfiguration implements ApmConfigurationMBean {
         this.verifyClasses = verifyClasses;
     }
 
+    public int getTransformThreads() {
+        return transformThreads;
+    }
+
+    /**
+     * @param transformThreads - the number of threads rewriting byte code ahead of retransformation, 0 for one per processor
+     */
+    public void setTransformThreads(int transformThreads) {
+        this.transformThreads = transformThreads;
+    }
+
+    public int getRetransformBatchSize() {
+        return retransformBatchSize;
+    }
+
+    /**
+     * @param retransformBatchSize - the number of classes passed to each retransformClasses() call
+     */
+    public void setRetransformBatchSize(int retransformBatchSize) {
+        this.retransformBatchSize = retransformBatchSize;
+    }
+
+    public String getPrometheusHost() {
+        return prometheusHost;
+    }
+
+    /**
+     * @param prometheusHost - the address the Prometheus endpoint binds to, all addresses if not set
+     */
+    public void setPrometheusHost(String prometheusHost) {
+        this.prometheusHost = prometheusHost;
+    }
+
+    public int getPrometheusPort() {
+        return prometheusPort;
+    }
+
+    /**
+     * @param prometheusPort - the port metrics are served on in the Prometheus format, 0 to disable
+     */
+    public void setPrometheusPort(int prometheusPort) {
+        this.prometheusPort = prometheusPort;
+    }
+
+    public String getStatsdHost() {
+        return statsdHost;
+    }
+
+    /**
+     * @param statsdHost - the StatsD server metrics are pushed to, not pushed if not set
+     */
+    public void setStatsdHost(String statsdHost) {
+        this.statsdHost = statsdHost;
+    }
+
+    public int getStatsdPort() {
+        return statsdPort;
+    }
+
+    public void setStatsdPort(int statsdPort) {
+        this.statsdPort = statsdPort;
+    }
+
+    public String getStatsdPrefix() {
+        return statsdPrefix;
+    }
+
+    public void setStatsdPrefix(String statsdPrefix) {
+        this.statsdPrefix = statsdPrefix;
+    }
+
+    public int getStatsdInterval() {
+        return statsdInterval;
+    }
+
+    /**
+     * @param statsdInterval - the time in seconds between pushes to StatsD
+     */
+    public void setStatsdInterval(int statsdInterval) {
+        this.statsdInterval = statsdInterval;
+    }
+
     public int getThreadMetricDepth() {
         return threadMetricDepth;
     }
@@ -251,6 +387,116 @@ public class ApmConfiguration implements ApmConfigurationMBean {
         this.samplingInterval = samplingInterval;
     }
 
+    public int getSamplingMaxDepth() {
+        return samplingMaxDepth;
+    }
+
+    /**
+     * @param samplingMaxDepth - the maximum number of frames taken from each thread stack when sampling
+     */
+    public void setSamplingMaxDepth(int samplingMaxDepth) {
+        this.samplingMaxDepth = samplingMaxDepth;
+    }
+
+    public int getCallTreeMaxNodes() {
+        return callTreeMaxNodes;
+    }
+
+    /**
+     * @param callTreeMaxNodes - the maximum number of nodes kept in the call tree, and in the trees of all the traced threads together - deeper stacks are truncated
+     */
+    public void setCallTreeMaxNodes(int callTreeMaxNodes) {
+        this.callTreeMaxNodes = callTreeMaxNodes;
+    }
+
+    public boolean isRecordCallTree() {
+        return recordCallTree;
+    }
+
+    /**
+     * @param recordCallTree - whether the trace strategy records the call edges of each thread
+     */
+    public void setRecordCallTree(boolean recordCallTree) {
+        this.recordCallTree = recordCallTree;
+    }
+
+    public boolean isOverheadGovernor() {
+        return overheadGovernor;
+    }
+
+    /**
+     * @param overheadGovernor - whether hot, trivial methods are excluded from tracing to keep within the overhead budget
+     */
+    public void setOverheadGovernor(boolean overheadGovernor) {
+        this.overheadGovernor = overheadGovernor;
+    }
+
+    public double getOverheadBudget() {
+        return overheadBudget;
+    }
+
+    /**
+     * @param overheadBudget - the CPU the instrumentation may use, as a percentage of all processors
+     */
+    public void setOverheadBudget(double overheadBudget) {
+        this.overheadBudget = overheadBudget;
+    }
+
+    public double getGovernorMinCallRate() {
+        return governorMinCallRate;
+    }
+
+    /**
+     * @param governorMinCallRate - calls per second above which a method can be excluded by the governor
+     */
+    public void setGovernorMinCallRate(double governorMinCallRate) {
+        this.governorMinCallRate = governorMinCallRate;
+    }
+
+    public double getGovernorMaxMeanTime() {
+        return governorMaxMeanTime;
+    }
+
+    /**
+     * @param governorMaxMeanTime - mean time in microseconds below which a method can be excluded by the governor
+     */
+    public void setGovernorMaxMeanTime(double governorMaxMeanTime) {
+        this.governorMaxMeanTime = governorMaxMeanTime;
+    }
+
+    public double getGovernorCallCost() {
+        return governorCallCost;
+    }
+
+    /**
+     * @param governorCallCost - the estimated cost in nanoseconds of the enter and exit calls around a traced method
+     */
+    public void setGovernorCallCost(double governorCallCost) {
+        this.governorCallCost = governorCallCost;
+    }
+
+    /**
+     * @return the methods excluded from tracing by the overhead governor, as <className>@<methodName>(<arguments>) <returnType>
+     */
+    public List<String> getExcludedMethods() {
+        return new ArrayList<>(excludedMethods);
+    }
+
+    public void addToExcludedMethods(Collection<String> methods) {
+        if (excludedMethods.addAll(methods)) {
+            filterChanged = true;
+            fireConfigurationChanged();
+        }
+    }
+
+    public void clearExcludedMethods() {
+        if (!excludedMethods.isEmpty()) {
+            excludedMethods.clear();
+            filterChanged = true;
+            fireConfigurationChanged();
+        }
+    }
+
     public String getStrategy() {
         return strategy.name();
     }
@@ -268,6 +514,32 @@ public class ApmConfiguration implements ApmConfigurationMBean {
         return strategy;
     }
 
+    public String getRecorder() {
+        return recorder.name();
+    }
+
+    /**
+     * Selects how method timings are recorded - only applies to methods first seen after the change
+     */
+    public void setRecorder(String name) {
+        this.recorder = RECORDER.getRecorder(name);
+    }
+
+    public RECORDER getRecorderImpl() {
+        return recorder;
+    }
+
+    public int getHistogramPrecision() {
+        return histogramPrecision;
+    }
+
+    /**
+     * @param histogramPrecision - number of significant value digits (0-5) kept by the HDR_HISTOGRAM recorder
+     */
+    public void setHistogramPrecision(int histogramPrecision) {
+        this.histogramPrecision = histogramPrecision;
+    }
+
     public void initalizeFromProperties(Properties properties) {
         for (Map.Entry entry : properties.entrySet()) {
             if (entry.getKey() != null && entry.getValue() != null) {
@@ -284,43 +556,31 @@ public class ApmConfiguration implements ApmConfigurationMBean {
         return isWhiteListed(className, methodName) || !isBlackListed(className, methodName);
     }
 
-    public boolean isBlackListed(String className) {
-        for (FilterItem item : blackFilterList) {
-            if (item.matches(className)) {
-                return true;
-            }
+    /**
+     * @param description - the arguments and return type of the method, as in its full method name - so a method
+     *                    excluded by the overhead governor is told apart from its overloads
+     */
+    public boolean isAudit(String className, String methodName, String description) {
+        if (!excludedMethods.isEmpty() && excludedMethods.contains(className.replace('/', '.') + "@" + methodName + description)) {
+            return false;
         }
-        return false;
+        return isAudit(className, methodName);
+    }
+
+    public boolean isBlackListed(String className) {
+        return getFilterMatcher().isBlackListed(className);
     }
 
     public boolean isBlackListed(String className, String methodName) {
-        for (FilterItem item : blackFilterList) {
-            if (item.matches(className, methodName, true)) {
-                return true;
-            }
-        }
-        return false;
+        return getFilterMatcher().isBlackListed(className, methodName);
     }
 
     public boolean isWhiteListed(String className) {
-        if (whiteFilterList.isEmpty()) {
-            return false;
-        }
-        for (FilterItem item : whiteFilterList) {
-            if (className.matches(item.getClassName())) {
-                return true;
-            }
-        }
-        return false;
+        return getFilterMatcher().isWhiteListed(className);
     }
 
     public boolean isWhiteListed(String className, String methodName) {
-        for (FilterItem item : whiteFilterList) {
-            if (item.matches(className, methodName, false)) {
-                return true;
-            }
-        }
-        return false;
+        return getFilterMatcher().isWhiteListed(className, methodName);
     }
 
     public void addChangeListener(ApmConfigurationChangeListener changeListener) {
@@ -331,6 +591,10 @@ public class ApmConfiguration implements ApmConfigurationMBean {
         changeListeners.remove(changeListener);
     }
 
+    private FilterMatcher getFilterMatcher() {
+        return filters.getMatcher();
+    }
+
     private void fireConfigurationChanged() {
         for (ApmConfigurationChangeListener apmConfigurationChangeListener : this.changeListeners) {
             apmConfigurationChangeListener.configurationChanged();
@@ -414,4 +678,29 @@ public class ApmConfiguration implements ApmConfigurationMBean {
         }
         return result;
     }
+
+    /**
+     * A snapshot of the white and black lists along with the matcher built from them. The lists are never
+     * modified, each change replaces the whole snapshot, so a matcher built from an old snapshot can never
+     * be published for a newer one.
+     */
+    private static final class Filters {
+        private final List<FilterItem> whiteList;
+        private final List<FilterItem> blackList;
+        private volatile FilterMatcher matcher;
+
+        Filters(List<FilterItem> whiteList, List<FilterItem> blackList) {
+            this.whiteList = Collections.unmodifiableList(whiteList);
+            this.blackList = Collections.unmodifiableList(blackList);
+        }
+
+        FilterMatcher getMatcher() {
+            FilterMatcher answer = matcher;
+            if (answer == null) {
+                answer = new FilterMatcher(whiteList, blackList, MAX_CACHED_FILTER_DECISIONS);
+                matcher = answer;
+            }
+            return answer;
+        }
+    }
 }
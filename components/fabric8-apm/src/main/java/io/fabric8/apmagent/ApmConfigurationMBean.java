@@ -53,4 +53,32 @@ public interface ApmConfigurationMBean {
 
     void setStrategy(String strategy);
 
+    String getRecorder();
+
+    void setRecorder(String recorder);
+
+    int getHistogramPrecision();
+
+    void setHistogramPrecision(int histogramPrecision);
+
+    boolean isOverheadGovernor();
+
+    void setOverheadGovernor(boolean overheadGovernor);
+
+    double getOverheadBudget();
+
+    void setOverheadBudget(double overheadBudget);
+
+    double getGovernorMinCallRate();
+
+    void setGovernorMinCallRate(double governorMinCallRate);
+
+    double getGovernorMaxMeanTime();
+
+    void setGovernorMaxMeanTime(double governorMaxMeanTime);
+
+    double getGovernorCallCost();
+
+    void setGovernorCallCost(double governorCallCost);
+
 }
@@ -15,19 +15,28 @@
  */
 package io.fabric8.apmagent;
 
+import java.io.ByteArrayOutputStream;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
 
 public class ClassInfo {
     private ClassLoader classLoader;
     private Class originalClass;
     private String className;
-    private byte[] original;
-    private byte[] transformed;
+    private volatile byte[] compressedOriginal;
+    private volatile int originalLength;
+    private volatile boolean transformed;
+    private long preparedFrom;
+    private Rewrite prepared;
+    private Rewrite pending;
     private boolean canTransform;
     private ConcurrentMap<String, MethodDescription> transformedMethods = new ConcurrentHashMap<>();
     private ConcurrentMap<String, MethodDescription> allMethods = new ConcurrentHashMap<>();
@@ -48,12 +57,69 @@ public class ClassInfo {
         this.className = className != null ? className.replace("/", ".") : null;
     }
 
+    /**
+     * @return the original byte code of the class - inflated on each call, so callers should keep hold of the result
+     */
     public byte[] getOriginal() {
-        return original;
+        byte[] compressed = compressedOriginal;
+        if (compressed == null) {
+            return null;
+        }
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            byte[] result = new byte[originalLength];
+            int offset = 0;
+            while (offset < result.length && !inflater.finished()) {
+                int count = inflater.inflate(result, offset, result.length - offset);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                offset += count;
+            }
+            if (offset != result.length) {
+                throw new IllegalStateException("Corrupt original byte code for " + className);
+            }
+            return result;
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt original byte code for " + className, e);
+        } finally {
+            inflater.end();
+        }
     }
 
+    /**
+     * Keeps the original byte code of the class compressed, so it can be restored later
+     */
     public void setOriginal(byte[] original) {
-        this.original = original;
+        if (original == null) {
+            this.compressedOriginal = null;
+            this.originalLength = 0;
+            return;
+        }
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(original);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, original.length / 2));
+            byte[] buffer = new byte[4096];
+            while (!deflater.finished()) {
+                int count = deflater.deflate(buffer);
+                out.write(buffer, 0, count);
+            }
+            this.originalLength = original.length;
+            this.compressedOriginal = out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * @return the number of bytes held for the original byte code
+     */
+    public int getOriginalFootprint() {
+        byte[] compressed = compressedOriginal;
+        return compressed != null ? compressed.length : 0;
     }
 
     public Class getOriginalClass() {
@@ -64,12 +130,72 @@ public class ClassInfo {
         this.originalClass = originalClass;
     }
 
-    public byte[] getTransformed() {
-        return transformed;
+    /**
+     * Marks the class as transformed - the transformed byte code itself is not kept, as the JVM holds the class
+     */
+    public void setTransformed(byte[] transformed) {
+        this.transformed = transformed != null && transformed.length > 0;
     }
 
-    public void setTransformed(byte[] transformed) {
-        this.transformed = transformed;
+    /**
+     * Holds byte code rewritten ahead of a retransformation
+     *
+     * @param from     - the original byte code that was rewritten
+     * @param prepared - the rewrite of the byte code
+     */
+    public synchronized void setPrepared(byte[] from, Rewrite prepared) {
+        this.preparedFrom = checksum(from);
+        this.prepared = prepared;
+    }
+
+    /**
+     * @return the prepared rewrite if it was rewritten from the given original, else null
+     */
+    public synchronized Rewrite takePrepared(byte[] original) {
+        Rewrite result = null;
+        if (prepared != null && original != null && preparedFrom == checksum(original)) {
+            result = prepared;
+        }
+        clearPrepared();
+        return result;
+    }
+
+    /**
+     * Drops any prepared rewrite - once the retransformation it was prepared for is over
+     */
+    public synchronized void clearPrepared() {
+        preparedFrom = 0;
+        prepared = null;
+    }
+
+    /**
+     * Holds the rewrite handed to the JVM for a retransformation that has not completed yet
+     */
+    public synchronized void setPending(Rewrite pending) {
+        this.pending = pending;
+    }
+
+    /**
+     * @return the rewrite handed to the JVM for the last retransformation, or null if there is none
+     */
+    public synchronized Rewrite takePending() {
+        Rewrite result = pending;
+        pending = null;
+        return result;
+    }
+
+    /**
+     * Brings the transformed methods in step with a rewrite the JVM has taken
+     */
+    public void commit(Rewrite rewrite) {
+        transformedMethods.clear();
+        for (String key : rewrite.transformedMethods) {
+            MethodDescription methodDescription = allMethods.get(key);
+            if (methodDescription != null) {
+                transformedMethods.put(key, methodDescription);
+            }
+        }
+        setTransformed(rewrite.getBuffer());
     }
 
     public boolean isCanTransform() {
@@ -113,6 +239,12 @@ public class ClassInfo {
         return set;
     }
 
+    public Collection<MethodDescription> getAllMethodDescriptions() {
+        ArrayList<MethodDescription> result = new ArrayList<>();
+        result.addAll(allMethods.values());
+        return result;
+    }
+
     public Collection<MethodDescription> getTransformedMethodDescriptions() {
         ArrayList<MethodDescription> result = new ArrayList<>();
         result.addAll(transformedMethods.values());
@@ -120,12 +252,39 @@ public class ClassInfo {
     }
 
     public boolean isTransformed() {
-        return transformed != null && transformed.length > 0;
+        return transformed;
     }
 
     public void resetTransformed() {
-        transformed = null;
+        transformed = false;
         transformedMethods.clear();
     }
 
+    /**
+     * Rewritten byte code for the class, and the methods it instruments. A rewrite is only
+     * applied to the {@link ClassInfo} once the JVM has taken its byte code - a rewrite without
+     * byte code puts back the original class.
+     */
+    public static class Rewrite {
+        private final Set<String> transformedMethods = new HashSet<>();
+        private byte[] buffer;
+
+        public byte[] getBuffer() {
+            return buffer;
+        }
+
+        public void setBuffer(byte[] buffer) {
+            this.buffer = buffer;
+        }
+
+        public void addTransformedMethod(String name, String description) {
+            transformedMethods.add(MethodDescription.getMethodSignature(name, description));
+        }
+    }
+
+    private static long checksum(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length);
+        return ((long) bytes.length << 32) ^ crc.getValue();
+    }
 }
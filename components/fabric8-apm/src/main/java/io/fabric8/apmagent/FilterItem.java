@@ -37,26 +37,4 @@ public class FilterItem {
     public void setMethodName(String methodName) {
         this.methodName = methodName;
     }
-
-    public boolean matches(String className) {
-        className = className.replace('/', '.');
-        return className.startsWith(getClassName()) || className.matches(getClassName());
-    }
-
-    public boolean matches(String className, String method, boolean matchIfNoFilterMethod) {
-        boolean result = matches(className);
-        if (result) {
-            result = false;
-            if (method == null || method.isEmpty()) {
-                if (getMethodName() == null || getMethodName().isEmpty()) {
-                    result = true;
-                }
-            } else if (getMethodName() != null && !getMethodName().isEmpty()) {
-                result = method.matches(getMethodName());
-            } else {
-                result = matchIfNoFilterMethod;
-            }
-        }
-        return result;
-    }
 }
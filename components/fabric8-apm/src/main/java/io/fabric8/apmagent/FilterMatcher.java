@@ -0,0 +1,274 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.apmagent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * The white and black lists of the {@link ApmConfiguration}, compiled for matching.
+ * <p/>
+ * Class name prefixes are held in a trie, so all the prefix matches for a class are
+ * found in one pass over its name, and the class and method names of each {@link FilterItem}
+ * are compiled into a {@link Pattern} once. The decision for each class is cached - the
+ * matcher is thrown away and rebuilt whenever the lists change.
+ */
+class FilterMatcher {
+    private final int maxCachedClasses;
+    private final CompiledItem[] whiteItems;
+    private final CompiledItem[] blackItems;
+    private final TrieNode whiteTrie = new TrieNode();
+    private final TrieNode blackTrie = new TrieNode();
+    private final ConcurrentMap<String, ClassDecision> decisions = new ConcurrentHashMap<>();
+
+    FilterMatcher(List<FilterItem> whiteList, List<FilterItem> blackList, int maxCachedClasses) {
+        this.maxCachedClasses = maxCachedClasses;
+        this.whiteItems = compile(whiteList, whiteTrie);
+        this.blackItems = compile(blackList, blackTrie);
+    }
+
+    boolean isWhiteListed(String className) {
+        return getDecision(className).whiteListed;
+    }
+
+    boolean isBlackListed(String className) {
+        return getDecision(className).blackListed;
+    }
+
+    boolean isWhiteListed(String className, String methodName) {
+        ClassDecision decision = getDecision(className);
+        if (methodName == null || methodName.isEmpty()) {
+            return decision.whiteAnyMethod;
+        }
+        return matchesAny(decision.whiteMethods, methodName);
+    }
+
+    boolean isBlackListed(String className, String methodName) {
+        ClassDecision decision = getDecision(className);
+        if (decision.blackAnyMethod) {
+            return true;
+        }
+        if (methodName == null || methodName.isEmpty()) {
+            return false;
+        }
+        return matchesAny(decision.blackMethods, methodName);
+    }
+
+    private ClassDecision getDecision(String className) {
+        String key = className.replace('/', '.');
+        ClassDecision decision = decisions.get(key);
+        if (decision == null) {
+            decision = new ClassDecision(key);
+            if (decisions.size() >= maxCachedClasses) {
+                decisions.clear();
+            }
+            decisions.put(key, decision);
+        }
+        return decision;
+    }
+
+    private static boolean matchesAny(List<CompiledPattern> patterns, String value) {
+        for (int i = 0; i < patterns.size(); i++) {
+            if (patterns.get(i).matches(value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static CompiledItem[] compile(List<FilterItem> list, TrieNode trie) {
+        CompiledItem[] result = new CompiledItem[list.size()];
+        for (int i = 0; i < result.length; i++) {
+            FilterItem filterItem = list.get(i);
+            result[i] = new CompiledItem(filterItem);
+            if (filterItem.getClassName() != null) {
+                trie.add(filterItem.getClassName(), i);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Which items match a class, worked out once per class
+     */
+    private class ClassDecision {
+        private final boolean whiteListed;
+        private final boolean blackListed;
+        private final boolean whiteAnyMethod;
+        private final boolean blackAnyMethod;
+        private final List<CompiledPattern> whiteMethods = new ArrayList<>(0);
+        private final List<CompiledPattern> blackMethods = new ArrayList<>(0);
+
+        ClassDecision(String className) {
+            boolean[] whitePrefixes = whiteTrie.prefixesOf(className, whiteItems.length);
+            boolean[] blackPrefixes = blackTrie.prefixesOf(className, blackItems.length);
+
+            boolean white = false;
+            boolean whiteAny = false;
+            for (int i = 0; i < whiteItems.length; i++) {
+                CompiledItem item = whiteItems[i];
+                //the white list class check has only ever been a regular expression
+                boolean regexMatch = item.className.matches(className);
+                white |= regexMatch;
+                if (whitePrefixes[i] || regexMatch) {
+                    if (item.methodName == null) {
+                        whiteAny = true;
+                    } else {
+                        whiteMethods.add(item.methodName);
+                    }
+                }
+            }
+
+            boolean black = false;
+            boolean blackAny = false;
+            for (int i = 0; i < blackItems.length; i++) {
+                CompiledItem item = blackItems[i];
+                if (blackPrefixes[i] || item.className.matches(className)) {
+                    black = true;
+                    if (item.methodName == null) {
+                        blackAny = true;
+                    } else {
+                        blackMethods.add(item.methodName);
+                    }
+                }
+            }
+            this.whiteListed = white;
+            this.blackListed = black;
+            this.whiteAnyMethod = whiteAny;
+            this.blackAnyMethod = blackAny;
+        }
+    }
+
+    private static class CompiledItem {
+        private final CompiledPattern className;
+        private final CompiledPattern methodName;
+
+        CompiledItem(FilterItem filterItem) {
+            this.className = new CompiledPattern(filterItem.getClassName() != null ? filterItem.getClassName() : "");
+            String method = filterItem.getMethodName();
+            this.methodName = method != null && !method.isEmpty() ? new CompiledPattern(method) : null;
+        }
+    }
+
+    /**
+     * A regular expression matched against the whole of a value. Expressions whose only
+     * special character is '.' - which covers most package names - are matched without a regex.
+     */
+    private static class CompiledPattern {
+        private final String expression;
+        private final Pattern pattern;
+        private final boolean dotsOnly;
+
+        CompiledPattern(String expression) {
+            this.expression = expression;
+            this.dotsOnly = isDotsOnly(expression);
+            Pattern compiled = null;
+            if (!dotsOnly) {
+                try {
+                    compiled = Pattern.compile(expression);
+                } catch (PatternSyntaxException e) {
+                    ApmConfiguration.logger.warn("Invalid filter expression " + expression + " is ignored: " + e.getMessage());
+                }
+            }
+            this.pattern = compiled;
+        }
+
+        boolean matches(String value) {
+            if (dotsOnly) {
+                if (value.length() != expression.length()) {
+                    return false;
+                }
+                for (int i = 0; i < value.length(); i++) {
+                    char c = expression.charAt(i);
+                    if (c != '.' && c != value.charAt(i)) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+            return pattern != null && pattern.matcher(value).matches();
+        }
+
+        private static boolean isDotsOnly(String expression) {
+            for (int i = 0; i < expression.length(); i++) {
+                if ("\\[](){}^$|?*+".indexOf(expression.charAt(i)) >= 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static class TrieNode {
+        private char[] keys = new char[0];
+        private TrieNode[] children = new TrieNode[0];
+        private int[] items = new int[0];
+
+        void add(String prefix, int item) {
+            TrieNode node = this;
+            for (int i = 0; i < prefix.length(); i++) {
+                node = node.getChild(prefix.charAt(i), true);
+            }
+            int[] newItems = new int[node.items.length + 1];
+            System.arraycopy(node.items, 0, newItems, 0, node.items.length);
+            newItems[node.items.length] = item;
+            node.items = newItems;
+        }
+
+        /**
+         * @return flags for the items that are a prefix of the value
+         */
+        boolean[] prefixesOf(String value, int itemCount) {
+            boolean[] result = new boolean[itemCount];
+            TrieNode node = this;
+            for (int i = 0; node != null; i++) {
+                for (int item : node.items) {
+                    result[item] = true;
+                }
+                if (i == value.length()) {
+                    break;
+                }
+                node = node.getChild(value.charAt(i), false);
+            }
+            return result;
+        }
+
+        private TrieNode getChild(char c, boolean create) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] == c) {
+                    return children[i];
+                }
+            }
+            if (!create) {
+                return null;
+            }
+            char[] newKeys = new char[keys.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, keys.length);
+            TrieNode[] newChildren = new TrieNode[children.length + 1];
+            System.arraycopy(children, 0, newChildren, 0, children.length);
+            TrieNode child = new TrieNode();
+            newKeys[keys.length] = c;
+            newChildren[children.length] = child;
+            keys = newKeys;
+            children = newChildren;
+            return child;
+        }
+    }
+}
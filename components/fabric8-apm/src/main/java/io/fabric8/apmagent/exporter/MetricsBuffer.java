@@ -0,0 +1,179 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.apmagent.exporter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * A growable buffer of UTF-8 encoded text, that formats numbers without creating garbage -
+ * so it can be reset and reused for every export.
+ */
+public class MetricsBuffer {
+    private static final long[] POWERS_OF_TEN = {
+        1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L, 100000000L, 1000000000L
+    };
+    private final char[] digits = new char[20];
+    private byte[] bytes;
+    private int length;
+
+    public MetricsBuffer() {
+        this(8192);
+    }
+
+    public MetricsBuffer(int capacity) {
+        this.bytes = new byte[Math.max(16, capacity)];
+    }
+
+    public void reset() {
+        length = 0;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    /**
+     * @return the underlying array - only the first {@link #length()} bytes are valid
+     */
+    public byte[] array() {
+        return bytes;
+    }
+
+    /**
+     * Truncates the buffer back to a previous length
+     */
+    public void setLength(int length) {
+        if (length < 0 || length > this.length) {
+            throw new IllegalArgumentException("Invalid length " + length);
+        }
+        this.length = length;
+    }
+
+    /**
+     * Removes the first bytes of the buffer, moving the remainder to the start
+     */
+    public void discard(int count) {
+        if (count < 0 || count > length) {
+            throw new IllegalArgumentException("Invalid count " + count);
+        }
+        System.arraycopy(bytes, count, bytes, 0, length - count);
+        length -= count;
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(bytes, 0, length);
+    }
+
+    public MetricsBuffer append(MetricsBuffer other) {
+        ensureCapacity(other.length);
+        System.arraycopy(other.bytes, 0, bytes, length, other.length);
+        length += other.length;
+        return this;
+    }
+
+    public MetricsBuffer append(char c) {
+        if (c < 0x80) {
+            ensureCapacity(1);
+            bytes[length++] = (byte) c;
+        } else if (c < 0x800) {
+            ensureCapacity(2);
+            bytes[length++] = (byte) (0xC0 | (c >> 6));
+            bytes[length++] = (byte) (0x80 | (c & 0x3F));
+        } else if (Character.isSurrogate(c)) {
+            //lone surrogates can't be encoded - pairs are rare enough in metric names not to bother
+            ensureCapacity(1);
+            bytes[length++] = (byte) '?';
+        } else {
+            ensureCapacity(3);
+            bytes[length++] = (byte) (0xE0 | (c >> 12));
+            bytes[length++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+            bytes[length++] = (byte) (0x80 | (c & 0x3F));
+        }
+        return this;
+    }
+
+    public MetricsBuffer append(CharSequence text) {
+        for (int i = 0; i < text.length(); i++) {
+            append(text.charAt(i));
+        }
+        return this;
+    }
+
+    public MetricsBuffer append(long value) {
+        if (value == Long.MIN_VALUE) {
+            return append("-9223372036854775808");
+        }
+        if (value < 0) {
+            append('-');
+            value = -value;
+        }
+        int count = 0;
+        do {
+            digits[count++] = (char) ('0' + (value % 10));
+            value /= 10;
+        } while (value != 0);
+        ensureCapacity(count);
+        while (count > 0) {
+            bytes[length++] = (byte) digits[--count];
+        }
+        return this;
+    }
+
+    /**
+     * Appends the value with at most the given number of decimal places, dropping trailing zeros
+     */
+    public MetricsBuffer append(double value, int decimalPlaces) {
+        if (Double.isNaN(value)) {
+            return append("NaN");
+        }
+        if (Double.isInfinite(value)) {
+            return append(value > 0 ? "+Inf" : "-Inf");
+        }
+        int places = Math.max(0, Math.min(decimalPlaces, POWERS_OF_TEN.length - 1));
+        long scale = POWERS_OF_TEN[places];
+        if (Math.abs(value) >= Long.MAX_VALUE / scale) {
+            //rare enough to not worry about the garbage
+            return append(Double.toString(value));
+        }
+        long scaled = Math.round(value * scale);
+        if (scaled < 0) {
+            append('-');
+            scaled = -scaled;
+        }
+        append(scaled / scale);
+        long fraction = scaled % scale;
+        if (fraction != 0) {
+            while (fraction % 10 == 0) {
+                fraction /= 10;
+                places--;
+            }
+            append('.');
+            for (int i = places - 1; i > 0 && fraction < POWERS_OF_TEN[i]; i--) {
+                append('0');
+            }
+            append(fraction);
+        }
+        return this;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (length + extra > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + extra));
+        }
+    }
+}
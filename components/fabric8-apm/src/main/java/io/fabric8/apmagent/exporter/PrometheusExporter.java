@@ -0,0 +1,118 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.apmagent.exporter;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import io.fabric8.apmagent.metrics.ApmAgentContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Serves the metrics in the Prometheus text format from a small embedded HTTP server,
+ * on <code>http://&lt;host&gt;:&lt;port&gt;/metrics</code>.
+ */
+public class PrometheusExporter {
+    private static final Logger LOG = LoggerFactory.getLogger(PrometheusExporter.class);
+    private final ApmAgentContext context;
+    private final String host;
+    private final int port;
+    private final PrometheusFormat format = new PrometheusFormat();
+    private final MetricsBuffer buffer = new MetricsBuffer(64 * 1024);
+    private HttpServer server;
+    private ExecutorService executor;
+
+    public PrometheusExporter(ApmAgentContext context, String host, int port) {
+        this.context = context;
+        this.host = host;
+        this.port = port;
+    }
+
+    public synchronized void start() throws IOException {
+        if (server == null) {
+            InetSocketAddress address = host != null && !host.isEmpty() ? new InetSocketAddress(host, port) : new InetSocketAddress(port);
+            server = HttpServer.create(address, 0);
+            server.createContext("/metrics", new HttpHandler() {
+                @Override
+                public void handle(HttpExchange exchange) throws IOException {
+                    scrape(exchange);
+                }
+            });
+            //a single thread - scrapes share the buffers
+            executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "Fabric8-ApmAgent-PrometheusExporter");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            server.setExecutor(executor);
+            server.start();
+            LOG.info("Serving Prometheus metrics on http://{}:{}/metrics", address.getHostString(), server.getAddress().getPort());
+        }
+    }
+
+    public synchronized void stop() {
+        if (server != null) {
+            server.stop(0);
+            server = null;
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    /**
+     * @return the port actually listened on, or -1 if not started
+     */
+    public synchronized int getLocalPort() {
+        return server != null ? server.getAddress().getPort() : -1;
+    }
+
+    private void scrape(HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod()) && !"HEAD".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            format.write(context, buffer);
+            exchange.getResponseHeaders().set("Content-Type", PrometheusFormat.CONTENT_TYPE);
+            if ("HEAD".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(200, -1);
+            } else {
+                exchange.sendResponseHeaders(200, buffer.length());
+                OutputStream out = exchange.getResponseBody();
+                buffer.writeTo(out);
+                out.flush();
+            }
+        } catch (Throwable e) {
+            LOG.warn("Failed to serve metrics due " + e.getMessage() + ". This exception is ignored.", e);
+            if (exchange.getResponseCode() == -1) {
+                exchange.sendResponseHeaders(500, -1);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+}
@@ -0,0 +1,197 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.apmagent.exporter;
+
+import io.fabric8.apmagent.metrics.ApmAgentContext;
+import io.fabric8.apmagent.metrics.MethodMetrics;
+import io.fabric8.apmagent.metrics.MethodMetricsSnapshot;
+import io.fabric8.apmagent.metrics.ThreadContextMethodMetrics;
+import io.fabric8.apmagent.metrics.ThreadMetrics;
+
+import java.util.Collection;
+
+/**
+ * Writes all the method and thread metrics in the Prometheus text exposition format.
+ * <p>
+ * The metrics are walked once, with the samples of each metric family collected in their own
+ * buffer - as the format requires the samples of a family to be contiguous. All the buffers are
+ * reused, so instances are not thread safe.
+ * <p>
+ * Thread names need not be unique, so the thread series are labelled with the thread id as well -
+ * a scrape with duplicate series is rejected as a whole.
+ */
+public class PrometheusFormat {
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    private static final double NANOS_TO_SECONDS = 1e-9;
+    private static final int DECIMAL_PLACES = 9;
+
+    private final Family methodDuration = new Family("apm_method_duration_seconds", "summary", "Time taken by each method");
+    private final Family methodRate = new Family("apm_method_calls_per_second", "gauge", "Rate of calls to each method");
+    private final Family threadCpu = new Family("apm_thread_cpu_seconds_total", "counter", "CPU time used by each monitored thread");
+    private final Family threadMethodCalls = new Family("apm_thread_method_calls_total", "counter", "Calls to each method by each thread");
+    private final Family threadMethodMean = new Family("apm_thread_method_duration_seconds_mean", "gauge", "Mean time taken by each method by each thread");
+    private final Family[] families = {methodDuration, methodRate, threadCpu, threadMethodCalls, threadMethodMean};
+
+    /**
+     * Resets the buffer and writes all the metrics of the context to it
+     */
+    public void write(ApmAgentContext context, MetricsBuffer out) {
+        write(context.getAllMethodMetrics(), context.getAllThreadMetrics(),
+              context.getHouseKeepingTotalTime(), context.getHouseKeepingCount(), out);
+    }
+
+    /**
+     * Resets the buffer and writes the given metrics to it
+     *
+     * @param houseKeepingTotalTime - the time spent on housekeeping, in nanoseconds
+     * @param houseKeepingCount     - the number of housekeeping runs
+     */
+    public void write(Collection<? extends MethodMetrics> methodMetricsList, Collection<ThreadMetrics> threadMetricsList,
+                      long houseKeepingTotalTime, long houseKeepingCount, MetricsBuffer out) {
+        for (Family family : families) {
+            family.samples.reset();
+        }
+        for (MethodMetrics methodMetrics : methodMetricsList) {
+            writeMethod(methodMetrics);
+        }
+        for (ThreadMetrics threadMetrics : threadMetricsList) {
+            writeThread(threadMetrics);
+        }
+        out.reset();
+        for (Family family : families) {
+            family.writeTo(out);
+        }
+        out.append("# HELP apm_housekeeping_seconds_total Time spent ranking and refreshing the metrics\n");
+        out.append("# TYPE apm_housekeeping_seconds_total counter\n");
+        out.append("apm_housekeeping_seconds_total ").append(houseKeepingTotalTime * NANOS_TO_SECONDS, DECIMAL_PLACES).append('\n');
+        out.append("# TYPE apm_housekeeping_runs_total counter\n");
+        out.append("apm_housekeeping_runs_total ").append(houseKeepingCount).append('\n');
+    }
+
+    private void writeMethod(MethodMetrics methodMetrics) {
+        MethodMetricsSnapshot snapshot = methodMetrics.getSnapshot();
+        String name = methodMetrics.getName();
+        long count = methodMetrics.getCount();
+
+        MetricsBuffer samples = methodDuration.samples;
+        quantile(samples, name, "0.5", snapshot.getMedian());
+        quantile(samples, name, "0.75", snapshot.get75thPercentile());
+        quantile(samples, name, "0.95", snapshot.get95thPercentile());
+        quantile(samples, name, "0.98", snapshot.get98thPercentile());
+        quantile(samples, name, "0.99", snapshot.get99thPercentile());
+        quantile(samples, name, "0.999", snapshot.get999thPercentile());
+        samples.append(methodDuration.name).append("_sum");
+        label(samples, '{', "method", name).append("} ");
+        samples.append(methodMetrics.getTotalTime() * NANOS_TO_SECONDS, DECIMAL_PLACES).append('\n');
+        samples.append(methodDuration.name).append("_count");
+        label(samples, '{', "method", name).append("} ").append(count).append('\n');
+
+        samples = methodRate.samples;
+        rate(samples, name, "mean", methodMetrics.getMeanRate());
+        rate(samples, name, "1m", methodMetrics.getOneMinuteRate());
+        rate(samples, name, "5m", methodMetrics.getFiveMinuteRate());
+        rate(samples, name, "15m", methodMetrics.getFifteenMinuteRate());
+    }
+
+    private void writeThread(ThreadMetrics threadMetrics) {
+        String threadName = threadMetrics.getThreadName();
+        long threadId = threadMetrics.getThreadId();
+        long cpuTime = threadMetrics.getCpuTime();
+        if (cpuTime >= 0) {
+            MetricsBuffer samples = threadCpu.samples;
+            samples.append(threadCpu.name);
+            thread(samples, threadName, threadId).append("} ");
+            samples.append(cpuTime * NANOS_TO_SECONDS, DECIMAL_PLACES).append('\n');
+        }
+        for (ThreadContextMethodMetrics methodMetrics : threadMetrics.getMethodMetrics()) {
+            long count = methodMetrics.getCount();
+            if (count == 0) {
+                continue;
+            }
+            MetricsBuffer samples = threadMethodCalls.samples;
+            samples.append(threadMethodCalls.name);
+            thread(samples, threadName, threadId);
+            label(samples, ',', "method", methodMetrics.getName()).append("} ").append(count).append('\n');
+
+            samples = threadMethodMean.samples;
+            samples.append(threadMethodMean.name);
+            thread(samples, threadName, threadId);
+            label(samples, ',', "method", methodMetrics.getName()).append("} ");
+            samples.append(methodMetrics.getSnapshot().getMean() * NANOS_TO_SECONDS, DECIMAL_PLACES).append('\n');
+        }
+    }
+
+    private static MetricsBuffer thread(MetricsBuffer samples, String threadName, long threadId) {
+        label(samples, '{', "thread", threadName);
+        return samples.append(",thread_id=\"").append(threadId).append('"');
+    }
+
+    private void quantile(MetricsBuffer samples, String method, String quantile, double nanos) {
+        samples.append(methodDuration.name);
+        label(samples, '{', "method", method);
+        label(samples, ',', "quantile", quantile).append("} ");
+        samples.append(nanos * NANOS_TO_SECONDS, DECIMAL_PLACES).append('\n');
+    }
+
+    private void rate(MetricsBuffer samples, String method, String window, double rate) {
+        samples.append(methodRate.name);
+        label(samples, '{', "method", method);
+        label(samples, ',', "window", window).append("} ");
+        samples.append(rate, 3).append('\n');
+    }
+
+    private static MetricsBuffer label(MetricsBuffer samples, char separator, String name, String value) {
+        samples.append(separator).append(name).append("=\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\':
+                    samples.append("\\\\");
+                    break;
+                case '"':
+                    samples.append("\\\"");
+                    break;
+                case '\n':
+                    samples.append("\\n");
+                    break;
+                default:
+                    samples.append(c);
+            }
+        }
+        return samples.append('"');
+    }
+
+    private static class Family {
+        private final String name;
+        private final String type;
+        private final String help;
+        private final MetricsBuffer samples = new MetricsBuffer();
+
+        Family(String name, String type, String help) {
+            this.name = name;
+            this.type = type;
+            this.help = help;
+        }
+
+        void writeTo(MetricsBuffer out) {
+            if (samples.length() > 0) {
+                out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+                out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+                out.append(samples);
+            }
+        }
+    }
+}
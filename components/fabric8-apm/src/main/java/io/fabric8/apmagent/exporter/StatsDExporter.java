@@ -0,0 +1,170 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.apmagent.exporter;
+
+import io.fabric8.apmagent.metrics.ApmAgentContext;
+import io.fabric8.apmagent.metrics.MethodMetrics;
+import io.fabric8.apmagent.metrics.ThreadMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically pushes the metrics as StatsD gauges over UDP. Lines are packed into
+ * packets that fit a typical network MTU, and all the buffers are reused between pushes.
+ */
+public class StatsDExporter {
+    private static final Logger LOG = LoggerFactory.getLogger(StatsDExporter.class);
+    private static final int MAX_PACKET_SIZE = 1432;
+    private static final double NANOS_TO_MILLIS = 1e-6;
+    private final ApmAgentContext context;
+    private final InetSocketAddress address;
+    private final String prefix;
+    private final long interval;
+    private final MetricsBuffer buffer = new MetricsBuffer(MAX_PACKET_SIZE * 2);
+    private ByteBuffer packet;
+    private DatagramChannel channel;
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * @param interval - the time between pushes, in seconds
+     */
+    public StatsDExporter(ApmAgentContext context, String host, int port, String prefix, long interval) {
+        this.context = context;
+        this.address = new InetSocketAddress(host, port);
+        this.prefix = prefix;
+        this.interval = Math.max(1, interval);
+    }
+
+    public synchronized void start() throws IOException {
+        if (channel == null) {
+            channel = DatagramChannel.open();
+            scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "Fabric8-ApmAgent-StatsDExporter");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            scheduler.scheduleAtFixedRate(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        push();
+                    } catch (Throwable e) {
+                        LOG.warn("Failed to push metrics to StatsD at " + address + " due " + e.getMessage() + ". This exception is ignored.", e);
+                    }
+                }
+            }, interval, interval, TimeUnit.SECONDS);
+            LOG.info("Pushing metrics to StatsD at {} every {} seconds", address, interval);
+        }
+    }
+
+    public synchronized void stop() {
+        if (channel != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+            try {
+                channel.close();
+            } catch (IOException e) {
+                LOG.debug("Failed to close channel due " + e.getMessage() + ". This exception is ignored.", e);
+            }
+            channel = null;
+        }
+    }
+
+    /**
+     * Sends all the metrics
+     */
+    public synchronized void push() throws IOException {
+        if (channel == null) {
+            return;
+        }
+        buffer.reset();
+        for (MethodMetrics methodMetrics : context.getAllMethodMetrics()) {
+            String name = methodMetrics.getName();
+            gauge("method.", name, ".count").append(methodMetrics.getCount()).append("|g\n");
+            flushIfFull();
+            gauge("method.", name, ".mean").append(methodMetrics.getSnapshot().getMean() * NANOS_TO_MILLIS, 3).append("|g\n");
+            flushIfFull();
+            gauge("method.", name, ".p99").append(methodMetrics.getSnapshot().get99thPercentile() * NANOS_TO_MILLIS, 3).append("|g\n");
+            flushIfFull();
+            gauge("method.", name, ".rate1m").append(methodMetrics.getOneMinuteRate(), 3).append("|g\n");
+            flushIfFull();
+        }
+        for (ThreadMetrics threadMetrics : context.getAllThreadMetrics()) {
+            long cpuTime = threadMetrics.getCpuTime();
+            if (cpuTime >= 0) {
+                gauge("thread.", threadMetrics.getName(), ".cpu").append(cpuTime * NANOS_TO_MILLIS, 3).append("|g\n");
+                flushIfFull();
+            }
+        }
+        if (buffer.length() > 0) {
+            send(buffer.length());
+        }
+    }
+
+    private MetricsBuffer gauge(String type, String name, String suffix) {
+        buffer.append(prefix).append('.').append(type);
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '.' || c == '-') {
+                buffer.append(c);
+            } else {
+                buffer.append('_');
+            }
+        }
+        return buffer.append(suffix).append(':');
+    }
+
+    /**
+     * Sends the complete lines if the last line took the buffer over the packet size
+     */
+    private void flushIfFull() throws IOException {
+        if (buffer.length() > MAX_PACKET_SIZE) {
+            byte[] bytes = buffer.array();
+            int end = buffer.length() - 1;
+            //find the start of the last line
+            while (end > 0 && bytes[end - 1] != '\n') {
+                end--;
+            }
+            if (end == 0) {
+                //a single line bigger than a packet - send it anyway
+                end = buffer.length();
+            }
+            send(end);
+            buffer.discard(end);
+        }
+    }
+
+    private void send(int length) throws IOException {
+        if (packet == null || packet.array() != buffer.array()) {
+            packet = ByteBuffer.wrap(buffer.array());
+        }
+        packet.clear();
+        packet.limit(length);
+        channel.send(packet, address);
+    }
+}
@@ -17,15 +17,19 @@ package io.fabric8.apmagent.metrics;
 
 import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.management.InstanceAlreadyExistsException;
 import javax.management.MBeanRegistrationException;
 import javax.management.MBeanServer;
@@ -37,6 +41,8 @@ import io.fabric8.apmagent.ApmAgent;
 import io.fabric8.apmagent.ApmConfiguration;
 import io.fabric8.apmagent.ClassInfo;
 import io.fabric8.apmagent.MethodDescription;
+import io.fabric8.apmagent.exporter.PrometheusExporter;
+import io.fabric8.apmagent.exporter.StatsDExporter;
 import org.jolokia.jmx.JolokiaMBeanServerUtil;
 import org.jolokia.jvmagent.JolokiaServer;
 import org.slf4j.Logger;
@@ -51,6 +57,9 @@ public class ApmAgentContext {
     private AtomicBoolean started = new AtomicBoolean();
     private ConcurrentMap<Thread, ThreadMetrics> threadMetricsMap = new ConcurrentHashMap<>();
     private ConcurrentMap<String, MethodMetrics> methodMetricsMap = new ConcurrentHashMap<>();
+    private final MethodRegistry methodRegistry = new MethodRegistry();
+    private volatile MethodMetrics[] methodMetricsById = new MethodMetrics[0];
+    private volatile ThreadLocal<ThreadMetrics> threadMetricsLocal = new ThreadLocal<>();
     private ConcurrentMap<Object, ObjectName> objectNameMap = new ConcurrentHashMap<>();
     private MBeanServer mBeanServer;
     private JolokiaServer jolokiaServer;
@@ -59,15 +68,24 @@ public class ApmAgentContext {
     private ObjectName configurationObjectName;
     private final ApmConfiguration configuration;
     private final MonitoredMethodMetrics monitoredMethodMetrics;
+    private final OverheadGovernor overheadGovernor;
     private AtomicBoolean doHouseKeeping = new AtomicBoolean();
     private Thread backgroundThread;
     private boolean monitorByDefault = true;
+    private volatile CallTree callTree;
+    private volatile AtomicInteger threadCallTreeNodeCount = new AtomicInteger();
+    private volatile long houseKeepingTime;
+    private final AtomicLong houseKeepingTotalTime = new AtomicLong();
+    private final AtomicLong houseKeepingCount = new AtomicLong();
+    private PrometheusExporter prometheusExporter;
+    private StatsDExporter statsDExporter;
 
     public ApmAgentContext(ApmAgent agent) {
         this.apmAgent = agent;
         this.configuration = agent.getConfiguration();
         this.monitoredMethodMetrics = new MonitoredMethodMetrics(this);
         this.monitoredMethodMetrics.setMonitorSize(configuration.getMethodMetricDepth());
+        this.overheadGovernor = new OverheadGovernor(configuration);
     }
 
     public void enterMethod(Thread currentThread, String fullMethodName, boolean alwaysActive) {
@@ -81,7 +99,7 @@ public class ApmAgentContext {
 
             MethodMetrics methodMetrics = methodMetricsMap.get(fullMethodName);
             if (methodMetrics == null) {
-                methodMetrics = new MethodMetrics(fullMethodName);
+                methodMetrics = new MethodMetrics(fullMethodName, createRecorder(false));
                 methodMetrics.setActive(isMonitorByDefault());
                 methodMetricsMap.putIfAbsent(fullMethodName, methodMetrics);
             }
@@ -108,8 +126,122 @@ public class ApmAgentContext {
         }
     }
 
+    /**
+     * Fast path used by instrumented byte code - the method is identified by the id
+     * handed out by {@link #registerMethod(String)} at transform time, so the steady
+     * state does no hashing and no allocation.
+     */
+    public void enterMethod(int methodId) {
+        if (isInitialized()) {
+            ThreadMetrics threadMetrics = getCurrentThreadMetrics();
+            threadMetrics.enter(methodId, false);
+
+            MethodMetrics[] array = methodMetricsById;
+            if (methodId >= array.length || array[methodId] == null) {
+                bindMethodMetrics(methodId);
+            }
+        }
+    }
+
+    public void exitMethod(int methodId) {
+        if (isInitialized()) {
+            ThreadMetrics threadMetrics = getCurrentThreadMetrics();
+            long elapsed = threadMetrics.exit(methodId, false);
+
+            if (elapsed >= 0) {
+                MethodMetrics[] array = methodMetricsById;
+                MethodMetrics methodMetrics = methodId < array.length ? array[methodId] : null;
+                if (methodMetrics != null) {
+                    methodMetrics.update(elapsed);
+                }
+            }
+            doHouseKeeping();
+        }
+    }
+
+    /**
+     * @return the id used by the instrumented byte code for the given method
+     */
+    public int registerMethod(String fullMethodName) {
+        return methodRegistry.register(fullMethodName);
+    }
+
+    public int getMethodId(String fullMethodName) {
+        return methodRegistry.getMethodId(fullMethodName);
+    }
+
+    public String getMethodName(int methodId) {
+        return methodRegistry.getMethodName(methodId);
+    }
+
+    /**
+     * @param singleWriter - true if the metrics will only ever be updated by one thread
+     * @return a new recorder, as selected by the configuration
+     */
+    MethodMetricsRecorder createRecorder(boolean singleWriter) {
+        switch (configuration.getRecorderImpl()) {
+            case HDR_HISTOGRAM:
+                return new HdrHistogramRecorder(configuration.getHistogramPrecision(), singleWriter);
+            default:
+                return new TimerRecorder();
+        }
+    }
+
+    private ThreadMetrics getCurrentThreadMetrics() {
+        ThreadLocal<ThreadMetrics> local = threadMetricsLocal;
+        ThreadMetrics threadMetrics = local.get();
+        if (threadMetrics == null) {
+            Thread currentThread = Thread.currentThread();
+            threadMetrics = threadMetricsMap.get(currentThread);
+            if (threadMetrics == null) {
+                threadMetrics = new ThreadMetrics(this, currentThread);
+                ThreadMetrics existing = threadMetricsMap.putIfAbsent(currentThread, threadMetrics);
+                if (existing != null) {
+                    threadMetrics = existing;
+                }
+            }
+            local.set(threadMetrics);
+        }
+        return threadMetrics;
+    }
+
+    private synchronized MethodMetrics bindMethodMetrics(int methodId) {
+        MethodMetrics[] array = methodMetricsById;
+        if (methodId < array.length && array[methodId] != null) {
+            return array[methodId];
+        }
+        String fullMethodName = methodRegistry.getMethodName(methodId);
+        if (fullMethodName == null) {
+            return null;
+        }
+        MethodMetrics methodMetrics = methodMetricsMap.get(fullMethodName);
+        if (methodMetrics == null) {
+            methodMetrics = new MethodMetrics(fullMethodName, createRecorder(false));
+            methodMetrics.setActive(isMonitorByDefault());
+            MethodMetrics existing = methodMetricsMap.putIfAbsent(fullMethodName, methodMetrics);
+            if (existing != null) {
+                methodMetrics = existing;
+            }
+        }
+        if (methodId >= array.length) {
+            array = Arrays.copyOf(array, Math.max(methodId + 1, methodRegistry.size()));
+        }
+        array[methodId] = methodMetrics;
+        methodMetricsById = array;
+        return methodMetrics;
+    }
+
+    private synchronized void unbindMethodMetrics(String fullMethodName) {
+        int methodId = methodRegistry.getMethodId(fullMethodName);
+        MethodMetrics[] array = methodMetricsById;
+        if (methodId >= 0 && methodId < array.length) {
+            array[methodId] = null;
+        }
+    }
+
     public void initialize() {
         if (initialized.compareAndSet(false, true)) {
+            callTree = new CallTree(configuration.getCallTreeMaxNodes());
             try {
                 agentObjectName = new ObjectName(DEFAULT_DOMAIN, "type", "apmAgent");
                 registerMBean(agentObjectName, apmAgent);
@@ -130,6 +262,8 @@ public class ApmAgentContext {
                         while (started.get()) {
                             try {
                                 Thread.sleep(HOUSE_KEEPING_TIME);
+                                //may retransform classes - so done here, never on an application thread
+                                governOverhead();
                                 doHouseKeeping.set(true);
                             } catch (Throwable e) {
                             }
@@ -138,6 +272,51 @@ public class ApmAgentContext {
                 }, "Fabric8-ApmAgent-BackgroundThread");
                 backgroundThread.setDaemon(true);
                 backgroundThread.start();
+                startExporters();
+            }
+        }
+    }
+
+    private synchronized void startExporters() {
+        if (configuration.getPrometheusPort() > 0) {
+            try {
+                prometheusExporter = new PrometheusExporter(this, configuration.getPrometheusHost(), configuration.getPrometheusPort());
+                prometheusExporter.start();
+            } catch (Throwable e) {
+                prometheusExporter = null;
+                LOG.warn("Failed to start Prometheus exporter due " + e.getMessage() + ". This exception is ignored.", e);
+            }
+        }
+        String statsdHost = configuration.getStatsdHost();
+        if (statsdHost != null && !statsdHost.isEmpty()) {
+            try {
+                statsDExporter = new StatsDExporter(this, statsdHost, configuration.getStatsdPort(),
+                                                    configuration.getStatsdPrefix(), configuration.getStatsdInterval());
+                statsDExporter.start();
+            } catch (Throwable e) {
+                statsDExporter = null;
+                LOG.warn("Failed to start StatsD exporter due " + e.getMessage() + ". This exception is ignored.", e);
+            }
+        }
+    }
+
+    private synchronized void stopExporters() {
+        if (prometheusExporter != null) {
+            prometheusExporter.stop();
+            prometheusExporter = null;
+        }
+        if (statsDExporter != null) {
+            statsDExporter.stop();
+            statsDExporter = null;
+        }
+    }
+
+    private void governOverhead() {
+        if (configuration.getStrategyImpl() == ApmConfiguration.STRATEGY.TRACE) {
+            try {
+                overheadGovernor.evaluate(methodMetricsMap.values());
+            } catch (Throwable e) {
+                LOG.warn("Error evaluating the tracing overhead due " + e.getMessage() + ". This exception is ignored.", e);
             }
         }
     }
@@ -146,20 +325,38 @@ public class ApmAgentContext {
         //the time is going to be the elapsed time from the latest method call
         //its not going to be terribly accurate - but then it doesn't really need to be
         if (doHouseKeeping.compareAndSet(true, false)) {
+            long start = System.nanoTime();
             try {
                 List<ThreadMetrics> threadMetricsList = getThreadMetrics();
                 for (ThreadMetrics tm : threadMetricsList) {
                     if (tm.isDead()) {
+                        //keep the call edges of the thread
+                        ThreadCallTree threadCallTree = tm.getCallTree();
+                        if (threadCallTree != null) {
+                            CallTree tree = callTree;
+                            if (tree != null) {
+                                tree.addAll(threadCallTree);
+                            }
+                            threadCallTree.release();
+                        }
                         tm.destroy();
                         threadMetricsMap.remove(tm.getThread());
                     }
                 }
-                monitoredMethodMetrics.calculateMethodMetrics(getMethodMetrics());
+                for (MethodMetrics methodMetrics : methodMetricsMap.values()) {
+                    methodMetrics.refresh();
+                }
+                monitoredMethodMetrics.calculateMethodMetrics(MethodMetrics.rankedMetrics(methodMetricsMap.values(), monitoredMethodMetrics.getMonitorSize()));
                 for (ThreadMetrics threadMetrics : threadMetricsList) {
                     threadMetrics.calculateMethodMetrics();
                 }
             } catch (Throwable e) {
                 LOG.warn("Error during housekeeping due " + e.getMessage() + ". This exception is ignored.", e);
+            } finally {
+                long elapsed = System.nanoTime() - start;
+                houseKeepingTime = elapsed;
+                houseKeepingTotalTime.addAndGet(elapsed);
+                houseKeepingCount.incrementAndGet();
             }
         }
     }
@@ -170,8 +367,19 @@ public class ApmAgentContext {
                 unregisterMBean(objectName);
             }
             objectNameMap.clear();
-            methodMetricsMap.clear();
+            stopExporters();
+            synchronized (this) {
+                methodMetricsMap.clear();
+                methodMetricsById = new MethodMetrics[0];
+            }
             threadMetricsMap.clear();
+            threadMetricsLocal = new ThreadLocal<>();
+            //the trees of the discarded threads no longer count towards the bound
+            threadCallTreeNodeCount = new AtomicInteger();
+            CallTree tree = callTree;
+            if (tree != null) {
+                tree.clear();
+            }
         }
     }
 
@@ -204,6 +412,13 @@ public class ApmAgentContext {
         return result;
     }
 
+    /**
+     * @return the {@link ClassInfo} for the class if one has been created, else null
+     */
+    public ClassInfo findClassInfo(String className) {
+        return allMethods.get(className.replace('/', '.'));
+    }
+
     public List<String> getTransformedMethods() {
         List<String> result = new ArrayList<>();
         for (ClassInfo classInfo : allMethods.values()) {
@@ -236,10 +451,85 @@ public class ApmAgentContext {
         return result;
     }
 
+    /**
+     * @return a live, unsorted view of the metrics of every method - for exporters, which should not copy or sort
+     */
+    public Collection<MethodMetrics> getAllMethodMetrics() {
+        return Collections.unmodifiableCollection(methodMetricsMap.values());
+    }
+
+    /**
+     * @return a live, unsorted view of the metrics of every thread
+     */
+    public Collection<ThreadMetrics> getAllThreadMetrics() {
+        return Collections.unmodifiableCollection(threadMetricsMap.values());
+    }
+
     public List<? extends MethodMetrics> getMethodMetrics() {
         return MethodMetrics.sortedMetrics(methodMetricsMap.values());
     }
 
+    /**
+     * @return the aggregated call stacks, or null if not initialized
+     */
+    public CallTree getCallTree() {
+        return callTree;
+    }
+
+    /**
+     * @return the number of nodes used by the call trees of all traced threads, which are bounded together
+     */
+    AtomicInteger getThreadCallTreeNodeCount() {
+        return threadCallTreeNodeCount;
+    }
+
+    /**
+     * @return the time in nanoseconds taken by the last housekeeping run
+     */
+    public long getHouseKeepingTime() {
+        return houseKeepingTime;
+    }
+
+    /**
+     * @return the total time in nanoseconds taken by housekeeping
+     */
+    public long getHouseKeepingTotalTime() {
+        return houseKeepingTotalTime.get();
+    }
+
+    /**
+     * @return the number of housekeeping runs
+     */
+    public long getHouseKeepingCount() {
+        return houseKeepingCount.get();
+    }
+
+    /**
+     * @return the estimated CPU used by tracing, as a percentage of all processors
+     */
+    public double getEstimatedOverhead() {
+        return overheadGovernor.getEstimatedOverhead();
+    }
+
+    /**
+     * @return the call tree of the sampled stacks and of all traced threads, as folded stacks
+     */
+    public String getFoldedStacks() {
+        CallTree tree = callTree;
+        if (tree == null) {
+            return "";
+        }
+        CallTree result = new CallTree(Integer.MAX_VALUE);
+        result.addAll(tree);
+        for (ThreadMetrics threadMetrics : threadMetricsMap.values()) {
+            ThreadCallTree threadCallTree = threadMetrics.getCallTree();
+            if (threadCallTree != null) {
+                result.addAll(threadCallTree);
+            }
+        }
+        return result.toFoldedStacks();
+    }
+
     public boolean isInitialized() {
         return initialized.get();
     }
@@ -277,18 +567,18 @@ public class ApmAgentContext {
                 if (configuration.isAudit(classInfo.getClassName())) {
                     boolean retransform = false;
                     //check to see if there's a change to methods that should be transformed
-                    Set<String> transformedMethodNames = classInfo.getAllTransformedMethodNames();
-                    for (String methodName : transformedMethodNames) {
-                        if (!configuration.isAudit(classInfo.getClassName(), methodName)) {
+                    Set<String> transformedMethodSignatures = new HashSet<>();
+                    for (MethodDescription methodDescription : classInfo.getTransformedMethodDescriptions()) {
+                        transformedMethodSignatures.add(methodDescription.getMethodSignature());
+                        if (!isAudit(classInfo, methodDescription)) {
                             retransform = true;
                             break;
                         }
                     }
                     if (!retransform) {
                         //check to see if there are methods that should now be audited but weren't
-                        Set<String> allMethodNames = classInfo.getAllMethodNames();
-                        for (String methodName : allMethodNames) {
-                            if (!transformedMethodNames.contains(methodName) && configuration.isAudit(classInfo.getClassName(), methodName)) {
+                        for (MethodDescription methodDescription : classInfo.getAllMethodDescriptions()) {
+                            if (!transformedMethodSignatures.contains(methodDescription.getMethodSignature()) && isAudit(classInfo, methodDescription)) {
                                 retransform = true;
                                 break;
                             }
@@ -315,7 +605,7 @@ public class ApmAgentContext {
     public void resetMethods(ClassInfo classInfo) {
         Collection<MethodDescription> list = classInfo.getTransformedMethodDescriptions();
         for (MethodDescription methodDescription : list) {
-            if (!configuration.isAudit(classInfo.getClassName(), methodDescription.getMethodName())) {
+            if (!isAudit(classInfo, methodDescription)) {
                 remove(methodDescription);
             }
         }
@@ -339,8 +629,13 @@ public class ApmAgentContext {
         }
     }
 
+    private boolean isAudit(ClassInfo classInfo, MethodDescription methodDescription) {
+        return configuration.isAudit(classInfo.getClassName(), methodDescription.getMethodName(), methodDescription.getDescription());
+    }
+
     private void remove(MethodDescription methodDescription) {
         methodMetricsMap.remove(methodDescription.getFullMethodName());
+        unbindMethodMetrics(methodDescription.getFullMethodName());
         for (ThreadMetrics threadMetrics : threadMetricsMap.values()) {
             threadMetrics.remove(methodDescription.getFullMethodName());
         }
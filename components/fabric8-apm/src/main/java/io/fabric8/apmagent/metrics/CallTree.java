@@ -0,0 +1,187 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.apmagent.metrics;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Aggregates call stacks into a tree, which can be written out as folded
+ * (collapsed) stacks - one line per stack with its value - the input format
+ * used by flame graph tools.
+ * <p/>
+ * The value of a node is its self value: a sample count for sampled stacks,
+ * or the time in nanoseconds spent in the method but not its children for
+ * traced stacks.
+ */
+public class CallTree {
+    private final int maxNodes;
+    private final Node root = new Node("root");
+    private int nodeCount;
+
+    /**
+     * @param maxNodes - the maximum number of nodes kept, stacks are truncated at the deepest existing node after that
+     */
+    public CallTree(int maxNodes) {
+        this.maxNodes = maxNodes;
+    }
+
+    /**
+     * Adds a stack to the tree
+     *
+     * @param frames - the method names, outermost frame first
+     * @param length - the number of frames to use
+     * @param value  - the value to add to the innermost frame
+     */
+    public synchronized void add(String[] frames, int length, long value) {
+        Node node = root;
+        for (int i = 0; i < length; i++) {
+            Node child = node.getChild(frames[i]);
+            if (child == null) {
+                break;
+            }
+            node = child;
+        }
+        node.value += value;
+    }
+
+    /**
+     * Merges all the stacks of another tree into this one
+     */
+    public void addAll(CallTree other) {
+        synchronized (other) {
+            synchronized (this) {
+                merge(root, other.root);
+            }
+        }
+    }
+
+    /**
+     * Merges all the stacks traced by a thread into this one - without locking the thread tree,
+     * which the owning thread may still be adding to
+     */
+    public synchronized void addAll(ThreadCallTree other) {
+        merge(root, other.getRoot());
+    }
+
+    public synchronized int getNodeCount() {
+        return nodeCount;
+    }
+
+    public synchronized void clear() {
+        root.children = null;
+        root.value = 0;
+        nodeCount = 0;
+    }
+
+    /**
+     * @return the tree as folded stacks, one <code>frame;frame;frame value</code> line per stack
+     */
+    public synchronized String toFoldedStacks() {
+        StringBuilder result = new StringBuilder();
+        if (root.children != null) {
+            StringBuilder path = new StringBuilder();
+            for (Node child : root.children.values()) {
+                writeFolded(child, path, result);
+            }
+        }
+        return result.toString();
+    }
+
+    private void merge(Node to, Node from) {
+        to.value += from.value;
+        if (from.children != null) {
+            for (Node fromChild : from.children.values()) {
+                Node toChild = to.getChild(fromChild.name);
+                if (toChild != null) {
+                    merge(toChild, fromChild);
+                } else {
+                    //out of nodes - attribute to the deepest node we have
+                    to.value += fromChild.getTotal();
+                }
+            }
+        }
+    }
+
+    private void merge(Node to, ThreadCallTree.Node from) {
+        to.value += from.getValue();
+        ThreadCallTree.Node[] fromChildren = from.getChildren();
+        if (fromChildren != null) {
+            for (ThreadCallTree.Node fromChild : fromChildren) {
+                if (fromChild == null) {
+                    continue;
+                }
+                Node toChild = to.getChild(fromChild.getName());
+                if (toChild != null) {
+                    merge(toChild, fromChild);
+                } else {
+                    //out of nodes - attribute to the deepest node we have
+                    to.value += fromChild.getTotal();
+                }
+            }
+        }
+    }
+
+    private void writeFolded(Node node, StringBuilder path, StringBuilder result) {
+        int length = path.length();
+        if (length > 0) {
+            path.append(';');
+        }
+        path.append(node.name);
+        if (node.value > 0) {
+            result.append(path).append(' ').append(node.value).append('\n');
+        }
+        if (node.children != null) {
+            for (Node child : node.children.values()) {
+                writeFolded(child, path, result);
+            }
+        }
+        path.setLength(length);
+    }
+
+    private class Node {
+        private final String name;
+        private Map<String, Node> children;
+        private long value;
+
+        Node(String name) {
+            this.name = name;
+        }
+
+        private Node getChild(String childName) {
+            Node child = children != null ? children.get(childName) : null;
+            if (child == null && nodeCount < maxNodes) {
+                if (children == null) {
+                    children = new HashMap<>(4);
+                }
+                child = new Node(childName);
+                children.put(childName, child);
+                nodeCount++;
+            }
+            return child;
+        }
+
+        private long getTotal() {
+            long result = value;
+            if (children != null) {
+                for (Node child : children.values()) {
+                    result += child.getTotal();
+                }
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,190 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.apmagent.metrics;
+
+import com.codahale.metrics.Meter;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramIterationValue;
+import org.HdrHistogram.Recorder;
+import org.HdrHistogram.SingleWriterRecorder;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records into HdrHistograms. Writers never block or allocate - the interval
+ * histogram is swapped out on {@link #refresh()} and added to the current slot of a
+ * sliding window.
+ * <p/>
+ * The statistics cover the last {@link #DEFAULT_WINDOW_MILLIS} only, so they mean the same
+ * as those of the {@link TimerRecorder}, whose exponentially decaying reservoir is biased
+ * towards the last five minutes.
+ * <p/>
+ * Metrics that are only ever updated by their own thread (the {@link ThreadContextMethodMetrics})
+ * use a single writer recorder, everything else uses the wait-free concurrent recorder.
+ */
+public class HdrHistogramRecorder implements MethodMetricsRecorder {
+    public static final long DEFAULT_WINDOW_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    private static final int SLOTS = 5;
+
+    private final Meter meter = new Meter();
+    private final LongAdder totalTime = new LongAdder();
+    private final Recorder recorder;
+    private final SingleWriterRecorder singleWriterRecorder;
+    private final long slotNanos;
+    private final Histogram[] slots = new Histogram[SLOTS];
+    private final long[] slotEpochs = new long[SLOTS];
+    private final Histogram window;
+    private Histogram interval;
+    private volatile MethodMetricsSnapshot snapshot = MethodMetricsSnapshot.EMPTY;
+
+    /**
+     * @param numberOfSignificantValueDigits - the precision of the histograms, between 0 and 5
+     * @param singleWriter                   - true if only one thread will ever call {@link #update(long)}
+     */
+    public HdrHistogramRecorder(int numberOfSignificantValueDigits, boolean singleWriter) {
+        this(numberOfSignificantValueDigits, singleWriter, DEFAULT_WINDOW_MILLIS);
+    }
+
+    /**
+     * @param numberOfSignificantValueDigits - the precision of the histograms, between 0 and 5
+     * @param singleWriter                   - true if only one thread will ever call {@link #update(long)}
+     * @param windowMillis                   - how long a timing is part of the statistics for
+     */
+    public HdrHistogramRecorder(int numberOfSignificantValueDigits, boolean singleWriter, long windowMillis) {
+        int precision = Math.max(0, Math.min(5, numberOfSignificantValueDigits));
+        if (singleWriter) {
+            this.singleWriterRecorder = new SingleWriterRecorder(precision);
+            this.recorder = null;
+        } else {
+            this.recorder = new Recorder(precision);
+            this.singleWriterRecorder = null;
+        }
+        this.slotNanos = Math.max(1, TimeUnit.MILLISECONDS.toNanos(windowMillis) / SLOTS);
+        for (int i = 0; i < SLOTS; i++) {
+            slots[i] = new Histogram(precision);
+            slotEpochs[i] = Long.MIN_VALUE;
+        }
+        this.window = new Histogram(precision);
+    }
+
+    @Override
+    public void update(long elapsed) {
+        if (singleWriterRecorder != null) {
+            singleWriterRecorder.recordValue(elapsed);
+        } else {
+            recorder.recordValue(elapsed);
+        }
+        meter.mark();
+        totalTime.add(elapsed);
+    }
+
+    @Override
+    public long getCount() {
+        return meter.getCount();
+    }
+
+    @Override
+    public long getTotalTime() {
+        return totalTime.sum();
+    }
+
+    @Override
+    public double getMeanRate() {
+        return meter.getMeanRate();
+    }
+
+    @Override
+    public double getOneMinuteRate() {
+        return meter.getOneMinuteRate();
+    }
+
+    @Override
+    public double getFiveMinuteRate() {
+        return meter.getFiveMinuteRate();
+    }
+
+    @Override
+    public double getFifteenMinuteRate() {
+        return meter.getFifteenMinuteRate();
+    }
+
+    @Override
+    public void refresh() {
+        refresh(System.nanoTime());
+    }
+
+    synchronized void refresh(long nanoTime) {
+        if (singleWriterRecorder != null) {
+            interval = singleWriterRecorder.getIntervalHistogram(interval);
+        } else {
+            interval = recorder.getIntervalHistogram(interval);
+        }
+        long epoch = nanoTime / slotNanos;
+        boolean expired = false;
+        for (int i = 0; i < SLOTS; i++) {
+            if (slotEpochs[i] != Long.MIN_VALUE && slotEpochs[i] <= epoch - SLOTS) {
+                slots[i].reset();
+                slotEpochs[i] = Long.MIN_VALUE;
+                expired = true;
+            }
+        }
+        if (interval.getTotalCount() == 0 && !expired) {
+            //nothing new recorded and nothing aged out - keep the current snapshot
+            return;
+        }
+        if (interval.getTotalCount() > 0) {
+            int current = (int) Math.floorMod(epoch, (long) SLOTS);
+            if (slotEpochs[current] != epoch) {
+                slots[current].reset();
+                slotEpochs[current] = epoch;
+            }
+            slots[current].add(interval);
+        }
+        window.reset();
+        for (int i = 0; i < SLOTS; i++) {
+            if (slotEpochs[i] != Long.MIN_VALUE) {
+                window.add(slots[i]);
+            }
+        }
+        long count = window.getTotalCount();
+        if (count == 0) {
+            snapshot = MethodMetricsSnapshot.EMPTY;
+            return;
+        }
+        long[] values = new long[16];
+        int index = 0;
+        for (HistogramIterationValue value : window.recordedValues()) {
+            if (index == values.length) {
+                values = Arrays.copyOf(values, values.length * 2);
+            }
+            values[index++] = value.getValueIteratedTo();
+        }
+        values = Arrays.copyOf(values, index);
+        snapshot = new MethodMetricsSnapshot(count, window.getMinValue(), window.getMaxValue(),
+                                             window.getMean(), window.getStdDeviation(),
+                                             window.getValueAtPercentile(50.0), window.getValueAtPercentile(75.0),
+                                             window.getValueAtPercentile(95.0), window.getValueAtPercentile(98.0),
+                                             window.getValueAtPercentile(99.0), window.getValueAtPercentile(99.9),
+                                             values);
+    }
+
+    @Override
+    public MethodMetricsSnapshot getSnapshot() {
+        return snapshot;
+    }
+}
@@ -15,21 +15,21 @@
  */
 package io.fabric8.apmagent.metrics;
 
-import com.codahale.metrics.Timer;
-
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.PriorityQueue;
 import java.util.concurrent.TimeUnit;
 
 public class MethodMetrics {
-    protected final Timer timer;
+    protected final MethodMetricsRecorder recorder;
     private final String name;
     private final double rateFactor;
     private final double durationFactor;
     private int percentage;
+    private volatile double load;
     private boolean active = true;
 
     /**
@@ -38,8 +38,18 @@ public class MethodMetrics {
      * @param name - the fully qualified method name
      */
     public MethodMetrics(String name) {
+        this(name, new TimerRecorder());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param name     - the fully qualified method name
+     * @param recorder - records the timings for the method
+     */
+    public MethodMetrics(String name, MethodMetricsRecorder recorder) {
         this.name = name;
-        this.timer = new Timer();
+        this.recorder = recorder;
 
         this.rateFactor = TimeUnit.SECONDS.toSeconds(1);
         this.durationFactor = 1.0 / TimeUnit.MILLISECONDS.toNanos(1);
@@ -58,63 +68,71 @@ public class MethodMetrics {
     }
 
     public long getCount() {
-        return timer.getCount();
+        return recorder.getCount();
+    }
+
+    /**
+     * @return the time spent in all the calls recorded, in nanoseconds - unlike the snapshot
+     * statistics this is exact, and never decays
+     */
+    public long getTotalTime() {
+        return recorder.getTotalTime();
     }
 
     public double getMeanRate() {
-        return timer.getMeanRate() * rateFactor;
+        return recorder.getMeanRate() * rateFactor;
     }
 
     public double getOneMinuteRate() {
-        return timer.getOneMinuteRate() * rateFactor;
+        return recorder.getOneMinuteRate() * rateFactor;
     }
 
     public double getFiveMinuteRate() {
-        return timer.getFiveMinuteRate() * rateFactor;
+        return recorder.getFiveMinuteRate() * rateFactor;
     }
 
     public double getFifteenMinuteRate() {
-        return timer.getFifteenMinuteRate() * rateFactor;
+        return recorder.getFifteenMinuteRate() * rateFactor;
     }
 
     public double getMin() {
-        return timer.getSnapshot().getMin() * durationFactor;
+        return recorder.getSnapshot().getMin() * durationFactor;
     }
 
     public double getMax() {
-        return timer.getSnapshot().getMax() * durationFactor;
+        return recorder.getSnapshot().getMax() * durationFactor;
     }
 
     public double getMean() {
-        return timer.getSnapshot().getMean() * durationFactor;
+        return recorder.getSnapshot().getMean() * durationFactor;
     }
 
     public double getStdDev() {
-        return timer.getSnapshot().getStdDev() * durationFactor;
+        return recorder.getSnapshot().getStdDev() * durationFactor;
     }
 
     public double get50thPercentile() {
-        return timer.getSnapshot().getMedian() * durationFactor;
+        return recorder.getSnapshot().getMedian() * durationFactor;
     }
 
     public double get75thPercentile() {
-        return timer.getSnapshot().get75thPercentile() * durationFactor;
+        return recorder.getSnapshot().get75thPercentile() * durationFactor;
     }
 
     public double get95thPercentile() {
-        return timer.getSnapshot().get95thPercentile() * durationFactor;
+        return recorder.getSnapshot().get95thPercentile() * durationFactor;
     }
 
     public double get98thPercentile() {
-        return timer.getSnapshot().get98thPercentile() * durationFactor;
+        return recorder.getSnapshot().get98thPercentile() * durationFactor;
     }
 
     public double get99thPercentile() {
-        return timer.getSnapshot().get99thPercentile() * durationFactor;
+        return recorder.getSnapshot().get99thPercentile() * durationFactor;
     }
 
     public double get999thPercentile() {
-        return timer.getSnapshot().get999thPercentile() * durationFactor;
+        return recorder.getSnapshot().get999thPercentile() * durationFactor;
     }
 
     /**
@@ -123,7 +141,7 @@ public class MethodMetrics {
      * @return estimated load
      */
     public double getLoad() {
-        return timer.getSnapshot().size() * getMean();
+        return load;
     }
 
     public int getPercentage() {
@@ -134,16 +152,33 @@ public class MethodMetrics {
         this.percentage = percentage;
     }
 
+    /**
+     * @return the statistics as of the last refresh, in nanoseconds
+     */
+    public MethodMetricsSnapshot getSnapshot() {
+        return recorder.getSnapshot();
+    }
+
     public long[] values() {
-        return timer.getSnapshot().getValues();
+        return recorder.getSnapshot().getValues();
     }
 
     public void update(long elapsed) {
         if (elapsed >= 0) {
-            timer.update(elapsed, TimeUnit.NANOSECONDS);
+            recorder.update(elapsed);
         }
     }
 
+    /**
+     * Aggregates the timings recorded since the last refresh - called from housekeeping,
+     * all the statistics getters are served from the resulting snapshot
+     */
+    public void refresh() {
+        recorder.refresh();
+        MethodMetricsSnapshot snapshot = recorder.getSnapshot();
+        load = snapshot.size() * snapshot.getMean() * durationFactor;
+    }
+
     public String toString() {
         return "MethodMetrics:" + getName();
     }
@@ -151,22 +186,60 @@ public class MethodMetrics {
     public static List<? extends MethodMetrics> sortedMetrics(Collection<? extends MethodMetrics> collection) {
         ArrayList<? extends MethodMetrics> list = new ArrayList<>(collection);
 
-        Collections.sort(list, new Comparator<MethodMetrics>() {
-            @Override
-            public int compare(MethodMetrics methodMetrics1, MethodMetrics methodMetrics2) {
-                return (int) ((int) methodMetrics2.getLoad() - (int) methodMetrics1.getLoad());
-            }
-        });
+        Collections.sort(list, BY_LOAD_DESCENDING);
         //calculate the percentage
-        int totalLoad = 0;
+        double totalLoad = 0;
         for (MethodMetrics m : list) {
             totalLoad += m.getLoad();
         }
         for (MethodMetrics m : list) {
-            int percentage = (int) ((m.getLoad() * 100) / totalLoad);
-            m.setPercentage(percentage);
+            m.setPercentage(percentage(m.getLoad(), totalLoad));
         }
         return list;
     }
+
+    /**
+     * Ranks the metrics by load, keeping only the top entries in a bounded heap - so the cost is
+     * O(n log limit), and each load is only read once
+     *
+     * @param collection - the metrics to rank
+     * @param limit      - the maximum number of metrics returned
+     * @return the metrics with the highest load, highest first
+     */
+    public static <T extends MethodMetrics> List<T> rankedMetrics(Collection<T> collection, int limit) {
+        if (limit <= 0) {
+            return new ArrayList<>();
+        }
+        //a min heap - the root is the entry to evict
+        PriorityQueue<T> heap = new PriorityQueue<>(limit + 1, Collections.reverseOrder(BY_LOAD_DESCENDING));
+        double totalLoad = 0;
+        for (T m : collection) {
+            double load = m.getLoad();
+            totalLoad += load;
+            if (heap.size() < limit) {
+                heap.add(m);
+            } else if (load > heap.peek().getLoad()) {
+                heap.poll();
+                heap.add(m);
+            }
+        }
+        List<T> list = new ArrayList<>(heap);
+        Collections.sort(list, BY_LOAD_DESCENDING);
+        for (T m : list) {
+            m.setPercentage(percentage(m.getLoad(), totalLoad));
+        }
+        return list;
+    }
+
+    private static int percentage(double load, double totalLoad) {
+        return totalLoad > 0 ? (int) ((load * 100) / totalLoad) : 0;
+    }
+
+    private static final Comparator<MethodMetrics> BY_LOAD_DESCENDING = new Comparator<MethodMetrics>() {
+        @Override
+        public int compare(MethodMetrics methodMetrics1, MethodMetrics methodMetrics2) {
+            return Double.compare(methodMetrics2.getLoad(), methodMetrics1.getLoad());
+        }
+    };
 }
 
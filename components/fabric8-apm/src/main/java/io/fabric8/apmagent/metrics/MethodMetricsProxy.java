@@ -16,7 +16,7 @@
 package io.fabric8.apmagent.metrics;
 
 public class MethodMetricsProxy implements MethodMetricsProxyMBean {
-    private MethodMetrics methodMetrics;
+    private volatile MethodMetrics methodMetrics;
 
     void setMethodMetrics(MethodMetrics methodMetrics) {
         this.methodMetrics = methodMetrics;
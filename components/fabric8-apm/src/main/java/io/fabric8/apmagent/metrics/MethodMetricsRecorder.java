@@ -0,0 +1,57 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.apmagent.metrics;
+
+/**
+ * Records method timings for a {@link MethodMetrics}.
+ * <p/>
+ * Recording is done on the instrumented thread, so has to be cheap. The
+ * statistics are only aggregated when {@link #refresh()} is called from the
+ * housekeeping tick, and {@link #getSnapshot()} hands back the result of
+ * the last refresh - so any number of attribute reads share the same snapshot.
+ */
+public interface MethodMetricsRecorder {
+
+    /**
+     * @param elapsed - the elapsed time in nanoseconds
+     */
+    void update(long elapsed);
+
+    long getCount();
+
+    /**
+     * @return the sum of all the recorded times, in nanoseconds
+     */
+    long getTotalTime();
+
+    double getMeanRate();
+
+    double getOneMinuteRate();
+
+    double getFiveMinuteRate();
+
+    double getFifteenMinuteRate();
+
+    /**
+     * Aggregates everything recorded since the last refresh into a new snapshot
+     */
+    void refresh();
+
+    /**
+     * @return the snapshot taken at the last refresh, in nanoseconds
+     */
+    MethodMetricsSnapshot getSnapshot();
+}
@@ -0,0 +1,105 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.apmagent.metrics;
+
+/**
+ * An immutable set of timing statistics, all values in nanoseconds.
+ */
+public class MethodMetricsSnapshot {
+    public static final MethodMetricsSnapshot EMPTY = new MethodMetricsSnapshot(0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, new long[0]);
+
+    private final long size;
+    private final long min;
+    private final long max;
+    private final double mean;
+    private final double stdDev;
+    private final double median;
+    private final double percentile75th;
+    private final double percentile95th;
+    private final double percentile98th;
+    private final double percentile99th;
+    private final double percentile999th;
+    private final long[] values;
+
+    public MethodMetricsSnapshot(long size, long min, long max, double mean, double stdDev,
+                                 double median, double percentile75th, double percentile95th,
+                                 double percentile98th, double percentile99th, double percentile999th,
+                                 long[] values) {
+        this.size = size;
+        this.min = min;
+        this.max = max;
+        this.mean = mean;
+        this.stdDev = stdDev;
+        this.median = median;
+        this.percentile75th = percentile75th;
+        this.percentile95th = percentile95th;
+        this.percentile98th = percentile98th;
+        this.percentile99th = percentile99th;
+        this.percentile999th = percentile999th;
+        this.values = values;
+    }
+
+    /**
+     * @return the number of timings the statistics are based on
+     */
+    public long size() {
+        return size;
+    }
+
+    public long getMin() {
+        return min;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    public double getMean() {
+        return mean;
+    }
+
+    public double getStdDev() {
+        return stdDev;
+    }
+
+    public double getMedian() {
+        return median;
+    }
+
+    public double get75thPercentile() {
+        return percentile75th;
+    }
+
+    public double get95thPercentile() {
+        return percentile95th;
+    }
+
+    public double get98thPercentile() {
+        return percentile98th;
+    }
+
+    public double get99thPercentile() {
+        return percentile99th;
+    }
+
+    public double get999thPercentile() {
+        return percentile999th;
+    }
+
+    public long[] getValues() {
+        return values;
+    }
+}
@@ -0,0 +1,71 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.apmagent.metrics;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Assigns a stable integer id to every instrumented method, so the
+ * enter/exit calls woven into the byte code can look up metrics by array
+ * index rather than by hashing the full method name.
+ * Ids are never reused for the lifetime of the agent.
+ */
+public class MethodRegistry {
+    private final ConcurrentMap<String, Integer> ids = new ConcurrentHashMap<>();
+    private volatile String[] names = new String[64];
+    private int size;
+
+    /**
+     * @return the id for the fully qualified method name, registering it if needed
+     */
+    public int register(String fullMethodName) {
+        Integer id = ids.get(fullMethodName);
+        if (id != null) {
+            return id;
+        }
+        synchronized (this) {
+            id = ids.get(fullMethodName);
+            if (id == null) {
+                id = size++;
+                if (id >= names.length) {
+                    names = Arrays.copyOf(names, names.length * 2);
+                }
+                names[id] = fullMethodName;
+                ids.put(fullMethodName, id);
+            }
+            return id;
+        }
+    }
+
+    /**
+     * @return the id of the method, or -1 if it has never been registered
+     */
+    public int getMethodId(String fullMethodName) {
+        Integer id = ids.get(fullMethodName);
+        return id != null ? id : -1;
+    }
+
+    public String getMethodName(int id) {
+        String[] array = names;
+        return id >= 0 && id < array.length ? array[id] : null;
+    }
+
+    public int size() {
+        return ids.size();
+    }
+}
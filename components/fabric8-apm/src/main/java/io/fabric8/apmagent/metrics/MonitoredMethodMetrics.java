@@ -42,23 +42,20 @@ public class MonitoredMethodMetrics {
         }
     }
 
-    public void calculateMethodMetrics(List<? extends MethodMetrics> methodMetricsList) {
-        if (methodMetricsList.size() < proxyList.size()) {
-            setMonitorSize(methodMetricsList.size());
+    /**
+     * Binds the ranked metrics to the proxy MBeans. The proxies are stable slots - they are only
+     * registered when first needed, and only unregistered when the monitor size is reduced, so a
+     * shorter list just leaves the trailing slots empty.
+     */
+    public synchronized void calculateMethodMetrics(List<? extends MethodMetrics> methodMetricsList) {
+        int size = Math.min(methodMetricsList.size(), monitorSize);
+        while (proxyList.size() < size) {
+            proxyList.add(createProxy(proxyList.size()));
         }
-        if (methodMetricsList.size() > proxyList.size() && proxyList.size() < monitorSize) {
-            int extra = monitorSize - proxyList.size();
-
-            if (extra > 0) {
-                for (int i = 0; i < extra; i++) {
-                    proxyList.add(createProxy(proxyList.size()));
-                }
-            }
-        }
-        for (int i = 0; i < methodMetricsList.size() && i < proxyList.size(); i++) {
+        for (int i = 0; i < proxyList.size(); i++) {
             MethodMetricsProxy methodMetricsProxy = proxyList.get(i);
             if (methodMetricsProxy != null) {
-                methodMetricsProxy.setMethodMetrics(methodMetricsList.get(i));
+                methodMetricsProxy.setMethodMetrics(i < methodMetricsList.size() ? methodMetricsList.get(i) : null);
             }
         }
     }
@@ -69,7 +66,7 @@ public class MonitoredMethodMetrics {
         return result;
     }
 
-    protected void destroy() {
+    protected synchronized void destroy() {
         for (MethodMetricsProxy methodMetricsProxy : proxyList) {
             apmAgentContext.unregisterMethodMetricsMBean(methodMetricsProxy);
         }
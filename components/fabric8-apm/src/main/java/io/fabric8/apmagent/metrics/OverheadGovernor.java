@@ -0,0 +1,107 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.apmagent.metrics;
+
+import io.fabric8.apmagent.ApmConfiguration;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Keeps the estimated cost of tracing under the configured CPU budget, by excluding
+ * methods that are called very often but take less than a microsecond or so - where
+ * the enter/exit calls cost more than the method itself.
+ * <p/>
+ * Excluded methods are added to the excluded methods of the {@link ApmConfiguration},
+ * so the trace strategy retransforms their classes without the instrumentation. As that
+ * can retransform classes, the governor is run by the background thread of the
+ * {@link ApmAgentContext} - never by an application thread.
+ */
+public class OverheadGovernor {
+    private static final double NANOS_PER_SECOND = 1000000000.0;
+    private final ApmConfiguration configuration;
+    private final int processors = Runtime.getRuntime().availableProcessors();
+    private volatile double estimatedOverhead;
+
+    OverheadGovernor(ApmConfiguration configuration) {
+        this.configuration = configuration;
+    }
+
+    /**
+     * @return the estimated CPU used by the instrumentation, as a percentage of all processors
+     */
+    public double getEstimatedOverhead() {
+        return estimatedOverhead;
+    }
+
+    void evaluate(Collection<? extends MethodMetrics> methodMetricsList) {
+        double callCost = configuration.getGovernorCallCost();
+        double capacity = processors * NANOS_PER_SECOND;
+        double minCallRate = configuration.getGovernorMinCallRate();
+        double maxMeanTime = configuration.getGovernorMaxMeanTime();
+        double overhead = 0;
+        List<Candidate> candidates = new ArrayList<>();
+        for (MethodMetrics methodMetrics : methodMetricsList) {
+            double rate = methodMetrics.getOneMinuteRate();
+            double cost = rate * callCost * 100 / capacity;
+            overhead += cost;
+            //mean is in milliseconds, the limit in microseconds
+            if (rate >= minCallRate && methodMetrics.getMean() * 1000 < maxMeanTime) {
+                candidates.add(new Candidate(methodMetrics.getName(), rate, cost));
+            }
+        }
+        estimatedOverhead = overhead;
+
+        double budget = configuration.getOverheadBudget();
+        if (configuration.isOverheadGovernor() && overhead > budget && !candidates.isEmpty()) {
+            Collections.sort(candidates, new Comparator<Candidate>() {
+                @Override
+                public int compare(Candidate candidate1, Candidate candidate2) {
+                    return Double.compare(candidate2.rate, candidate1.rate);
+                }
+            });
+            List<String> exclusions = new ArrayList<>();
+            for (Candidate candidate : candidates) {
+                if (overhead <= budget) {
+                    break;
+                }
+                //keep the arguments, so only this overload is excluded
+                if (candidate.name.indexOf('@') > 0) {
+                    exclusions.add(candidate.name);
+                    overhead -= candidate.cost;
+                }
+            }
+            if (!exclusions.isEmpty()) {
+                configuration.addToExcludedMethods(exclusions);
+            }
+        }
+    }
+
+    private static class Candidate {
+        private final String name;
+        private final double rate;
+        private final double cost;
+
+        Candidate(String name, double rate, double cost) {
+            this.name = name;
+            this.rate = rate;
+            this.cost = cost;
+        }
+    }
+}
@@ -0,0 +1,216 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.apmagent.metrics;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The call edges traced by a single thread, with the self time in nanoseconds of each node.
+ * <p/>
+ * Only the owning thread enters and exits nodes, so that needs no locks: the children of a
+ * node are keyed by the int method id in a small open addressed table, and the child entered
+ * last is cached on the node. Other threads only ever read the tree, to merge it into a
+ * {@link CallTree} - the values they see may be slightly stale.
+ * <p/>
+ * The nodes of all the trees sharing a node count are bounded together, so the memory used
+ * does not grow with the number of threads. Once the bound is reached the time of new callees
+ * stays part of the self time of the caller.
+ */
+public class ThreadCallTree {
+    private final AtomicInteger sharedNodeCount;
+    private final int maxNodes;
+    private final Node root = new Node(null, -1, "root");
+    private volatile int nodeCount;
+
+    /**
+     * @param sharedNodeCount - the number of nodes used by all the trees sharing the bound
+     * @param maxNodes        - the maximum number of nodes of all the trees sharing the bound
+     */
+    public ThreadCallTree(AtomicInteger sharedNodeCount, int maxNodes) {
+        this.sharedNodeCount = sharedNodeCount;
+        this.maxNodes = maxNodes;
+    }
+
+    public Node getRoot() {
+        return root;
+    }
+
+    /**
+     * @return the number of nodes in this tree
+     */
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * Steps down one edge - must only be called by the owning thread
+     *
+     * @return the child for the method, or null if out of nodes - in which case
+     * the time of the child stays part of the self time of the parent
+     */
+    public Node enter(Node parent, int methodId, String methodName) {
+        Node child = parent.lastChild;
+        if (child != null && child.methodId == methodId) {
+            return child;
+        }
+        child = parent.find(methodId);
+        if (child == null) {
+            if (!reserveNode()) {
+                return null;
+            }
+            child = parent.add(methodId, methodName);
+            nodeCount++;
+        }
+        parent.lastChild = child;
+        return child;
+    }
+
+    /**
+     * Hands the nodes of this tree back to the shared bound - called once the owning thread is dead
+     * and the tree has been merged
+     */
+    public void release() {
+        int count = nodeCount;
+        nodeCount = 0;
+        sharedNodeCount.addAndGet(-count);
+    }
+
+    private boolean reserveNode() {
+        if (sharedNodeCount.get() >= maxNodes) {
+            return false;
+        }
+        if (sharedNodeCount.incrementAndGet() > maxNodes) {
+            sharedNodeCount.decrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * A frame in the tree. Used as a cursor by the owning thread - which enters a child on method
+     * entry, and records the elapsed time on exit - so the tree is walked one edge at a time.
+     */
+    public final class Node {
+        private final Node parent;
+        private final int methodId;
+        private final String name;
+        private volatile Node[] children;
+        private int childCount;
+        private Node lastChild;
+        private long value;
+
+        Node(Node parent, int methodId, String name) {
+            this.parent = parent;
+            this.methodId = methodId;
+            this.name = name;
+        }
+
+        public int getMethodId() {
+            return methodId;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return the self value of the node
+         */
+        public long getValue() {
+            return value;
+        }
+
+        /**
+         * @return the children, as a table that may contain nulls
+         */
+        Node[] getChildren() {
+            return children;
+        }
+
+        /**
+         * Records the time spent in this node - which is then no longer part of the self time of the parent.
+         * Must only be called by the owning thread
+         */
+        public void exit(long elapsed) {
+            value += elapsed;
+            if (parent != null && parent != root) {
+                parent.value -= elapsed;
+            }
+        }
+
+        long getTotal() {
+            long result = value;
+            Node[] table = children;
+            if (table != null) {
+                for (Node child : table) {
+                    if (child != null) {
+                        result += child.getTotal();
+                    }
+                }
+            }
+            return result;
+        }
+
+        private Node find(int childMethodId) {
+            Node[] table = children;
+            if (table == null) {
+                return null;
+            }
+            int mask = table.length - 1;
+            for (int i = index(childMethodId, mask); ; i = (i + 1) & mask) {
+                Node child = table[i];
+                if (child == null || child.methodId == childMethodId) {
+                    return child;
+                }
+            }
+        }
+
+        private Node add(int childMethodId, String childName) {
+            Node child = new Node(this, childMethodId, childName);
+            Node[] table = children;
+            if (table == null) {
+                table = new Node[4];
+            } else if ((childCount + 1) * 2 > table.length) {
+                Node[] newTable = new Node[table.length * 2];
+                for (Node existing : table) {
+                    if (existing != null) {
+                        insert(newTable, existing);
+                    }
+                }
+                table = newTable;
+            }
+            insert(table, child);
+            childCount++;
+            //publishes the new table, or the new entry in the existing one, to readers
+            children = table;
+            return child;
+        }
+
+        private void insert(Node[] table, Node child) {
+            int mask = table.length - 1;
+            int i = index(child.methodId, mask);
+            while (table[i] != null) {
+                i = (i + 1) & mask;
+            }
+            table[i] = child;
+        }
+
+        private int index(int id, int mask) {
+            int hash = id * 0x9E3779B9;
+            return (hash ^ (hash >>> 16)) & mask;
+        }
+    }
+}
@@ -15,19 +15,35 @@
  */
 package io.fabric8.apmagent.metrics;
 
-import com.codahale.metrics.Timer;
-
 import java.util.concurrent.atomic.AtomicReference;
 
 public class ThreadContextMethodMetrics extends MethodMetrics {
     private final Thread thread;
     private final AtomicReference<ThreadContextMethodMetricsStack> stackRef;
-    private Timer.Context timerContext;
+    private final int methodId;
+    private long startTime;
 
     public ThreadContextMethodMetrics(Thread thread, AtomicReference<ThreadContextMethodMetricsStack> stackRef, String name) {
-        super(name);
+        this(thread, stackRef, name, new TimerRecorder());
+    }
+
+    public ThreadContextMethodMetrics(Thread thread, AtomicReference<ThreadContextMethodMetricsStack> stackRef, String name, MethodMetricsRecorder recorder) {
+        this(thread, stackRef, name, -1, recorder);
+    }
+
+    /**
+     * @param methodId - the id of the method, which keys its call tree nodes - or -1 if it has none,
+     *                 in which case the calls of the method are not recorded in the call tree
+     */
+    public ThreadContextMethodMetrics(Thread thread, AtomicReference<ThreadContextMethodMetricsStack> stackRef, String name, int methodId, MethodMetricsRecorder recorder) {
+        super(name, recorder);
         this.thread = thread;
         this.stackRef = stackRef;
+        this.methodId = methodId;
+    }
+
+    public int getMethodId() {
+        return methodId;
     }
 
     public String getThreadName() {
@@ -39,29 +55,41 @@ public class ThreadContextMethodMetrics extends MethodMetrics {
     }
 
     public void onEnter() {
-        timerContext = timer.time();
+        startTime = System.nanoTime();
         stackRef.get().push(this);
     }
 
     public long onExit() {
         long result = -1;
-        ThreadContextMethodMetrics last = stackRef.get().pop();
+        ThreadContextMethodMetricsStack stack = stackRef.get();
+        ThreadCallTree.Node node = stack.peekNode();
+        ThreadContextMethodMetrics last = stack.pop();
         if (last == this) {
-            result = timerContext.stop();
+            result = stop(node);
         } else {
             //the exit could have jumped a few methods if its
             //caused by an exception
             while (last != null && last != this) {
-                result = last.timerContext.stop();
-                last = stackRef.get().pop();
+                result = last.stop(node);
+                node = stack.peekNode();
+                last = stack.pop();
             }
             if (last == this) {
-                result = timerContext.stop();
+                result = stop(node);
             }
         }
         return result;
     }
 
+    private long stop(ThreadCallTree.Node node) {
+        long elapsed = System.nanoTime() - startTime;
+        recorder.update(elapsed);
+        if (node != null) {
+            node.exit(elapsed);
+        }
+        return elapsed;
+    }
+
     public String toString() {
         return "ThreadContextMethodMetrics:" + getName();
     }
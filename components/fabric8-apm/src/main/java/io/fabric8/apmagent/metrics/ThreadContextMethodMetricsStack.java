@@ -17,31 +17,68 @@ package io.fabric8.apmagent.metrics;
 
 class ThreadContextMethodMetricsStack {
 
+    private final ThreadCallTree callTree;
     private ThreadContextMethodMetrics[] stack;
+    private ThreadCallTree.Node[] nodes;
     private int pointer;
 
     ThreadContextMethodMetricsStack() {
+        this(null);
+    }
+
+    /**
+     * @param callTree - the tree to record the call edges in, or null if not recording
+     */
+    ThreadContextMethodMetricsStack(ThreadCallTree callTree) {
+        this.callTree = callTree;
         stack = new ThreadContextMethodMetrics[2];
+        nodes = new ThreadCallTree.Node[2];
     }
 
     ThreadContextMethodMetrics push(ThreadContextMethodMetrics value) {
         if (pointer + 1 >= stack.length) {
             resizeStack(stack.length * 2);
         }
+        ThreadCallTree.Node node = null;
+        if (callTree != null && value.getMethodId() >= 0) {
+            ThreadCallTree.Node parent = pointer == 0 ? callTree.getRoot() : nodes[pointer - 1];
+            if (parent != null) {
+                node = callTree.enter(parent, value.getMethodId(), value.getName());
+            }
+        }
+        nodes[pointer] = node;
         stack[pointer++] = value;
         return value;
     }
 
     ThreadContextMethodMetrics pop() {
+        if (pointer == 0) {
+            return null;
+        }
         final ThreadContextMethodMetrics result = stack[--pointer];
         stack[pointer] = null;
+        nodes[pointer] = null;
         return result;
     }
 
+    /**
+     * @return the call tree node of the top of the stack, or null if there is none
+     */
+    ThreadCallTree.Node peekNode() {
+        return pointer > 0 ? nodes[pointer - 1] : null;
+    }
+
+    ThreadCallTree getThreadCallTree() {
+        return callTree;
+    }
+
     private void resizeStack(int newCapacity) {
         ThreadContextMethodMetrics[] newStack = new ThreadContextMethodMetrics[newCapacity];
         System.arraycopy(stack, 0, newStack, 0, Math.min(pointer, newCapacity));
         stack = newStack;
+        ThreadCallTree.Node[] newNodes = new ThreadCallTree.Node[newCapacity];
+        System.arraycopy(nodes, 0, newNodes, 0, Math.min(pointer, newCapacity));
+        nodes = newNodes;
     }
 
     public String toString() {
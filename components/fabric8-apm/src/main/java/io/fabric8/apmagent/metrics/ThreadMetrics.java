@@ -20,6 +20,9 @@ import io.fabric8.apmagent.ApmConfiguration;
 import java.lang.management.ManagementFactory;
 import java.lang.management.ThreadInfo;
 import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -32,15 +35,22 @@ public class ThreadMetrics {
     private final Thread thread;
     private final ThreadMXBean threadMXBean;
     private final ConcurrentMap<String, ThreadContextMethodMetrics> methods = new ConcurrentHashMap<>();
+    private volatile ThreadContextMethodMetrics[] methodsById = new ThreadContextMethodMetrics[0];
     private final MonitoredThreadMethodMetrics monitoredThreadMethodMetrics;
+    private final ThreadCallTree callTree;
 
     public ThreadMetrics(ApmAgentContext apmAgentContext, Thread thread) {
-        this.methodStackRef = new AtomicReference<>(new ThreadContextMethodMetricsStack());
+        ApmConfiguration configuration = apmAgentContext.getConfiguration();
+        if (configuration.isRecordCallTree() && configuration.getStrategyImpl() == ApmConfiguration.STRATEGY.TRACE) {
+            this.callTree = new ThreadCallTree(apmAgentContext.getThreadCallTreeNodeCount(), configuration.getCallTreeMaxNodes());
+        } else {
+            this.callTree = null;
+        }
+        this.methodStackRef = new AtomicReference<>(new ThreadContextMethodMetricsStack(callTree));
         this.apmAgentContext = apmAgentContext;
         this.threadMXBean = ManagementFactory.getThreadMXBean();
         this.threadInfo = threadMXBean.getThreadInfo(thread.getId());
         this.thread = thread;
-        ApmConfiguration configuration = apmAgentContext.getConfiguration();
         this.monitoredThreadMethodMetrics = new MonitoredThreadMethodMetrics(thread, apmAgentContext);
         this.monitoredThreadMethodMetrics.setMonitorSize(configuration.getThreadMetricDepth());
     }
@@ -49,6 +59,14 @@ public class ThreadMetrics {
         return thread.getName() + "[" + thread.getId() + "]";
     }
 
+    public String getThreadName() {
+        return thread.getName();
+    }
+
+    public long getThreadId() {
+        return thread.getId();
+    }
+
     Thread getThread() {
         return thread;
     }
@@ -69,6 +87,20 @@ public class ThreadMetrics {
         return threadInfo;
     }
 
+    /**
+     * @return the traced call edges of this thread, or null if they are not being recorded
+     */
+    public ThreadCallTree getCallTree() {
+        return callTree;
+    }
+
+    /**
+     * @return a live view of the metrics of every method called by this thread
+     */
+    public Collection<ThreadContextMethodMetrics> getMethodMetrics() {
+        return Collections.unmodifiableCollection(methods.values());
+    }
+
     public void setMonitorSize(int monitorSize) {
         monitoredThreadMethodMetrics.setMonitorSize(monitorSize);
     }
@@ -76,7 +108,8 @@ public class ThreadMetrics {
     public void enter(String methodName, boolean alwaysActive) {
         ThreadContextMethodMetrics threadContextMethodMetrics = methods.get(methodName);
         if (threadContextMethodMetrics == null) {
-            threadContextMethodMetrics = new ThreadContextMethodMetrics(thread, this.methodStackRef, methodName);
+            threadContextMethodMetrics = new ThreadContextMethodMetrics(thread, this.methodStackRef, methodName,
+                                                                        apmAgentContext.registerMethod(methodName), apmAgentContext.createRecorder(true));
             threadContextMethodMetrics.setActive(apmAgentContext.isMonitorByDefault());
             methods.putIfAbsent(methodName, threadContextMethodMetrics);
         }
@@ -94,11 +127,62 @@ public class ThreadMetrics {
             }
         } else {
             //something weird happended reset the stack
-            methodStackRef.set(new ThreadContextMethodMetricsStack());
+            methodStackRef.set(new ThreadContextMethodMetricsStack(callTree));
+        }
+        return result;
+    }
+
+    public void enter(int methodId, boolean alwaysActive) {
+        ThreadContextMethodMetrics[] array = methodsById;
+        ThreadContextMethodMetrics threadContextMethodMetrics = methodId < array.length ? array[methodId] : null;
+        if (threadContextMethodMetrics == null) {
+            threadContextMethodMetrics = bind(methodId);
+            if (threadContextMethodMetrics == null) {
+                return;
+            }
+        }
+        if (alwaysActive || threadContextMethodMetrics.isActive()) {
+            threadContextMethodMetrics.onEnter();
+        }
+    }
+
+    public long exit(int methodId, boolean alwaysActive) {
+        ThreadContextMethodMetrics[] array = methodsById;
+        ThreadContextMethodMetrics threadContextMethodMetrics = methodId < array.length ? array[methodId] : null;
+        if (threadContextMethodMetrics == null) {
+            String methodName = apmAgentContext.getMethodName(methodId);
+            return methodName != null ? exit(methodName, alwaysActive) : -1;
+        }
+        long result = -1;
+        if (alwaysActive || threadContextMethodMetrics.isActive()) {
+            result = threadContextMethodMetrics.onExit();
         }
         return result;
     }
 
+    private synchronized ThreadContextMethodMetrics bind(int methodId) {
+        String methodName = apmAgentContext.getMethodName(methodId);
+        if (methodName == null) {
+            return null;
+        }
+        ThreadContextMethodMetrics threadContextMethodMetrics = methods.get(methodName);
+        if (threadContextMethodMetrics == null) {
+            threadContextMethodMetrics = new ThreadContextMethodMetrics(thread, this.methodStackRef, methodName, methodId, apmAgentContext.createRecorder(true));
+            threadContextMethodMetrics.setActive(apmAgentContext.isMonitorByDefault());
+            ThreadContextMethodMetrics existing = methods.putIfAbsent(methodName, threadContextMethodMetrics);
+            if (existing != null) {
+                threadContextMethodMetrics = existing;
+            }
+        }
+        ThreadContextMethodMetrics[] array = methodsById;
+        if (methodId >= array.length) {
+            array = Arrays.copyOf(array, Math.max(methodId + 1, array.length * 2));
+        }
+        array[methodId] = threadContextMethodMetrics;
+        methodsById = array;
+        return threadContextMethodMetrics;
+    }
+
     public String toString() {
         return "ThreadMetrics:" + getName();
     }
@@ -109,11 +193,23 @@ public class ThreadMetrics {
 
     public ThreadContextMethodMetrics remove(String fullMethodName) {
         ThreadContextMethodMetrics result = methods.remove(fullMethodName);
+        int methodId = apmAgentContext.getMethodId(fullMethodName);
+        if (methodId >= 0) {
+            synchronized (this) {
+                ThreadContextMethodMetrics[] array = methodsById;
+                if (methodId < array.length) {
+                    array[methodId] = null;
+                }
+            }
+        }
         return result;
     }
 
     public void calculateMethodMetrics() {
-        List<ThreadContextMethodMetrics> list = (List<ThreadContextMethodMetrics>) MethodMetrics.sortedMetrics(this.methods.values());
+        for (ThreadContextMethodMetrics threadContextMethodMetrics : methods.values()) {
+            threadContextMethodMetrics.refresh();
+        }
+        List<ThreadContextMethodMetrics> list = MethodMetrics.rankedMetrics(this.methods.values(), monitoredThreadMethodMetrics.getMonitorSize());
         monitoredThreadMethodMetrics.calculateMethodMetrics(list);
     }
 
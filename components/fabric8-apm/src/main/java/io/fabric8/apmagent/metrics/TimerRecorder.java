@@ -0,0 +1,88 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.apmagent.metrics;
+
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records into a Codahale {@link Timer}, with an exponentially decaying reservoir.
+ */
+public class TimerRecorder implements MethodMetricsRecorder {
+    private final Timer timer = new Timer();
+    private final LongAdder totalTime = new LongAdder();
+    private volatile MethodMetricsSnapshot snapshot = MethodMetricsSnapshot.EMPTY;
+    private long refreshedCount;
+
+    @Override
+    public void update(long elapsed) {
+        timer.update(elapsed, TimeUnit.NANOSECONDS);
+        totalTime.add(elapsed);
+    }
+
+    @Override
+    public long getCount() {
+        return timer.getCount();
+    }
+
+    @Override
+    public long getTotalTime() {
+        return totalTime.sum();
+    }
+
+    @Override
+    public double getMeanRate() {
+        return timer.getMeanRate();
+    }
+
+    @Override
+    public double getOneMinuteRate() {
+        return timer.getOneMinuteRate();
+    }
+
+    @Override
+    public double getFiveMinuteRate() {
+        return timer.getFiveMinuteRate();
+    }
+
+    @Override
+    public double getFifteenMinuteRate() {
+        return timer.getFifteenMinuteRate();
+    }
+
+    @Override
+    public synchronized void refresh() {
+        long count = timer.getCount();
+        if (count == refreshedCount) {
+            //nothing new recorded - keep the current snapshot
+            return;
+        }
+        refreshedCount = count;
+        Snapshot s = timer.getSnapshot();
+        snapshot = new MethodMetricsSnapshot(s.size(), s.getMin(), s.getMax(), s.getMean(), s.getStdDev(),
+                                             s.getMedian(), s.get75thPercentile(), s.get95thPercentile(),
+                                             s.get98thPercentile(), s.get99thPercentile(), s.get999thPercentile(),
+                                             s.getValues());
+    }
+
+    @Override
+    public MethodMetricsSnapshot getSnapshot() {
+        return snapshot;
+    }
+}
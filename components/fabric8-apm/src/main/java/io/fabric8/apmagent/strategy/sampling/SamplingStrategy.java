@@ -18,24 +18,34 @@ package io.fabric8.apmagent.strategy.sampling;
 import io.fabric8.apmagent.ApmConfiguration;
 import io.fabric8.apmagent.Strategy;
 import io.fabric8.apmagent.metrics.ApmAgentContext;
+import io.fabric8.apmagent.metrics.CallTree;
 
 import java.lang.management.ManagementFactory;
 import java.lang.management.ThreadInfo;
 import java.lang.management.ThreadMXBean;
-import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.List;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+/**
+ * Samples the stacks of all threads through the {@link ThreadMXBean}, to a bounded depth.
+ * The top frame of each thread is used for the method metrics, and the whole sampled
+ * stack is aggregated into the {@link CallTree} of the context.
+ */
 public class SamplingStrategy implements Strategy, Runnable {
     private static final long CLEANUP_INTERVAL = 1000;
+    private static final int MAX_CACHED_FRAMES = 50000;
     private ApmAgentContext context;
     private ApmConfiguration configuration;
     private AtomicBoolean initialized = new AtomicBoolean();
     private AtomicBoolean started = new AtomicBoolean();
     private Thread samplingThread;
+    private final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
     private final Map<Long, String> currentMethods = new HashMap<>();
+    private final Map<Long, Thread> threads = new HashMap<>();
+    private volatile Map<StackTraceElement, SampledFrame> frames = new HashMap<>();
+    private String[] stackBuffer = new String[0];
 
     public SamplingStrategy(ApmAgentContext context) {
         this.context = context;
@@ -77,7 +87,10 @@ public class SamplingStrategy implements Strategy, Runnable {
 
     @Override
     public void configurationChanged() {
-
+        if (configuration.isFilterChanged()) {
+            //the cached audit decisions are no longer valid
+            frames = new HashMap<>();
+        }
     }
 
     @Override
@@ -85,11 +98,7 @@ public class SamplingStrategy implements Strategy, Runnable {
         long lastTime = 0;
         while (started.get()) {
             try {
-                for (Map.Entry<Thread, StackTraceElement[]> threadEntry : Thread.getAllStackTraces().entrySet()) {
-                    if (threadEntry.getKey() != Thread.currentThread()) {
-                        addMeasurement(threadEntry.getKey(), threadEntry.getValue());
-                    }
-                }
+                sample();
                 long currentTime = System.currentTimeMillis();
 
                 if ((currentTime - lastTime) > CLEANUP_INTERVAL) {
@@ -103,49 +112,117 @@ public class SamplingStrategy implements Strategy, Runnable {
         }
     }
 
+    /**
+     * Takes one sample of every live thread, apart from the calling one
+     */
+    public void sample() {
+        long[] threadIds = threadMXBean.getAllThreadIds();
+        ThreadInfo[] threadInfos = threadMXBean.getThreadInfo(threadIds, configuration.getSamplingMaxDepth());
+        long self = Thread.currentThread().getId();
+        for (ThreadInfo threadInfo : threadInfos) {
+            if (threadInfo != null && threadInfo.getThreadId() != self) {
+                addMeasurement(threadInfo);
+            }
+        }
+    }
+
     private void cleanup() {
-        List<ThreadInfo> removeList = null;
-        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
-        for (Long id : currentMethods.keySet()) {
-            ThreadInfo threadInfo = threadMXBean.getThreadInfo(id);
-            if (threadInfo != null) {
-                if (threadInfo.getThreadState() == Thread.State.TERMINATED) {
-                    if (removeList == null) {
-                        removeList = new ArrayList<>();
+        refreshThreads();
+        Iterator<Long> iterator = currentMethods.keySet().iterator();
+        while (iterator.hasNext()) {
+            if (!threads.containsKey(iterator.next())) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private void addMeasurement(ThreadInfo threadInfo) {
+        StackTraceElement[] stackTraceElements = threadInfo.getStackTrace();
+        if (stackTraceElements != null && stackTraceElements.length > 0) {
+            Map<StackTraceElement, SampledFrame> frameMap = frames;
+            int depth = stackTraceElements.length;
+            if (stackBuffer.length < depth) {
+                stackBuffer = new String[depth];
+            }
+            SampledFrame topOfStack = null;
+            for (int i = 0; i < depth; i++) {
+                SampledFrame frame = getFrame(frameMap, stackTraceElements[i]);
+                if (i == 0) {
+                    topOfStack = frame;
+                }
+                stackBuffer[depth - 1 - i] = frame.methodKey;
+            }
+            CallTree callTree = context.getCallTree();
+            if (callTree != null) {
+                callTree.add(stackBuffer, depth, 1);
+            }
+
+            if (topOfStack.audit) {
+                Thread thread = getThread(threadInfo.getThreadId());
+                if (thread != null && thread.isAlive()) {
+                    String currentMethod = topOfStack.methodKey;
+                    String lastMethod = currentMethods.put(thread.getId(), currentMethod);
+                    if (lastMethod == null) {
+                        context.enterMethod(thread, currentMethod, true);
+                    } else if (!lastMethod.equals(currentMethod)) {
+                        context.exitMethod(thread, lastMethod, true);
+                        context.enterMethod(thread, currentMethod, true);
+                    } else {
+                        //we are still in the currentMethod
                     }
-                    removeList.add(threadInfo);
                 }
             }
         }
-        if (removeList != null) {
-            for (ThreadInfo threadInfo : removeList) {
-                currentMethods.remove(threadInfo.getThreadId());
+    }
+
+    private SampledFrame getFrame(Map<StackTraceElement, SampledFrame> frameMap, StackTraceElement element) {
+        SampledFrame frame = frameMap.get(element);
+        if (frame == null) {
+            if (frameMap.size() >= MAX_CACHED_FRAMES) {
+                frameMap.clear();
             }
+            frame = new SampledFrame(getCurrentMethod(element),
+                                     configuration.isAudit(element.getClassName(), element.getMethodName()));
+            frameMap.put(element, frame);
         }
+        return frame;
     }
 
-    private void addMeasurement(Thread thread, StackTraceElement[] stackTraceElements) {
-        if (thread != null && thread.isAlive() &&
-                stackTraceElements != null && stackTraceElements.length > 0) {
-            StackTraceElement topOfStack = stackTraceElements[0];
-            String currentMethod = getCurrentMethod(topOfStack);
-            if (configuration.isAudit(topOfStack.getClassName(), topOfStack.getMethodName())) {
-                String lastMethod = currentMethods.put(thread.getId(), currentMethod);
-                if (lastMethod == null) {
-                    context.enterMethod(thread, currentMethod, true);
-                } else if (!lastMethod.equals(currentMethod)) {
-                    context.exitMethod(thread, lastMethod, true);
-                } else {
-                    //we are still in the currentMethod
-                }
-            }
+    private Thread getThread(long threadId) {
+        Thread thread = threads.get(threadId);
+        if (thread == null) {
+            refreshThreads();
+            thread = threads.get(threadId);
+        }
+        return thread;
+    }
+
+    private void refreshThreads() {
+        ThreadGroup group = Thread.currentThread().getThreadGroup();
+        while (group.getParent() != null) {
+            group = group.getParent();
+        }
+        Thread[] all = new Thread[group.activeCount() * 2 + 16];
+        int count = group.enumerate(all, true);
+        threads.clear();
+        for (int i = 0; i < count; i++) {
+            threads.put(all[i].getId(), all[i]);
         }
     }
 
     private String getCurrentMethod(StackTraceElement topOfStack) {
         StringBuilder stringBuilder = new StringBuilder(topOfStack.getClassName().length() + topOfStack.getMethodName().length() + 1);
         stringBuilder.append(topOfStack.getClassName()).append(".").append(topOfStack.getMethodName());
-        return stringBuilder.toString();
+        return stringBuilder.toString().intern();
     }
-}
 
+    private static class SampledFrame {
+        private final String methodKey;
+        private final boolean audit;
+
+        SampledFrame(String methodKey, boolean audit) {
+            this.methodKey = methodKey;
+            this.audit = audit;
+        }
+    }
+}
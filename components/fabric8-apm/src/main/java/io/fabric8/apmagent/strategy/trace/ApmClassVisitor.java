@@ -29,11 +29,17 @@ public class ApmClassVisitor extends ClassVisitor {
     private static final Logger LOG = LoggerFactory.getLogger(ApmAgent.class);
     private final TraceStrategy traceStrategy;
     private final ClassInfo classInfo;
+    private final ClassInfo.Rewrite rewrite;
 
-    public ApmClassVisitor(TraceStrategy traceStrategy, ClassVisitor cv, ClassInfo classInfo) {
+    /**
+     * @param rewrite - collects the instrumented methods, which are only applied to the {@link ClassInfo}
+     *                once the JVM has taken the byte code
+     */
+    public ApmClassVisitor(TraceStrategy traceStrategy, ClassVisitor cv, ClassInfo classInfo, ClassInfo.Rewrite rewrite) {
         super(ASM5, cv);
         this.traceStrategy = traceStrategy;
         this.classInfo = classInfo;
+        this.rewrite = rewrite;
     }
 
     public void visit(int version,
@@ -55,11 +61,13 @@ public class ApmClassVisitor extends ClassVisitor {
             String methodDescription = getDescription(desc);
             classInfo.addMethod(name, methodDescription);
 
-            if (canProfileMethod(name, desc) && traceStrategy.isAudit(classInfo.getClassName(), name)) {
+            if (canProfileMethod(name, desc) && traceStrategy.isAudit(classInfo.getClassName(), name, methodDescription)) {
                 MethodVisitor mv = super.visitMethod(access, name, desc, signature, exceptions);
 
-                ApmMethodVisitor methodVisitor = new ApmMethodVisitor(mv, classInfo.getClassName(), name + methodDescription);
-                classInfo.addTransformedMethod(name, methodDescription);
+                String fullMethodName = classInfo.getClassName() + "@" + name + methodDescription;
+                int methodId = traceStrategy.getContext().registerMethod(fullMethodName);
+                ApmMethodVisitor methodVisitor = new ApmMethodVisitor(mv, methodId);
+                rewrite.addTransformedMethod(name, methodDescription);
                 return methodVisitor;
             }
 
@@ -0,0 +1,215 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.apmagent.strategy.trace;
+
+import io.fabric8.apmagent.ApmConfiguration;
+import org.slf4j.LoggerFactory;
+
+import java.lang.instrument.Instrumentation;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Retransforms a set of classes in two stages. First the byte code of every class is
+ * rewritten in parallel on a fixed pool of worker threads, then the classes are handed
+ * to {@link Instrumentation#retransformClasses(Class[])} in batches - where the transformer
+ * just returns the byte code prepared for each class.
+ * <p/>
+ * A rewrite is only applied to the agent's view of a class once its retransformation has
+ * succeeded, and byte code prepared for a class is dropped once its retransformation is over.
+ */
+public class RetransformPipeline {
+    private static final org.slf4j.Logger LOG = LoggerFactory.getLogger(RetransformPipeline.class);
+
+    private final TraceStrategy traceStrategy;
+    private final ApmConfiguration configuration;
+    private final AtomicInteger total = new AtomicInteger();
+    private final AtomicInteger prepared = new AtomicInteger();
+    private final AtomicInteger completed = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final Set<Class<?>> retransforming = Collections.newSetFromMap(new ConcurrentHashMap<Class<?>, Boolean>());
+    private volatile long prepareDuration;
+    private volatile long duration;
+
+    RetransformPipeline(TraceStrategy traceStrategy, ApmConfiguration configuration) {
+        this.traceStrategy = traceStrategy;
+        this.configuration = configuration;
+    }
+
+    /**
+     * @return the number of classes in the current, or last, run
+     */
+    public int getTotal() {
+        return total.get();
+    }
+
+    /**
+     * @return the number of classes whose byte code has been rewritten ahead of retransformation
+     */
+    public int getPrepared() {
+        return prepared.get();
+    }
+
+    /**
+     * @return the number of classes retransformed
+     */
+    public int getCompleted() {
+        return completed.get();
+    }
+
+    /**
+     * @return the number of classes that could not be retransformed
+     */
+    public int getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * @return the time in milliseconds spent rewriting byte code in the current, or last, run
+     */
+    public long getPrepareDuration() {
+        return prepareDuration;
+    }
+
+    /**
+     * @return the total time in milliseconds of the current, or last, run
+     */
+    public long getDuration() {
+        return duration;
+    }
+
+    /**
+     * @return true if the class is being retransformed by the pipeline right now
+     */
+    boolean isRetransforming(Class<?> c) {
+        return !retransforming.isEmpty() && retransforming.contains(c);
+    }
+
+    /**
+     * @param classes - the classes to retransform
+     * @param prepare - true to rewrite the byte code ahead of the retransformation
+     */
+    synchronized void run(List<Class<?>> classes, boolean prepare) {
+        long start = System.nanoTime();
+        total.set(classes.size());
+        prepared.set(0);
+        completed.set(0);
+        failed.set(0);
+        prepareDuration = 0;
+        duration = 0;
+
+        if (prepare) {
+            prepareAll(classes);
+            prepareDuration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        }
+        retransformAll(classes);
+        duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        LOG.debug("Retransformed {} classes in {} ms ({} failed)", completed.get(), duration, failed.get());
+    }
+
+    private void prepareAll(List<Class<?>> classes) {
+        int threads = configuration.getTransformThreads();
+        if (threads <= 0) {
+            threads = Runtime.getRuntime().availableProcessors();
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private final AtomicInteger counter = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "Fabric8-ApmAgent-Transform-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        try {
+            List<Future<?>> futures = new ArrayList<>(classes.size());
+            for (final Class<?> c : classes) {
+                futures.add(pool.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (traceStrategy.prepare(c)) {
+                            prepared.incrementAndGet();
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    //the class will be rewritten when retransformed instead
+                    LOG.debug("Failed to prepare class due " + e.getMessage(), e);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private void retransformAll(List<Class<?>> classes) {
+        Instrumentation instrumentation = traceStrategy.getInstrumentation();
+        int batchSize = Math.max(1, configuration.getRetransformBatchSize());
+        try {
+            for (int i = 0; i < classes.size() && !Thread.currentThread().isInterrupted(); i += batchSize) {
+                List<Class<?>> batch = classes.subList(i, Math.min(i + batchSize, classes.size()));
+                retransforming.addAll(batch);
+                try {
+                    instrumentation.retransformClasses(batch.toArray(new Class[batch.size()]));
+                    completed.addAndGet(batch.size());
+                    for (Class<?> c : batch) {
+                        traceStrategy.committed(c);
+                    }
+                } catch (Throwable e) {
+                    //none of the batch was retransformed - one bad class fails the whole batch - so try them one at a time
+                    for (Class<?> c : batch) {
+                        traceStrategy.abandoned(c);
+                    }
+                    for (Class<?> c : batch) {
+                        try {
+                            instrumentation.retransformClasses(new Class[]{c});
+                            completed.incrementAndGet();
+                            traceStrategy.committed(c);
+                        } catch (Throwable ex) {
+                            failed.incrementAndGet();
+                            traceStrategy.abandoned(c);
+                            LOG.warn("Could not transform " + c.getName() + " due " + ex.getMessage(), ex);
+                        }
+                    }
+                } finally {
+                    retransforming.removeAll(batch);
+                }
+            }
+        } finally {
+            //drop the byte code prepared for classes the JVM never handed to the transformer, or that were not reached
+            for (Class<?> c : classes) {
+                traceStrategy.abandoned(c);
+            }
+        }
+    }
+}
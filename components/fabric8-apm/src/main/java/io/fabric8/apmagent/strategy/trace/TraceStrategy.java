@@ -24,7 +24,9 @@ import org.objectweb.asm.ClassWriter;
 import org.objectweb.asm.util.CheckClassAdapter;
 import org.slf4j.LoggerFactory;
 
-import java.io.FileNotFoundException;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.lang.instrument.ClassFileTransformer;
@@ -32,9 +34,11 @@ import java.lang.instrument.IllegalClassFormatException;
 import java.lang.instrument.Instrumentation;
 import java.lang.instrument.UnmodifiableClassException;
 import java.security.ProtectionDomain;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 public class TraceStrategy implements Strategy, ClassFileTransformer {
@@ -43,16 +47,17 @@ public class TraceStrategy implements Strategy, ClassFileTransformer {
     private ApmAgentContext context;
     private ApmConfiguration configuration;
     private Instrumentation instrumentation;
-    private BlockingQueue<Class<?>> blockingQueue = new LinkedBlockingDeque<>();
+    private final RetransformPipeline pipeline;
     private AtomicBoolean initialized = new AtomicBoolean();
     private AtomicBoolean started = new AtomicBoolean();
     private AtomicBoolean cleanUp = new AtomicBoolean();
-    private Thread transformThread;
+    private ExecutorService transformExecutor;
 
     public TraceStrategy(ApmAgentContext context, Instrumentation instrumentation) {
         this.context = context;
         this.configuration = context.getConfiguration();
         this.instrumentation = instrumentation;
+        this.pipeline = new RetransformPipeline(this, configuration);
     }
 
     @Override
@@ -83,10 +88,13 @@ public class TraceStrategy implements Strategy, ClassFileTransformer {
             stop();
             configuration.removeChangeListener(this);
             instrumentation.removeTransformer(this);
-            Thread t = transformThread;
-            transformThread = null;
-            if (t != null && !t.isInterrupted()) {
-                t.interrupt();
+            ExecutorService executor;
+            synchronized (this) {
+                executor = transformExecutor;
+                transformExecutor = null;
+            }
+            if (executor != null) {
+                executor.shutdownNow();
             }
             cleanUp.set(true);
             try {
@@ -106,70 +114,111 @@ public class TraceStrategy implements Strategy, ClassFileTransformer {
         return configuration.isAudit(className, methodName);
     }
 
+    public boolean isAudit(String className, String methodName, String description) {
+        return configuration.isAudit(className, methodName, description);
+    }
+
     @Override
     public byte[] transform(ClassLoader loader, String className, Class<?> classBeingRedefined, ProtectionDomain protectionDomain, byte[] classfileBuffer) throws IllegalClassFormatException {
         byte[] buffer = null;
-        ClassInfo classInfo = context.getClassInfo(className);
-        classInfo.setOriginalClass(classBeingRedefined);
-        if (classInfo.getTransformed() == null) {
-            //we haven't been transformed before
-            classInfo.setOriginal(classfileBuffer);
+        boolean audit = !cleanUp.get() && configuration.isAudit(className);
+        //only keep track of classes we audit, or have audited before
+        ClassInfo classInfo = audit ? context.getClassInfo(className) : context.findClassInfo(className);
+        if (classInfo == null) {
+            return null;
         }
+        classInfo.setOriginalClass(classBeingRedefined);
         if (!cleanUp.get()) {
-            byte[] classBufferToRedefine = classInfo.getOriginal();
-
-            if (configuration.isAudit(className)) {
-                if (classInfo.isTransformed()) {
-                    //remove metrics from methods no longer defined
-                    context.resetMethods(classInfo);
+            if (audit) {
+                byte[] classBufferToRedefine = classInfo.getOriginal();
+                if (classBufferToRedefine == null || !classInfo.isTransformed()) {
+                    //we haven't been transformed before
+                    classBufferToRedefine = classfileBuffer;
+                    classInfo.setOriginal(classfileBuffer);
                 }
-                ClassReader cr = new ClassReader(classBufferToRedefine);
-
-                ClassWriter cw = new ClassWriter(cr, ClassWriter.COMPUTE_MAXS | ClassWriter.COMPUTE_FRAMES);
-
-                ApmClassVisitor visitor = new ApmClassVisitor(this, cw, classInfo);
-                cr.accept(visitor, ClassReader.SKIP_FRAMES);
-                buffer = cw.toByteArray();
-                if (!verifyClass(className, buffer)) {
-                    classInfo.setCanTransform(false);
-                    buffer = null;
+                //use the byte code rewritten ahead of time by the pipeline, if its from the same original
+                ClassInfo.Rewrite rewrite = classInfo.takePrepared(classBufferToRedefine);
+                if (rewrite == null) {
+                    rewrite = rewrite(className, classInfo, classBufferToRedefine);
+                }
+                if (rewrite != null) {
+                    buffer = rewrite.getBuffer();
+                    transformed(classInfo, classBeingRedefined, rewrite);
                 }
-                classInfo.setTransformed(buffer);
             }
         } else {
-            if (classInfo.getOriginal() != null) {
-                buffer = classInfo.getOriginal();
-                context.resetAll(classInfo);
+            if (classInfo.isTransformed()) {
+                //the JVM hands us the original byte code on a retransform - only use our copy if that fails
+                buffer = classfileBuffer != null ? classfileBuffer : classInfo.getOriginal();
+                transformed(classInfo, classBeingRedefined, new ClassInfo.Rewrite());
             }
         }
         return buffer;
     }
 
+    /**
+     * The JVM may still reject the byte code of a class retransformed by the pipeline - so the rewrite is only
+     * applied to the {@link ClassInfo} once the pipeline has seen the retransformation succeed
+     */
+    private void transformed(ClassInfo classInfo, Class<?> classBeingRedefined, ClassInfo.Rewrite rewrite) {
+        if (classBeingRedefined != null && pipeline.isRetransforming(classBeingRedefined)) {
+            classInfo.setPending(rewrite);
+        } else {
+            //a class being loaded, or retransformed by someone else - the JVM takes the byte code as it is
+            commit(classInfo, rewrite);
+        }
+    }
+
+    /**
+     * Called by the pipeline once a class has been retransformed
+     */
+    void committed(Class<?> c) {
+        ClassInfo classInfo = context.findClassInfo(c.getName());
+        if (classInfo != null) {
+            ClassInfo.Rewrite rewrite = classInfo.takePending();
+            if (rewrite != null) {
+                commit(classInfo, rewrite);
+            }
+        }
+    }
+
+    /**
+     * Called by the pipeline when the retransformation of a class has failed, or is over - drops the
+     * byte code the JVM did not take
+     */
+    void abandoned(Class<?> c) {
+        ClassInfo classInfo = context.findClassInfo(c.getName());
+        if (classInfo != null) {
+            classInfo.takePending();
+            classInfo.clearPrepared();
+        }
+    }
+
+    private void commit(ClassInfo classInfo, ClassInfo.Rewrite rewrite) {
+        if (rewrite.getBuffer() == null) {
+            context.resetAll(classInfo);
+        } else {
+            if (classInfo.isTransformed()) {
+                //remove metrics from methods no longer defined
+                context.resetMethods(classInfo);
+            }
+            classInfo.commit(rewrite);
+        }
+    }
+
     @Override
     public void configurationChanged() {
         if (started.get()) {
             if (configuration.isFilterChanged()) {
                 List<ClassInfo> deltas = context.buildDeltaList();
                 if (deltas != null && !deltas.isEmpty()) {
+                    List<Class<?>> classes = new ArrayList<>(deltas.size());
                     for (ClassInfo classInfo : deltas) {
-                        if (configuration.isAsyncTransformation()) {
-                            try {
-                                blockingQueue.put(classInfo.getOriginalClass());
-                            } catch (InterruptedException e) {
-                                Thread.currentThread().interrupt();
-                                break;
-                            }
-                        } else {
-                            try {
-                                instrumentation.retransformClasses(new Class[]{classInfo.getOriginalClass()});
-                            } catch (Throwable e) {
-                                LOG.warn("Could not transform " + classInfo.getClassName() + " due " + e.getMessage(), e);
-                            }
+                        if (classInfo.getOriginalClass() != null) {
+                            classes.add(classInfo.getOriginalClass());
                         }
                     }
-                    if (configuration.isAsyncTransformation() && !blockingQueue.isEmpty()) {
-                        startTransformThread();
-                    }
+                    retransform(classes, true);
                 }
             }
         }
@@ -192,33 +241,89 @@ public class TraceStrategy implements Strategy, ClassFileTransformer {
         this.configuration = context.getConfiguration();
     }
 
-    private void instrumentApplication() throws FileNotFoundException, UnmodifiableClassException {
+    /**
+     * @return the pipeline used to retransform classes, and its progress
+     */
+    public RetransformPipeline getPipeline() {
+        return pipeline;
+    }
+
+    /**
+     * Rewrites the byte code of a class ahead of its retransformation - called on the pipeline worker threads
+     *
+     * @return true if the byte code was prepared
+     */
+    boolean prepare(Class<?> c) {
+        if (cleanUp.get() || !configuration.isAudit(c.getName())) {
+            return false;
+        }
+        ClassInfo classInfo = context.getClassInfo(c.getName());
+        byte[] original = classInfo.isTransformed() ? classInfo.getOriginal() : null;
+        if (original == null) {
+            original = readClassFile(c);
+        }
+        if (original != null) {
+            ClassInfo.Rewrite rewrite = rewrite(c.getName(), classInfo, original);
+            if (rewrite != null) {
+                classInfo.setPrepared(original, rewrite);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the rewrite of the class, which has not been applied to the {@link ClassInfo} yet - or null if
+     * the rewritten byte code is not valid
+     */
+    private ClassInfo.Rewrite rewrite(String className, ClassInfo classInfo, byte[] classBufferToRedefine) {
+        ClassReader cr = new ClassReader(classBufferToRedefine);
+
+        ClassWriter cw = new ClassWriter(cr, ClassWriter.COMPUTE_MAXS | ClassWriter.COMPUTE_FRAMES);
+
+        ClassInfo.Rewrite rewrite = new ClassInfo.Rewrite();
+        ApmClassVisitor visitor = new ApmClassVisitor(this, cw, classInfo, rewrite);
+        cr.accept(visitor, ClassReader.SKIP_FRAMES);
+        byte[] buffer = cw.toByteArray();
+        if (!verifyClass(className, buffer)) {
+            classInfo.setCanTransform(false);
+            return null;
+        }
+        rewrite.setBuffer(buffer);
+        return rewrite;
+    }
+
+    private void instrumentApplication() throws UnmodifiableClassException {
         if (!instrumentation.isRetransformClassesSupported()) {
             throw new UnmodifiableClassException();
         }
 
         instrumentation.addTransformer(this, true);
 
+        List<Class<?>> classes = new ArrayList<>();
         for (Class<?> c : instrumentation.getAllLoadedClasses()) {
             if (isInstrumentClass(c)) {
-                if (configuration.isAsyncTransformation()) {
-                    try {
-                        blockingQueue.put(c);
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                        break;
-                    }
-                } else {
-                    try {
-                        instrumentation.retransformClasses(new Class[]{c});
-                    } catch (Throwable e) {
-                        LOG.error("Could not transform " + c.getName(), e);
-                    }
-                }
+                classes.add(c);
             }
         }
-        if (configuration.isAsyncTransformation() && !blockingQueue.isEmpty()) {
-            startTransformThread();
+        retransform(classes, !cleanUp.get());
+    }
+
+    private void retransform(final List<Class<?>> classes, final boolean prepare) {
+        if (classes.isEmpty()) {
+            return;
+        }
+        if (configuration.isAsyncTransformation() && !cleanUp.get()) {
+            getTransformExecutor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (initialized.get()) {
+                        pipeline.run(classes, prepare);
+                    }
+                }
+            });
+        } else {
+            pipeline.run(classes, prepare);
         }
     }
 
@@ -239,31 +344,36 @@ public class TraceStrategy implements Strategy, ClassFileTransformer {
         return true;
     }
 
-    private synchronized void startTransformThread() {
-        if (configuration.isAsyncTransformation() && transformThread == null) {
-            transformThread = new Thread(new Runnable() {
+    private synchronized ExecutorService getTransformExecutor() {
+        if (transformExecutor == null) {
+            transformExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
                 @Override
-                public void run() {
-                    while (initialized.get() && !blockingQueue.isEmpty()) {
-                        try {
-                            Class<?> aClass = blockingQueue.take();
-                            if (aClass != null) {
-                                if (isInstrumentClass(aClass)) {
-                                    try {
-                                        instrumentation.retransformClasses(new Class[]{aClass});
-                                    } catch (Throwable e) {
-                                        LOG.error("Could not transform " + aClass.getName(), e);
-                                    }
-                                }
-                            }
-                        } catch (InterruptedException e) {
-                            shutDown();
-                        }
-                    }
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "Fabric8-ApmAgent-TransformThread");
+                    thread.setDaemon(true);
+                    return thread;
                 }
             });
-            transformThread.setDaemon(true);
-            transformThread.start();
+        }
+        return transformExecutor;
+    }
+
+    private static byte[] readClassFile(Class<?> c) {
+        String resource = c.getName().replace('.', '/') + ".class";
+        ClassLoader loader = c.getClassLoader();
+        try (InputStream in = loader != null ? loader.getResourceAsStream(resource) : ClassLoader.getSystemResourceAsStream(resource)) {
+            if (in == null) {
+                return null;
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                out.write(buffer, 0, count);
+            }
+            return out.toByteArray();
+        } catch (IOException e) {
+            return null;
         }
     }
 
@@ -0,0 +1,134 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.apmagent;
+
+import io.fabric8.apmagent.metrics.ApmAgentContext;
+import io.fabric8.apmagent.strategy.trace.TraceStrategy;
+import org.junit.Test;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the byte code held by {@link ClassInfo} for a synthetic set of 50k classes, and that it is only held
+ * for the classes that are audited
+ */
+public class ClassInfoFootprintTest {
+    private static final int CLASS_COUNT = 50000;
+    private static final int METHOD_COUNT = 10;
+
+    @Test
+    public void testOriginalRoundTrip() throws Exception {
+        byte[] original = createClass(42);
+        ClassInfo classInfo = new ClassInfo();
+        classInfo.setClassName("io/fabric8/synthetic/Class42");
+        classInfo.setOriginal(original);
+
+        assertTrue(Arrays.equals(original, classInfo.getOriginal()));
+        assertTrue(classInfo.getOriginalFootprint() < original.length);
+
+        classInfo.setOriginal(null);
+        assertNull(classInfo.getOriginal());
+        assertEquals(0, classInfo.getOriginalFootprint());
+    }
+
+    @Test
+    public void testTransformedBytesNotKept() throws Exception {
+        ClassInfo classInfo = new ClassInfo();
+        classInfo.setTransformed(createClass(1));
+        assertTrue(classInfo.isTransformed());
+        classInfo.resetTransformed();
+        assertFalse(classInfo.isTransformed());
+    }
+
+    @Test
+    public void testHeldFootprint() throws Exception {
+        long rawBytes = 0;
+        long heldBytes = 0;
+        List<ClassInfo> classInfos = new ArrayList<>(CLASS_COUNT);
+        for (int i = 0; i < CLASS_COUNT; i++) {
+            byte[] original = createClass(i);
+            ClassInfo classInfo = new ClassInfo();
+            classInfo.setClassName("io.fabric8.synthetic.Class" + i);
+            classInfo.setOriginal(original);
+            classInfo.setTransformed(original);
+            classInfos.add(classInfo);
+            rawBytes += original.length;
+            heldBytes += classInfo.getOriginalFootprint();
+        }
+
+        //the original and transformed byte code used to be held as is - so at least twice the raw size
+        assertTrue("held " + heldBytes + " raw " + rawBytes, heldBytes * 4 < rawBytes * 3);
+        assertTrue(Arrays.equals(createClass(CLASS_COUNT - 1), classInfos.get(CLASS_COUNT - 1).getOriginal()));
+    }
+
+    @Test
+    public void testClassesNotAuditedAreNotKept() throws Exception {
+        ApmAgentContext context = new ApmAgentContext(ApmAgent.INSTANCE);
+        TraceStrategy strategy = new TraceStrategy(context, null);
+        ApmConfiguration configuration = context.getConfiguration();
+        String audited = "io/fabric8/testApp/Audited";
+        String notAudited = "java/synthetic/NotAudited";
+        assertTrue(configuration.isAudit(audited));
+        assertFalse(configuration.isAudit(notAudited));
+
+        assertNull(strategy.transform(null, notAudited, null, null, createClass(1)));
+        assertNull(context.findClassInfo(notAudited));
+
+        byte[] original = createClass(2);
+        strategy.transform(null, audited, null, null, original);
+        ClassInfo classInfo = context.findClassInfo(audited);
+        assertNotNull(classInfo);
+        assertTrue(Arrays.equals(original, classInfo.getOriginal()));
+    }
+
+    private static byte[] createClass(int index) {
+        String name = "io/fabric8/synthetic/Class" + index;
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(Opcodes.V1_7, Opcodes.ACC_PUBLIC, name, null, "java/lang/Object", null);
+
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+        mv.visitInsn(Opcodes.RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        for (int i = 0; i < METHOD_COUNT; i++) {
+            mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "method" + i, "(Ljava/lang/String;)Ljava/lang/String;", null, null);
+            mv.visitCode();
+            mv.visitLdcInsn(name + ".method" + i);
+            mv.visitVarInsn(Opcodes.ALOAD, 1);
+            mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, "java/lang/String", "concat", "(Ljava/lang/String;)Ljava/lang/String;", false);
+            mv.visitInsn(Opcodes.ARETURN);
+            mv.visitMaxs(0, 0);
+            mv.visitEnd();
+        }
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+}
@@ -0,0 +1,136 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.apmagent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures the filter checks made for every loaded class when the agent attaches - comparing
+ * the compiled {@link FilterMatcher} with matching each {@link FilterItem} in turn, as before.
+ * <p/>
+ * Run with <code>mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=io.fabric8.apmagent.FilterBenchmark</code>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FilterBenchmark {
+    private static final String[] PACKAGES = {
+        "java.util", "javax.management", "sun.misc", "org.apache.camel.impl", "org.apache.activemq.broker",
+        "com.example.orders.service", "com.example.orders.model", "io.fabric8.testApp", "org.hibernate.engine"
+    };
+
+    @Param({"30000"})
+    public int classCount;
+
+    private ApmConfiguration configuration;
+    private List<FilterItem> whiteList;
+    private List<FilterItem> blackList;
+    private String[] classNames;
+
+    @Setup
+    public void setUp() {
+        configuration = new ApmConfiguration();
+        whiteList = toFilterItems(configuration.getWhiteList());
+        blackList = toFilterItems(configuration.getBlackList());
+        classNames = new String[classCount];
+        for (int i = 0; i < classCount; i++) {
+            classNames[i] = PACKAGES[i % PACKAGES.length] + ".Class" + i;
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void resetCache() {
+        //a new list of the same filters - as if the agent had just attached
+        configuration.setBlackList(configuration.getBlackList());
+    }
+
+    @Benchmark
+    public void compiled(Blackhole blackhole) {
+        for (String className : classNames) {
+            blackhole.consume(configuration.isAudit(className));
+        }
+    }
+
+    @Benchmark
+    public void filterItems(Blackhole blackhole) {
+        for (String className : classNames) {
+            blackhole.consume(isWhiteListed(className) || !isBlackListed(className));
+        }
+    }
+
+    private boolean isWhiteListed(String className) {
+        for (FilterItem item : whiteList) {
+            if (className.matches(item.getClassName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isBlackListed(String className) {
+        for (FilterItem item : blackList) {
+            String name = className.replace('/', '.');
+            if (name.startsWith(item.getClassName()) || name.matches(item.getClassName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<FilterItem> toFilterItems(String list) {
+        List<FilterItem> result = new ArrayList<>();
+        for (String s : list.split(",")) {
+            FilterItem filterItem = new FilterItem();
+            String[] classAndMethod = s.split("@");
+            filterItem.setClassName(classAndMethod[0]);
+            if (classAndMethod.length > 1) {
+                filterItem.setMethodName(classAndMethod[1]);
+            }
+            result.add(filterItem);
+        }
+        return result;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+            .include(FilterBenchmark.class.getSimpleName())
+            .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,249 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.apmagent;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that the {@link FilterMatcher} decides the same as matching each {@link FilterItem} in turn did
+ */
+public class FilterMatcherTest {
+    private static final String[] WHITE_LIST = {
+        "io.fabric8.testApp",
+        "com.example.*.service",
+        "com\\.example\\.[a-z]+\\.model\\..*",
+        "org.acme.Foo.*@handle.*",
+        "io.fabric8.testApp.TestValues@get.*",
+        "com.example.orders@process"
+    };
+
+    private static final String[] BLACK_LIST = {
+        "org.apache.camel",
+        "com.example.orders.model.Order@toString",
+        "com.example.*.internal",
+        "org.acme.Foo.*Impl",
+        "io.fabric8.testApp.TestLoad@run.*",
+        "org.acme@<init>"
+    };
+
+    private static final String[] CLASS_NAMES = {
+        "java.util.HashMap",
+        "sun.misc.Unsafe",
+        "$Proxy12",
+        "com.sun.proxy.$Proxy3",
+        "io.fabric8.apmagent.ApmAgent",
+        "io.fabric8.testApp",
+        "io.fabric8.testApp.TestApp",
+        "io.fabric8.testApp.TestValues",
+        "io.fabric8.testApp.TestLoad",
+        "io.fabric8.testAppendix.Other",
+        "com.example.orders.service",
+        "com.example.orders.service.OrderService",
+        "com.example.billing.service",
+        "com.example.orders.model.Order",
+        "com.example.orders.internal",
+        "com.example.orders.internal.Cache",
+        "com.example.orders",
+        "com.example.ordersX",
+        "org.acme.Foo",
+        "org.acme.FooBar",
+        "org.acme.FooBarImpl",
+        "org.acme.Bar",
+        "org.apache.camel.impl.DefaultCamelContext",
+        "org.apache.camelx.Other",
+        "io/fabric8/testApp/TestValues",
+        "org/apache/camel/impl/DefaultCamelContext",
+        "com/example/orders/service"
+    };
+
+    private static final String[] METHOD_NAMES = {
+        null, "", "<init>", "handle", "handleAll", "getValue", "get", "process", "processAll",
+        "toString", "run", "runAll", "hashCode"
+    };
+
+    @Test
+    public void testAgreesWithDefaultFilters() throws Exception {
+        ApmConfiguration configuration = new ApmConfiguration();
+        assertAgrees(toFilterItems(configuration.getWhiteList().split(",")),
+                     toFilterItems(configuration.getBlackList().split(",")));
+    }
+
+    @Test
+    public void testAgreesWithWildcardPrefixAndMethodFilters() throws Exception {
+        assertAgrees(toFilterItems(WHITE_LIST), toFilterItems(BLACK_LIST));
+    }
+
+    @Test
+    public void testAgreesWithEmptyWhiteList() throws Exception {
+        assertAgrees(new ArrayList<FilterItem>(), toFilterItems(BLACK_LIST));
+    }
+
+    @Test
+    public void testDecisions() throws Exception {
+        FilterMatcher matcher = new FilterMatcher(toFilterItems(WHITE_LIST), toFilterItems(BLACK_LIST), 100);
+        //package prefix
+        assertTrue(matcher.isBlackListed("org.apache.camel.impl.DefaultCamelContext"));
+        assertTrue(matcher.isBlackListed("org/apache/camel/impl/DefaultCamelContext"));
+        //wildcard
+        assertTrue(matcher.isWhiteListed("com.example.billing.service"));
+        assertTrue(matcher.isBlackListed("com.example.orders.internal"));
+        assertFalse(matcher.isBlackListed("com.example.orders.internal.Cache"));
+        //the white list class check is a regular expression, not a prefix
+        assertFalse(matcher.isWhiteListed("com.example.orders.service.OrderService"));
+        //method level
+        assertTrue(matcher.isWhiteListed("io.fabric8.testApp.TestValues", "getValue"));
+        assertFalse(matcher.isWhiteListed("io.fabric8.testApp.TestValues", "hashCode"));
+        assertTrue(matcher.isBlackListed("com.example.orders.model.Order", "toString"));
+        assertFalse(matcher.isBlackListed("com.example.orders.model.Order", "hashCode"));
+    }
+
+    @Test
+    public void testCacheIsBounded() throws Exception {
+        FilterMatcher matcher = new FilterMatcher(toFilterItems(WHITE_LIST), toFilterItems(BLACK_LIST), 4);
+        List<FilterItem> white = toFilterItems(WHITE_LIST);
+        List<FilterItem> black = toFilterItems(BLACK_LIST);
+        for (int i = 0; i < 3; i++) {
+            for (String className : CLASS_NAMES) {
+                assertEquals(className, legacyIsBlackListed(black, className), matcher.isBlackListed(className));
+                assertEquals(className, legacyIsWhiteListed(white, className), matcher.isWhiteListed(className));
+            }
+        }
+    }
+
+    @Test
+    public void testConfigurationChangesAreNeverLost() throws Exception {
+        final ApmConfiguration configuration = new ApmConfiguration();
+        assertFalse(configuration.isBlackListed("com.example.Foo"));
+        configuration.addToBlackList("com.example");
+        assertTrue(configuration.isBlackListed("com.example.Foo"));
+        configuration.setBlackList("org.acme");
+        assertFalse(configuration.isBlackListed("com.example.Foo"));
+
+        //lookups racing the changes must not publish a matcher built from the old lists
+        final int count = 200;
+        Thread reader = new Thread(() -> {
+            for (int i = 0; i < count * 10; i++) {
+                configuration.isBlackListed("com.example.Foo" + i);
+            }
+        });
+        reader.start();
+        for (int i = 0; i < count; i++) {
+            configuration.addToBlackList("com.example.Bar" + i);
+        }
+        reader.join();
+        for (int i = 0; i < count; i++) {
+            assertTrue(configuration.isBlackListed("com.example.Bar" + i + ".Impl"));
+        }
+        assertEquals(count + 1, configuration.getBlackList().split(",").length);
+    }
+
+    private static void assertAgrees(List<FilterItem> whiteList, List<FilterItem> blackList) {
+        FilterMatcher matcher = new FilterMatcher(whiteList, blackList, 1000);
+        for (String className : CLASS_NAMES) {
+            assertEquals("isWhiteListed " + className, legacyIsWhiteListed(whiteList, className), matcher.isWhiteListed(className));
+            assertEquals("isBlackListed " + className, legacyIsBlackListed(blackList, className), matcher.isBlackListed(className));
+            for (String methodName : METHOD_NAMES) {
+                String message = className + "@" + methodName;
+                assertEquals("isWhiteListed " + message, legacyIsWhiteListed(whiteList, className, methodName),
+                             matcher.isWhiteListed(className, methodName));
+                assertEquals("isBlackListed " + message, legacyIsBlackListed(blackList, className, methodName),
+                             matcher.isBlackListed(className, methodName));
+            }
+        }
+    }
+
+    private static List<FilterItem> toFilterItems(String[] list) {
+        List<FilterItem> result = new ArrayList<>();
+        for (String s : list) {
+            FilterItem filterItem = new FilterItem();
+            String[] classAndMethod = s.split("@");
+            filterItem.setClassName(classAndMethod[0]);
+            if (classAndMethod.length > 1) {
+                filterItem.setMethodName(classAndMethod[1]);
+            }
+            result.add(filterItem);
+        }
+        return result;
+    }
+
+    // the checks of ApmConfiguration before the FilterMatcher
+
+    private static boolean legacyIsWhiteListed(List<FilterItem> whiteList, String className) {
+        for (FilterItem item : whiteList) {
+            //the class names handed to the agent are normalized by the matcher
+            if (className.replace('/', '.').matches(item.getClassName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean legacyIsBlackListed(List<FilterItem> blackList, String className) {
+        for (FilterItem item : blackList) {
+            if (legacyMatches(item, className)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean legacyIsWhiteListed(List<FilterItem> whiteList, String className, String methodName) {
+        for (FilterItem item : whiteList) {
+            if (legacyMatches(item, className, methodName, false)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean legacyIsBlackListed(List<FilterItem> blackList, String className, String methodName) {
+        for (FilterItem item : blackList) {
+            if (legacyMatches(item, className, methodName, true)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean legacyMatches(FilterItem item, String className) {
+        className = className.replace('/', '.');
+        return className.startsWith(item.getClassName()) || className.matches(item.getClassName());
+    }
+
+    private static boolean legacyMatches(FilterItem item, String className, String method, boolean matchIfNoFilterMethod) {
+        boolean result = legacyMatches(item, className);
+        if (result) {
+            result = false;
+            if (method == null || method.isEmpty()) {
+                if (item.getMethodName() == null || item.getMethodName().isEmpty()) {
+                    result = true;
+                }
+            } else if (item.getMethodName() != null && !item.getMethodName().isEmpty()) {
+                result = method.matches(item.getMethodName());
+            } else {
+                result = matchIfNoFilterMethod;
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,102 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.apmagent.exporter;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+
+public class MetricsBufferTest {
+
+    @Test
+    public void testLongs() throws Exception {
+        assertEquals("0", text(new MetricsBuffer().append(0L)));
+        assertEquals("42", text(new MetricsBuffer().append(42L)));
+        assertEquals("-7", text(new MetricsBuffer().append(-7L)));
+        assertEquals(Long.toString(Long.MAX_VALUE), text(new MetricsBuffer().append(Long.MAX_VALUE)));
+        assertEquals(Long.toString(Long.MIN_VALUE), text(new MetricsBuffer().append(Long.MIN_VALUE)));
+    }
+
+    @Test
+    public void testDoubles() throws Exception {
+        assertEquals("2", text(new MetricsBuffer().append(2.0, 9)));
+        assertEquals("0.1", text(new MetricsBuffer().append(0.1, 9)));
+        assertEquals("1.5", text(new MetricsBuffer().append(1.5, 3)));
+        assertEquals("-0.25", text(new MetricsBuffer().append(-0.25, 9)));
+        assertEquals("0.000000001", text(new MetricsBuffer().append(1e-9, 9)));
+        assertEquals("0.005", text(new MetricsBuffer().append(0.005, 9)));
+        //rounded to the decimal places
+        assertEquals("0.667", text(new MetricsBuffer().append(2.0 / 3, 3)));
+        assertEquals("1", text(new MetricsBuffer().append(0.9999, 3)));
+        assertEquals("NaN", text(new MetricsBuffer().append(Double.NaN, 9)));
+        assertEquals("+Inf", text(new MetricsBuffer().append(Double.POSITIVE_INFINITY, 9)));
+        assertEquals("-Inf", text(new MetricsBuffer().append(Double.NEGATIVE_INFINITY, 9)));
+        assertEquals(Double.toString(1e300), text(new MetricsBuffer().append(1e300, 9)));
+    }
+
+    @Test
+    public void testUtf8() throws Exception {
+        MetricsBuffer buffer = new MetricsBuffer().append("caf\u00e9 \u20ac");
+        assertEquals(9, buffer.length());
+        assertEquals("caf\u00e9 \u20ac", text(buffer));
+    }
+
+    @Test
+    public void testGrowsAndTruncates() throws Exception {
+        MetricsBuffer buffer = new MetricsBuffer(16);
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            buffer.append("line ").append(i).append('\n');
+            expected.append("line ").append(i).append('\n');
+        }
+        assertEquals(expected.toString(), text(buffer));
+
+        int length = buffer.length();
+        buffer.append("partial");
+        buffer.setLength(length);
+        assertEquals(expected.toString(), text(buffer));
+
+        buffer.discard(7);
+        assertEquals(expected.substring(7), text(buffer));
+
+        MetricsBuffer other = new MetricsBuffer().append("a");
+        other.append(new MetricsBuffer().append("b"));
+        assertEquals("ab", text(other));
+
+        buffer.reset();
+        assertEquals(0, buffer.length());
+        assertEquals("", text(buffer));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSetLengthBeyondEnd() throws Exception {
+        new MetricsBuffer().append("abc").setLength(4);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDiscardBeyondEnd() throws Exception {
+        new MetricsBuffer().append("abc").discard(4);
+    }
+
+    static String text(MetricsBuffer buffer) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        buffer.writeTo(out);
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
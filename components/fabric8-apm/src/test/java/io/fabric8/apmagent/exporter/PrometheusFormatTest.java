@@ -0,0 +1,166 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.apmagent.exporter;
+
+import io.fabric8.apmagent.ApmAgent;
+import io.fabric8.apmagent.metrics.ApmAgentContext;
+import io.fabric8.apmagent.metrics.MethodMetrics;
+import io.fabric8.apmagent.metrics.ThreadMetrics;
+import io.fabric8.apmagent.metrics.TimerRecorder;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PrometheusFormatTest {
+    private static final String METHOD = "io.fabric8.testApp.TestValues@process(java.lang.String) void";
+
+    @Test
+    public void testSumAndCount() throws Exception {
+        MethodMetrics methodMetrics = new MethodMetrics(METHOD, new TimerRecorder());
+        methodMetrics.update(1000000);
+        methodMetrics.update(3000000);
+        methodMetrics.update(500);
+        methodMetrics.refresh();
+
+        String text = write(Collections.singletonList(methodMetrics), Collections.<ThreadMetrics>emptyList());
+        String labels = "{method=\"" + METHOD + "\"}";
+        assertTrue(text, text.contains("apm_method_duration_seconds_sum" + labels + " 0.0040005\n"));
+        assertTrue(text, text.contains("apm_method_duration_seconds_count" + labels + " 3\n"));
+        assertTrue(text, text.contains("apm_method_duration_seconds{method=\"" + METHOD + "\",quantile=\"0.99\"} "));
+        assertTrue(text, text.contains("apm_method_calls_per_second{method=\"" + METHOD + "\",window=\"1m\"} "));
+        assertTrue(text, text.contains("# TYPE apm_method_duration_seconds summary\n"));
+        assertTrue(text, text.endsWith("apm_housekeeping_runs_total 2\n"));
+        assertUniqueSeries(text);
+    }
+
+    @Test
+    public void testSumIsExact() throws Exception {
+        MethodMetrics methodMetrics = new MethodMetrics(METHOD, new TimerRecorder());
+        for (int i = 1; i <= 1000; i++) {
+            methodMetrics.update(i * 1000L);
+        }
+        methodMetrics.refresh();
+        String text = write(Collections.singletonList(methodMetrics), Collections.<ThreadMetrics>emptyList());
+        assertTrue(text, text.contains("_sum{method=\"" + METHOD + "\"} 0.5005\n"));
+    }
+
+    @Test
+    public void testLabelEscaping() throws Exception {
+        MethodMetrics methodMetrics = new MethodMetrics("a\\b\"c\nd\u00e9", new TimerRecorder());
+        methodMetrics.update(1000);
+        methodMetrics.refresh();
+        String text = write(Collections.singletonList(methodMetrics), Collections.<ThreadMetrics>emptyList());
+        assertTrue(text, text.contains("apm_method_duration_seconds_count{method=\"a\\\\b\\\"c\\nd\u00e9\"} 1\n"));
+        for (String line : text.split("\n")) {
+            assertFalse(line, line.startsWith("d"));
+        }
+        assertUniqueSeries(text);
+    }
+
+    @Test
+    public void testThreadsWithTheSameName() throws Exception {
+        CountDownLatch done = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    done.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, "worker \"1\"");
+            thread.start();
+            threads.add(thread);
+        }
+        try {
+            ApmAgentContext context = new ApmAgentContext(ApmAgent.INSTANCE);
+            List<ThreadMetrics> threadMetricsList = new ArrayList<>();
+            for (Thread thread : threads) {
+                ThreadMetrics threadMetrics = new ThreadMetrics(context, thread);
+                threadMetrics.enter(METHOD, true);
+                threadMetrics.exit(METHOD, true);
+                threadMetricsList.add(threadMetrics);
+            }
+
+            String text = write(Collections.<MethodMetrics>emptyList(), threadMetricsList);
+            for (Thread thread : threads) {
+                String labels = "{thread=\"worker \\\"1\\\"\",thread_id=\"" + thread.getId() + "\"";
+                assertTrue(text, text.contains("apm_thread_method_calls_total" + labels + ",method=\"" + METHOD + "\"} 1\n"));
+                assertTrue(text, text.contains("apm_thread_method_duration_seconds_mean" + labels + ",method=\"" + METHOD + "\"} "));
+            }
+            assertUniqueSeries(text);
+        } finally {
+            done.countDown();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        }
+    }
+
+    @Test
+    public void testReusedBuffers() throws Exception {
+        MethodMetrics first = new MethodMetrics(METHOD, new TimerRecorder());
+        first.update(1000);
+        first.refresh();
+        MethodMetrics second = new MethodMetrics(METHOD + "2", new TimerRecorder());
+        second.update(1000);
+        second.refresh();
+
+        PrometheusFormat format = new PrometheusFormat();
+        MetricsBuffer out = new MetricsBuffer();
+        format.write(Arrays.asList(first, second), Collections.<ThreadMetrics>emptyList(), 0, 0, out);
+        String expected = MetricsBufferTest.text(out);
+        format.write(Arrays.asList(first, second), Collections.<ThreadMetrics>emptyList(), 0, 0, out);
+        assertEquals(expected, MetricsBufferTest.text(out));
+        assertUniqueSeries(expected);
+    }
+
+    private static String write(List<? extends MethodMetrics> methodMetrics, List<ThreadMetrics> threadMetrics) throws Exception {
+        MetricsBuffer out = new MetricsBuffer(64);
+        new PrometheusFormat().write(methodMetrics, threadMetrics, 1500000000L, 2, out);
+        return MetricsBufferTest.text(out);
+    }
+
+    /**
+     * Each series - the metric name and its labels - must only appear once, and the samples of a
+     * family must be contiguous
+     */
+    private static void assertUniqueSeries(String text) {
+        Set<String> series = new HashSet<>();
+        Set<String> families = new HashSet<>();
+        String family = null;
+        for (String line : text.split("\n")) {
+            if (line.startsWith("# TYPE ")) {
+                family = line.split(" ")[2];
+                assertTrue("family " + family + " is split", families.add(family));
+            } else if (!line.startsWith("#")) {
+                String name = line.substring(0, line.lastIndexOf(' '));
+                assertTrue("duplicate series " + name, series.add(name));
+                assertTrue(name + " outside its family " + family, family != null && name.startsWith(family));
+            }
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.apmagent.metrics;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Checks the call edges traced by a {@link ThreadCallTree} and the folded stacks of the {@link CallTree}
+ * they are merged into
+ */
+public class CallTreeTest {
+
+    @Test
+    public void testNestingAndSelfTime() throws Exception {
+        ThreadCallTree tree = new ThreadCallTree(new AtomicInteger(), 100);
+        ThreadCallTree.Node a = tree.enter(tree.getRoot(), 1, "a");
+        ThreadCallTree.Node b = tree.enter(a, 2, "b");
+        b.exit(30);
+        ThreadCallTree.Node c = tree.enter(a, 3, "c");
+        ThreadCallTree.Node d = tree.enter(c, 4, "d");
+        d.exit(5);
+        c.exit(20);
+        //calling b again steps down the same edge
+        assertSame(b, tree.enter(a, 2, "b"));
+        b.exit(10);
+        a.exit(100);
+
+        assertEquals(4, tree.getNodeCount());
+        assertEquals(40, a.getValue());
+        assertEquals(40, b.getValue());
+        assertEquals(15, c.getValue());
+        assertEquals(5, d.getValue());
+
+        CallTree callTree = new CallTree(100);
+        callTree.addAll(tree);
+        assertFolded(callTree, "a 40", "a;b 40", "a;c 15", "a;c;d 5");
+    }
+
+    @Test
+    public void testDeadThreadsAreMerged() throws Exception {
+        AtomicInteger sharedNodeCount = new AtomicInteger();
+        CallTree callTree = new CallTree(100);
+        for (int i = 0; i < 2; i++) {
+            final ThreadCallTree tree = new ThreadCallTree(sharedNodeCount, 100);
+            final long time = (i + 1) * 100;
+            Thread thread = new Thread(() -> {
+                ThreadCallTree.Node run = tree.enter(tree.getRoot(), 1, "run");
+                ThreadCallTree.Node work = tree.enter(run, 2, "work");
+                work.exit(time / 2);
+                run.exit(time);
+            });
+            thread.start();
+            thread.join();
+
+            callTree.addAll(tree);
+            tree.release();
+            assertEquals(0, tree.getNodeCount());
+        }
+        assertEquals(0, sharedNodeCount.get());
+        assertEquals(2, callTree.getNodeCount());
+        assertFolded(callTree, "run 150", "run;work 150");
+    }
+
+    @Test
+    public void testNodesAreBoundedAcrossThreads() throws Exception {
+        AtomicInteger sharedNodeCount = new AtomicInteger();
+        ThreadCallTree tree1 = new ThreadCallTree(sharedNodeCount, 3);
+        ThreadCallTree tree2 = new ThreadCallTree(sharedNodeCount, 3);
+
+        ThreadCallTree.Node a1 = tree1.enter(tree1.getRoot(), 1, "a");
+        tree1.enter(a1, 2, "b").exit(10);
+        a1.exit(30);
+        ThreadCallTree.Node a2 = tree2.enter(tree2.getRoot(), 1, "a");
+        assertEquals(3, sharedNodeCount.get());
+
+        //out of nodes - the time of the callee stays part of the caller
+        assertNull(tree2.enter(a2, 2, "b"));
+        a2.exit(50);
+        assertEquals(50, a2.getValue());
+
+        CallTree callTree = new CallTree(100);
+        callTree.addAll(tree1);
+        callTree.addAll(tree2);
+        assertFolded(callTree, "a 70", "a;b 10");
+
+        tree1.release();
+        assertEquals(1, sharedNodeCount.get());
+        //the released nodes can be used by the other threads
+        assertEquals(0, tree2.enter(a2, 2, "b").getValue());
+        assertEquals(2, sharedNodeCount.get());
+    }
+
+    @Test
+    public void testMergedStacksAreTruncatedAtTheNodeBound() throws Exception {
+        ThreadCallTree tree = new ThreadCallTree(new AtomicInteger(), 100);
+        ThreadCallTree.Node a = tree.enter(tree.getRoot(), 1, "a");
+        ThreadCallTree.Node b = tree.enter(a, 2, "b");
+        tree.enter(b, 3, "c").exit(5);
+        b.exit(20);
+        tree.enter(a, 4, "e").exit(7);
+        a.exit(40);
+
+        CallTree callTree = new CallTree(2);
+        callTree.addAll(tree);
+        //either b or e got the second node, what is left over is attributed to the deepest node kept
+        String folded = callTree.toFoldedStacks();
+        if (folded.contains("a;b")) {
+            assertFolded(callTree, "a 20", "a;b 20");
+        } else {
+            assertFolded(callTree, "a 33", "a;e 7");
+        }
+    }
+
+    @Test
+    public void testSampledStacks() throws Exception {
+        CallTree callTree = new CallTree(3);
+        callTree.add(new String[]{"main", "run", "work"}, 3, 1);
+        callTree.add(new String[]{"main", "run", "work"}, 3, 1);
+        callTree.add(new String[]{"main", "run"}, 2, 1);
+        //out of nodes, so counted against run
+        callTree.add(new String[]{"main", "run", "sleep"}, 3, 1);
+        callTree.add(new String[]{"main", "run", "work", "ignored"}, 2, 1);
+        assertFolded(callTree, "main;run 3", "main;run;work 2");
+
+        callTree.clear();
+        assertEquals(0, callTree.getNodeCount());
+        assertEquals("", callTree.toFoldedStacks());
+    }
+
+    private static void assertFolded(CallTree callTree, String... lines) {
+        String[] actual = callTree.toFoldedStacks().split("\n");
+        Arrays.sort(actual);
+        String[] expected = lines.clone();
+        Arrays.sort(expected);
+        assertEquals(Arrays.asList(expected), Arrays.asList(actual));
+    }
+}
@@ -0,0 +1,106 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.apmagent.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+import io.fabric8.apmagent.ApmAgent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the string keyed enter/exit path with the integer method id path
+ * woven in by {@link io.fabric8.apmagent.strategy.trace.ApmMethodVisitor}.
+ * <p/>
+ * Run with <code>mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=io.fabric8.apmagent.metrics.EnterExitBenchmark</code>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class EnterExitBenchmark {
+    private static final int METHOD_COUNT = 1000;
+
+    private ApmAgentContext context;
+    private String[] methodNames;
+    private int[] methodIds;
+
+    @State(Scope.Thread)
+    public static class Position {
+        int index;
+
+        int next() {
+            index = (index + 1) % METHOD_COUNT;
+            return index;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        context = new ApmAgentContext(ApmAgent.INSTANCE);
+        context.initialize();
+        methodNames = new String[METHOD_COUNT];
+        methodIds = new int[METHOD_COUNT];
+        for (int i = 0; i < METHOD_COUNT; i++) {
+            methodNames[i] = "io.fabric8.testApp.TestLoad@load" + i + "(io.fabric8.testApp.TestValues) void";
+            methodIds[i] = context.registerMethod(methodNames[i]);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.shutDown();
+    }
+
+    @Benchmark
+    public void stringKeyed(Position position) {
+        String methodName = methodNames[position.next()];
+        Thread thread = Thread.currentThread();
+        context.enterMethod(thread, methodName, false);
+        context.exitMethod(thread, methodName, false);
+    }
+
+    @Benchmark
+    public void idKeyed(Position position) {
+        int methodId = methodIds[position.next()];
+        context.enterMethod(methodId);
+        context.exitMethod(methodId);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+            .include(EnterExitBenchmark.class.getSimpleName())
+            .build();
+        new Runner(options).run();
+    }
+}
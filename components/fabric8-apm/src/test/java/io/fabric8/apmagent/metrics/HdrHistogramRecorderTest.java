@@ -0,0 +1,118 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.apmagent.metrics;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Drives the sliding window of the {@link HdrHistogramRecorder} with explicit times, so the slots of a
+ * five second window are one second each
+ */
+public class HdrHistogramRecorderTest {
+    private static final long WINDOW_MILLIS = 5000;
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+    //values below 256 are recorded exactly with two significant digits
+    private static final int PRECISION = 2;
+
+    @Test
+    public void testPercentilesAndMean() throws Exception {
+        for (boolean singleWriter : new boolean[]{false, true}) {
+            HdrHistogramRecorder recorder = new HdrHistogramRecorder(PRECISION, singleWriter, WINDOW_MILLIS);
+            for (int i = 100; i >= 1; i--) {
+                recorder.update(i);
+            }
+            recorder.refresh(0);
+
+            MethodMetricsSnapshot snapshot = recorder.getSnapshot();
+            assertEquals(100, snapshot.size());
+            assertEquals(1, snapshot.getMin());
+            assertEquals(100, snapshot.getMax());
+            assertEquals(50.5, snapshot.getMean(), 0.001);
+            assertEquals(50, snapshot.getMedian(), 0.001);
+            assertEquals(75, snapshot.get75thPercentile(), 0.001);
+            assertEquals(95, snapshot.get95thPercentile(), 0.001);
+            assertEquals(99, snapshot.get99thPercentile(), 0.001);
+            assertEquals(100, snapshot.get999thPercentile(), 0.001);
+            assertEquals(100, snapshot.getValues().length);
+            assertEquals(100, recorder.getCount());
+            assertEquals(5050, recorder.getTotalTime());
+        }
+    }
+
+    @Test
+    public void testSlotsExpireOnceOutOfTheWindow() throws Exception {
+        HdrHistogramRecorder recorder = new HdrHistogramRecorder(PRECISION, false, WINDOW_MILLIS);
+        recorder.update(10);
+        recorder.refresh(0);
+        recorder.update(20);
+        recorder.update(30);
+        recorder.refresh(2 * SECOND + 1);
+        assertArrayEquals(new long[]{10, 20, 30}, recorder.getSnapshot().getValues());
+
+        //the first slot is still part of the window until five slots later
+        recorder.refresh(5 * SECOND - 1);
+        assertEquals(3, recorder.getSnapshot().size());
+
+        recorder.refresh(5 * SECOND);
+        MethodMetricsSnapshot snapshot = recorder.getSnapshot();
+        assertArrayEquals(new long[]{20, 30}, snapshot.getValues());
+        assertEquals(25, snapshot.getMean(), 0.001);
+        assertEquals(20, snapshot.getMin());
+
+        recorder.refresh(7 * SECOND);
+        assertSame(MethodMetricsSnapshot.EMPTY, recorder.getSnapshot());
+
+        //the totals are not windowed
+        assertEquals(3, recorder.getCount());
+        assertEquals(60, recorder.getTotalTime());
+    }
+
+    @Test
+    public void testSlotIsReusedWhenTheWindowWrapsAround() throws Exception {
+        HdrHistogramRecorder recorder = new HdrHistogramRecorder(PRECISION, true, WINDOW_MILLIS);
+        recorder.update(10);
+        recorder.refresh(SECOND);
+        recorder.update(40);
+        recorder.refresh(6 * SECOND);
+        assertArrayEquals(new long[]{40}, recorder.getSnapshot().getValues());
+
+        //later timings of the same second are added to its slot
+        recorder.update(50);
+        recorder.refresh(6 * SECOND + SECOND / 2);
+        assertArrayEquals(new long[]{40, 50}, recorder.getSnapshot().getValues());
+    }
+
+    @Test
+    public void testIdleRefreshKeepsTheSnapshot() throws Exception {
+        HdrHistogramRecorder recorder = new HdrHistogramRecorder(PRECISION, false, WINDOW_MILLIS);
+        assertSame(MethodMetricsSnapshot.EMPTY, recorder.getSnapshot());
+        recorder.refresh(0);
+        assertSame(MethodMetricsSnapshot.EMPTY, recorder.getSnapshot());
+
+        recorder.update(10);
+        recorder.refresh(0);
+        MethodMetricsSnapshot snapshot = recorder.getSnapshot();
+        recorder.refresh(SECOND);
+        recorder.refresh(4 * SECOND);
+        assertSame(snapshot, recorder.getSnapshot());
+    }
+}
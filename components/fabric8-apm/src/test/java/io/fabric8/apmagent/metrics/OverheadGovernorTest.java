@@ -0,0 +1,209 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.apmagent.metrics;
+
+import io.fabric8.apmagent.ApmAgent;
+import io.fabric8.apmagent.ApmConfiguration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks which methods the {@link OverheadGovernor} excludes. The call cost is set so that each call per
+ * second costs a thousandth of a percent of all the processors, whatever their number.
+ */
+public class OverheadGovernorTest {
+    private static final String HOT = "com.example.Hot@get(int) int";
+    private static final String WARM = "com.example.Warm@get(int) int";
+    private static final String COOL = "com.example.Cool@get(int) int";
+
+    private final ApmConfiguration configuration = ApmAgent.INSTANCE.getConfiguration();
+    private final OverheadGovernor governor = new OverheadGovernor(configuration);
+    private boolean overheadGovernor;
+    private double overheadBudget;
+    private double minCallRate;
+    private double maxMeanTime;
+    private double callCost;
+
+    @Before
+    public void setUp() {
+        overheadGovernor = configuration.isOverheadGovernor();
+        overheadBudget = configuration.getOverheadBudget();
+        minCallRate = configuration.getGovernorMinCallRate();
+        maxMeanTime = configuration.getGovernorMaxMeanTime();
+        callCost = configuration.getGovernorCallCost();
+
+        configuration.clearExcludedMethods();
+        configuration.setOverheadGovernor(true);
+        configuration.setOverheadBudget(2);
+        configuration.setGovernorMinCallRate(100);
+        configuration.setGovernorMaxMeanTime(1);
+        configuration.setGovernorCallCost(Runtime.getRuntime().availableProcessors() * 10000.0);
+    }
+
+    @After
+    public void tearDown() {
+        configuration.clearExcludedMethods();
+        configuration.setOverheadGovernor(overheadGovernor);
+        configuration.setOverheadBudget(overheadBudget);
+        configuration.setGovernorMinCallRate(minCallRate);
+        configuration.setGovernorMaxMeanTime(maxMeanTime);
+        configuration.setGovernorCallCost(callCost);
+    }
+
+    @Test
+    public void testExcludesTheMostCalledUntilWithinBudget() throws Exception {
+        governor.evaluate(Arrays.asList(metrics(COOL, 1000, 100), metrics(HOT, 3000, 100), metrics(WARM, 2000, 100)));
+
+        assertEquals(6.0, governor.getEstimatedOverhead(), 0.0001);
+        //6% - 3% is still over budget, 3% - 2% is not
+        assertEquals(sorted(HOT, WARM), sorted(configuration.getExcludedMethods()));
+    }
+
+    @Test
+    public void testBudgetIsInclusive() throws Exception {
+        configuration.setOverheadBudget(3);
+        governor.evaluate(Arrays.asList(metrics(HOT, 3000, 100), metrics(WARM, 2000, 100), metrics(COOL, 1000, 100)));
+        assertEquals(sorted(HOT), sorted(configuration.getExcludedMethods()));
+
+        configuration.clearExcludedMethods();
+        configuration.setOverheadBudget(6);
+        governor.evaluate(Arrays.asList(metrics(HOT, 3000, 100), metrics(WARM, 2000, 100), metrics(COOL, 1000, 100)));
+        assertTrue(configuration.getExcludedMethods().isEmpty());
+    }
+
+    @Test
+    public void testOnlyFrequentTrivialMethodsAreCandidates() throws Exception {
+        configuration.setOverheadBudget(0);
+        governor.evaluate(Arrays.asList(
+            metrics("com.example.AtMinRate@get() int", 100, 100),
+            metrics("com.example.BelowMinRate@get() int", 99.9, 100),
+            metrics("com.example.BelowMaxMean@get() int", 5000, 999),
+            metrics("com.example.AtMaxMean@get() int", 5000, 1000),
+            metrics("com.example.Slow@get() int", 5000, 2000000)));
+
+        assertEquals(sorted("com.example.AtMinRate@get() int", "com.example.BelowMaxMean@get() int"),
+                     sorted(configuration.getExcludedMethods()));
+    }
+
+    @Test
+    public void testOverloadsAreExcludedOnTheirOwn() throws Exception {
+        String hotOverload = "com.example.Hot@get(java.lang.String) int";
+        String coldOverload = "com.example.Hot@get(long) int";
+        governor.evaluate(Arrays.asList(metrics(hotOverload, 3000, 100), metrics(coldOverload, 1000, 100)));
+
+        assertEquals(sorted(hotOverload), sorted(configuration.getExcludedMethods()));
+        assertFalse(configuration.isAudit("com.example.Hot", "get", "(java.lang.String) int"));
+        assertTrue(configuration.isAudit("com.example.Hot", "get", "(long) int"));
+    }
+
+    @Test
+    public void testNothingIsExcludedIfTheGovernorIsOff() throws Exception {
+        configuration.setOverheadGovernor(false);
+        governor.evaluate(Arrays.asList(metrics(HOT, 3000, 100), metrics(WARM, 2000, 100)));
+
+        assertEquals(5.0, governor.getEstimatedOverhead(), 0.0001);
+        assertTrue(configuration.getExcludedMethods().isEmpty());
+    }
+
+    @Test
+    public void testMethodsWithoutAMethodNameAreNotExcluded() throws Exception {
+        governor.evaluate(Arrays.asList(metrics("com.example.Hot", 3000, 100), metrics(WARM, 2000, 100)));
+
+        //the class level entry costs the same, but cannot be excluded so does not count towards the budget
+        assertEquals(sorted(WARM), sorted(configuration.getExcludedMethods()));
+    }
+
+    private static MethodMetrics metrics(String name, double rate, long meanNanos) {
+        return new MethodMetrics(name, new FixedRecorder(rate, meanNanos));
+    }
+
+    private static List<String> sorted(String... names) {
+        return sorted(Arrays.asList(names));
+    }
+
+    private static List<String> sorted(List<String> names) {
+        List<String> result = new ArrayList<>(names);
+        Collections.sort(result);
+        return result;
+    }
+
+    /**
+     * A recorder with a fixed call rate and mean time
+     */
+    private static class FixedRecorder implements MethodMetricsRecorder {
+        private final double rate;
+        private final MethodMetricsSnapshot snapshot;
+
+        FixedRecorder(double rate, long meanNanos) {
+            this.rate = rate;
+            this.snapshot = new MethodMetricsSnapshot(1, meanNanos, meanNanos, meanNanos, 0, meanNanos, meanNanos,
+                                                      meanNanos, meanNanos, meanNanos, meanNanos, new long[]{meanNanos});
+        }
+
+        @Override
+        public void update(long elapsed) {
+        }
+
+        @Override
+        public long getCount() {
+            return 0;
+        }
+
+        @Override
+        public long getTotalTime() {
+            return 0;
+        }
+
+        @Override
+        public double getMeanRate() {
+            return rate;
+        }
+
+        @Override
+        public double getOneMinuteRate() {
+            return rate;
+        }
+
+        @Override
+        public double getFiveMinuteRate() {
+            return rate;
+        }
+
+        @Override
+        public double getFifteenMinuteRate() {
+            return rate;
+        }
+
+        @Override
+        public void refresh() {
+        }
+
+        @Override
+        public MethodMetricsSnapshot getSnapshot() {
+            return snapshot;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.apmagent.strategy.sampling;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import io.fabric8.apmagent.ApmAgent;
+import io.fabric8.apmagent.metrics.ApmAgentContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares a sample taken through {@link Thread#getAllStackTraces()}, as the sampling strategy
+ * used to, with {@link SamplingStrategy#sample()} as the number of threads grows.
+ * Divide the score by the thread count for the cost per thread sample.
+ * <p/>
+ * Run with <code>mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=io.fabric8.apmagent.strategy.sampling.SamplingBenchmark</code>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SamplingBenchmark {
+    private static final int STACK_DEPTH = 100;
+
+    @Param({"50", "500", "2000"})
+    public int threadCount;
+
+    private ApmAgentContext context;
+    private SamplingStrategy samplingStrategy;
+    private CountDownLatch done;
+
+    @Setup
+    public void setUp() throws Exception {
+        context = new ApmAgentContext(ApmAgent.INSTANCE);
+        context.initialize();
+        samplingStrategy = new SamplingStrategy(context);
+
+        done = new CountDownLatch(1);
+        final CountDownLatch started = new CountDownLatch(threadCount);
+        for (int i = 0; i < threadCount; i++) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    recurse(STACK_DEPTH, started);
+                }
+            }, "SamplingBenchmark-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        started.await();
+    }
+
+    @TearDown
+    public void tearDown() {
+        done.countDown();
+        context.shutDown();
+    }
+
+    @Benchmark
+    public void allStackTraces(Blackhole blackhole) {
+        for (Map.Entry<Thread, StackTraceElement[]> entry : Thread.getAllStackTraces().entrySet()) {
+            StackTraceElement[] stack = entry.getValue();
+            if (stack.length > 0) {
+                blackhole.consume(stack[0].getClassName() + "." + stack[0].getMethodName());
+            }
+        }
+    }
+
+    @Benchmark
+    public void threadMXBeanSample() {
+        samplingStrategy.sample();
+    }
+
+    private void recurse(int depth, CountDownLatch started) {
+        if (depth > 0) {
+            recurse(depth - 1, started);
+        } else {
+            started.countDown();
+            try {
+                done.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+            .include(SamplingBenchmark.class.getSimpleName())
+            .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,186 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.apmagent.strategy.trace;
+
+import io.fabric8.apmagent.ApmAgent;
+import io.fabric8.apmagent.ApmConfiguration;
+import io.fabric8.apmagent.ClassInfo;
+import io.fabric8.apmagent.MethodDescription;
+import io.fabric8.apmagent.metrics.ApmAgentContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.instrument.Instrumentation;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Retransforms classes through the {@link RetransformPipeline} with a fake {@link Instrumentation} which, like the
+ * JVM, fails a whole batch if the byte code of one class in it is rejected
+ */
+public class RetransformPipelineTest {
+    private final ApmConfiguration configuration = ApmAgent.INSTANCE.getConfiguration();
+    private final List<List<Class<?>>> retransformed = new ArrayList<>();
+    private final Set<Class<?>> rejected = new HashSet<>();
+    private String whiteList;
+    private int retransformBatchSize;
+
+    @Before
+    public void setUp() {
+        whiteList = configuration.getWhiteList();
+        retransformBatchSize = configuration.getRetransformBatchSize();
+        //the agent's own package is black listed, so its methods are only audited if white listed too
+        configuration.setWhiteList(RetransformPipelineTest.class.getName() + ".*@.*");
+        configuration.setRetransformBatchSize(10);
+    }
+
+    @After
+    public void tearDown() {
+        configuration.clearExcludedMethods();
+        configuration.setWhiteList(whiteList);
+        configuration.setRetransformBatchSize(retransformBatchSize);
+    }
+
+    @Test
+    public void testRejectedClassFallsBackOnItsOwn() throws Exception {
+        for (boolean prepare : new boolean[]{true, false}) {
+            retransformed.clear();
+            rejected.clear();
+            configuration.clearExcludedMethods();
+            ApmAgentContext context = new ApmAgentContext(ApmAgent.INSTANCE);
+            TraceStrategy strategy = new TraceStrategy(context, null);
+            strategy.setInstrumentation(createInstrumentation(strategy));
+            RetransformPipeline pipeline = strategy.getPipeline();
+            List<Class<?>> classes = Arrays.<Class<?>>asList(First.class, Rejected.class, Last.class);
+
+            pipeline.run(classes, prepare);
+            assertEquals(Arrays.asList(classes), retransformed);
+            assertEquals(3, pipeline.getCompleted());
+            for (Class<?> c : classes) {
+                assertTransformedMethods(context, c, "first", "second");
+            }
+
+            //exclude the second methods, but have the JVM reject the new byte code of one class
+            List<String> excluded = new ArrayList<>();
+            for (Class<?> c : classes) {
+                for (MethodDescription methodDescription : context.findClassInfo(c.getName()).getTransformedMethodDescriptions()) {
+                    if (methodDescription.getMethodName().equals("second")) {
+                        excluded.add(methodDescription.getFullMethodName());
+                    }
+                }
+            }
+            configuration.addToExcludedMethods(excluded);
+            rejected.add(Rejected.class);
+            retransformed.clear();
+
+            pipeline.run(classes, prepare);
+            assertEquals(Arrays.asList(classes, Arrays.asList(First.class), Arrays.asList(Rejected.class), Arrays.asList(Last.class)),
+                         retransformed);
+            assertEquals(2, pipeline.getCompleted());
+            assertEquals(1, pipeline.getFailed());
+            assertTransformedMethods(context, First.class, "first");
+            assertTransformedMethods(context, Last.class, "first");
+            //the rejected rewrite is dropped, and the class is still instrumented as before
+            assertTransformedMethods(context, Rejected.class, "first", "second");
+            ClassInfo classInfo = context.findClassInfo(Rejected.class.getName());
+            assertNull(classInfo.takePending());
+            assertTrue(Arrays.equals(readClassFile(Rejected.class), classInfo.getOriginal()));
+        }
+    }
+
+    private static void assertTransformedMethods(ApmAgentContext context, Class<?> c, String... methodNames) {
+        ClassInfo classInfo = context.findClassInfo(c.getName());
+        assertTrue(c.getName(), classInfo.isTransformed());
+        assertEquals(c.getName(), new HashSet<>(Arrays.asList(methodNames)), classInfo.getAllTransformedMethodNames());
+    }
+
+    /**
+     * Hands the classes to the transformer as the JVM would, then fails if any of them is rejected
+     */
+    private Instrumentation createInstrumentation(final TraceStrategy strategy) {
+        return (Instrumentation) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{Instrumentation.class},
+            (proxy, method, args) -> {
+                if (!method.getName().equals("retransformClasses")) {
+                    throw new UnsupportedOperationException(method.getName());
+                }
+                Class<?>[] classes = (Class<?>[]) args[0];
+                retransformed.add(Arrays.asList(classes));
+                boolean reject = false;
+                for (Class<?> c : classes) {
+                    strategy.transform(c.getClassLoader(), c.getName().replace('.', '/'), c, null, readClassFile(c));
+                    reject |= rejected.contains(c);
+                }
+                if (reject) {
+                    throw new VerifyError("Rejected the byte code of " + Arrays.toString(classes));
+                }
+                return null;
+            });
+    }
+
+    private static byte[] readClassFile(Class<?> c) throws IOException {
+        try (InputStream in = c.getClassLoader().getResourceAsStream(c.getName().replace('.', '/') + ".class")) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                out.write(buffer, 0, count);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    public static class First {
+        public int first(int value) {
+            return value + 1;
+        }
+
+        public int second(int value) {
+            return value * 2;
+        }
+    }
+
+    public static class Rejected {
+        public int first(int value) {
+            return value + 2;
+        }
+
+        public int second(int value) {
+            return value * 3;
+        }
+    }
+
+    public static class Last {
+        public int first(int value) {
+            return value + 3;
+        }
+
+        public int second(int value) {
+            return value * 4;
+        }
+    }
+}
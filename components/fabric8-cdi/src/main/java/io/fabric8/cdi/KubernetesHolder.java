@@ -15,6 +15,7 @@
  */
 package io.fabric8.cdi;
 
+import io.fabric8.kubernetes.api.cache.ServiceURLCache;
 import io.fabric8.kubernetes.client.DefaultKubernetesClient;
 import io.fabric8.kubernetes.client.KubernetesClient;
 
@@ -28,6 +29,7 @@ import java.util.concurrent.atomic.AtomicReference;
 public class KubernetesHolder {
 
     private static KubernetesClient client;
+    private static ServiceURLCache serviceURLCache;
     private static final AtomicReference<BeanManager> BEAN_MANAGER = new AtomicReference<>();
 
     public synchronized static KubernetesClient getClient() {
@@ -49,6 +51,13 @@ public class KubernetesHolder {
         return client;
     }
 
+    public synchronized static ServiceURLCache getServiceURLCache() {
+        if (serviceURLCache == null) {
+            serviceURLCache = new ServiceURLCache(getClient());
+        }
+        return serviceURLCache;
+    }
+
     private static BeanManager getBeanManager() {
         try {
             return CDI.current().getBeanManager();
@@ -15,7 +15,6 @@
  */
 package io.fabric8.cdi;
 
-import io.fabric8.kubernetes.api.KubernetesHelper;
 import io.fabric8.kubernetes.api.model.EndpointAddress;
 import io.fabric8.kubernetes.api.model.EndpointPort;
 import io.fabric8.kubernetes.api.model.EndpointSubset;
@@ -35,7 +34,7 @@ public class Services {
         KubernetesClient client = KubernetesHolder.getClient();
         String serviceNamespace = client.getNamespace();
         String actualProtocol = Strings.isNullOrBlank(serviceProtocol) ? DEFAULT_PROTO : serviceProtocol;
-        return URLUtils.pathJoin(KubernetesHelper.getServiceURL(client, serviceName, serviceNamespace, actualProtocol, servicePortName, serviceExternal), servicePath);
+        return URLUtils.pathJoin(KubernetesHolder.getServiceURLCache().getServiceURL(serviceName, serviceNamespace, actualProtocol, servicePortName, serviceExternal), servicePath);
     }
 
     public static List<String> toServiceEndpointUrl(String serviceId, String serviceProtocol, String servicePort) {
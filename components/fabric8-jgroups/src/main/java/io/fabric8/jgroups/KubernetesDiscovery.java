@@ -17,6 +17,7 @@ package io.fabric8.jgroups;
 
 
 import io.fabric8.kubernetes.api.KubernetesHelper;
+import io.fabric8.kubernetes.api.cache.ResourceInformer;
 import io.fabric8.kubernetes.api.model.Container;
 import io.fabric8.kubernetes.api.model.ContainerPort;
 import io.fabric8.kubernetes.api.model.Pod;
@@ -36,6 +37,7 @@ import org.jgroups.protocols.PingData;
 import org.jgroups.protocols.PingHeader;
 import org.jgroups.stack.IpAddress;
 import org.jgroups.util.BoundedList;
+import org.jgroups.util.Buffer;
 import org.jgroups.util.Responses;
 import org.jgroups.util.Tuple;
 import org.slf4j.Logger;
@@ -43,6 +45,13 @@ import org.slf4j.LoggerFactory;
 
 
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 @MBean(description = "Kubernetes discovery protocol")
 public class KubernetesDiscovery extends Discovery {
@@ -52,8 +61,20 @@ public class KubernetesDiscovery extends Discovery {
     @Property
     private String address;
 
+    @Property(description = "Whether the pods of the cluster are watched rather than listed on every discovery round")
+    private boolean watch_pods = true;
+
+    @Property(description = "Time in milliseconds to wait before listing the pods again after the watch failed")
+    private long watch_retry_delay = 5000;
+
+    @Property(description = "Number of threads sending the discovery requests to the members in parallel")
+    private int discovery_threads = 4;
+
     private KubernetesClient client;
-    private List<PhysicalAddress> kubernetesHosts = Collections.emptyList();
+    private volatile List<PhysicalAddress> kubernetesHosts = Collections.emptyList();
+    private ResourceInformer<Pod> podInformer;
+    private ScheduledExecutorService podInformerExecutor;
+    private ExecutorService discoveryExecutor;
     private BoundedList<PhysicalAddress> dynamic_hosts = new BoundedList<>(2000);
     
     @Override
@@ -66,6 +87,40 @@ public class KubernetesDiscovery extends Discovery {
         }
     }
 
+    @Override
+    public void start() throws Exception {
+        super.start();
+        synchronized (this) {
+            if (discoveryExecutor == null) {
+                ThreadPoolExecutor executor = new ThreadPoolExecutor(discovery_threads, discovery_threads, 60, TimeUnit.SECONDS,
+                        new LinkedBlockingQueue<>(), r -> {
+                            Thread thread = new Thread(r, "KubernetesDiscovery-requests-" + cluster_name);
+                            thread.setDaemon(true);
+                            return thread;
+                        });
+                executor.allowCoreThreadTimeOut(true);
+                discoveryExecutor = executor;
+            }
+        }
+    }
+
+    @Override
+    public void stop() {
+        super.stop();
+        synchronized (this) {
+            if (discoveryExecutor != null) {
+                discoveryExecutor.shutdownNow();
+                discoveryExecutor = null;
+            }
+            if (podInformer != null) {
+                podInformer.close();
+                podInformerExecutor.shutdownNow();
+                podInformer = null;
+                podInformerExecutor = null;
+            }
+        }
+    }
+
     public Object down(Event evt) {
         Object retval = super.down(evt);
         switch (evt.getType()) {
@@ -97,7 +152,7 @@ public class KubernetesDiscovery extends Discovery {
 
     @Override
     public void findMembers(List<Address> members, boolean initial_discovery, Responses responses) {
-        kubernetesHosts = findKubernetesHosts();
+        kubernetesHosts = getKubernetesHosts();
         
         PhysicalAddress physical_addr = (PhysicalAddress) down(new Event(Event.GET_PHYSICAL_ADDRESS, local_addr));
         // https://issues.jboss.org/browse/JGRP-1670
@@ -116,23 +171,81 @@ public class KubernetesDiscovery extends Discovery {
                         cluster_members.add(phys_addr);
         }
 
+        if (physical_addr != null) // no need to send the request to myself
+            cluster_members.remove(physical_addr);
+
+        final Buffer buffer = marshal(data);
+        ExecutorService executor;
+        synchronized (this) {
+            executor = discoveryExecutor;
+        }
         for (final PhysicalAddress addr : cluster_members) {
-            if (physical_addr != null && addr.equals(physical_addr)) // no need to send the request to myself
-                continue;
             // the message needs to be DONT_BUNDLE, see explanation above
             final Message msg = new Message(addr).setFlag(Message.Flag.INTERNAL, Message.Flag.DONT_BUNDLE, Message.Flag.OOB)
-                    .putHeader(this.id, hdr).setBuffer(marshal(data));
-            log.trace("%s: sending discovery request to %s", local_addr, msg.getDest());
-            down_prot.down(new Event(Event.MSG, msg));
+                    .putHeader(this.id, hdr).setBuffer(buffer);
+            if (executor != null) {
+                try {
+                    executor.execute(() -> sendDiscoveryRequest(msg));
+                    continue;
+                } catch (RejectedExecutionException e) {
+                    // stopped meanwhile so send it ourselves
+                }
+            }
+            sendDiscoveryRequest(msg);
         }
     }
 
+    protected void sendDiscoveryRequest(Message msg) {
+        log.trace("%s: sending discovery request to %s", local_addr, msg.getDest());
+        down_prot.down(new Event(Event.MSG, msg));
+    }
+
+    /**
+     * Returns the hosts of the pods in the cluster from the pod watch, starting the watch on first use, or
+     * lists the pods if they are not being watched
+     */
+    protected List<PhysicalAddress> getKubernetesHosts() {
+        if (!watch_pods) {
+            return findKubernetesHosts();
+        }
+        ResourceInformer<Pod> informer;
+        synchronized (this) {
+            if (podInformer == null) {
+                final Map<String, String> labels = Collections.singletonMap(Constants.JGROUPS_CLUSTER_NAME, cluster_name);
+                podInformerExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+                    Thread thread = new Thread(r, "KubernetesDiscovery-" + cluster_name);
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                podInformer = createPodInformer(labels, podInformerExecutor);
+                podInformer.start();
+            }
+            informer = podInformer;
+        }
+        if (!informer.isSynced()) {
+            return findKubernetesHosts();
+        }
+        return toHosts(informer.list());
+    }
+
+    /**
+     * Creates the informer which lists and then watches the pods with the given labels
+     */
+    protected ResourceInformer<Pod> createPodInformer(Map<String, String> labels, ScheduledExecutorService executor) {
+        return new ResourceInformer<>("Pod",
+                () -> client.pods().withLabels(labels).list(),
+                (version, watcher) -> client.pods().withLabels(labels).withResourceVersion(version).watch(watcher),
+                executor, watch_retry_delay);
+    }
 
     public List<PhysicalAddress> findKubernetesHosts() {
-        List<PhysicalAddress> addresses = new ArrayList<>();
         Map<String, String> labels = Collections.singletonMap(Constants.JGROUPS_CLUSTER_NAME, cluster_name);
+        return toHosts(client.pods().withLabels(labels).list().getItems());
+    }
 
-        for (Pod pod : client.pods().withLabels(labels).list().getItems()) {
+    protected static List<PhysicalAddress> toHosts(List<Pod> pods) {
+        List<PhysicalAddress> addresses = new ArrayList<>();
+        for (Pod pod : pods) {
             List<Container> containers = KubernetesHelper.getContainers(pod);
             for (Container container : containers) {
 
@@ -0,0 +1,146 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.jgroups;
+
+import io.fabric8.kubernetes.api.cache.ResourceInformer;
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.PodBuilder;
+import io.fabric8.kubernetes.api.model.PodListBuilder;
+import io.fabric8.kubernetes.client.KubernetesClientException;
+import io.fabric8.kubernetes.client.Watch;
+import io.fabric8.kubernetes.client.Watcher;
+import org.jgroups.PhysicalAddress;
+import org.jgroups.stack.IpAddress;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+public class KubernetesDiscoveryTest {
+    private static final String CLUSTER = "test-cluster";
+    private static final int PORT = 7800;
+
+    private final TestDiscovery discovery = new TestDiscovery();
+
+    @After
+    public void tearDown() {
+        discovery.stop();
+    }
+
+    @Test
+    public void testMembersFollowThePodWatch() throws Exception {
+        discovery.pods.add(createPod("ready", "10.0.0.1", true));
+        discovery.pods.add(createPod("not-ready", "10.0.0.2", false));
+        discovery.pods.add(createPod("pending", null, false));
+
+        // pods which are not ready yet are members as soon as they have an address, so the cluster can form
+        assertThat(discovery.getKubernetesHosts()).containsOnly(host("10.0.0.1"), host("10.0.0.2"));
+        assertThat(discovery.informer.isSynced()).isTrue();
+
+        discovery.watcher.eventReceived(Watcher.Action.ADDED, createPod("added", "10.0.0.4", true));
+        assertThat(discovery.getKubernetesHosts()).containsOnly(host("10.0.0.1"), host("10.0.0.2"), host("10.0.0.4"));
+
+        discovery.watcher.eventReceived(Watcher.Action.MODIFIED, createPod("pending", "10.0.0.3", false));
+        discovery.watcher.eventReceived(Watcher.Action.DELETED, createPod("ready", "10.0.0.1", true));
+        assertThat(discovery.getKubernetesHosts()).containsOnly(host("10.0.0.2"), host("10.0.0.3"), host("10.0.0.4"));
+
+        // the pods are only listed by the informer, never on each discovery round
+        assertThat(discovery.listed.get()).isEqualTo(1);
+        assertThat(discovery.fallbacks.get()).isEqualTo(0);
+    }
+
+    @Test
+    public void testPodsAreListedUntilTheWatchIsStarted() throws Exception {
+        discovery.pods.add(createPod("ready", "10.0.0.1", true));
+        discovery.watchFailures.set(1);
+
+        assertThat(discovery.getKubernetesHosts()).containsOnly(host("10.0.0.1"));
+        assertThat(discovery.fallbacks.get()).isEqualTo(1);
+
+        waitForSync(discovery.informer, 10000);
+        assertThat(discovery.informer.isSynced()).isTrue();
+
+        discovery.watcher.eventReceived(Watcher.Action.ADDED, createPod("added", "10.0.0.2", true));
+        assertThat(discovery.getKubernetesHosts()).containsOnly(host("10.0.0.1"), host("10.0.0.2"));
+        assertThat(discovery.fallbacks.get()).isEqualTo(1);
+    }
+
+    protected static void waitForSync(ResourceInformer<Pod> informer, long timeoutMillis) throws InterruptedException {
+        long end = System.currentTimeMillis() + timeoutMillis;
+        while (!informer.isSynced() && System.currentTimeMillis() < end) {
+            Thread.sleep(20);
+        }
+    }
+
+    protected static PhysicalAddress host(String ip) throws Exception {
+        return new IpAddress(ip, PORT);
+    }
+
+    protected static Pod createPod(String name, String ip, boolean ready) {
+        return new PodBuilder().withNewMetadata().withName(name).addToLabels(Constants.JGROUPS_CLUSTER_NAME, CLUSTER).endMetadata()
+                .withNewSpec().addNewContainer().withName("jgroups")
+                .addNewPort().withName(Constants.JGROUPS_TCP_PORT).withContainerPort(PORT).endPort().endContainer().endSpec()
+                .withNewStatus().withPodIP(ip).withPhase(ip != null ? "Running" : "Pending")
+                .addNewCondition().withType("Ready").withStatus(ready ? "True" : "False").endCondition().endStatus()
+                .build();
+    }
+
+    /**
+     * Lists and watches the pods in memory rather than from the API server
+     */
+    private static class TestDiscovery extends KubernetesDiscovery {
+        private final List<Pod> pods = new CopyOnWriteArrayList<>();
+        private final AtomicInteger listed = new AtomicInteger();
+        private final AtomicInteger fallbacks = new AtomicInteger();
+        private final AtomicInteger watchFailures = new AtomicInteger();
+        private volatile ResourceInformer<Pod> informer;
+        private volatile Watcher<Pod> watcher;
+
+        TestDiscovery() {
+            cluster_name = CLUSTER;
+        }
+
+        @Override
+        protected ResourceInformer<Pod> createPodInformer(Map<String, String> labels, ScheduledExecutorService executor) {
+            assertThat(labels).containsOnly(entry(Constants.JGROUPS_CLUSTER_NAME, CLUSTER));
+            informer = new ResourceInformer<>("Pod", () -> {
+                listed.incrementAndGet();
+                return new PodListBuilder().withNewMetadata().withResourceVersion("1").endMetadata().withItems(pods).build();
+            }, (version, podWatcher) -> {
+                if (watchFailures.getAndDecrement() > 0) {
+                    throw new KubernetesClientException("watch failed");
+                }
+                watcher = podWatcher;
+                Watch watch = () -> { };
+                return watch;
+            }, executor, 200);
+            return informer;
+        }
+
+        @Override
+        public List<PhysicalAddress> findKubernetesHosts() {
+            fallbacks.incrementAndGet();
+            return toHosts(pods);
+        }
+    }
+}
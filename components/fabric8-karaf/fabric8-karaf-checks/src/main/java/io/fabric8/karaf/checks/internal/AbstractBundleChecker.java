@@ -18,15 +18,32 @@
 package io.fabric8.karaf.checks.internal;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.LongConsumer;
 
 import io.fabric8.karaf.checks.Check;
 import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
 import org.osgi.framework.Constants;
 import org.osgi.framework.wiring.BundleRevision;
 
 public abstract class AbstractBundleChecker extends AbstractChecker {
 
+    // the failing checks of the last time each bundle was checked
+    private final Map<Long, Check> failing = new ConcurrentSkipListMap<>();
+    private volatile boolean checked;
+    private volatile LongConsumer changeListener;
+
+    public AbstractBundleChecker() {
+    }
+
+    protected AbstractBundleChecker(BundleContext bundleContext) {
+        super(bundleContext);
+    }
+
     @Override
     protected List<Check> doCheck() {
         List<Check> checks = new ArrayList<>();
@@ -34,11 +51,51 @@ public abstract class AbstractBundleChecker extends AbstractChecker {
             Check check = checkBundle(b);
             if (check != null) {
                 checks.add(check);
+                failing.put(b.getBundleId(), check);
+            } else {
+                failing.remove(b.getBundleId());
             }
         }
+        failing.keySet().removeIf(id -> systemBundleContext.getBundle(id) == null);
+        checked = true;
         return checks;
     }
 
+    /**
+     * Checks the given bundles again, or all of them the first time
+     *
+     * @return the failing checks of all the bundles
+     */
+    public List<Check> checkBundles(Collection<Long> bundleIds) {
+        if (!checked) {
+            return doCheck();
+        }
+        for (Long id : bundleIds) {
+            Bundle b = systemBundleContext.getBundle(id);
+            Check check = b != null ? checkBundle(b) : null;
+            if (check != null) {
+                failing.put(id, check);
+            } else {
+                failing.remove(id);
+            }
+        }
+        return new ArrayList<>(failing.values());
+    }
+
+    /**
+     * Sets the listener told about bundles whose state changed without a bundle event
+     */
+    public void setChangeListener(LongConsumer changeListener) {
+        this.changeListener = changeListener;
+    }
+
+    protected void bundleChanged(Bundle bundle) {
+        LongConsumer listener = changeListener;
+        if (listener != null && bundle != null) {
+            listener.accept(bundle.getBundleId());
+        }
+    }
+
     protected abstract Check checkBundle(Bundle bundle);
 
     protected boolean isActive(Bundle bundle) {
@@ -39,6 +39,16 @@ public abstract class AbstractChecker implements io.fabric8.karaf.checks.HealthC
         systemBundleContext = systemBundle.getBundleContext();
     }
 
+    /**
+     * Creates a checker for the bundle of the given context, rather than the bundle which loaded the class
+     */
+    protected AbstractChecker(BundleContext bundleContext) {
+        this.bundle = bundleContext.getBundle();
+        this.bundleContext = bundleContext;
+        systemBundle = bundleContext.getBundle(0);
+        systemBundleContext = systemBundle.getBundleContext();
+    }
+
     @Override
     public List<Check> getFailingHealthChecks() {
         return doCheck();
@@ -37,6 +37,7 @@ public class BlueprintState extends AbstractBundleChecker
     @Override
     public void blueprintEvent(BlueprintEvent event) {
         states.put(event.getBundle().getBundleId(), event);
+        bundleChanged(event.getBundle());
     }
 
     @Override
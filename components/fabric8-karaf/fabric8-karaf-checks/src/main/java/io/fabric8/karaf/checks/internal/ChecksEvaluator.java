@@ -0,0 +1,274 @@
+/**
+ * Copyright 2005-2016 Red Hat, Inc.
+ *
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package io.fabric8.karaf.checks.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import io.fabric8.karaf.checks.Check;
+import io.fabric8.karaf.checks.HealthChecker;
+import io.fabric8.karaf.checks.ReadinessChecker;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.BundleListener;
+import org.osgi.framework.FrameworkEvent;
+import org.osgi.framework.FrameworkListener;
+import org.osgi.framework.ServiceEvent;
+import org.osgi.framework.ServiceListener;
+
+/**
+ * Evaluates the health and readiness checkers in the background so that the
+ * probes are answered from the last results.
+ * <p/>
+ * The checkers are evaluated again shortly after bundle, service or framework
+ * events; the bundle checkers only check the bundles which changed. All of
+ * the checkers are also evaluated periodically to notice any changes which
+ * are not signalled by an event.
+ */
+public class ChecksEvaluator implements BundleListener, ServiceListener, FrameworkListener {
+
+    public static final long DEFAULT_DELAY_MILLIS = 100;
+    public static final long DEFAULT_REFRESH_MILLIS = 10000;
+
+    private final CopyOnWriteArrayList<HealthChecker> healthCheckers;
+    private final CopyOnWriteArrayList<ReadinessChecker> readinessCheckers;
+    private final Map<Object, Evaluation> evaluations = new ConcurrentHashMap<>();
+    private final Set<Long> changedBundles = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final long delayMillis;
+    private final long refreshMillis;
+
+    private volatile boolean fullRefresh = true;
+    private volatile List<Check> failingHealthChecks;
+    private volatile List<Check> failingReadinessChecks;
+    private ScheduledExecutorService executor;
+    private BundleContext bundleContext;
+
+    public ChecksEvaluator(CopyOnWriteArrayList<HealthChecker> healthCheckers,
+                           CopyOnWriteArrayList<ReadinessChecker> readinessCheckers) {
+        this(healthCheckers, readinessCheckers, DEFAULT_DELAY_MILLIS, DEFAULT_REFRESH_MILLIS);
+    }
+
+    public ChecksEvaluator(CopyOnWriteArrayList<HealthChecker> healthCheckers,
+                           CopyOnWriteArrayList<ReadinessChecker> readinessCheckers,
+                           long delayMillis, long refreshMillis) {
+        this.healthCheckers = healthCheckers;
+        this.readinessCheckers = readinessCheckers;
+        this.delayMillis = delayMillis;
+        this.refreshMillis = refreshMillis;
+    }
+
+    public synchronized void start(BundleContext bundleContext) {
+        this.bundleContext = bundleContext;
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "fabric8-karaf-checks");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (bundleContext != null) {
+            bundleContext.addBundleListener(this);
+            bundleContext.addServiceListener(this);
+            bundleContext.addFrameworkListener(this);
+        }
+        executor.scheduleWithFixedDelay(() -> {
+            fullRefresh = true;
+            evaluate();
+        }, 0, refreshMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (bundleContext != null) {
+            bundleContext.removeBundleListener(this);
+            bundleContext.removeServiceListener(this);
+            bundleContext.removeFrameworkListener(this);
+            bundleContext = null;
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    /**
+     * Returns the failing health checks of the last evaluation
+     */
+    public List<Check> getFailingHealthChecks() {
+        List<Check> checks = failingHealthChecks;
+        if (checks == null) {
+            // not evaluated yet
+            evaluate();
+            checks = failingHealthChecks;
+        }
+        return checks;
+    }
+
+    /**
+     * Returns the failing readiness checks of the last evaluation
+     */
+    public List<Check> getFailingReadinessChecks() {
+        List<Check> checks = failingReadinessChecks;
+        if (checks == null) {
+            evaluate();
+            checks = failingReadinessChecks;
+        }
+        return checks;
+    }
+
+    /**
+     * Returns the time in nanoseconds the last evaluation of each checker took
+     */
+    public Map<String, Long> getEvaluationNanos() {
+        Map<String, Long> answer = new LinkedHashMap<>();
+        for (Evaluation evaluation : evaluations.values()) {
+            answer.put(evaluation.checker.getClass().getSimpleName(), evaluation.nanos);
+        }
+        return answer;
+    }
+
+    /**
+     * Evaluates all of the checkers again shortly, for example as they have been bound or unbound
+     */
+    public void refresh() {
+        fullRefresh = true;
+        schedule();
+    }
+
+    @Override
+    public void bundleChanged(BundleEvent event) {
+        changed(event.getBundle().getBundleId());
+    }
+
+    @Override
+    public void serviceChanged(ServiceEvent event) {
+        if (event.getServiceReference().getBundle() != null) {
+            changed(event.getServiceReference().getBundle().getBundleId());
+        } else {
+            schedule();
+        }
+    }
+
+    @Override
+    public void frameworkEvent(FrameworkEvent event) {
+        if (event.getType() == FrameworkEvent.STARTLEVEL_CHANGED || event.getType() == FrameworkEvent.STARTED) {
+            schedule();
+        }
+    }
+
+    /**
+     * Checks the given bundle again shortly
+     */
+    public void changed(long bundleId) {
+        changedBundles.add(bundleId);
+        schedule();
+    }
+
+    private void schedule() {
+        ScheduledExecutorService executor = this.executor;
+        if (executor != null && scheduled.compareAndSet(false, true)) {
+            try {
+                executor.schedule(() -> {
+                    scheduled.set(false);
+                    evaluate();
+                }, delayMillis, TimeUnit.MILLISECONDS);
+            } catch (RuntimeException e) {
+                // stopped
+                scheduled.set(false);
+            }
+        }
+    }
+
+    synchronized void evaluate() {
+        boolean full = fullRefresh;
+        fullRefresh = false;
+        Set<Long> bundles = new HashSet<>(changedBundles);
+        changedBundles.removeAll(bundles);
+
+        // a checker only counts towards the lists it is bound to, even if it implements both interfaces
+        List<HealthChecker> boundHealthCheckers = new ArrayList<>(healthCheckers);
+        List<ReadinessChecker> boundReadinessCheckers = new ArrayList<>(readinessCheckers);
+        Set<Object> checkers = Collections.newSetFromMap(new LinkedHashMap<>());
+        checkers.addAll(boundHealthCheckers);
+        checkers.addAll(boundReadinessCheckers);
+        evaluations.keySet().retainAll(checkers);
+
+        List<Check> health = new ArrayList<>();
+        List<Check> readiness = new ArrayList<>();
+        for (Object checker : checkers) {
+            boolean isHealth = boundHealthCheckers.contains(checker);
+            boolean isReadiness = boundReadinessCheckers.contains(checker);
+            Evaluation evaluation = evaluations.computeIfAbsent(checker, Evaluation::new);
+            evaluation.evaluate(full, bundles, isHealth, isReadiness);
+            if (isHealth && evaluation.health != null) {
+                health.addAll(evaluation.health);
+            }
+            if (isReadiness && evaluation.readiness != null) {
+                readiness.addAll(evaluation.readiness);
+            }
+        }
+        failingHealthChecks = Collections.unmodifiableList(health);
+        failingReadinessChecks = Collections.unmodifiableList(readiness);
+    }
+
+    private static final class Evaluation {
+        private final Object checker;
+        private List<Check> health;
+        private List<Check> readiness;
+        private volatile long nanos;
+
+        Evaluation(Object checker) {
+            this.checker = checker;
+        }
+
+        void evaluate(boolean full, Set<Long> changedBundles, boolean isHealth, boolean isReadiness) {
+            boolean incremental = checker instanceof AbstractBundleChecker && !full && health != null;
+            if (incremental && changedBundles.isEmpty()) {
+                return;
+            }
+            long start = System.nanoTime();
+            try {
+                if (incremental) {
+                    health = ((AbstractBundleChecker) checker).checkBundles(changedBundles);
+                    readiness = health;
+                } else if (checker instanceof AbstractChecker) {
+                    // the same checks are used for health and readiness
+                    health = ((AbstractChecker) checker).doCheck();
+                    readiness = health;
+                } else {
+                    health = isHealth ? ((HealthChecker) checker).getFailingHealthChecks() : null;
+                    readiness = isReadiness ? ((ReadinessChecker) checker).getFailingReadinessChecks() : null;
+                }
+            } catch (RuntimeException e) {
+                List<Check> failed = Collections.singletonList(new Check("check-failed", "Unable to run " + checker.getClass().getSimpleName() + ": " + e));
+                health = failed;
+                readiness = failed;
+            } finally {
+                nanos = System.nanoTime() - start;
+            }
+        }
+    }
+}
@@ -30,6 +30,7 @@ import org.apache.felix.scr.annotations.Deactivate;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.ReferenceCardinality;
 import org.apache.felix.scr.annotations.ReferencePolicy;
+import org.osgi.framework.FrameworkUtil;
 import org.osgi.service.http.HttpService;
 import org.osgi.service.http.NamespaceException;
 
@@ -56,6 +57,8 @@ public class ChecksService {
     String readinessCheckPath = "/readiness-check";
     String healthCheckPath = "/health-check";
 
+    private volatile ChecksEvaluator evaluator;
+
     public ChecksService() {
         bind(new FrameworkState());
         bind(new BundleState());
@@ -89,14 +92,30 @@ public class ChecksService {
 
     @Activate
     void activate(Map<String, ?> configuration) throws ServletException, NamespaceException {
-        httpService.registerServlet(readinessCheckPath, new ReadinessCheckServlet(readinessCheckers), null, null);
-        httpService.registerServlet(healthCheckPath, new HealthCheckServlet(healthCheckers), null, null);
+        ChecksEvaluator evaluator = new ChecksEvaluator(healthCheckers, readinessCheckers);
+        this.evaluator = evaluator;
+        for (Object checker : healthCheckers) {
+            listenForChanges(checker);
+        }
+        for (Object checker : readinessCheckers) {
+            listenForChanges(checker);
+        }
+        evaluator.start(FrameworkUtil.getBundle(getClass()).getBundleContext());
+
+        httpService.registerServlet(readinessCheckPath, new ReadinessCheckServlet(evaluator), null, null);
+        httpService.registerServlet(healthCheckPath, new HealthCheckServlet(evaluator), null, null);
     }
 
     @Deactivate
     void deactivate() {
         httpService.unregister(readinessCheckPath);
         httpService.unregister(healthCheckPath);
+
+        ChecksEvaluator evaluator = this.evaluator;
+        this.evaluator = null;
+        if (evaluator != null) {
+            evaluator.stop();
+        }
     }
 
     void bindHttpService(HttpService httpService) {
@@ -108,15 +127,34 @@ public class ChecksService {
 
     void bindReadinessCheckers(ReadinessChecker value) {
         readinessCheckers.add(value);
+        checkersChanged(value);
     }
     void unbindReadinessCheckers(ReadinessChecker value) {
         readinessCheckers.remove(value);
+        checkersChanged(null);
     }
 
     void bindHealthCheckers(HealthChecker value) {
         healthCheckers.add(value);
+        checkersChanged(value);
     }
     void unbindHealthCheckers(HealthChecker value) {
         healthCheckers.remove(value);
+        checkersChanged(null);
+    }
+
+    private void checkersChanged(Object bound) {
+        ChecksEvaluator evaluator = this.evaluator;
+        if (evaluator != null) {
+            listenForChanges(bound);
+            evaluator.refresh();
+        }
+    }
+
+    private void listenForChanges(Object checker) {
+        ChecksEvaluator evaluator = this.evaluator;
+        if (evaluator != null && checker instanceof AbstractBundleChecker) {
+            ((AbstractBundleChecker) checker).setChangeListener(evaluator::changed);
+        }
     }
 }
@@ -36,27 +36,23 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.Map;
 
 import io.fabric8.karaf.checks.Check;
-import io.fabric8.karaf.checks.HealthChecker;
 
 public class HealthCheckServlet extends HttpServlet {
 
-    private final CopyOnWriteArrayList<HealthChecker> checkers;
+    private final ChecksEvaluator evaluator;
 
-    public HealthCheckServlet(CopyOnWriteArrayList<HealthChecker> checkers) {
-        this.checkers = checkers;
+    public HealthCheckServlet(ChecksEvaluator evaluator) {
+        this.evaluator = evaluator;
     }
 
     @Override
     protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
-        List<Check> checks = new ArrayList<>();
-        for (HealthChecker checker : checkers) {
-            checks.addAll(checker.getFailingHealthChecks());
-        }
+        // the checks are evaluated in the background
+        List<Check> checks = evaluator.getFailingHealthChecks();
         if (checks.isEmpty()) {
             resp.getWriter().println("HEALTHY");
         } else {
@@ -66,6 +62,11 @@ public class HealthCheckServlet extends HttpServlet {
                 resp.getWriter().println(check.getName() + ": " + check.getLongDescription());
             }
         }
+        if (Boolean.parseBoolean(req.getParameter("verbose"))) {
+            for (Map.Entry<String, Long> entry : evaluator.getEvaluationNanos().entrySet()) {
+                resp.getWriter().println(entry.getKey() + " evaluated in " + (entry.getValue() / 1000) + " us");
+            }
+        }
     }
 
 }
@@ -36,27 +36,23 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.Map;
 
 import io.fabric8.karaf.checks.Check;
-import io.fabric8.karaf.checks.ReadinessChecker;
 
 public class ReadinessCheckServlet extends HttpServlet {
 
-    private final CopyOnWriteArrayList<ReadinessChecker> checkers;
+    private final ChecksEvaluator evaluator;
 
-    public ReadinessCheckServlet(CopyOnWriteArrayList<ReadinessChecker> readinessCheckers) {
-        this.checkers = readinessCheckers;
+    public ReadinessCheckServlet(ChecksEvaluator evaluator) {
+        this.evaluator = evaluator;
     }
 
     @Override
     protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
-        List<Check> checks = new ArrayList<>();
-        for (ReadinessChecker checker : checkers) {
-            checks.addAll(checker.getFailingReadinessChecks());
-        }
+        // the checks are evaluated in the background
+        List<Check> checks = evaluator.getFailingReadinessChecks();
         if (checks.isEmpty()) {
             resp.getWriter().println("READY");
         } else {
@@ -66,6 +62,11 @@ public class ReadinessCheckServlet extends HttpServlet {
                 resp.getWriter().println(check.getName() + ": " + check.getLongDescription());
             }
         }
+        if (Boolean.parseBoolean(req.getParameter("verbose"))) {
+            for (Map.Entry<String, Long> entry : evaluator.getEvaluationNanos().entrySet()) {
+                resp.getWriter().println(entry.getKey() + " evaluated in " + (entry.getValue() / 1000) + " us");
+            }
+        }
     }
 
 }
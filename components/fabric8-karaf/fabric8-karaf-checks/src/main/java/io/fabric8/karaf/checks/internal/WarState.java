@@ -37,6 +37,7 @@ public class WarState extends AbstractBundleChecker
     @Override
     public void webEvent(WebEvent event) {
         states.put(event.getBundle().getBundleId(), event);
+        bundleChanged(event.getBundle());
     }
 
     @Override
@@ -0,0 +1,238 @@
+/**
+ * Copyright 2005-2016 Red Hat, Inc.
+ *
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package io.fabric8.karaf.checks.internal;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import io.fabric8.karaf.checks.Check;
+import io.fabric8.karaf.checks.HealthChecker;
+import io.fabric8.karaf.checks.ReadinessChecker;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+
+public class ChecksEvaluatorTest {
+    private static final long DELAY_MILLIS = 200;
+    private static final long TIMEOUT_MILLIS = 10000;
+
+    private final CopyOnWriteArrayList<HealthChecker> healthCheckers = new CopyOnWriteArrayList<>();
+    private final CopyOnWriteArrayList<ReadinessChecker> readinessCheckers = new CopyOnWriteArrayList<>();
+    private final ChecksEvaluator evaluator = new ChecksEvaluator(healthCheckers, readinessCheckers, DELAY_MILLIS, 3600000);
+
+    @After
+    public void tearDown() {
+        evaluator.stop();
+    }
+
+    @Test
+    public void testChecksCountOnlyTowardsTheListTheCheckerIsBoundTo() throws Exception {
+        FakeChecker healthOnly = new FakeChecker("health-only");
+        FakeChecker readinessOnly = new FakeChecker("readiness-only");
+        FakeChecker both = new FakeChecker("both");
+        healthCheckers.add(healthOnly);
+        healthCheckers.add(both);
+        readinessCheckers.add(readinessOnly);
+        readinessCheckers.add(both);
+
+        evaluator.start(null);
+        waitFor(() -> both.healthCalls.get() > 0);
+
+        Assert.assertEquals(Arrays.asList("health-only", "both"), names(evaluator.getFailingHealthChecks()));
+        Assert.assertEquals(Arrays.asList("both", "readiness-only"), names(evaluator.getFailingReadinessChecks()));
+        Assert.assertEquals(0, healthOnly.readinessCalls.get());
+        Assert.assertEquals(0, readinessOnly.healthCalls.get());
+    }
+
+    @Test
+    public void testUnbindingFromOneListKeepsTheOther() throws Exception {
+        FakeChecker both = new FakeChecker("both");
+        healthCheckers.add(both);
+        readinessCheckers.add(both);
+        evaluator.start(null);
+        waitFor(() -> both.healthCalls.get() > 0);
+        Assert.assertEquals(Collections.singletonList("both"), names(evaluator.getFailingHealthChecks()));
+        Assert.assertEquals(Collections.singletonList("both"), names(evaluator.getFailingReadinessChecks()));
+
+        readinessCheckers.remove(both);
+        evaluator.refresh();
+        waitFor(() -> evaluator.getFailingReadinessChecks().isEmpty());
+        Assert.assertEquals(Collections.singletonList("both"), names(evaluator.getFailingHealthChecks()));
+
+        healthCheckers.remove(both);
+        evaluator.refresh();
+        waitFor(() -> evaluator.getFailingHealthChecks().isEmpty());
+        Assert.assertTrue(evaluator.getEvaluationNanos().isEmpty());
+    }
+
+    @Test
+    public void testEventsAreDebounced() throws Exception {
+        FakeChecker checker = new FakeChecker("checker");
+        healthCheckers.add(checker);
+        evaluator.start(null);
+        waitFor(() -> checker.healthCalls.get() == 1);
+
+        for (long id = 1; id <= 50; id++) {
+            evaluator.changed(id);
+        }
+        waitFor(() -> checker.healthCalls.get() == 2);
+        Thread.sleep(DELAY_MILLIS * 3);
+        Assert.assertEquals(2, checker.healthCalls.get());
+    }
+
+    @Test
+    public void testBundleCheckersOnlyCheckTheChangedBundlesUntilAFullRefresh() throws Exception {
+        FakeBundleChecker checker = new FakeBundleChecker(createBundleContext(1, 2, 3));
+        checker.failing.add(2L);
+        healthCheckers.add(checker);
+        readinessCheckers.add(checker);
+        evaluator.start(null);
+        waitFor(() -> checker.checked.size() == 3);
+        Assert.assertEquals(Collections.singletonList("bundle-2"), names(evaluator.getFailingHealthChecks()));
+
+        // only the changed bundle is checked again, the failures of the others are kept
+        checker.checked.clear();
+        checker.failing.add(3L);
+        evaluator.changed(3);
+        waitFor(() -> checker.checked.size() == 1);
+        Assert.assertEquals(Collections.singletonList(3L), checker.checked);
+        waitFor(() -> evaluator.getFailingReadinessChecks().size() == 2);
+        Assert.assertEquals(names(evaluator.getFailingHealthChecks()), names(evaluator.getFailingReadinessChecks()));
+
+        // a full refresh checks all of them again
+        checker.checked.clear();
+        checker.failing.clear();
+        evaluator.refresh();
+        waitFor(() -> checker.checked.size() == 3);
+        waitFor(() -> evaluator.getFailingHealthChecks().isEmpty());
+        Assert.assertTrue(evaluator.getFailingReadinessChecks().isEmpty());
+    }
+
+    protected static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long end = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > end) {
+                Assert.fail("Timed out waiting for the checks to be evaluated");
+            }
+            Thread.sleep(20);
+        }
+    }
+
+    protected static List<String> names(List<Check> checks) {
+        List<String> answer = new ArrayList<>();
+        for (Check check : checks) {
+            answer.add(check.getName());
+        }
+        return answer;
+    }
+
+    /**
+     * A context whose bundles are only known by their ids, with bundle 0 as the system bundle
+     */
+    protected static BundleContext createBundleContext(long... ids) {
+        Map<Long, Bundle> bundles = new TreeMap<>();
+        BundleContext[] context = new BundleContext[1];
+        for (long id : ids) {
+            bundles.put(id, createBundle(id, context));
+        }
+        bundles.put(0L, createBundle(0, context));
+        context[0] = (BundleContext) Proxy.newProxyInstance(BundleContext.class.getClassLoader(), new Class[]{BundleContext.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getBundle":
+                            return bundles.get(args == null ? 0L : (Long) args[0]);
+                        case "getBundles":
+                            List<Bundle> answer = new ArrayList<>(bundles.values());
+                            answer.remove(bundles.get(0L));
+                            return answer.toArray(new Bundle[answer.size()]);
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+        return context[0];
+    }
+
+    protected static Bundle createBundle(long id, BundleContext[] context) {
+        return (Bundle) Proxy.newProxyInstance(Bundle.class.getClassLoader(), new Class[]{Bundle.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getBundleId":
+                            return id;
+                        case "getBundleContext":
+                            return context[0];
+                        case "hashCode":
+                            return Long.hashCode(id);
+                        case "equals":
+                            return proxy == args[0];
+                        case "toString":
+                            return "bundle-" + id;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    private static class FakeChecker implements HealthChecker, ReadinessChecker {
+        private final String name;
+        private final AtomicInteger healthCalls = new AtomicInteger();
+        private final AtomicInteger readinessCalls = new AtomicInteger();
+
+        FakeChecker(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public List<Check> getFailingHealthChecks() {
+            healthCalls.incrementAndGet();
+            return Collections.singletonList(new Check(name, "unhealthy"));
+        }
+
+        @Override
+        public List<Check> getFailingReadinessChecks() {
+            readinessCalls.incrementAndGet();
+            return Collections.singletonList(new Check(name, "not ready"));
+        }
+    }
+
+    private static class FakeBundleChecker extends AbstractBundleChecker {
+        private final List<Long> checked = new CopyOnWriteArrayList<>();
+        private final List<Long> failing = new CopyOnWriteArrayList<>();
+
+        FakeBundleChecker(BundleContext bundleContext) {
+            super(bundleContext);
+        }
+
+        @Override
+        protected Check checkBundle(Bundle bundle) {
+            checked.add(bundle.getBundleId());
+            return failing.contains(bundle.getBundleId()) ? new Check("bundle-" + bundle.getBundleId(), "failing") : null;
+        }
+    }
+}
@@ -22,7 +22,14 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
 import io.fabric8.kubernetes.api.model.ConfigMap;
@@ -49,6 +56,8 @@ import org.slf4j.LoggerFactory;
 import static io.fabric8.karaf.cm.KubernetesConstants.CM_META_KEYS;
 import static io.fabric8.karaf.cm.KubernetesConstants.FABRIC8_CM_BRIDGE_ENABLED;
 import static io.fabric8.karaf.cm.KubernetesConstants.FABRIC8_CM_BRIDGE_ENABLED_DEFAULT;
+import static io.fabric8.karaf.cm.KubernetesConstants.FABRIC8_CM_BRIDGE_THREADS;
+import static io.fabric8.karaf.cm.KubernetesConstants.FABRIC8_CM_BRIDGE_THREADS_DEFAULT;
 import static io.fabric8.karaf.cm.KubernetesConstants.FABRIC8_CONFIG_MERGE;
 import static io.fabric8.karaf.cm.KubernetesConstants.FABRIC8_CONFIG_MERGE_DEFAULT;
 import static io.fabric8.karaf.cm.KubernetesConstants.FABRIC8_CONFIG_META;
@@ -85,7 +94,7 @@ import static io.fabric8.kubernetes.client.utils.Utils.getSystemPropertyOrEnvVar
 public class KubernetesConfigAdminBridge implements Watcher<ConfigMap> {
     private static final Logger LOGGER = LoggerFactory.getLogger(KubernetesConfigAdminBridge.class);
 
-    private final Object lock;
+    private final Map<String, PendingEvent> pendingEvents;
     private final AtomicReference<ConfigurationAdmin> configAdmin;
     private final AtomicReference<KubernetesClient> kubernetesClient;
 
@@ -96,10 +105,12 @@ public class KubernetesConfigAdminBridge implements Watcher<ConfigMap> {
     private boolean configMerge;
     private boolean configMeta;
     private boolean configWatch;
+    private int threads;
+    private ExecutorService[] stripes;
 
     public KubernetesConfigAdminBridge() {
         this.enabled = FABRIC8_CM_BRIDGE_ENABLED_DEFAULT;
-        this.lock = new Object();
+        this.pendingEvents = new ConcurrentHashMap<>();
         this.configAdmin = new AtomicReference<>();
         this.kubernetesClient = new AtomicReference<>();
         this.configMerge = FABRIC8_CONFIG_MERGE_DEFAULT;
@@ -108,6 +119,7 @@ public class KubernetesConfigAdminBridge implements Watcher<ConfigMap> {
         this.watch = null;
         this.pidLabel = FABRIC8_PID_LABEL_DEFAULT;
         this.filters = null;
+        this.threads = FABRIC8_CM_BRIDGE_THREADS_DEFAULT;
     }
 
     // ***********************
@@ -121,6 +133,7 @@ public class KubernetesConfigAdminBridge implements Watcher<ConfigMap> {
         configMerge = getSystemPropertyOrEnvVar(FABRIC8_CONFIG_MERGE, configMerge);
         configMeta = getSystemPropertyOrEnvVar(FABRIC8_CONFIG_META, configMeta);
         configWatch = getSystemPropertyOrEnvVar(FABRIC8_CONFIG_WATCH, configWatch);
+        threads = Math.max(1, Integer.parseInt(getSystemPropertyOrEnvVar(FABRIC8_CM_BRIDGE_THREADS, String.valueOf(threads)).trim()));
         filters = new HashMap<>();
 
         String filterList = getSystemPropertyOrEnvVar(FABRIC8_PID_FILTERS);
@@ -138,15 +151,25 @@ public class KubernetesConfigAdminBridge implements Watcher<ConfigMap> {
         }
 
         if (enabled) {
-            synchronized (lock) {
-                watchConfigMapList();
+            stripes = new ExecutorService[threads];
+            for (int i = 0; i < threads; i++) {
+                final String name = "KubernetesConfigAdminBridge-" + i;
+                stripes[i] = Executors.newSingleThreadExecutor(r -> {
+                    Thread thread = new Thread(r, name);
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
 
-                ConfigMapList list = getConfigMapList();
-                if (list != null) {
-                    for (ConfigMap map : list.getItems()) {
-                        updateConfig(map);
-                    }
+            watchConfigMapList();
+
+            ConfigMapList list = getConfigMapList();
+            if (list != null) {
+                for (ConfigMap map : list.getItems()) {
+                    enqueue(Action.ADDED, map);
                 }
+                // the configurations are available once we are activated
+                awaitPendingEvents();
             }
         }
     }
@@ -156,6 +179,13 @@ public class KubernetesConfigAdminBridge implements Watcher<ConfigMap> {
         if (watch != null) {
             watch.close();
         }
+        if (stripes != null) {
+            for (ExecutorService stripe : stripes) {
+                stripe.shutdownNow();
+            }
+            stripes = null;
+        }
+        pendingEvents.clear();
     }
 
     // ***********************
@@ -184,24 +214,68 @@ public class KubernetesConfigAdminBridge implements Watcher<ConfigMap> {
 
     @Override
     public void eventReceived(Action action, ConfigMap map) {
-        synchronized (lock) {
-            switch (action) {
-            case ADDED:
-            case MODIFIED:
-                updateConfig(map);
-                break;
-            case DELETED:
-            case ERROR:
-                deleteConfig(map);
-                break;
-            }
-        }
+        enqueue(action, map);
     }
 
     @Override
     public void onClose(KubernetesClientException e) {
     }
 
+    // **********************
+    // Event pipeline
+    // **********************
+
+    /*
+     * Events of the same pid are processed in order by the same thread while
+     * different pids are processed concurrently. If more events arrive for a
+     * pid before its last event has been processed only the latest one is
+     * processed, as it holds the current state of the ConfigMap.
+     */
+    private void enqueue(Action action, ConfigMap map) {
+        final ExecutorService[] executors = stripes;
+        final String pid = map.getMetadata().getLabels().get(pidLabel);
+        if (executors == null || pid == null) {
+            return;
+        }
+        if (pendingEvents.put(pid, new PendingEvent(action, map)) == null) {
+            executors[Math.abs(pid.hashCode() % executors.length)].execute(() -> processPendingEvent(pid));
+        } else {
+            LOGGER.debug("Coalescing {} event of configuration pid={}", action, pid);
+        }
+    }
+
+    private void processPendingEvent(String pid) {
+        PendingEvent event = pendingEvents.remove(pid);
+        if (event == null) {
+            return;
+        }
+        switch (event.action) {
+        case ADDED:
+        case MODIFIED:
+            updateConfig(event.map);
+            break;
+        case DELETED:
+        case ERROR:
+            deleteConfig(event.map);
+            break;
+        }
+    }
+
+    private void awaitPendingEvents() {
+        final ExecutorService[] executors = stripes;
+        final CountDownLatch latch = new CountDownLatch(executors.length);
+        for (ExecutorService executor : executors) {
+            executor.execute(latch::countDown);
+        }
+        try {
+            if (!latch.await(1, TimeUnit.MINUTES)) {
+                LOGGER.warn("Timed out waiting for the configurations to be updated");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
     // **********************
     // ConfigAdmin
     // **********************
@@ -221,7 +295,14 @@ public class KubernetesConfigAdminBridge implements Watcher<ConfigMap> {
             }
 
             final Dictionary<String, Object> props = config.getProperties();
-            final Hashtable<String, Object> configAdmCfg = props != null ? new Hashtable<String, Object>() : null;
+            if (props != null) {
+                Long oldVer = (Long)props.get(FABRIC8_K8S_META_RESOURCE_VERSION);
+                if (oldVer != null && (oldVer >= ver)) {
+                    LOGGER.debug("Ignoring configuration pid={}, oldVersion={} newVersion={} (no changes)", config.getPid(), oldVer, ver);
+                    return;
+                }
+            }
+
             Hashtable<String, Object> configMapCfg = new Hashtable<>();
 
             /*
@@ -270,22 +351,9 @@ public class KubernetesConfigAdminBridge implements Watcher<ConfigMap> {
                 ? Boolean.valueOf(configMapData.get(FABRIC8_CONFIG_MERGE))
                 : configMerge;
 
-            if (configAdmCfg != null) {
-                Long oldVer = (Long)props.get(FABRIC8_K8S_META_RESOURCE_VERSION);
-                if (oldVer != null && (oldVer >= ver)) {
-                    LOGGER.debug("Ignoring configuration pid={}, oldVersion={} newVersion={} (no changes)", config.getPid(), oldVer, ver);
-                    return;
-                }
-
-                for (Enumeration<String> e = props.keys(); e.hasMoreElements();) {
-                    String key = e.nextElement();
-                    Object val = props.get(key);
-                    configAdmCfg.put(key, val);
-                }
-            }
-
-            if (shouldUpdate(configAdmCfg, configMapCfg)) {
-                LOGGER.debug("Updating configuration pid={}", config.getPid());
+            Set<String> changedKeys = props != null ? changedKeys(props, configMapCfg, merge) : null;
+            if (changedKeys == null || !changedKeys.isEmpty()) {
+                LOGGER.debug("Updating configuration pid={}, changed keys={}", config.getPid(), changedKeys);
 
                 if (meta) {
                     configMapCfg.put(FABRIC8_PID, pid);
@@ -294,7 +362,12 @@ public class KubernetesConfigAdminBridge implements Watcher<ConfigMap> {
                     configMapCfg.put(FABRIC8_K8S_META_NAMESPACE, map.getMetadata().getNamespace());
                 }
 
-                if (merge && configAdmCfg != null) {
+                if (merge && props != null) {
+                    Hashtable<String, Object> configAdmCfg = new Hashtable<>();
+                    for (Enumeration<String> e = props.keys(); e.hasMoreElements();) {
+                        String key = e.nextElement();
+                        configAdmCfg.put(key, props.get(key));
+                    }
                     for(Map.Entry<String, Object> entry : configMapCfg.entrySet()) {
                         // Do not override ConfigAdmin meta data
                         if (!CM_META_KEYS.contains(entry.getKey())) {
@@ -407,27 +480,38 @@ public class KubernetesConfigAdminBridge implements Watcher<ConfigMap> {
         }
     }
 
-    private boolean shouldUpdate(Hashtable<String, Object> configAdmCfg, Hashtable<String, Object> configMapCfg) {
-        if (configAdmCfg == null) {
-            return true;
-        }
-
+    /**
+     * Returns the keys whose effective value would change if the ConfigMap
+     * data was applied to the ConfigAdmin properties, ignoring the meta data.
+     * Keys which are not in the ConfigMap are only removed if it is not merged.
+     */
+    static Set<String> changedKeys(Dictionary<String, Object> configAdmCfg, Map<String, Object> configMapCfg, boolean merge) {
+        Set<String> answer = new TreeSet<>();
         for(Map.Entry<String, Object> entry : configMapCfg.entrySet()) {
             // Do not compare meta data
-            if (FABRIC8_META_KEYS.contains(entry.getKey())) {
-                continue;
-            }
-
-            Object value = configAdmCfg.get(entry.getKey());
-            if (value == null) {
-                return true;
+            if (!FABRIC8_META_KEYS.contains(entry.getKey()) && !Objects.equals(configAdmCfg.get(entry.getKey()), entry.getValue())) {
+                answer.add(entry.getKey());
             }
-            if (!value.equals(entry.getValue())) {
-                return true;
+        }
+        if (!merge) {
+            for (Enumeration<String> e = configAdmCfg.keys(); e.hasMoreElements();) {
+                String key = e.nextElement();
+                if (!FABRIC8_META_KEYS.contains(key) && !configMapCfg.containsKey(key)) {
+                    answer.add(key);
+                }
             }
         }
+        return answer;
+    }
+
+    private static final class PendingEvent {
+        private final Action action;
+        private final ConfigMap map;
 
-        return false;
+        PendingEvent(Action action, ConfigMap map) {
+            this.action = action;
+            this.map = map;
+        }
     }
 }
 
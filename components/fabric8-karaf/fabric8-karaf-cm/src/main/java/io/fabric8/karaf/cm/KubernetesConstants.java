@@ -27,6 +27,8 @@ final class KubernetesConstants {
     public static final Boolean FABRIC8_CONFIG_PLUGIN_ENABLED_DEFAULT = false;
     public static final String FABRIC8_CM_BRIDGE_ENABLED = "fabric8.cm.bridge.enabled";
     public static final Boolean FABRIC8_CM_BRIDGE_ENABLED_DEFAULT = true;
+    public static final String FABRIC8_CM_BRIDGE_THREADS = "fabric8.cm.bridge.threads";
+    public static final int FABRIC8_CM_BRIDGE_THREADS_DEFAULT = 4;
     public static final String FABRIC8_CONFIG_WATCH = "fabric8.config.watch";
     public static final Boolean FABRIC8_CONFIG_WATCH_DEFAULT = true;
     public static final String FABRIC8_CONFIG_MERGE = "fabric8.config.merge";
@@ -15,14 +15,32 @@
  */
 package io.fabric8.karaf.cm;
 
+import java.util.Dictionary;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.Map;
+
+import io.fabric8.kubernetes.api.model.ConfigMap;
+import io.fabric8.kubernetes.api.model.ConfigMapBuilder;
 import io.fabric8.kubernetes.api.model.ConfigMapList;
+import io.fabric8.kubernetes.api.model.ConfigMapListBuilder;
 import io.fabric8.kubernetes.client.server.mock.KubernetesMockServer;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
+import org.osgi.service.cm.Configuration;
 import org.osgi.service.cm.ConfigurationAdmin;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
 
 public class KubernetesConfigAdminBridgeTest {
     private static final Logger LOGGER = LoggerFactory.getLogger(KubernetesConfigAdminBridgeTest.class);
@@ -76,5 +94,78 @@ public class KubernetesConfigAdminBridgeTest {
 
         kcab.activate();
     }
+
+    @Test
+    public void testChangedKeys() {
+        Hashtable<String, Object> configAdmCfg = new Hashtable<>();
+        configAdmCfg.put("service.pid", "my.pid");
+        configAdmCfg.put("a", "1");
+        configAdmCfg.put("b", "2");
+
+        Map<String, Object> configMapCfg = new HashMap<>();
+        configMapCfg.put("a", "1");
+        configMapCfg.put("fabric8.config.merge", "false");
+        assertThat(KubernetesConfigAdminBridge.changedKeys(configAdmCfg, configMapCfg, true)).isEmpty();
+        assertThat(KubernetesConfigAdminBridge.changedKeys(configAdmCfg, configMapCfg, false)).containsOnly("b");
+
+        configMapCfg.put("a", "3");
+        configMapCfg.put("c", "4");
+        assertThat(KubernetesConfigAdminBridge.changedKeys(configAdmCfg, configMapCfg, true)).containsOnly("a", "c");
+    }
+
+    @Test
+    public void testOnlyUpdatesChangedConfigurations() throws Exception {
+        System.setProperty("fabric8.pid.filters", "");
+        KubernetesMockServer plainServer = new KubernetesMockServer(false);
+
+        ConfigMap unchanged = createConfigMap("unchanged", "2");
+        ConfigMap changed = createConfigMap("changed", "3");
+        plainServer.expect().get().withPath("/api/v1/namespaces/test/configmaps?labelSelector=karaf.pid&watch=true").andReturnChunked(200).always();
+        plainServer.expect().get().withPath("/api/v1/namespaces/test/configmaps?labelSelector=karaf.pid")
+            .andReturn(200, new ConfigMapListBuilder().withItems(unchanged, changed).build()).once();
+
+        Configuration unchangedConfig = createConfiguration("unchanged");
+        Configuration changedConfig = createConfiguration("changed");
+        ConfigurationAdmin configAdmin = mock(ConfigurationAdmin.class);
+        when(configAdmin.listConfigurations("(fabric8.pid=unchanged)")).thenReturn(new Configuration[] { unchangedConfig });
+        when(configAdmin.listConfigurations("(fabric8.pid=changed)")).thenReturn(new Configuration[] { changedConfig });
+
+        KubernetesConfigAdminBridge kcab = new KubernetesConfigAdminBridge();
+        kcab.bindConfigAdmin(configAdmin);
+        kcab.bindKubernetesClient(plainServer.createClient());
+        try {
+            kcab.activate();
+
+            verify(unchangedConfig, never()).update(any(Dictionary.class));
+            ArgumentCaptor<Dictionary> captor = ArgumentCaptor.forClass(Dictionary.class);
+            verify(changedConfig, times(1)).update(captor.capture());
+            assertThat(captor.getValue().get("b")).isEqualTo("3");
+            assertThat(captor.getValue().get("fabric8.k8s.meta.resourceVersion")).isEqualTo(5L);
+        } finally {
+            kcab.deactivate();
+        }
+    }
+
+    private static ConfigMap createConfigMap(String pid, String b) {
+        return new ConfigMapBuilder()
+            .withNewMetadata().withName(pid).withNamespace("test").withResourceVersion("5").addToLabels("karaf.pid", pid).endMetadata()
+            .addToData("a", "1")
+            .addToData("b", b)
+            .build();
+    }
+
+    private static Configuration createConfiguration(String pid) {
+        Hashtable<String, Object> props = new Hashtable<>();
+        props.put("service.pid", pid);
+        props.put("fabric8.pid", pid);
+        props.put("fabric8.k8s.meta.resourceVersion", 4L);
+        props.put("a", "1");
+        props.put("b", "2");
+
+        Configuration config = mock(Configuration.class);
+        when(config.getPid()).thenReturn(pid);
+        when(config.getProperties()).thenReturn(props);
+        return config;
+    }
 }
 
@@ -18,12 +18,11 @@ package io.fabric8.karaf.core.properties;
 import java.util.Dictionary;
 import java.util.Enumeration;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 import io.fabric8.karaf.core.Support;
 import io.fabric8.karaf.core.properties.function.PropertiesFunction;
-import org.apache.commons.lang3.text.StrLookup;
-import org.apache.commons.lang3.text.StrSubstitutor;
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.ConfigurationPolicy;
 import org.apache.felix.scr.annotations.Reference;
@@ -51,29 +50,51 @@ public class PlaceholderResolverImpl implements PlaceholderResolver {
     public static final String DEFAULT_PLACEHOLDER_PREFIX =  "$[";
     public static final String DEFAULT_PLACEHOLDER_SUFFIX =  "]";
 
+    /*
+     * The strings are parsed once into templates, up to this many, while strings
+     * without placeholders are not kept at all
+     */
+    static final int MAX_TEMPLATES = 10000;
+
     private final CopyOnWriteArrayList<PropertiesFunction> functions;
-    private final StrSubstitutor substitutor;
+    private final Map<String, PropertiesFunction> functionsByName;
+    private final Map<String, PlaceholderTemplate> templates;
+    private final Map<String, String[]> references;
+    private final String prefix;
+    private final String suffix;
+    private final PlaceholderTemplate.Context context;
 
     public PlaceholderResolverImpl() {
         this.functions = new CopyOnWriteArrayList<>();
-        this.substitutor = Support.createStrSubstitutor(
-            getSystemPropertyOrEnvVar(PLACEHOLDER_PREFIX, DEFAULT_PLACEHOLDER_PREFIX),
-            getSystemPropertyOrEnvVar(PLACEHOLDER_SUFFIX, DEFAULT_PLACEHOLDER_SUFFIX),
-            new StrLookup<String>() {
-                @Override
-                public String lookup(String value) {
-                    return resolve(value);
-                }
-        });
+        this.functionsByName = new ConcurrentHashMap<>();
+        this.templates = new ConcurrentHashMap<>();
+        this.references = new ConcurrentHashMap<>();
+        this.prefix = getSystemPropertyOrEnvVar(PLACEHOLDER_PREFIX, DEFAULT_PLACEHOLDER_PREFIX);
+        this.suffix = getSystemPropertyOrEnvVar(PLACEHOLDER_SUFFIX, DEFAULT_PLACEHOLDER_SUFFIX);
+        this.context = new PlaceholderTemplate.Context() {
+            @Override
+            public String lookup(String name) {
+                return resolve(name);
+            }
+
+            @Override
+            public PlaceholderTemplate compile(String value) {
+                return getTemplate(value);
+            }
+        };
     }
 
     @Override
     public String resolve(String value) {
-        String[] resolvers = Support.before(value, ":").split("\\+");
-        String remainder = Support.after(value, ":");
+        String[] reference = getReference(value);
+        if (reference == null) {
+            return null;
+        }
 
-        for (String resolver : resolvers) {
-            PropertiesFunction function = findFunction(resolver);
+        // the function names followed by what to apply the first function to
+        String remainder = reference[reference.length - 1];
+        for (int i = 0; i < reference.length - 1; i++) {
+            PropertiesFunction function = functionsByName.get(reference[i]);
 
             if (function == null) {
                 value = null;
@@ -93,12 +114,33 @@ public class PlaceholderResolverImpl implements PlaceholderResolver {
 
     @Override
     public String replace(String value) {
-        return substitutor.replace(value);
+        if (value == null) {
+            return null;
+        }
+        PlaceholderTemplate template = getTemplate(value);
+        if (template == null) {
+            return value;
+        }
+        StringBuilder sb = new StringBuilder(value.length());
+        return template.appendTo(sb, context) ? sb.toString() : value;
     }
 
     @Override
     public boolean replaceIn(StringBuilder value) {
-        return substitutor.replaceIn(value);
+        if (value == null) {
+            return false;
+        }
+        PlaceholderTemplate template = getTemplate(value.toString());
+        if (template == null) {
+            return false;
+        }
+        StringBuilder sb = new StringBuilder(value.length());
+        if (template.appendTo(sb, context)) {
+            value.setLength(0);
+            value.append(sb);
+            return true;
+        }
+        return false;
     }
 
     @Override
@@ -108,14 +150,11 @@ public class PlaceholderResolverImpl implements PlaceholderResolver {
         Enumeration<String> keys = dictionary.keys();
         while(keys.hasMoreElements()) {
             final String key = keys.nextElement();
-            final Object val = dictionary.get(key);
+            final String val = replaceValue(dictionary.get(key));
 
-            if (val instanceof String) {
-                StringBuilder sb = Support.acquireStringBuilder((String)val);
-                if (substitutor.replaceIn(sb)) {
-                    replacedCount++;
-                    dictionary.put(key, sb.toString());
-                }
+            if (val != null) {
+                replacedCount++;
+                dictionary.put(key, val);
             }
         }
 
@@ -125,15 +164,12 @@ public class PlaceholderResolverImpl implements PlaceholderResolver {
     @Override
     public boolean replaceAll(Map<String, Object> dictionary) {
         int replacedCount = 0;
-        for(String key : dictionary.keySet()) {
-            final Object val = dictionary.get(key);
-
-            if (val instanceof String) {
-                StringBuilder sb = Support.acquireStringBuilder((String)val);
-                if (substitutor.replaceIn(sb)) {
-                    replacedCount++;
-                    dictionary.put(key, sb.toString());
-                }
+        for (Map.Entry<String, Object> entry : dictionary.entrySet()) {
+            final String val = replaceValue(entry.getValue());
+
+            if (val != null) {
+                replacedCount++;
+                entry.setValue(val);
             }
         }
 
@@ -145,23 +181,99 @@ public class PlaceholderResolverImpl implements PlaceholderResolver {
     // ****************************
 
     protected void bindFunction(PropertiesFunction function) {
-        functions.addIfAbsent(function);
+        if (functions.addIfAbsent(function)) {
+            updateFunctionsByName();
+        }
     }
 
     protected void unbindFunction(PropertiesFunction function) {
-        functions.remove(function);
+        if (functions.remove(function)) {
+            updateFunctionsByName();
+        }
     }
 
     // ****************************
     // Helpers
     // ****************************
 
-    private PropertiesFunction findFunction(String name) {
+    private synchronized void updateFunctionsByName() {
+        // the first function bound with a name is used
         for (PropertiesFunction fun : functions) {
-            if (name.equals(fun.getName())) {
-                return fun;
+            functionsByName.putIfAbsent(fun.getName(), fun);
+        }
+        for (Map.Entry<String, PropertiesFunction> entry : functionsByName.entrySet()) {
+            if (!functions.contains(entry.getValue())) {
+                PropertiesFunction replacement = null;
+                for (PropertiesFunction fun : functions) {
+                    if (entry.getKey().equals(fun.getName())) {
+                        replacement = fun;
+                        break;
+                    }
+                }
+                if (replacement != null) {
+                    entry.setValue(replacement);
+                } else {
+                    functionsByName.remove(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the replaced value or null if the value is not a string or has
+     * nothing to replace
+     */
+    private String replaceValue(Object value) {
+        if (value instanceof String) {
+            PlaceholderTemplate template = getTemplate((String) value);
+            if (template != null) {
+                StringBuilder sb = Support.acquireStringBuilder();
+                sb.setLength(0);
+                if (template.appendTo(sb, context)) {
+                    return sb.toString();
+                }
             }
         }
         return null;
     }
+
+    /**
+     * Returns the parsed value or null if it has no placeholders
+     */
+    PlaceholderTemplate getTemplate(String value) {
+        if (!value.contains(prefix)) {
+            return null;
+        }
+        PlaceholderTemplate template = templates.get(value);
+        if (template == null) {
+            template = PlaceholderTemplate.parse(value, prefix, suffix);
+            if (templates.size() >= MAX_TEMPLATES) {
+                templates.clear();
+            }
+            templates.put(value, template);
+        }
+        return template;
+    }
+
+    /**
+     * Returns the names of the functions of the placeholder followed by what to apply them to
+     */
+    private String[] getReference(String value) {
+        String[] reference = references.get(value);
+        if (reference == null) {
+            String functionNames = Support.before(value, ":");
+            if (functionNames == null) {
+                return null;
+            }
+            String[] names = functionNames.split("\\+");
+            reference = new String[names.length + 1];
+            System.arraycopy(names, 0, reference, 0, names.length);
+            reference[names.length] = Support.after(value, ":");
+            if (references.size() >= MAX_TEMPLATES) {
+                references.clear();
+            }
+            references.put(value, reference);
+        }
+        return reference;
+    }
 }
@@ -0,0 +1,209 @@
+/**
+ * Copyright 2005-2016 Red Hat, Inc.
+ *
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package io.fabric8.karaf.core.properties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A string parsed once into its literal text and placeholders, so it can be
+ * resolved many times by walking the parsed segments.
+ *
+ * The placeholders behave as with a {@link org.apache.commons.lang3.text.StrSubstitutor}
+ * which has substitution in variables enabled: placeholders can be nested in
+ * the name of a placeholder, a default value can follow the name after ":-",
+ * the values are resolved in turn and a placeholder prefix preceded by the
+ * escape character is not replaced.
+ */
+final class PlaceholderTemplate {
+    static final char ESCAPE = '$';
+    static final String VALUE_DELIMITER = ":-";
+
+    /**
+     * Resolves the placeholder names and parses the values found
+     */
+    interface Context {
+        String lookup(String name);
+
+        PlaceholderTemplate compile(String value);
+    }
+
+    private final String source;
+    private final Object[] segments;
+    private final boolean escaped;
+
+    private PlaceholderTemplate(String source, Object[] segments, boolean escaped) {
+        this.source = source;
+        this.segments = segments;
+        this.escaped = escaped;
+    }
+
+    /**
+     * Parses the given text into its segments
+     */
+    static PlaceholderTemplate parse(String source, String prefix, String suffix) {
+        List<Object> segments = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        boolean escaped = false;
+        int pos = 0;
+        int length = source.length();
+
+        while (pos < length) {
+            if (!source.startsWith(prefix, pos)) {
+                literal.append(source.charAt(pos++));
+                continue;
+            }
+            if (pos > 0 && source.charAt(pos - 1) == ESCAPE) {
+                // drop the escape character and keep the prefix as text
+                literal.setLength(literal.length() - 1);
+                literal.append(prefix);
+                escaped = true;
+                pos += prefix.length();
+                continue;
+            }
+
+            int end = findSuffix(source, pos + prefix.length(), prefix, suffix);
+            if (end < 0) {
+                // not terminated so the rest is text
+                literal.append(source, pos, length);
+                break;
+            }
+            if (literal.length() > 0) {
+                segments.add(literal.toString());
+                literal.setLength(0);
+            }
+            String name = source.substring(pos + prefix.length(), end);
+            segments.add(new Placeholder(source.substring(pos, end + suffix.length()), parse(name, prefix, suffix)));
+            pos = end + suffix.length();
+        }
+        if (literal.length() > 0) {
+            segments.add(literal.toString());
+        }
+        return new PlaceholderTemplate(source, segments.toArray(), escaped);
+    }
+
+    private static int findSuffix(String source, int pos, String prefix, String suffix) {
+        int nested = 0;
+        while (pos < source.length()) {
+            if (source.startsWith(prefix, pos)) {
+                nested++;
+                pos += prefix.length();
+            } else if (source.startsWith(suffix, pos)) {
+                if (nested == 0) {
+                    return pos;
+                }
+                nested--;
+                pos += suffix.length();
+            } else {
+                pos++;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns true if there is nothing to replace
+     */
+    boolean isLiteral() {
+        return !escaped && (segments.length == 0 || (segments.length == 1 && segments[0] instanceof String));
+    }
+
+    String getSource() {
+        return source;
+    }
+
+    /**
+     * Appends the text with the placeholders replaced
+     *
+     * @return true if anything was replaced
+     */
+    boolean appendTo(StringBuilder out, Context context) {
+        List<String> priorVariables = new ArrayList<>();
+        priorVariables.add(source);
+        return appendTo(out, context, priorVariables);
+    }
+
+    private boolean appendTo(StringBuilder out, Context context, List<String> priorVariables) {
+        boolean altered = escaped;
+        for (Object segment : segments) {
+            if (segment instanceof String) {
+                out.append((String) segment);
+            } else {
+                altered |= ((Placeholder) segment).appendTo(out, context, priorVariables);
+            }
+        }
+        return altered;
+    }
+
+    private static final class Placeholder {
+        private final String text;
+        private final PlaceholderTemplate name;
+
+        Placeholder(String text, PlaceholderTemplate name) {
+            this.text = text;
+            this.name = name;
+        }
+
+        boolean appendTo(StringBuilder out, Context context, List<String> priorVariables) {
+            String expression = name.source;
+            if (!name.isLiteral()) {
+                StringBuilder sb = new StringBuilder();
+                name.appendTo(sb, context);
+                expression = sb.toString();
+            }
+
+            String variable = expression;
+            String defaultValue = null;
+            int delimiter = expression.indexOf(VALUE_DELIMITER);
+            if (delimiter >= 0) {
+                variable = expression.substring(0, delimiter);
+                defaultValue = expression.substring(delimiter + VALUE_DELIMITER.length());
+            }
+
+            if (priorVariables.contains(variable)) {
+                StringBuilder message = new StringBuilder("Infinite loop in property interpolation of ");
+                message.append(priorVariables.get(0)).append(": ");
+                for (int i = 1; i < priorVariables.size(); i++) {
+                    message.append(priorVariables.get(i)).append("->");
+                }
+                message.append(variable);
+                throw new IllegalStateException(message.toString());
+            }
+
+            String value = context.lookup(variable);
+            if (value == null) {
+                value = defaultValue;
+            }
+            if (value == null) {
+                out.append(text);
+                return false;
+            }
+
+            priorVariables.add(variable);
+            try {
+                PlaceholderTemplate template = context.compile(value);
+                if (template == null || template.isLiteral()) {
+                    out.append(value);
+                } else {
+                    template.appendTo(out, context, priorVariables);
+                }
+            } finally {
+                priorVariables.remove(priorVariables.size() - 1);
+            }
+            return true;
+        }
+    }
+}
@@ -50,10 +50,13 @@ public class KubernetesPropertiesFunction implements PropertiesFunction {
     public KubernetesPropertiesFunction() {
         this.kubernetesClient = new AtomicReference<>();
 
+        // the resources cache what they load so share them between the aliases
+        KubernetesSupport.Resource configMaps = KubernetesSupport.configMapResource();
+
         this.kubernetesResources = new HashMap<>();
         this.kubernetesResources.put("secret", KubernetesSupport.secretsResource());
-        this.kubernetesResources.put("map", KubernetesSupport.configMapResource());
-        this.kubernetesResources.put("configmap", KubernetesSupport.configMapResource());
+        this.kubernetesResources.put("map", configMaps);
+        this.kubernetesResources.put("configmap", configMaps);
     }
 
     // ******************
@@ -94,6 +97,10 @@ public class KubernetesPropertiesFunction implements PropertiesFunction {
     }
 
     protected void unbindKubernetesClient(KubernetesClient kubernetesClient) {
-        this.kubernetesClient.compareAndSet(kubernetesClient, null);
+        if (this.kubernetesClient.compareAndSet(kubernetesClient, null)) {
+            for (KubernetesSupport.Resource resource : kubernetesResources.values()) {
+                resource.close();
+            }
+        }
     }
 }
@@ -19,13 +19,21 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import io.fabric8.kubernetes.api.model.ConfigMap;
+import io.fabric8.kubernetes.api.model.HasMetadata;
 import io.fabric8.kubernetes.api.model.Secret;
 import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.KubernetesClientException;
+import io.fabric8.kubernetes.client.Watch;
+import io.fabric8.kubernetes.client.Watcher;
 import io.fabric8.kubernetes.client.utils.Utils;
 import org.apache.commons.codec.binary.Base64;
 import org.slf4j.Logger;
@@ -43,18 +51,95 @@ final class KubernetesSupport {
     // Resource abstraction
     // ******************************
 
+    /*
+     * The data of each resource is loaded once and then kept until a watch on
+     * the resources of the same kind reports that it changed. If the resources
+     * can't be watched they are loaded every time.
+     */
     static abstract class Resource {
+        private static final Map<String, String> MISSING = Collections.emptyMap();
+
+        private final Map<String, Map<String, String>> cache = new ConcurrentHashMap<>();
+        private final AtomicLong invalidations = new AtomicLong();
+        private KubernetesClient watchedClient;
+        private Watch watch;
+        private boolean watchFailed;
+
         public String get(KubernetesClient client, String name, String key) {
-            Map<String, String> data = getData(client, name);
+            Map<String, String> data = getCachedData(client, name);
             return data != null ? data.get(key) : null;
         }
 
+        Map<String, String> getCachedData(KubernetesClient client, String name) {
+            if (!watch(client)) {
+                return getData(client, name);
+            }
+            Map<String, String> data = cache.get(name);
+            if (data == null) {
+                // don't cache what we loaded if a resource changed meanwhile
+                long version = invalidations.get();
+                data = getData(client, name);
+                if (version == invalidations.get()) {
+                    cache.put(name, data != null ? data : MISSING);
+                }
+            }
+            return data != MISSING ? data : null;
+        }
+
+        /**
+         * Removes all of the cached resources and stops watching them
+         */
+        synchronized void close() {
+            if (watch != null) {
+                watch.close();
+            }
+            watch = null;
+            watchedClient = null;
+            watchFailed = false;
+            cache.clear();
+        }
+
+        private synchronized boolean watch(KubernetesClient client) {
+            if (watchedClient != client) {
+                close();
+                watchedClient = client;
+            }
+            if (watch == null && !watchFailed) {
+                try {
+                    watch = watchResources(client, new Watcher<HasMetadata>() {
+                        @Override
+                        public void eventReceived(Action action, HasMetadata resource) {
+                            invalidations.incrementAndGet();
+                            cache.remove(resource.getMetadata().getName());
+                        }
+
+                        @Override
+                        public void onClose(KubernetesClientException cause) {
+                            // we may have missed some changes so start again next time
+                            synchronized (Resource.this) {
+                                invalidations.incrementAndGet();
+                                watch = null;
+                                cache.clear();
+                            }
+                        }
+                    });
+                } catch (Exception e) {
+                    LOGGER.warn("Could not watch the resources so they will not be cached due " + e.getMessage());
+                    watchFailed = true;
+                }
+            }
+            return watch != null;
+        }
+
         abstract Map<String, String> getData(KubernetesClient client, String name);
+
+        abstract Watch watchResources(KubernetesClient client, Watcher<HasMetadata> watcher);
     }
 
     static final class SecretsResource extends Resource {
         private final boolean useApi;
         private final List<Path> paths;
+        private final Map<Path, MountedSecret> mountedSecrets = new ConcurrentHashMap<>();
 
         public SecretsResource() {
             this.useApi = Utils.getSystemPropertyOrEnvVar(FABRIC8_K8S_SECRET_API_ENABLED, false);
@@ -74,6 +159,11 @@ final class KubernetesSupport {
             return (resource != null) ? resource.getData() : null;
         }
 
+        @Override
+        Watch watchResources(KubernetesClient client, final Watcher<HasMetadata> watcher) {
+            return client.secrets().watch(new DelegatingWatcher<Secret>(watcher));
+        }
+
         @Override
         public String get(KubernetesClient client, String name, String key) {
             // The secret's value
@@ -84,7 +174,7 @@ final class KubernetesSupport {
                 Path secretPath = path.resolve(name).resolve(key);
                 if (Files.exists(secretPath) && Files.isRegularFile(secretPath)) {
                     try {
-                        value = new String(Files.readAllBytes(secretPath)).trim();
+                        value = readMountedSecret(secretPath);
                     } catch (IOException e) {
                         LOGGER.warn("", e);
                     }
@@ -101,6 +191,36 @@ final class KubernetesSupport {
 
             return value;
         }
+
+        /*
+         * Mounted secrets are only read again once the file has been modified,
+         * which happens when Kubernetes updates the secret volume
+         */
+        private String readMountedSecret(Path secretPath) throws IOException {
+            FileTime lastModified = Files.getLastModifiedTime(secretPath);
+            MountedSecret secret = mountedSecrets.get(secretPath);
+            if (secret == null || !secret.lastModified.equals(lastModified)) {
+                secret = new MountedSecret(lastModified, new String(Files.readAllBytes(secretPath)).trim());
+                mountedSecrets.put(secretPath, secret);
+            }
+            return secret.value;
+        }
+
+        @Override
+        synchronized void close() {
+            super.close();
+            mountedSecrets.clear();
+        }
+    }
+
+    private static final class MountedSecret {
+        private final FileTime lastModified;
+        private final String value;
+
+        MountedSecret(FileTime lastModified, String value) {
+            this.lastModified = lastModified;
+            this.value = value;
+        }
     }
 
     static final class ConfigMapResource extends Resource {
@@ -109,6 +229,29 @@ final class KubernetesSupport {
             ConfigMap resource = client.configMaps().withName(name).get();
             return (resource != null) ? resource.getData() : null;
         }
+
+        @Override
+        Watch watchResources(KubernetesClient client, Watcher<HasMetadata> watcher) {
+            return client.configMaps().watch(new DelegatingWatcher<ConfigMap>(watcher));
+        }
+    }
+
+    private static final class DelegatingWatcher<T extends HasMetadata> implements Watcher<T> {
+        private final Watcher<HasMetadata> delegate;
+
+        DelegatingWatcher(Watcher<HasMetadata> delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void eventReceived(Action action, T resource) {
+            delegate.eventReceived(action, resource);
+        }
+
+        @Override
+        public void onClose(KubernetesClientException cause) {
+            delegate.onClose(cause);
+        }
     }
 
     // ******************************
@@ -0,0 +1,133 @@
+/**
+ * Copyright 2005-2016 Red Hat, Inc.
+ *
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package io.fabric8.karaf.core.properties;
+
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import io.fabric8.karaf.core.Support;
+import io.fabric8.karaf.core.properties.function.PropertiesFunction;
+import org.apache.commons.lang3.text.StrLookup;
+import org.apache.commons.lang3.text.StrSubstitutor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures replacing the placeholders of a large configuration with the parsed
+ * templates of {@link PlaceholderResolverImpl} - compared with running a
+ * {@link StrSubstitutor} over every value, as before.
+ * <p/>
+ * Run with <code>mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=io.fabric8.karaf.core.properties.PlaceholderResolverBenchmark</code>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlaceholderResolverBenchmark {
+    private static final int PROPERTIES = 2000;
+
+    private PlaceholderResolverImpl resolver;
+    private StrSubstitutor substitutor;
+    private Hashtable<String, Object> configuration;
+
+    @Setup
+    public void setUp() {
+        final Map<String, String> values = new HashMap<>();
+        for (int i = 0; i < 100; i++) {
+            values.put("host-" + i, "service-" + i + ".fabric8.svc");
+            values.put("port-" + i, String.valueOf(8000 + i));
+        }
+
+        resolver = new PlaceholderResolverImpl();
+        resolver.bindFunction(new PropertiesFunction() {
+            @Override
+            public String getName() {
+                return "env";
+            }
+
+            @Override
+            public String apply(String remainder) {
+                return values.get(remainder);
+            }
+        });
+        substitutor = Support.createStrSubstitutor(
+            PlaceholderResolverImpl.DEFAULT_PLACEHOLDER_PREFIX,
+            PlaceholderResolverImpl.DEFAULT_PLACEHOLDER_SUFFIX,
+            new StrLookup<String>() {
+                @Override
+                public String lookup(String key) {
+                    return resolver.resolve(key);
+                }
+            });
+
+        // a large configuration where a quarter of the values have placeholders
+        configuration = new Hashtable<>();
+        for (int i = 0; i < PROPERTIES; i++) {
+            if (i % 4 == 0) {
+                int n = i % 100;
+                configuration.put("service.url." + i, "http://$[env:host-" + n + "]:$[env:port-" + n + "]/api/v" + i);
+            } else if (i % 4 == 1) {
+                configuration.put("service.timeout." + i, "$[env:timeout-" + i + ":-30000]");
+            } else {
+                configuration.put("plain." + i, "some plain value number " + i);
+            }
+        }
+    }
+
+    @Benchmark
+    public Object replaceAll() {
+        Hashtable<String, Object> dictionary = new Hashtable<>(configuration);
+        resolver.replaceAll(dictionary);
+        return dictionary;
+    }
+
+    @Benchmark
+    public Object replaceAllStrSubstitutor() {
+        Hashtable<String, Object> dictionary = new Hashtable<>(configuration);
+        for (Map.Entry<String, Object> entry : configuration.entrySet()) {
+            if (entry.getValue() instanceof String) {
+                StringBuilder sb = Support.acquireStringBuilder((String) entry.getValue());
+                if (substitutor.replaceIn(sb)) {
+                    dictionary.put(entry.getKey(), sb.toString());
+                }
+            }
+        }
+        return dictionary;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+            .include(PlaceholderResolverBenchmark.class.getSimpleName())
+            .build();
+        new Runner(options).run();
+    }
+}
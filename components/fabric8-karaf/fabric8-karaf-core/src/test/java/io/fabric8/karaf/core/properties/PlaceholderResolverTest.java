@@ -57,6 +57,24 @@ public class PlaceholderResolverTest {
         resolver.replace("$[map1:prop7]");
     }
 
+    @Test
+    public void testDefaultValueAndEscape() {
+        Assert.assertEquals("hello1 default", resolver.replace("$[map1:prop1] $[map1:noReplace:-default]"));
+        Assert.assertEquals("$[map1:prop1] hello1", resolver.replace("$$[map1:prop1] $[map1:prop1]"));
+        Assert.assertEquals("hello1 $[map1:prop1", resolver.replace("$[map1:prop1] $[map1:prop1"));
+    }
+
+    @Test
+    public void testUnbindFunction() {
+        Map1 map1 = new Map1();
+        PlaceholderResolverImpl resolver = new PlaceholderResolverImpl();
+        resolver.bindFunction(map1);
+        Assert.assertEquals("hello1", resolver.replace("$[map1:prop1]"));
+
+        resolver.unbindFunction(map1);
+        Assert.assertEquals("$[map1:prop1]", resolver.replace("$[map1:prop1]"));
+    }
+
     @Test
     public void testNoReplace() {
         Assert.assertEquals("$[map1:noReplace]", resolver.replace("$[map1:noReplace]"));
@@ -0,0 +1,81 @@
+/**
+ * Copyright 2005-2016 Red Hat, Inc.
+ *
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package io.fabric8.karaf.core.properties.function;
+
+import io.fabric8.kubernetes.api.model.ConfigMap;
+import io.fabric8.kubernetes.api.model.ConfigMapBuilder;
+import io.fabric8.kubernetes.api.model.WatchEvent;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.server.mock.KubernetesMockServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class KubernetesPropertiesFunctionTest {
+    private static final String CONFIGMAPS_PATH = "/api/v1/namespaces/test/configmaps";
+
+    private KubernetesMockServer server;
+
+    @Before
+    public void setUp() {
+        server = new KubernetesMockServer(false);
+        server.init();
+    }
+
+    @After
+    public void tearDown() {
+        server.destroy();
+    }
+
+    @Test
+    public void testConfigMapsAreLoadedOnceUntilTheyChange() throws Exception {
+        server.expect().get().withPath(CONFIGMAPS_PATH + "?watch=true").andUpgradeToWebSocket().open()
+            .waitFor(500).andEmit(new WatchEvent(createConfigMap("world2"), "MODIFIED"))
+            .done().once();
+        server.expect().get().withPath(CONFIGMAPS_PATH + "/my-map").andReturn(200, createConfigMap("world1")).once();
+        server.expect().get().withPath(CONFIGMAPS_PATH + "/my-map").andReturn(200, createConfigMap("world2")).once();
+
+        KubernetesClient client = server.createClient();
+        KubernetesPropertiesFunction function = new KubernetesPropertiesFunction();
+        function.bindKubernetesClient(client);
+        try {
+            // the second expectation would be used if the config map was loaded again
+            for (int i = 0; i < 10; i++) {
+                assertThat(function.apply("map:my-map/hello")).isEqualTo("world1");
+                assertThat(function.apply("configmap:my-map/hello")).isEqualTo("world1");
+            }
+
+            String value = null;
+            long end = System.currentTimeMillis() + 10000;
+            while (!"world2".equals(value) && System.currentTimeMillis() < end) {
+                Thread.sleep(50);
+                value = function.apply("map:my-map/hello");
+            }
+            assertThat(value).isEqualTo("world2");
+        } finally {
+            function.unbindKubernetesClient(client);
+        }
+    }
+
+    private static ConfigMap createConfigMap(String value) {
+        return new ConfigMapBuilder()
+            .withNewMetadata().withName("my-map").withNamespace("test").endMetadata()
+            .addToData("hello", value)
+            .build();
+    }
+}
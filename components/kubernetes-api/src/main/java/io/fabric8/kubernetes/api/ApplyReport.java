@@ -0,0 +1,151 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.kubernetes.api;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The time taken to apply each entity of a list, and to apply the whole list
+ */
+public class ApplyReport {
+    private final List<Entry> entries = Collections.synchronizedList(new ArrayList<>());
+    private final int threads;
+    private volatile long totalMillis;
+    private volatile int skipped;
+
+    public ApplyReport(int threads) {
+        this.threads = threads;
+    }
+
+    public void addEntry(Entry entry) {
+        entries.add(entry);
+    }
+
+    /**
+     * Returns the entries in the order they were applied
+     */
+    public List<Entry> getEntries() {
+        synchronized (entries) {
+            return new ArrayList<>(entries);
+        }
+    }
+
+    /**
+     * Returns the entries that failed to apply
+     */
+    public List<Entry> getFailures() {
+        List<Entry> answer = new ArrayList<>();
+        for (Entry entry : getEntries()) {
+            if (entry.getError() != null) {
+                answer.add(entry);
+            }
+        }
+        return answer;
+    }
+
+    /**
+     * Returns the entries which took the longest to apply, slowest first
+     */
+    public List<Entry> getSlowest(int count) {
+        List<Entry> answer = getEntries();
+        answer.sort(Comparator.comparingLong(Entry::getMillis).reversed());
+        return answer.size() > count ? answer.subList(0, count) : answer;
+    }
+
+    /**
+     * Returns the sum of the time taken by each entity, which is more than the wall clock time when applied in parallel
+     */
+    public long getEntityMillis() {
+        long answer = 0;
+        for (Entry entry : getEntries()) {
+            answer += entry.getMillis();
+        }
+        return answer;
+    }
+
+    public long getTotalMillis() {
+        return totalMillis;
+    }
+
+    public void setTotalMillis(long totalMillis) {
+        this.totalMillis = totalMillis;
+    }
+
+    /**
+     * Returns the number of entities which were never attempted as the apply failed first
+     */
+    public int getSkipped() {
+        return skipped;
+    }
+
+    public void setSkipped(int skipped) {
+        this.skipped = skipped;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    @Override
+    public String toString() {
+        return "ApplyReport{entities=" + entries.size() + ", threads=" + threads + ", totalMillis=" + totalMillis
+                + ", entityMillis=" + getEntityMillis() + ", failures=" + getFailures().size() + ", skipped=" + skipped + "}";
+    }
+
+    public static class Entry {
+        private final String kind;
+        private final String namespace;
+        private final String name;
+        private final long millis;
+        private final Throwable error;
+
+        public Entry(String kind, String namespace, String name, long millis, Throwable error) {
+            this.kind = kind;
+            this.namespace = namespace;
+            this.name = name;
+            this.millis = millis;
+            this.error = error;
+        }
+
+        public String getKind() {
+            return kind;
+        }
+
+        public String getNamespace() {
+            return namespace;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getMillis() {
+            return millis;
+        }
+
+        public Throwable getError() {
+            return error;
+        }
+
+        @Override
+        public String toString() {
+            return kind + " " + (namespace != null ? namespace + "/" : "") + name + " " + millis + "ms" + (error != null ? " failed: " + error : "");
+        }
+    }
+}
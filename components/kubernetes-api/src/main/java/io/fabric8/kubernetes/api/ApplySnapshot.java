@@ -0,0 +1,116 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.kubernetes.api;
+
+import io.fabric8.kubernetes.api.model.HasMetadata;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The existing resources of each kind and namespace, listed up front when applying a list of
+ * entities so that we don't need to get each resource before deciding whether to create or replace it.
+ * <p>
+ * Each resource can only be claimed once; so if the same resource is applied twice the second
+ * lookup goes back to the server and sees the result of the first.
+ */
+public class ApplySnapshot {
+    private final Map<String, Map<String, HasMetadata>> resources = new ConcurrentHashMap<>();
+    private final Set<String> taken = ConcurrentHashMap.newKeySet();
+    private final Set<String> namespaces = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger listCount = new AtomicInteger();
+    private final AtomicInteger hitCount = new AtomicInteger();
+
+    /**
+     * Stores the result of listing all the resources of the given kind in the namespace
+     */
+    public void load(Class<?> type, String namespace, List<? extends HasMetadata> items) {
+        Map<String, HasMetadata> map = new ConcurrentHashMap<>();
+        if (items != null) {
+            for (HasMetadata item : items) {
+                String name = KubernetesHelper.getName(item);
+                if (name != null) {
+                    map.put(name, item);
+                }
+            }
+        }
+        resources.put(key(type, namespace), map);
+        listCount.incrementAndGet();
+    }
+
+    /**
+     * Returns true if the resources of the given kind in the namespace have been listed
+     */
+    public boolean isListed(Class<?> type, String namespace) {
+        return resources.containsKey(key(type, namespace));
+    }
+
+    /**
+     * Claims the lookup of the named resource so that it can be served from the snapshot. Returns false if
+     * the kind was not listed in the namespace or the resource has already been claimed
+     */
+    public boolean claim(Class<?> type, String namespace, String name) {
+        String key = key(type, namespace);
+        if (name == null || !resources.containsKey(key) || !taken.add(key + "/" + name)) {
+            return false;
+        }
+        hitCount.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Returns the resource if it existed when listed, or null if it did not exist
+     */
+    public <T extends HasMetadata> T get(Class<T> type, String namespace, String name) {
+        Map<String, HasMetadata> map = resources.get(key(type, namespace));
+        HasMetadata answer = map != null && name != null ? map.get(name) : null;
+        return type.isInstance(answer) ? type.cast(answer) : null;
+    }
+
+    /**
+     * Returns true if the namespace is known to exist
+     */
+    public boolean isNamespaceKnown(String namespace) {
+        return namespace != null && namespaces.contains(namespace);
+    }
+
+    public void addNamespace(String namespace) {
+        if (namespace != null) {
+            namespaces.add(namespace);
+        }
+    }
+
+    /**
+     * Returns the number of list requests made to populate the snapshot
+     */
+    public int getListCount() {
+        return listCount.get();
+    }
+
+    /**
+     * Returns the number of get requests avoided by the snapshot
+     */
+    public int getHitCount() {
+        return hitCount.get();
+    }
+
+    private static String key(Class<?> type, String namespace) {
+        return type.getName() + "/" + (namespace != null ? namespace : "");
+    }
+}
@@ -75,8 +75,12 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
 import java.util.function.Predicate;
 
 import static io.fabric8.kubernetes.api.KubernetesHelper.getKind;
@@ -112,6 +116,10 @@ public class Controller {
     private String namesapce = KubernetesHelper.defaultNamespace();
     private boolean requireSecretsCreatedBeforeReplicationControllers;
     private boolean rollingUpgradePreserveScale = true;
+    private int applyThreads = 1;
+    private volatile ApplyReport lastApplyReport;
+    private boolean prefetchExistingState;
+    private volatile ApplySnapshot snapshot;
 
     public Controller() {
         this(new DefaultKubernetesClient());
@@ -152,11 +160,12 @@ public class Controller {
     }
 
     /**
-     * Applies the given JSON to the underlying REST APIs in a single operation without needing to explicitly parse first.
+     * Applies each entity in the given JSON file as soon as it has been parsed, without loading the whole file first.
      */
     public String applyJson(File json) throws Exception {
-        Object dto = loadJson(json);
-        apply(dto, "REST call");
+        try (InputStream in = new FileInputStream(json)) {
+            applyManifest(in, false, json.getName());
+        }
         return "";
     }
 
@@ -171,12 +180,13 @@ public class Controller {
     }
 
     /**
-     * Applies the given YAML to the underlying REST APIs in a single operation without needing to explicitly parse first.
+     * Applies each entity in the given YAML file as soon as it has been parsed, without loading the whole file first.
+     * The file may contain many documents separated by <code>---</code>
      */
     public String applyYaml(File yaml) throws Exception {
-        String json = convertYamlToJson(yaml);
-        Object dto = loadJson(json);
-        apply(dto, "REST call");
+        try (InputStream in = new FileInputStream(yaml)) {
+            applyManifest(in, true, yaml.getName());
+        }
         return "";
     }
 
@@ -189,16 +199,6 @@ public class Controller {
         return jsonObject.toString();
     }
 
-    private String convertYamlToJson(File yamlFile) throws FileNotFoundException {
-        Yaml yaml = new Yaml();
-        FileInputStream fstream = new FileInputStream(yamlFile);
-
-        Map<String, Object> map = (Map<String, Object>) yaml.load(fstream);
-        JSONObject jsonObject = new JSONObject(map);
-
-        return jsonObject.toString();
-    }
-
     /**
      * Applies the given JSON to the underlying REST APIs in a single operation without needing to explicitly parse first.
      */
@@ -208,6 +208,42 @@ public class Controller {
         return "";
     }
 
+    /**
+     * Applies each entity in the JSON or YAML manifest file as soon as it has been parsed, so that large manifests
+     * are not loaded into memory first. YAML manifests may contain many documents separated by <code>---</code>
+     */
+    public void applyManifest(File file) throws Exception {
+        try (ManifestReader reader = ManifestReader.forFile(file)) {
+            applyManifest(reader, file.getName());
+        }
+    }
+
+    /**
+     * Applies each entity in the JSON or YAML manifest stream as soon as it has been parsed
+     */
+    public void applyManifest(InputStream in, boolean yaml, String sourceName) throws Exception {
+        try (ManifestReader reader = ManifestReader.forStream(in, yaml)) {
+            applyManifest(reader, sourceName);
+        }
+    }
+
+    /**
+     * Applies each entity as soon as it has been read
+     */
+    public void applyManifest(ManifestReader reader, String sourceName) throws Exception {
+        ApplyReport report = new ApplyReport(1);
+        long start = System.currentTimeMillis();
+        try {
+            for (HasMetadata entity = reader.read(); entity != null; entity = reader.read()) {
+                applyEntity(entity, sourceName, report);
+            }
+        } finally {
+            report.setTotalMillis(System.currentTimeMillis() - start);
+            lastApplyReport = report;
+        }
+        LOG.info("Applied " + report.getEntries().size() + " entities from " + sourceName + " in " + report.getTotalMillis() + "ms");
+    }
+
     /**
      * Applies the given DTOs onto the Kubernetes master
      */
@@ -381,7 +417,7 @@ public class Controller {
             String namespace = getNamespace();
             String id = getName(entity);
             Objects.notNull(id, "No name for " + entity + " " + sourceName);
-            Template old = openShiftClient.templates().inNamespace(namespace).withName(id).get();
+            Template old = getExisting(Template.class, namespace, id, () -> openShiftClient.templates().inNamespace(namespace).withName(id).get());
             if (isRunning(old)) {
                 if (UserConfigurationCompare.configEqual(entity, old)) {
                     LOG.info("Template has not changed so not doing anything");
@@ -465,7 +501,7 @@ public class Controller {
             LOG.debug("Only processing Services right now so ignoring ServiceAccount: " + id);
             return;
         }
-        ServiceAccount old = kubernetesClient.serviceAccounts().inNamespace(namespace).withName(id).get();
+        ServiceAccount old = getExisting(ServiceAccount.class, namespace, id, () -> kubernetesClient.serviceAccounts().inNamespace(namespace).withName(id).get());
         if (isRunning(old)) {
             if (UserConfigurationCompare.configEqual(serviceAccount, old)) {
                 LOG.info("ServiceAccount has not changed so not doing anything");
@@ -518,7 +554,7 @@ public class Controller {
             LOG.debug("Only processing Services right now so ignoring PersistentVolumeClaim: " + id);
             return;
         }
-        PersistentVolumeClaim old = kubernetesClient.persistentVolumeClaims().inNamespace(namespace).withName(id).get();
+        PersistentVolumeClaim old = getExisting(PersistentVolumeClaim.class, namespace, id, () -> kubernetesClient.persistentVolumeClaims().inNamespace(namespace).withName(id).get());
         if (isRunning(old)) {
             if (UserConfigurationCompare.configEqual(entity, old)) {
                 LOG.info("PersistentVolumeClaim has not changed so not doing anything");
@@ -569,7 +605,7 @@ public class Controller {
             return;
         }
 
-        Secret old = kubernetesClient.secrets().inNamespace(namespace).withName(id).get();
+        Secret old = getExisting(Secret.class, namespace, id, () -> kubernetesClient.secrets().inNamespace(namespace).withName(id).get());
         // check if the secret already exists or not
         if (isRunning(old)) {
             // if the secret already exists and is the same, then do nothing
@@ -990,10 +1026,176 @@ public class Controller {
     public void applyList(KubernetesList list, String sourceName) throws Exception {
         List<HasMetadata> entities = list.getItems();
         if (entities != null) {
-            for (Object entity : entities) {
-                applyEntity(entity, sourceName);
+            ApplySnapshot previousSnapshot = snapshot;
+            boolean parallel = applyThreads > 1 && entities.size() > 1;
+            ApplyReport report = new ApplyReport(parallel ? applyThreads : 1);
+            try {
+                if (prefetchExistingState && entities.size() > 1) {
+                    snapshot = prefetch(entities);
+                }
+                if (parallel) {
+                    new ParallelApplier(this, applyThreads).apply(entities, sourceName, report);
+                } else {
+                    applySequentially(entities, sourceName, report);
+                }
+            } finally {
+                ApplySnapshot applied = snapshot;
+                if (applied != null && applied != previousSnapshot) {
+                    LOG.debug("Listed " + applied.getListCount() + " kinds up front which avoided " + applied.getHitCount() + " get requests");
+                }
+                snapshot = previousSnapshot;
+                lastApplyReport = report;
+            }
+            LOG.info("Applied " + entities.size() + " entities from " + sourceName + " in " + report.getTotalMillis() + "ms using " + report.getThreads() + " thread(s)");
+            if (LOG.isDebugEnabled()) {
+                for (ApplyReport.Entry entry : report.getSlowest(10)) {
+                    LOG.debug("  " + entry);
+                }
+            }
+        }
+    }
+
+    private void applySequentially(List<HasMetadata> entities, String sourceName, ApplyReport report) throws Exception {
+        long start = System.currentTimeMillis();
+        int count = 0;
+        for (HasMetadata entity : entities) {
+            if (entity != null) {
+                count++;
+            }
+        }
+        int applied = 0;
+        try {
+            for (HasMetadata entity : entities) {
+                if (entity != null) {
+                    applied++;
+                }
+                applyEntity(entity, sourceName, report);
+            }
+        } finally {
+            report.setTotalMillis(System.currentTimeMillis() - start);
+            report.setSkipped(count - applied);
+        }
+    }
+
+    /**
+     * Lists the existing resources of each kind and namespace we are about to apply, so that each
+     * entity does not need to get its existing resource from the server first
+     */
+    protected ApplySnapshot prefetch(List<HasMetadata> entities) {
+        ApplySnapshot answer = new ApplySnapshot();
+        // a single entity of a kind is cheaper to get than listing everything of its kind
+        Map<String, Integer> counts = new HashMap<>();
+        for (HasMetadata entity : entities) {
+            if (entity != null) {
+                counts.merge(entity.getClass().getName() + "/" + getApplyNamespace(entity), 1, Integer::sum);
             }
         }
+        Set<String> attempted = new HashSet<>();
+        for (HasMetadata entity : entities) {
+            if (entity == null) {
+                continue;
+            }
+            Class<? extends HasMetadata> type = entity.getClass();
+            String namespace = getApplyNamespace(entity);
+            String key = type.getName() + "/" + namespace;
+            if (counts.get(key) < 2 || !attempted.add(key)) {
+                continue;
+            }
+            try {
+                List<? extends HasMetadata> items = listExisting(type, namespace);
+                if (items != null) {
+                    answer.load(type, namespace, items);
+                }
+            } catch (Exception e) {
+                // we may be allowed to get but not list so lets just get each one
+                LOG.debug("Could not list " + type.getSimpleName() + " in namespace " + namespace + " so will get each one instead: " + e, e);
+            }
+        }
+        return answer;
+    }
+
+    /**
+     * Returns the namespace the apply method of the entity uses - only some kinds honour the namespace in
+     * their metadata, the rest are always applied to the namespace of this controller
+     */
+    String getApplyNamespace(HasMetadata entity) {
+        if (entity instanceof Secret || entity instanceof Route || entity instanceof BuildConfig ||
+                entity instanceof RoleBinding || entity instanceof PolicyBinding) {
+            String answer = KubernetesHelper.getNamespace(entity);
+            if (Strings.isNotBlank(answer)) {
+                return answer;
+            }
+        }
+        return getNamespace();
+    }
+
+    /**
+     * Lists the resources of the given kind in the namespace, or returns null if the kind is not supported
+     */
+    protected List<? extends HasMetadata> listExisting(Class<? extends HasMetadata> type, String namespace) {
+        if (type == Service.class) {
+            return kubernetesClient.services().inNamespace(namespace).list().getItems();
+        } else if (type == ReplicationController.class) {
+            return kubernetesClient.replicationControllers().inNamespace(namespace).list().getItems();
+        } else if (type == Pod.class) {
+            return kubernetesClient.pods().inNamespace(namespace).list().getItems();
+        } else if (type == Secret.class) {
+            return kubernetesClient.secrets().inNamespace(namespace).list().getItems();
+        } else if (type == ServiceAccount.class) {
+            return kubernetesClient.serviceAccounts().inNamespace(namespace).list().getItems();
+        } else if (type == ConfigMap.class) {
+            return kubernetesClient.configMaps().inNamespace(namespace).list().getItems();
+        } else if (type == PersistentVolumeClaim.class) {
+            return kubernetesClient.persistentVolumeClaims().inNamespace(namespace).list().getItems();
+        } else if (type == Deployment.class) {
+            return kubernetesClient.extensions().deployments().inNamespace(namespace).list().getItems();
+        } else if (type == DaemonSet.class) {
+            return kubernetesClient.extensions().daemonSets().inNamespace(namespace).list().getItems();
+        } else if (type == ReplicaSet.class) {
+            return kubernetesClient.extensions().replicaSets().inNamespace(namespace).list().getItems();
+        } else if (type == Ingress.class) {
+            return kubernetesClient.extensions().ingresses().inNamespace(namespace).list().getItems();
+        } else if (type == StatefulSet.class) {
+            return kubernetesClient.apps().statefulSets().inNamespace(namespace).list().getItems();
+        } else if (type == DeploymentConfig.class || type == Template.class) {
+            OpenShiftClient openShiftClient = getOpenShiftClientOrNull();
+            if (openShiftClient != null) {
+                if (type == DeploymentConfig.class && openShiftClient.supportsOpenShiftAPIGroup(OpenShiftAPIGroups.APPS)) {
+                    return openShiftClient.deploymentConfigs().inNamespace(namespace).list().getItems();
+                } else if (type == Template.class && openShiftClient.supportsOpenShiftAPIGroup(OpenShiftAPIGroups.TEMPLATE)) {
+                    return openShiftClient.templates().inNamespace(namespace).list().getItems();
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the existing resource from the snapshot listed before applying, or from the server if it was not listed
+     */
+    protected <T extends HasMetadata> T getExisting(Class<T> type, String namespace, String name, Supplier<T> loader) {
+        ApplySnapshot applySnapshot = snapshot;
+        if (applySnapshot != null && applySnapshot.claim(type, namespace, name)) {
+            return applySnapshot.get(type, namespace, name);
+        }
+        return loader.get();
+    }
+
+    /**
+     * Applies the entity recording how long it took in the report
+     */
+    void applyEntity(HasMetadata entity, String sourceName, ApplyReport report) throws Exception {
+        long start = System.currentTimeMillis();
+        Exception error = null;
+        try {
+            applyEntity(entity, sourceName);
+        } catch (Exception e) {
+            error = e;
+            throw e;
+        } finally {
+            report.addEntry(new ApplyReport.Entry(getKind(entity), getApplyNamespace(entity), getName(entity),
+                    System.currentTimeMillis() - start, error));
+        }
     }
 
     public void applyService(Service service, String sourceName) throws Exception {
@@ -1004,7 +1206,7 @@ public class Controller {
             LOG.debug("Ignoring Service: " + namespace + ":" + id);
             return;
         }
-        Service old = kubernetesClient.services().inNamespace(namespace).withName(id).get();
+        Service old = getExisting(Service.class, namespace, id, () -> kubernetesClient.services().inNamespace(namespace).withName(id).get());
         if (isRunning(old)) {
             if (UserConfigurationCompare.configEqual(service, old)) {
                 LOG.info("Service has not changed so not doing anything");
@@ -1045,7 +1247,7 @@ public class Controller {
             LOG.debug("Ignoring " + kind + ": " + namespace + ":" + id);
             return;
         }
-        T old = resources.inNamespace(namespace).withName(id).get();
+        T old = getExisting((Class<T>) resource.getClass(), namespace, id, () -> resources.inNamespace(namespace).withName(id).get());
         if (isRunning(old)) {
             if (UserConfigurationCompare.configEqual(resource, old)) {
                 LOG.info(kind + " has not changed so not doing anything");
@@ -1142,6 +1344,10 @@ public class Controller {
         if (Strings.isNullOrBlank(namespaceName)) {
             return;
         }
+        ApplySnapshot applySnapshot = snapshot;
+        if (applySnapshot != null && applySnapshot.isNamespaceKnown(namespaceName)) {
+            return;
+        }
         OpenShiftClient openshiftClient = getOpenShiftClientOrNull();
         if (openshiftClient != null && openshiftClient.supportsOpenShiftAPIGroup(OpenShiftAPIGroups.PROJECT)) {
             ProjectRequest entity = new ProjectRequest();
@@ -1186,14 +1392,20 @@ public class Controller {
         String name = getName(entity);
         Objects.notNull(name, "No name for " + entity );
         Namespace old = kubernetesClient.namespaces().withName(name).get();
+        ApplySnapshot applySnapshot = snapshot;
         if (!isRunning(old)) {
             try {
                 Object answer = kubernetesClient.namespaces().create(entity);
                 logGeneratedEntity("Created namespace: ", namespace, entity, answer);
+                if (applySnapshot != null) {
+                    applySnapshot.addNamespace(name);
+                }
                 return true;
             } catch (Exception e) {
                 onApplyError("Failed to create namespace: " + name + " due " + e.getMessage(), e);
             }
+        } else if (applySnapshot != null) {
+            applySnapshot.addNamespace(name);
         }
         return false;
     }
@@ -1212,15 +1424,21 @@ public class Controller {
             return false;
         }
         boolean exists = checkNamespace(name);
+        ApplySnapshot applySnapshot = snapshot;
         // We may want to be more fine-grained on the phase of the project
         if (!exists) {
             try {
                 Object answer = openshiftClient.projectrequests().create(entity);
                 logGeneratedEntity("Created ProjectRequest: ", namespace, entity, answer);
+                if (applySnapshot != null) {
+                    applySnapshot.addNamespace(name);
+                }
                 return true;
             } catch (Exception e) {
                 onApplyError("Failed to create ProjectRequest: " + name + " due " + e.getMessage(), e);
             }
+        } else if (applySnapshot != null) {
+            applySnapshot.addNamespace(name);
         }
         return false;
     }
@@ -1233,7 +1451,7 @@ public class Controller {
             LOG.debug("Only processing Services right now so ignoring ReplicationController: " + namespace + ":" + id);
             return;
         }
-        ReplicationController old = kubernetesClient.replicationControllers().inNamespace(namespace).withName(id).get();
+        ReplicationController old = getExisting(ReplicationController.class, namespace, id, () -> kubernetesClient.replicationControllers().inNamespace(namespace).withName(id).get());
         if (isRunning(old)) {
             if (UserConfigurationCompare.configEqual(replicationController, old)) {
                 LOG.info("ReplicationController has not changed so not doing anything");
@@ -1333,7 +1551,7 @@ public class Controller {
             LOG.debug("Only processing Services right now so ignoring Pod: " + namespace + ":" + id);
             return;
         }
-        Pod old = kubernetesClient.pods().inNamespace(namespace).withName(id).get();
+        Pod old = getExisting(Pod.class, namespace, id, () -> kubernetesClient.pods().inNamespace(namespace).withName(id).get());
         if (isRunning(old)) {
             if (UserConfigurationCompare.configEqual(pod, old)) {
                 LOG.info("Pod has not changed so not doing anything");
@@ -1547,6 +1765,40 @@ public class Controller {
         this.rollingUpgrade = rollingUpgrade;
     }
 
+    public boolean isPrefetchExistingState() {
+        return prefetchExistingState;
+    }
+
+    /**
+     * If enabled then when applying a list the existing resources are listed once per kind and namespace up front,
+     * rather than getting each resource before creating or replacing it. Only kinds with more than one entity in the
+     * list are listed. Disabled by default, as listing needs the permission to list each kind - and lists every
+     * resource of the kind, not just the ones being applied
+     */
+    public void setPrefetchExistingState(boolean prefetchExistingState) {
+        this.prefetchExistingState = prefetchExistingState;
+    }
+
+    public int getApplyThreads() {
+        return applyThreads;
+    }
+
+    /**
+     * Sets the number of threads used to apply the entities of a list. When more than one the entities are applied
+     * concurrently, with namespaces, secrets and the like applied before services, services before replication
+     * controllers and deployments, and routes and ingresses last
+     */
+    public void setApplyThreads(int applyThreads) {
+        this.applyThreads = applyThreads;
+    }
+
+    /**
+     * Returns the time taken to apply each entity of the last list applied, or null if no list has been applied
+     */
+    public ApplyReport getLastApplyReport() {
+        return lastApplyReport;
+    }
+
     public boolean isRollingUpgradePreserveScale() {
         return rollingUpgradePreserveScale;
     }
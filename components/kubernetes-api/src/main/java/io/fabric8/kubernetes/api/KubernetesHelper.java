@@ -19,10 +19,11 @@ import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import io.fabric8.kubernetes.api.cache.KubernetesCache;
+import io.fabric8.kubernetes.api.dns.DnsResolver;
 import io.fabric8.kubernetes.api.extensions.Templates;
 import io.fabric8.kubernetes.api.model.*;
 import io.fabric8.kubernetes.api.model.extensions.HTTPIngressPath;
@@ -52,7 +53,6 @@ import io.fabric8.openshift.client.OpenShiftClient;
 import io.fabric8.utils.Files;
 import io.fabric8.utils.Filter;
 import io.fabric8.utils.Filters;
-import io.fabric8.utils.IOHelpers;
 import io.fabric8.utils.KubernetesServices;
 import io.fabric8.utils.Objects;
 import io.fabric8.utils.Strings;
@@ -67,12 +67,6 @@ import okhttp3.Response;
 import okhttp3.logging.HttpLoggingInterceptor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.xbill.DNS.ARecord;
-import org.xbill.DNS.Lookup;
-import org.xbill.DNS.Record;
-import org.xbill.DNS.SRVRecord;
-import org.xbill.DNS.TextParseException;
-import org.xbill.DNS.Type;
 
 import javax.net.ssl.HostnameVerifier;
 import javax.net.ssl.SSLException;
@@ -98,7 +92,6 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -108,8 +101,10 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 
 import static io.fabric8.kubernetes.client.utils.Utils.isNotNullOrEmpty;
@@ -128,7 +123,6 @@ public final class KubernetesHelper {
     public static final String DEFAULT_NAMESPACE = "default";
 
     private static final transient Logger LOG = LoggerFactory.getLogger(KubernetesHelper.class);
-    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
 
     public static final int INTORSTRING_KIND_INT = 0;
     public static final int INTORSTRING_KIND_STRING = 1;
@@ -413,18 +407,14 @@ public final class KubernetesHelper {
         if (dto == null) {
             return "null";
         }
-        Class<?> clazz = dto.getClass();
-        return OBJECT_MAPPER.writerFor(clazz).writeValueAsString(dto);
+        return Serialization.jsonWriter(dto.getClass()).writeValueAsString(dto);
     }
 
     public static String toPrettyJson(Object dto) throws JsonProcessingException {
         if (dto == null) {
             return "null";
         }
-        Class<?> clazz = dto.getClass();
-        ObjectMapper objectMapper = new ObjectMapper();
-        objectMapper.enable(SerializationFeature.INDENT_OUTPUT);
-        return objectMapper.writerFor(clazz).writeValueAsString(dto);
+        return Serialization.prettyJsonWriter(dto.getClass()).writeValueAsString(dto);
     }
 
     /**
@@ -434,8 +424,10 @@ public final class KubernetesHelper {
      * from the Kubernetes REST API
      */
     public static Object loadJson(File file) throws IOException {
-        byte[] data = Files.readBytes(file);
-        return loadJson(data);
+        if (file.length() == 0) {
+            return null;
+        }
+        return Serialization.jsonReader(KubernetesResource.class).readValue(file);
     }
 
     /**
@@ -462,25 +454,25 @@ public final class KubernetesHelper {
      */
     public static Object loadJson(byte[] json) throws IOException {
         if (json != null && json.length > 0) {
-            return OBJECT_MAPPER.readerFor(KubernetesResource.class).readValue(json);
+            return Serialization.jsonReader(KubernetesResource.class).readValue(json);
         }
         return null;
     }
 
     /**
-     * Loads the YAML file for the given DTO class
+     * Loads the YAML file for the given DTO class, closing the stream once it has been read
      */
     public static <T> T loadYaml(InputStream in, Class<T> clazz) throws IOException {
-        byte[] data = Files.readBytes(in);
-        return loadYaml(data, clazz);
+        try (InputStream stream = in) {
+            return Serialization.readYaml(stream, clazz);
+        }
     }
 
     /**
      * Loads the YAML file for the given DTO class
      */
     public static <T> T loadYaml(File file, Class<T> clazz) throws IOException {
-        byte[] data = Files.readBytes(file);
-        return loadYaml(data, clazz);
+        return Serialization.yamlReader(clazz).readValue(file);
     }
 
     /**
@@ -509,27 +501,26 @@ public final class KubernetesHelper {
      * Loads the YAML file for the given DTO class
      */
     public static <T> T loadYaml(byte[] data, Class<T> clazz) throws IOException {
-        ObjectMapper mapper = createYamlObjectMapper();
-        return mapper.readValue(data, clazz);
+        return Serialization.yamlReader(clazz).readValue(data);
     }
 
     public static void saveYaml(Object data, File file) throws IOException {
-        ObjectMapper mapper = createYamlObjectMapper();
-        mapper.writeValue(file, data);
+        Serialization.yamlWriterFor(data).writeValue(file, data);
     }
 
     public static void saveYaml(Object data, FileObject fileObject) throws IOException{
-        ObjectMapper mapper = createYamlObjectMapper();
         try (Writer writer = fileObject.openWriter()) {
-            mapper.writeValue(writer, data);
+            Serialization.yamlWriterFor(data).writeValue(writer, data);
         }
     }
 
     public static String toYaml(Object data) throws IOException {
-        ObjectMapper mapper = createYamlObjectMapper();
-        return mapper.writeValueAsString(data);
+        return Serialization.yamlWriterFor(data).writeValueAsString(data);
     }
 
+    /**
+     * Creates a new YAML mapper which can be configured by the caller; use {@link Serialization} to share one instead
+     */
     public static ObjectMapper createYamlObjectMapper() {
         ObjectMapper objectMapper = new ObjectMapper(new YAMLFactory());
         objectMapper.setSerializationInclusion(JsonInclude.Include.NON_EMPTY);
@@ -565,7 +556,7 @@ public final class KubernetesHelper {
      * Saves the json object to the given file
      */
     public static void saveJson(File json, Object object) throws IOException {
-        OBJECT_MAPPER.writer().withDefaultPrettyPrinter().writeValue(json, object);
+        Serialization.jsonWriterFor(object).withDefaultPrettyPrinter().writeValue(json, object);
     }
 
     /**
@@ -658,6 +649,10 @@ public final class KubernetesHelper {
     }
 
     public static Map<String, Pod> getPodMap(KubernetesClient kubernetes, String namespace) {
+        KubernetesCache cache = findSyncedCache(kubernetes, namespace);
+        if (cache != null) {
+            return cache.getPods().toMap();
+        }
         PodList pods = null;
         try {
             pods = kubernetes.pods().inNamespace(namespace).list();
@@ -675,8 +670,20 @@ public final class KubernetesHelper {
         return getSelectedPodMap(kubernetes, null, selector);
     }
 
+    /**
+     * Returns the pods matching the given label selector such as <code>app=web,tier=frontend</code> or, if the
+     * selector has no labels, the pods whose name or labels match it as text
+     */
     public static Map<String, Pod> getSelectedPodMap(KubernetesClient kubernetes, String namespace, String selector) {
-        return getFilteredPodMap(kubernetes, namespace, createPodFilter(selector));
+        Map<String, String> labels = toLabelsMap(selector);
+        if (labels.isEmpty()) {
+            return getFilteredPodMap(kubernetes, namespace, createPodFilter(selector));
+        }
+        KubernetesCache cache = findSyncedCache(kubernetes, namespace);
+        if (cache != null) {
+            return toPodMap(cache.getPods().select(labels));
+        }
+        return toPodMap(kubernetes.pods().inNamespace(namespace).withLabels(labels).list());
     }
 
     public static Map<String, Pod> getFilteredPodMap(KubernetesClient kubernetes, Filter<Pod> filter) {
@@ -684,6 +691,10 @@ public final class KubernetesHelper {
     }
 
     public static Map<String, Pod> getFilteredPodMap(KubernetesClient kubernetes, String namespace, Filter<Pod> filter) {
+        KubernetesCache cache = findSyncedCache(kubernetes, namespace);
+        if (cache != null) {
+            return toPodMap(Filters.filter(cache.getPods().list(), filter));
+        }
         return toFilteredPodMap(kubernetes.pods().inNamespace(namespace).list(), filter);
     }
 
@@ -692,6 +703,10 @@ public final class KubernetesHelper {
     }
 
     public static Map<String, Service> getServiceMap(KubernetesClient kubernetes, String namespace) {
+        KubernetesCache cache = findSyncedCache(kubernetes, namespace);
+        if (cache != null) {
+            return cache.getServices().toMap();
+        }
         return toServiceMap(kubernetes.services().inNamespace(namespace).list());
     }
 
@@ -700,6 +715,10 @@ public final class KubernetesHelper {
     }
 
     public static Map<String, ReplicationController> getReplicationControllerMap(KubernetesClient kubernetes, String namespace) {
+        KubernetesCache cache = findSyncedCache(kubernetes, namespace);
+        if (cache != null) {
+            return cache.getReplicationControllers().toMap();
+        }
         return toReplicationControllerMap(kubernetes.replicationControllers().inNamespace(namespace).list());
     }
 
@@ -708,9 +727,22 @@ public final class KubernetesHelper {
     }
 
     public static Map<String, ReplicationController> getSelectedReplicationControllerMap(KubernetesClient kubernetes, String namespace, String selector) {
+        KubernetesCache cache = findSyncedCache(kubernetes, namespace);
+        if (cache != null) {
+            return toReplicationControllerMap(cache.getReplicationControllers().select(toLabelsMap(selector)));
+        }
         return toReplicationControllerMap(kubernetes.replicationControllers().inNamespace(namespace).withLabels(toLabelsMap(selector)).list());
     }
 
+    /**
+     * Returns the {@link KubernetesCache} started for the given client and namespace if it has listed the
+     * resources, otherwise null so that the caller looks them up directly
+     */
+    protected static KubernetesCache findSyncedCache(KubernetesClient kubernetes, String namespace) {
+        KubernetesCache cache = KubernetesCache.find(kubernetes, namespace);
+        return cache != null && cache.isSynced() ? cache : null;
+    }
+
     /**
      * Removes empty pods returned by Kubernetes
      */
@@ -1332,7 +1364,8 @@ public final class KubernetesHelper {
             //2. Anywhere: When namespace is passed System / Env var. Mostly needed for integration tests.
         } else if (Strings.isNotBlank(actualNamespace)) {
             try {
-                srv = client.services().inNamespace(actualNamespace).withName(serviceName).get();
+                KubernetesCache cache = findSyncedCache(client, actualNamespace);
+                srv = cache != null ? cache.getServices().get(serviceName) : client.services().inNamespace(actualNamespace).withName(serviceName).get();
             } catch (Exception e) {
                 LOGGER.warn("Could not lookup service:"+serviceName+" in namespace:"+actualNamespace+", due to: " + e.getMessage());
             }
@@ -1770,6 +1803,43 @@ public final class KubernetesHelper {
         return Filters.filter(pods, podFilter);
     }
 
+    /**
+     * Returns the pods for the given replication controller from the started {@link KubernetesCache} of its
+     * namespace if there is one, otherwise only the pods with its labels are listed
+     */
+    public static List<Pod> getPodsForReplicationController(KubernetesClient kubernetes, ReplicationController replicationController) {
+        String namespace = getNamespace(replicationController);
+        ReplicationControllerSpec replicationControllerSpec = replicationController.getSpec();
+        Map<String, String> selector = replicationControllerSpec != null ? replicationControllerSpec.getSelector() : null;
+        if (selector == null || selector.isEmpty()) {
+            // without a selector all of the pods are returned, so there is nothing to look up by
+            return getPodsForReplicationController(replicationController, kubernetes.pods().inNamespace(namespace).list().getItems());
+        }
+        KubernetesCache cache = findSyncedCache(kubernetes, namespace);
+        if (cache != null) {
+            return cache.getPodsForReplicationController(replicationController);
+        }
+        return notNullList(kubernetes.pods().inNamespace(namespace).withLabels(selector).list().getItems());
+    }
+
+    /**
+     * Returns the pods for the given service from the started {@link KubernetesCache} of its namespace if there
+     * is one, otherwise only the pods with its labels are listed
+     */
+    public static List<Pod> getPodsForService(KubernetesClient kubernetes, Service service) {
+        String namespace = getNamespace(service);
+        Map<String, String> selector = getSelector(service);
+        if (selector.isEmpty()) {
+            // without a selector all of the pods are returned, so there is nothing to look up by
+            return getPodsForService(service, kubernetes.pods().inNamespace(namespace).list().getItems());
+        }
+        KubernetesCache cache = findSyncedCache(kubernetes, namespace);
+        if (cache != null) {
+            return cache.getPodsForService(service);
+        }
+        return notNullList(kubernetes.pods().inNamespace(namespace).withLabels(selector).list().getItems());
+    }
+
     /**
      * Looks up the service endpoints in DNS.
      * <p/>
@@ -1780,37 +1850,7 @@ public final class KubernetesHelper {
      * See https://github.com/GoogleCloudPlatform/kubernetes/blob/master/cluster/addons/dns/README.md
      */
     public static List<String> lookupServiceEndpointsInDns(String serviceName) throws IllegalArgumentException, UnknownHostException {
-        try {
-            Lookup l = new Lookup(serviceName, Type.SRV);
-            Record[] records = l.run();
-            if (l.getResult() == Lookup.SUCCESSFUL) {
-
-                SRVRecord[] srvRecords = Arrays.copyOf(records, records.length, SRVRecord[].class);
-                Arrays.sort(srvRecords, new Comparator<SRVRecord>() {
-                    @Override
-                    public int compare(SRVRecord a, SRVRecord b) {
-                        int ret = Integer.compare(b.getPriority(), a.getPriority());
-                        if (ret == 0) {
-                            ret = Integer.compare(b.getWeight(), a.getWeight());
-                        }
-                        return ret;
-                    }
-                });
-
-                List<String> endpointAddresses = new ArrayList<>(srvRecords.length);
-                for (SRVRecord srvRecord : srvRecords) {
-                    endpointAddresses.add(srvRecord.getTarget().toString(true).concat(":").concat(String.valueOf(srvRecord.getPort())));
-                }
-                return endpointAddresses;
-            } else {
-                LOG.warn("Lookup {} result: {}", serviceName, l.getErrorString());
-            }
-        } catch (TextParseException e) {
-            LOG.error("Unparseable service name: {}", serviceName, e);
-        } catch (ClassCastException e) {
-            LOG.error("Invalid response from DNS server - should have been A records", e);
-        }
-        return Collections.EMPTY_LIST;
+        return waitForDns(serviceName, DnsResolver.getDefault().lookupServiceEndpoints(serviceName), Collections.EMPTY_LIST);
     }
 
     /**
@@ -1821,25 +1861,25 @@ public final class KubernetesHelper {
      * See https://github.com/GoogleCloudPlatform/kubernetes/blob/master/docs/services.md#headless-services
      */
     public static Set<String> lookupServiceInDns(String serviceName) throws IllegalArgumentException, UnknownHostException {
+        return waitForDns(serviceName, DnsResolver.getDefault().lookupService(serviceName), Collections.EMPTY_SET);
+    }
+
+    private static <T> T waitForDns(String serviceName, CompletableFuture<T> future, T defaultValue) {
         try {
-            Lookup l = new Lookup(serviceName);
-            Record[] records = l.run();
-            if (l.getResult() == Lookup.SUCCESSFUL) {
-                Set<String> endpointAddresses = new HashSet<>(records.length);
-                for (int i = 0; i < records.length; i++) {
-                    ARecord aRecord = (ARecord) records[i];
-                    endpointAddresses.add(aRecord.getAddress().getHostAddress());
-                }
-                return endpointAddresses;
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IllegalArgumentException) {
+                LOG.error("Unparseable service name: {}", serviceName, cause);
+            } else if (cause instanceof ClassCastException) {
+                LOG.error("Invalid response from DNS server - should have been A records", cause);
             } else {
-                LOG.warn("Lookup {} result: {}", serviceName, l.getErrorString());
+                LOG.warn("Lookup {} result: {}", serviceName, cause.getMessage());
             }
-        } catch (TextParseException e) {
-            LOG.error("Unparseable service name: {}", serviceName, e);
-        } catch (ClassCastException e) {
-            LOG.error("Invalid response from DNS server - should have been A records", e);
         }
-        return Collections.EMPTY_SET;
+        return defaultValue;
     }
 
     public static boolean isServiceSsl(String host, int port, boolean trustAllCerts) {
@@ -2222,16 +2262,18 @@ public final class KubernetesHelper {
             configUrl = findConfigResource("kubernetes.json");
         }
         if (configUrl != null) {
-            String configText = IOHelpers.loadFully(configUrl);
-            Object dto = null;
             String configPath = configUrl.getPath();
-            if (configPath.endsWith(".yml") || configPath.endsWith(".yaml")) {
-                dto = loadYaml(configText, KubernetesResource.class);
-            } else {
-                dto = loadJson(configText);
+            boolean yaml = configPath.endsWith(".yml") || configPath.endsWith(".yaml");
+            List<HasMetadata> items = new ArrayList<>();
+            try (ManifestReader reader = ManifestReader.forStream(configUrl.openStream(), yaml)) {
+                for (HasMetadata item = reader.read(); item != null; item = reader.read()) {
+                    items.add(item);
+                }
+            }
+            if (items.size() == 1 && items.get(0) instanceof Template) {
+                // a manifest which is just a template contains its objects
+                return toItemList(items.get(0));
             }
-            KubernetesList kubeList = KubernetesHelper.asKubernetesList(dto);
-            List<HasMetadata> items = kubeList.getItems();
             return items;
         } else {
             return new ArrayList<>();
@@ -2246,7 +2288,7 @@ public final class KubernetesHelper {
     // see: https://github.com/fabric8io/kubernetes-model/issues/154
     public static void saveYamlNotEmpty(HasMetadata entity, File outFile) throws IOException {
         String yaml = toYaml(entity);
-        ObjectMapper objectMapper = createYamlObjectMapper();
+        ObjectMapper objectMapper = Serialization.yamlMapper();
 
         // TODO we must convert to YAML, parse as JsonNode
         // then remove empty nodes then write to YAML
@@ -0,0 +1,214 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.kubernetes.api;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import io.fabric8.kubernetes.api.model.HasMetadata;
+import io.fabric8.kubernetes.api.model.KubernetesList;
+import io.fabric8.kubernetes.api.model.KubernetesResource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads the entities in a JSON or YAML manifest one at a time as the stream is parsed, rather than loading
+ * the whole manifest into memory first.
+ * <p/>
+ * A YAML manifest may contain many documents separated by <code>---</code>. Each document (or the top level
+ * JSON value) may be a single entity, an array of entities or a <code>List</code> whose items are read one at a time.
+ */
+public class ManifestReader implements Iterator<HasMetadata>, Closeable {
+    private static final transient Logger LOG = LoggerFactory.getLogger(ManifestReader.class);
+
+    private enum State {
+        DOCUMENT, FIELDS, ITEMS, ARRAY
+    }
+
+    private final JsonParser parser;
+    private final ObjectReader reader;
+    private final Deque<HasMetadata> pending = new ArrayDeque<>();
+    private State state = State.DOCUMENT;
+    private TokenBuffer document;
+    private String kind;
+    private boolean readItems;
+    private HasMetadata next;
+    private boolean finished;
+
+    public ManifestReader(JsonParser parser, ObjectReader reader) {
+        this.parser = parser;
+        this.reader = reader;
+    }
+
+    /**
+     * Returns a reader of the given file which is parsed as YAML if it has a <code>.yml</code> or <code>.yaml</code>
+     * extension or JSON otherwise
+     */
+    public static ManifestReader forFile(File file) throws IOException {
+        String name = file.getName().toLowerCase();
+        boolean yaml = name.endsWith(".yml") || name.endsWith(".yaml");
+        return forStream(new FileInputStream(file), yaml);
+    }
+
+    /**
+     * Returns a reader of the stream which is closed when the reader is closed
+     */
+    public static ManifestReader forStream(InputStream in, boolean yaml) throws IOException {
+        if (yaml) {
+            return new ManifestReader(Serialization.yamlMapper().getFactory().createParser(in), Serialization.yamlReader(KubernetesResource.class));
+        } else {
+            return new ManifestReader(Serialization.jsonMapper().getFactory().createParser(in), Serialization.jsonReader(KubernetesResource.class));
+        }
+    }
+
+    /**
+     * Returns the next entity or null if there are no more
+     */
+    public HasMetadata read() throws IOException {
+        if (next != null) {
+            HasMetadata answer = next;
+            next = null;
+            return answer;
+        }
+        if (finished) {
+            return null;
+        }
+        HasMetadata answer = readNext();
+        if (answer == null) {
+            finished = true;
+            close();
+        }
+        return answer;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null && !finished) {
+            try {
+                next = read();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public HasMetadata next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        HasMetadata answer = next;
+        next = null;
+        return answer;
+    }
+
+    @Override
+    public void close() throws IOException {
+        parser.close();
+    }
+
+    protected HasMetadata readNext() throws IOException {
+        while (pending.isEmpty()) {
+            JsonToken token = parser.nextToken();
+            switch (state) {
+                case DOCUMENT:
+                    if (token == null) {
+                        return null;
+                    } else if (token == JsonToken.START_ARRAY) {
+                        state = State.ARRAY;
+                    } else if (token == JsonToken.START_OBJECT) {
+                        // lets keep everything but the items in case this is not a list after all
+                        document = new TokenBuffer(parser);
+                        document.writeStartObject();
+                        kind = null;
+                        readItems = false;
+                        state = State.FIELDS;
+                    } else if (token != JsonToken.VALUE_NULL) {
+                        // an empty YAML document is null
+                        throw new IOException("Expected a JSON or YAML object or array but found " + token + " at " + parser.getCurrentLocation());
+                    }
+                    break;
+                case FIELDS:
+                    if (token == JsonToken.END_OBJECT) {
+                        state = State.DOCUMENT;
+                        if (!readItems) {
+                            document.writeEndObject();
+                            addEntities(reader.readValue(document.asParser()));
+                        }
+                        document = null;
+                    } else {
+                        String field = parser.getCurrentName();
+                        token = parser.nextToken();
+                        if ("items".equals(field) && token == JsonToken.START_ARRAY && (kind == null || kind.endsWith("List"))) {
+                            readItems = true;
+                            state = State.ITEMS;
+                        } else {
+                            if ("kind".equals(field) && token == JsonToken.VALUE_STRING) {
+                                kind = parser.getText();
+                            }
+                            document.writeFieldName(field);
+                            document.copyCurrentStructure(parser);
+                        }
+                    }
+                    break;
+                case ITEMS:
+                case ARRAY:
+                    if (token == JsonToken.END_ARRAY) {
+                        state = state == State.ITEMS ? State.FIELDS : State.DOCUMENT;
+                    } else if (token == JsonToken.START_OBJECT) {
+                        addEntities(reader.readValue(parser));
+                    } else {
+                        parser.skipChildren();
+                    }
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown state " + state);
+            }
+        }
+        return pending.poll();
+    }
+
+    protected void addEntities(Object dto) {
+        if (dto instanceof HasMetadata) {
+            pending.add((HasMetadata) dto);
+        } else if (dto instanceof KubernetesList) {
+            List<HasMetadata> items = ((KubernetesList) dto).getItems();
+            if (items != null) {
+                for (HasMetadata item : items) {
+                    if (item != null) {
+                        pending.add(item);
+                    }
+                }
+            }
+        } else if (dto != null) {
+            LOG.debug("Ignoring " + dto.getClass().getName() + " which is not an entity");
+        }
+    }
+}
@@ -0,0 +1,209 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.kubernetes.api;
+
+import io.fabric8.kubernetes.api.model.ConfigMap;
+import io.fabric8.kubernetes.api.model.HasMetadata;
+import io.fabric8.kubernetes.api.model.Namespace;
+import io.fabric8.kubernetes.api.model.PersistentVolumeClaim;
+import io.fabric8.kubernetes.api.model.Secret;
+import io.fabric8.kubernetes.api.model.Service;
+import io.fabric8.kubernetes.api.model.ServiceAccount;
+import io.fabric8.kubernetes.api.model.extensions.Ingress;
+import io.fabric8.openshift.api.model.BuildConfig;
+import io.fabric8.openshift.api.model.ImageStream;
+import io.fabric8.openshift.api.model.OAuthClient;
+import io.fabric8.openshift.api.model.PolicyBinding;
+import io.fabric8.openshift.api.model.ProjectRequest;
+import io.fabric8.openshift.api.model.Role;
+import io.fabric8.openshift.api.model.RoleBinding;
+import io.fabric8.openshift.api.model.Route;
+import io.fabric8.openshift.api.model.Template;
+import io.fabric8.utils.Strings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Applies a list of entities using a pool of threads, while respecting the order in which
+ * kinds of entity depend on each other.
+ * <p>
+ * Within each namespace the entities are layered by kind: namespaces first, then service accounts,
+ * secrets, config maps and the like, then services, then workloads such as replication controllers
+ * and deployments, then routes and ingresses. Each layer only starts once the previous layer of the
+ * same namespace has been applied, and the entities within a layer, or in different namespaces,
+ * are applied concurrently.
+ */
+public class ParallelApplier {
+    private static final transient Logger LOG = LoggerFactory.getLogger(ParallelApplier.class);
+
+    private final Controller controller;
+    private final int threads;
+
+    public ParallelApplier(Controller controller, int threads) {
+        this.controller = controller;
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Applies the entities, returning the time taken for each one
+     */
+    public ApplyReport apply(List<HasMetadata> entities, String sourceName) throws Exception {
+        ApplyReport report = new ApplyReport(threads);
+        apply(entities, sourceName, report);
+        return report;
+    }
+
+    /**
+     * Applies the entities, recording the time taken for each one in the report - along with the number of
+     * entities skipped if the apply fails
+     */
+    public void apply(List<HasMetadata> entities, String sourceName, ApplyReport report) throws Exception {
+        long start = System.currentTimeMillis();
+        int count = 0;
+        for (HasMetadata entity : entities) {
+            if (entity != null) {
+                count++;
+            }
+        }
+        try {
+            // namespaces are shared by everything else so lets apply them up front
+            Map<String, Map<Integer, List<HasMetadata>>> layers = new LinkedHashMap<>();
+            Set<String> namespaces = new LinkedHashSet<>();
+            for (HasMetadata entity : entities) {
+                if (entity == null) {
+                    continue;
+                }
+                int rank = getRank(entity);
+                if (rank == 0) {
+                    controller.applyEntity(entity, sourceName, report);
+                    continue;
+                }
+                // group by the namespace the entity is applied to, which is not always the one in its metadata
+                String namespace = controller.getApplyNamespace(entity);
+                if (Strings.isNotBlank(namespace)) {
+                    namespaces.add(namespace);
+                }
+                layers.computeIfAbsent(namespace != null ? namespace : "", k -> new TreeMap<>())
+                        .computeIfAbsent(rank, k -> new ArrayList<>())
+                        .add(entity);
+            }
+            // lets make sure the namespaces exist before we apply to them concurrently
+            for (String namespace : namespaces) {
+                controller.applyNamespace(namespace);
+            }
+            applyLayers(layers, sourceName, report);
+        } finally {
+            report.setTotalMillis(System.currentTimeMillis() - start);
+            // every entity attempted has an entry, whether it failed or not
+            report.setSkipped(Math.max(0, count - report.getEntries().size()));
+            int failures = report.getFailures().size();
+            if (failures > 0) {
+                LOG.warn("Failed to apply " + sourceName + " with " + failures + " entities failed and " + report.getSkipped() + " skipped");
+            }
+        }
+    }
+
+    private void applyLayers(Map<String, Map<Integer, List<HasMetadata>>> layers, String sourceName, ApplyReport report) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new DaemonThreadFactory());
+        try {
+            List<CompletableFuture<Void>> futures = new ArrayList<>();
+            for (Map<Integer, List<HasMetadata>> namespaceLayers : layers.values()) {
+                CompletableFuture<Void> previousLayer = CompletableFuture.completedFuture(null);
+                for (List<HasMetadata> layer : namespaceLayers.values()) {
+                    List<CompletableFuture<Void>> layerFutures = new ArrayList<>(layer.size());
+                    for (HasMetadata entity : layer) {
+                        layerFutures.add(previousLayer.thenRunAsync(() -> {
+                            try {
+                                controller.applyEntity(entity, sourceName, report);
+                            } catch (Exception e) {
+                                throw new CompletionException(e);
+                            }
+                        }, executor));
+                    }
+                    futures.addAll(layerFutures);
+                    previousLayer = CompletableFuture.allOf(layerFutures.toArray(new CompletableFuture[layerFutures.size()]));
+                }
+            }
+
+            Throwable failure = null;
+            for (CompletableFuture<Void> future : futures) {
+                try {
+                    future.join();
+                } catch (CompletionException e) {
+                    if (failure == null) {
+                        failure = e.getCause() != null ? e.getCause() : e;
+                    }
+                }
+            }
+            if (failure != null) {
+                if (failure instanceof Exception) {
+                    throw (Exception) failure;
+                }
+                throw new RuntimeException(failure);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns the layer of the entity - an entity is only applied after all the entities of lower layers in its namespace
+     */
+    public static int getRank(HasMetadata entity) {
+        if (entity instanceof Namespace || entity instanceof ProjectRequest) {
+            return 0;
+        }
+        if (entity instanceof ServiceAccount || entity instanceof Secret || entity instanceof ConfigMap ||
+                entity instanceof PersistentVolumeClaim || entity instanceof Role || entity instanceof RoleBinding ||
+                entity instanceof PolicyBinding || entity instanceof OAuthClient || entity instanceof Template ||
+                entity instanceof ImageStream || entity instanceof BuildConfig) {
+            return 1;
+        }
+        if (entity instanceof Service) {
+            return 2;
+        }
+        if (entity instanceof Route || entity instanceof Ingress) {
+            return 4;
+        }
+        // pods, replication controllers, deployments and anything else we don't know about
+        return 3;
+    }
+
+    private static class DaemonThreadFactory implements ThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "Controller-Apply-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
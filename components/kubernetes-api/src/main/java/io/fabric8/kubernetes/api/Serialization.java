@@ -0,0 +1,147 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.kubernetes.api;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import io.fabric8.kubernetes.api.model.KubernetesList;
+import io.fabric8.kubernetes.api.model.KubernetesResource;
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.ReplicationController;
+import io.fabric8.kubernetes.api.model.Service;
+import io.fabric8.openshift.api.model.DeploymentConfig;
+import io.fabric8.openshift.api.model.Template;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Shared JSON and YAML mappers along with the readers and writers for each class we serialize.
+ * <p/>
+ * Creating a mapper and warming up its serializer caches is expensive, so rather than creating one per call
+ * the readers and writers are created once for each class, with their root (de)serializer already resolved,
+ * and then reused. They are immutable so can be used by many threads at once. Those for the classes we
+ * load and save the most are created up front, so the first call does not pay for them.
+ * <p/>
+ * The readers and writers never close the streams they are given, only the files they open themselves.
+ */
+public class Serialization {
+    private static final ObjectMapper JSON_MAPPER = new ObjectMapper();
+    private static final ObjectMapper YAML_MAPPER = new ObjectMapper(new YAMLFactory())
+            .setSerializationInclusion(JsonInclude.Include.NON_EMPTY);
+
+    private static final ConcurrentMap<Class<?>, ObjectReader> jsonReaders = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<Class<?>, ObjectWriter> jsonWriters = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<Class<?>, ObjectWriter> prettyJsonWriters = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<Class<?>, ObjectReader> yamlReaders = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<Class<?>, ObjectWriter> yamlWriters = new ConcurrentHashMap<>();
+
+    static {
+        Class<?>[] classes = {KubernetesResource.class, KubernetesList.class, Template.class, Pod.class,
+                ReplicationController.class, Service.class, DeploymentConfig.class};
+        for (Class<?> clazz : classes) {
+            jsonReader(clazz);
+            jsonWriter(clazz);
+            yamlReader(clazz);
+            yamlWriter(clazz);
+        }
+    }
+
+    /**
+     * Returns the shared JSON mapper which must not be reconfigured
+     */
+    public static ObjectMapper jsonMapper() {
+        return JSON_MAPPER;
+    }
+
+    /**
+     * Returns the shared YAML mapper which must not be reconfigured
+     */
+    public static ObjectMapper yamlMapper() {
+        return YAML_MAPPER;
+    }
+
+    public static ObjectReader jsonReader(Class<?> clazz) {
+        return jsonReaders.computeIfAbsent(clazz, c -> JSON_MAPPER.readerFor(c).without(JsonParser.Feature.AUTO_CLOSE_SOURCE));
+    }
+
+    public static ObjectWriter jsonWriter(Class<?> clazz) {
+        return jsonWriters.computeIfAbsent(clazz, c -> JSON_MAPPER.writerFor(c).without(JsonGenerator.Feature.AUTO_CLOSE_TARGET));
+    }
+
+    public static ObjectWriter prettyJsonWriter(Class<?> clazz) {
+        return prettyJsonWriters.computeIfAbsent(clazz, c -> JSON_MAPPER.writerFor(c).with(SerializationFeature.INDENT_OUTPUT).without(JsonGenerator.Feature.AUTO_CLOSE_TARGET));
+    }
+
+    public static ObjectReader yamlReader(Class<?> clazz) {
+        return yamlReaders.computeIfAbsent(clazz, c -> YAML_MAPPER.readerFor(c).without(JsonParser.Feature.AUTO_CLOSE_SOURCE));
+    }
+
+    public static ObjectWriter yamlWriter(Class<?> clazz) {
+        return yamlWriters.computeIfAbsent(clazz, c -> YAML_MAPPER.writerFor(c).without(JsonGenerator.Feature.AUTO_CLOSE_TARGET));
+    }
+
+    /**
+     * Returns the YAML writer for the class of the given object
+     */
+    public static ObjectWriter yamlWriterFor(Object data) {
+        return data != null ? yamlWriter(data.getClass()) : YAML_MAPPER.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    }
+
+    /**
+     * Returns the JSON writer for the class of the given object
+     */
+    public static ObjectWriter jsonWriterFor(Object data) {
+        return data != null ? jsonWriter(data.getClass()) : JSON_MAPPER.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    }
+
+    /**
+     * Reads the JSON from the stream without first copying it into memory
+     */
+    public static <T> T readJson(InputStream in, Class<T> clazz) throws IOException {
+        return jsonReader(clazz).readValue(in);
+    }
+
+    /**
+     * Reads the YAML from the stream without first copying it into memory
+     */
+    public static <T> T readYaml(InputStream in, Class<T> clazz) throws IOException {
+        return yamlReader(clazz).readValue(in);
+    }
+
+    /**
+     * Writes the object as JSON to the stream
+     */
+    public static void writeJson(Object data, OutputStream out) throws IOException {
+        jsonWriterFor(data).writeValue(out, data);
+    }
+
+    /**
+     * Writes the object as YAML to the stream
+     */
+    public static void writeYaml(Object data, OutputStream out) throws IOException {
+        yamlWriterFor(data).writeValue(out, data);
+    }
+}
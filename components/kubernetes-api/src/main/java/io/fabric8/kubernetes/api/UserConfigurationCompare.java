@@ -25,6 +25,9 @@ import java.beans.BeanInfo;
 import java.beans.IntrospectionException;
 import java.beans.Introspector;
 import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.*;
@@ -37,6 +40,19 @@ public class UserConfigurationCompare {
 
     protected static final Set<String> ignoredProperties = new HashSet<>(Collections.singletonList("status"));
 
+    /**
+     * Collections whose sizes multiply to no more than this are compared by scanning rather than indexing
+     */
+    private static final int SCAN_LIMIT = 16;
+
+    private static final PropertyAccessor[] NOT_INTROSPECTED = new PropertyAccessor[0];
+
+    private static final ClassValue<PropertyAccessor[]> propertyAccessors = new ClassValue<PropertyAccessor[]>() {
+        @Override
+        protected PropertyAccessor[] computeValue(Class<?> clazz) {
+            return createPropertyAccessors(clazz);
+        }
+    };
 
     /**
      * This method detects if the user has changed the configuration of an entity.
@@ -74,6 +90,9 @@ public class UserConfigurationCompare {
     }
 
     static <L,R> boolean collectionsEqual(Collection<L> left, Collection<R> right) {
+        if (left.isEmpty() || right.isEmpty()) {
+            return left.isEmpty() && right.isEmpty();
+        }
         return subCollection(left, right) && subCollection(right, left);
     }
 
@@ -87,15 +106,91 @@ public class UserConfigurationCompare {
         return false;
     }
 
+    /**
+     * Returns true if every item in the left collection has a config equal item in the right collection.
+     * <p/>
+     * The right items are indexed by {@link #configHashCode(Object)} so that each left item is only compared with
+     * the items that could be equal to it; if there is none in its bucket we fall back to scanning the whole
+     * collection so the result is the same as comparing every pair.
+     */
     static <L, R> boolean subCollection(Collection<L> left, Collection<R> right) {
+        if (left.size() * right.size() <= SCAN_LIMIT) {
+            for (L candidate : left) {
+                if (!itemExists(candidate, right)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        Map<Integer, List<R>> index = new HashMap<>();
+        for (R item : right) {
+            index.computeIfAbsent(configHashCode(item), k -> new ArrayList<>(1)).add(item);
+        }
         for (L candidate : left) {
-            if (!itemExists(candidate, right)) {
+            List<R> bucket = index.get(configHashCode(candidate));
+            if ((bucket == null || !itemExists(candidate, bucket)) && !itemExists(candidate, right)) {
                 return false;
             }
         }
         return true;
     }
 
+    /**
+     * Returns a hash code of the user configuration of the value which is the same for values which are
+     * {@link #configEqual(Object, Object)} in all but unusual cases, such as collections containing duplicates
+     */
+    static int configHashCode(Object value) {
+        if (value == null) {
+            return 0;
+        } else if (value instanceof Map) {
+            return configHashCodeMap((Map) value);
+        } else if (value instanceof ObjectMeta) {
+            ObjectMeta metadata = (ObjectMeta) value;
+            int answer = java.util.Objects.hashCode(metadata.getName());
+            answer = 31 * answer + java.util.Objects.hashCode(metadata.getNamespace());
+            answer = 31 * answer + configHashCodeMap(metadata.getLabels());
+            return 31 * answer + configHashCodeMap(metadata.getAnnotations());
+        } else if (value instanceof Collection) {
+            // the order of the items does not matter
+            int answer = 1;
+            for (Object item : (Collection) value) {
+                answer += configHashCode(item);
+            }
+            return answer;
+        }
+        Class<?> clazz = value.getClass();
+        Package aPackage = clazz.getPackage();
+        if (aPackage != null && aPackage.getName().startsWith("io.fabric8")) {
+            PropertyAccessor[] accessors = propertyAccessors.get(clazz);
+            int answer = clazz.hashCode();
+            if (accessors == NOT_INTROSPECTED) {
+                return answer;
+            }
+            try {
+                for (PropertyAccessor accessor : accessors) {
+                    if (!accessor.ignored) {
+                        answer = 31 * answer + configHashCode(accessor.get(value));
+                    }
+                }
+            } catch (Exception e) {
+                return clazz.hashCode();
+            }
+            return answer;
+        }
+        return value.hashCode();
+    }
+
+    private static int configHashCodeMap(Map map) {
+        int answer = 0;
+        if (map != null) {
+            for (Object value : map.entrySet()) {
+                Map.Entry entry = (Map.Entry) value;
+                answer += java.util.Objects.hashCode(entry.getKey()) ^ configHashCode(entry.getValue());
+            }
+        }
+        return answer;
+    }
+
     static Class getCommonDenominator(Class left, Class right) {
         if (left.equals(right)) {
             return left;
@@ -116,27 +211,19 @@ public class UserConfigurationCompare {
      */
     protected static boolean configEqualKubernetesDTO(@NotNull Object entity1, @NotNull Object entity2, @NotNull Class<?> clazz) {
         // lets iterate through the objects making sure we've not
-        BeanInfo beanInfo = null;
-        try {
-            beanInfo = Introspector.getBeanInfo(clazz);
-        } catch (IntrospectionException e) {
-            LOG.warn("Failed to get beanInfo for " + clazz.getName() + ". " + e, e);
+        PropertyAccessor[] accessors = propertyAccessors.get(clazz);
+        if (accessors == NOT_INTROSPECTED) {
             return false;
         }
         try {
-            PropertyDescriptor[] propertyDescriptors = beanInfo.getPropertyDescriptors();
-            for (PropertyDescriptor propertyDescriptor : propertyDescriptors) {
-                String name = propertyDescriptor.getName();
-                if (ignoredProperties.contains(name)) {
+            for (PropertyAccessor accessor : accessors) {
+                if (accessor.ignored) {
                     continue;
                 }
-                Method readMethod = propertyDescriptor.getReadMethod();
-                if (readMethod != null) {
-                    Object value1 = invokeMethod(entity1, readMethod);
-                    Object value2 = invokeMethod(entity2, readMethod);
-                    if (!configEqual(value1, value2)) {
-                        return false;
-                    }
+                Object value1 = accessor.get(entity1);
+                Object value2 = accessor.get(entity2);
+                if (!configEqual(value1, value2)) {
+                    return false;
                 }
             }
             return true;
@@ -145,6 +232,28 @@ public class UserConfigurationCompare {
         }
     }
 
+    /**
+     * Introspects the readable properties of the class once so that comparing its instances does not need to
+     */
+    private static PropertyAccessor[] createPropertyAccessors(Class<?> clazz) {
+        BeanInfo beanInfo;
+        try {
+            beanInfo = Introspector.getBeanInfo(clazz);
+        } catch (IntrospectionException e) {
+            LOG.warn("Failed to get beanInfo for " + clazz.getName() + ". " + e, e);
+            return NOT_INTROSPECTED;
+        }
+        List<PropertyAccessor> answer = new ArrayList<>();
+        for (PropertyDescriptor propertyDescriptor : beanInfo.getPropertyDescriptors()) {
+            Method readMethod = propertyDescriptor.getReadMethod();
+            if (readMethod != null) {
+                String name = propertyDescriptor.getName();
+                answer.add(new PropertyAccessor(readMethod, ignoredProperties.contains(name)));
+            }
+        }
+        return answer.toArray(new PropertyAccessor[answer.size()]);
+    }
+
     protected static Object invokeMethod(@NotNull Object entity, Method readMethod) throws InvocationTargetException, IllegalAccessException {
         try {
             return readMethod.invoke(entity);
@@ -154,6 +263,43 @@ public class UserConfigurationCompare {
         }
     }
 
+    /**
+     * Reads a property using a method handle, or the read method itself if it is not accessible to us
+     */
+    private static final class PropertyAccessor {
+        private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+        private final Method readMethod;
+        private final MethodHandle handle;
+        private final boolean ignored;
+
+        PropertyAccessor(Method readMethod, boolean ignored) {
+            this.readMethod = readMethod;
+            this.ignored = ignored;
+            MethodHandle methodHandle;
+            try {
+                methodHandle = MethodHandles.publicLookup().unreflect(readMethod).asType(GETTER_TYPE);
+            } catch (IllegalAccessException e) {
+                methodHandle = null;
+            }
+            this.handle = methodHandle;
+        }
+
+        Object get(Object entity) throws Exception {
+            if (handle == null) {
+                return invokeMethod(entity, readMethod);
+            }
+            try {
+                return (Object) handle.invokeExact(entity);
+            } catch (Exception | Error e) {
+                LOG.warn("Failed to invoke method " + readMethod + " on " + entity + ". " + e, e);
+                throw e;
+            } catch (Throwable e) {
+                throw new InvocationTargetException(e);
+            }
+        }
+    }
+
     protected static boolean configEqualObjectMeta(ObjectMeta entity1, ObjectMeta entity2) {
         if (entity1 == entity2) {
             return true;
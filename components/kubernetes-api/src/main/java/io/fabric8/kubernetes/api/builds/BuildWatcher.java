@@ -16,6 +16,9 @@
 package io.fabric8.kubernetes.api.builds;
 
 
+import io.fabric8.kubernetes.client.KubernetesClientException;
+import io.fabric8.kubernetes.client.Watch;
+import io.fabric8.kubernetes.client.Watcher;
 import io.fabric8.openshift.api.model.Build;
 import io.fabric8.openshift.api.model.BuildList;
 import io.fabric8.openshift.client.OpenShiftClient;
@@ -23,13 +26,24 @@ import io.fabric8.utils.Strings;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Collections;
-import java.util.HashSet;
+import java.net.HttpURLConnection;
 import java.util.List;
 import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Notifies a {@link BuildListener} of each build which finishes, either by polling the builds on a {@link Timer}
+ * or by watching them using {@link #watch()}.
+ * <p/>
+ * The finished builds which have already been notified are remembered until they no longer exist. Each time the
+ * builds are listed the remembered builds are replaced by the finished builds in the list, so they never outgrow
+ * the builds kept in the namespace - however long since a build finished.
+ */
 public class BuildWatcher {
     private static final transient Logger LOG = LoggerFactory.getLogger(BuildWatcher.class);
 
@@ -37,8 +51,13 @@ public class BuildWatcher {
     private final BuildListener buildListener;
     private final String namespace;
     private final String fabric8ConsoleLink;
-    private boolean loading = true;
-    private Set<String> seenBuildIds = Collections.<String>synchronizedSet(new HashSet<String>());
+    private volatile boolean loading = true;
+    private volatile Set<String> seenBuildIds = ConcurrentHashMap.newKeySet();
+    private long reconnectDelayMillis = 5000;
+    private ScheduledExecutorService dispatcher;
+    private volatile Watch watch;
+    private volatile String resourceVersion;
+    private volatile boolean stopped;
 
     public BuildWatcher(OpenShiftClient client, BuildListener buildListener, String namespace, String fabric8ConsoleLink) {
         this.client = client;
@@ -70,10 +89,8 @@ public class BuildWatcher {
         if (buildList != null) {
             List<Build> items = buildList.getItems();
             if (items != null) {
-                for (Build build : items) {
-                    buildPolled(build);
-                    foundBuild = true;
-                }
+                buildsListed(items);
+                foundBuild = !items.isEmpty();
             }
         }
         if (foundBuild) {
@@ -81,23 +98,193 @@ public class BuildWatcher {
         }
     }
 
-    protected void buildPolled(Build build) {
-        String status = build.getStatus().getPhase();
-        if (status != null) {
-            if (Builds.isFinished(status)) {
-                String uid = Builds.getUid(build);
-                if (Strings.isNullOrBlank(uid)) {
-                    LOG.warn("Ignoring bad build which has no UID: " + build);
+    /**
+     * Lists the current builds then watches for changes to them from then on; notifying the listener on a
+     * separate thread so that it cannot hold up the watch. If the watch is closed because the version we are
+     * watching from is too old then the builds are listed again and watched from the new version.
+     */
+    public synchronized void watch() {
+        stopped = false;
+        if (dispatcher == null) {
+            dispatcher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "BuildWatcher-" + namespace);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        dispatcher.execute(this::listAndWatch);
+    }
+
+    /**
+     * Stops watching the builds
+     */
+    public synchronized void stop() {
+        stopped = true;
+        Watch current = watch;
+        watch = null;
+        if (current != null) {
+            current.close();
+        }
+        if (dispatcher != null) {
+            dispatcher.shutdownNow();
+            dispatcher = null;
+        }
+    }
+
+    protected void listAndWatch() {
+        if (stopped) {
+            return;
+        }
+        try {
+            BuildList buildList = client.builds().inNamespace(namespace).list();
+            String version = null;
+            if (buildList != null) {
+                List<Build> items = buildList.getItems();
+                if (items != null) {
+                    buildsListed(items);
+                }
+                if (buildList.getMetadata() != null) {
+                    version = buildList.getMetadata().getResourceVersion();
+                }
+            }
+            loading = false;
+            resourceVersion = version;
+            startWatch();
+        } catch (Exception e) {
+            LOG.warn("Failed to watch builds in namespace " + namespace + " due " + e.getMessage() + ". Will retry in " + reconnectDelayMillis + "ms.", e);
+            scheduleRelist(reconnectDelayMillis);
+        }
+    }
+
+    protected void startWatch() {
+        Watcher<Build> watcher = new Watcher<Build>() {
+            @Override
+            public void eventReceived(Action action, Build build) {
+                if (build.getMetadata() != null && Strings.isNotBlank(build.getMetadata().getResourceVersion())) {
+                    resourceVersion = build.getMetadata().getResourceVersion();
+                }
+                if (action == Action.ADDED || action == Action.MODIFIED) {
+                    dispatch(() -> buildPolled(build));
+                } else if (action == Action.DELETED) {
+                    dispatch(() -> buildDeleted(build));
+                }
+            }
+
+            @Override
+            public void onClose(KubernetesClientException cause) {
+                if (stopped || cause == null) {
+                    return;
+                }
+                watch = null;
+                if (cause.getCode() == HttpURLConnection.HTTP_GONE) {
+                    LOG.info("Builds in namespace " + namespace + " changed too much since version " + resourceVersion + " so listing them again");
+                    scheduleRelist(0);
                 } else {
-                    if (seenBuildIds.add(uid)) {
-                        String name = Builds.getName(build);
-                        String buildLink = Builds.createConsoleBuildLink(this.fabric8ConsoleLink, name);
-                        BuildFinishedEvent event = new BuildFinishedEvent(uid, build, loading, buildLink);
-                        buildListener.onBuildFinished(event);
-                    }
+                    LOG.warn("Watch of builds in namespace " + namespace + " closed due " + cause.getMessage() + ". Will list them again in " + reconnectDelayMillis + "ms.", cause);
+                    scheduleRelist(reconnectDelayMillis);
                 }
             }
+        };
+        String version = resourceVersion;
+        Watch created;
+        if (Strings.isNotBlank(version)) {
+            created = client.builds().inNamespace(namespace).withResourceVersion(version).watch(watcher);
+        } else {
+            created = client.builds().inNamespace(namespace).watch(watcher);
         }
+        watch = created;
+        if (stopped) {
+            // stopped while we were listing, so stop() may not have seen the new watch
+            watch = null;
+            if (created != null) {
+                created.close();
+            }
+        }
+    }
+
+    protected void dispatch(Runnable task) {
+        ScheduledExecutorService executor = dispatcher;
+        if (executor != null && !executor.isShutdown()) {
+            executor.execute(task);
+        }
+    }
+
+    private void scheduleRelist(long delayMillis) {
+        ScheduledExecutorService executor = dispatcher;
+        if (executor != null && !executor.isShutdown()) {
+            executor.schedule(this::listAndWatch, delayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Notifies the finished builds in the full list of builds which have not been notified yet, then only
+     * remembers the finished builds in the list - so builds which have been deleted are forgotten
+     */
+    protected void buildsListed(List<Build> builds) {
+        Set<String> seen = seenBuildIds;
+        Set<String> listed = ConcurrentHashMap.newKeySet();
+        for (Build build : builds) {
+            String uid = getFinishedUid(build);
+            if (uid != null && listed.add(uid) && !seen.contains(uid)) {
+                onBuildFinished(uid, build);
+            }
+        }
+        seenBuildIds = listed;
+    }
+
+    protected void buildPolled(Build build) {
+        String uid = getFinishedUid(build);
+        if (uid != null && seenBuildIds.add(uid)) {
+            onBuildFinished(uid, build);
+        }
+    }
+
+    protected void buildDeleted(Build build) {
+        String uid = Builds.getUid(build);
+        if (Strings.isNotBlank(uid)) {
+            seenBuildIds.remove(uid);
+        }
+    }
+
+    /**
+     * Returns the number of finished builds remembered as already notified
+     */
+    int getSeenBuildCount() {
+        return seenBuildIds.size();
+    }
+
+    private String getFinishedUid(Build build) {
+        if (build.getStatus() == null) {
+            return null;
+        }
+        String status = build.getStatus().getPhase();
+        if (status != null && Builds.isFinished(status)) {
+            String uid = Builds.getUid(build);
+            if (Strings.isNullOrBlank(uid)) {
+                LOG.warn("Ignoring bad build which has no UID: " + build);
+            } else {
+                return uid;
+            }
+        }
+        return null;
+    }
+
+    private void onBuildFinished(String uid, Build build) {
+        String name = Builds.getName(build);
+        String buildLink = Builds.createConsoleBuildLink(this.fabric8ConsoleLink, name);
+        BuildFinishedEvent event = new BuildFinishedEvent(uid, build, loading, buildLink);
+        buildListener.onBuildFinished(event);
+    }
+
+    public long getReconnectDelayMillis() {
+        return reconnectDelayMillis;
+    }
+
+    /**
+     * Sets how long to wait before listing and watching the builds again after a watch or list fails
+     */
+    public void setReconnectDelayMillis(long reconnectDelayMillis) {
+        this.reconnectDelayMillis = reconnectDelayMillis;
     }
 
     /**
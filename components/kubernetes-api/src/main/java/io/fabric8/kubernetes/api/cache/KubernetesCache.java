@@ -0,0 +1,184 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.kubernetes.api.cache;
+
+import io.fabric8.kubernetes.api.KubernetesHelper;
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.ReplicationController;
+import io.fabric8.kubernetes.api.model.Service;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.utils.Strings;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * A shared, watch backed cache of the pods, services and replication controllers in a namespace so that
+ * repeated lookups do not need to list them from the API server each time.
+ * <p/>
+ * A cache is started explicitly via {@link #start(KubernetesClient, String)}; once started the lookups in
+ * {@link KubernetesHelper} for the same client and namespace are answered from it. The resources returned are
+ * copies, so the cache cannot be modified through them.
+ */
+public class KubernetesCache implements Closeable {
+    public static final long DEFAULT_RETRY_DELAY_MILLIS = 5000L;
+
+    private static final Map<KubernetesClient, Map<String, KubernetesCache>> caches = new IdentityHashMap<>();
+
+    private final KubernetesClient client;
+    private final String namespace;
+    private final ScheduledExecutorService executor;
+    private final ResourceInformer<Pod> pods;
+    private final ResourceInformer<Service> services;
+    private final ResourceInformer<ReplicationController> replicationControllers;
+
+    protected KubernetesCache(KubernetesClient client, String namespace, long retryDelayMillis) {
+        this.client = client;
+        this.namespace = namespace;
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "KubernetesCache-" + namespace);
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.pods = new ResourceInformer<>("Pod",
+                () -> client.pods().inNamespace(namespace).list(),
+                (version, watcher) -> client.pods().inNamespace(namespace).withResourceVersion(version).watch(watcher),
+                executor, retryDelayMillis);
+        this.services = new ResourceInformer<>("Service",
+                () -> client.services().inNamespace(namespace).list(),
+                (version, watcher) -> client.services().inNamespace(namespace).withResourceVersion(version).watch(watcher),
+                executor, retryDelayMillis);
+        this.replicationControllers = new ResourceInformer<>("ReplicationController",
+                () -> client.replicationControllers().inNamespace(namespace).list(),
+                (version, watcher) -> client.replicationControllers().inNamespace(namespace).withResourceVersion(version).watch(watcher),
+                executor, retryDelayMillis);
+    }
+
+    /**
+     * Starts a cache of the given namespace, or the namespace of the client if it is blank, or returns the
+     * cache already started for them
+     */
+    public static KubernetesCache start(KubernetesClient client, String namespace) {
+        return start(client, namespace, DEFAULT_RETRY_DELAY_MILLIS);
+    }
+
+    public static KubernetesCache start(KubernetesClient client, String namespace, long retryDelayMillis) {
+        String ns = namespaceOf(client, namespace);
+        KubernetesCache cache;
+        synchronized (caches) {
+            Map<String, KubernetesCache> namespaces = caches.computeIfAbsent(client, c -> new HashMap<>());
+            cache = namespaces.get(ns);
+            if (cache != null) {
+                return cache;
+            }
+            cache = new KubernetesCache(client, ns, retryDelayMillis);
+            namespaces.put(ns, cache);
+        }
+        cache.pods.start();
+        cache.services.start();
+        cache.replicationControllers.start();
+        return cache;
+    }
+
+    /**
+     * Returns the started cache for the given client and namespace or null if there is not one
+     */
+    public static KubernetesCache find(KubernetesClient client, String namespace) {
+        if (client == null) {
+            return null;
+        }
+        synchronized (caches) {
+            if (caches.isEmpty()) {
+                return null;
+            }
+            Map<String, KubernetesCache> namespaces = caches.get(client);
+            return namespaces != null ? namespaces.get(namespaceOf(client, namespace)) : null;
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (caches) {
+            Map<String, KubernetesCache> namespaces = caches.get(client);
+            if (namespaces != null && namespaces.get(namespace) == this) {
+                namespaces.remove(namespace);
+                if (namespaces.isEmpty()) {
+                    caches.remove(client);
+                }
+            }
+        }
+        pods.close();
+        services.close();
+        replicationControllers.close();
+        executor.shutdownNow();
+    }
+
+    /**
+     * Returns true if all of the resources have been listed and are being watched
+     */
+    public boolean isSynced() {
+        return pods.isSynced() && services.isSynced() && replicationControllers.isSynced();
+    }
+
+    public String getNamespace() {
+        return namespace;
+    }
+
+    public ResourceInformer<Pod> getPods() {
+        return pods;
+    }
+
+    public ResourceInformer<Service> getServices() {
+        return services;
+    }
+
+    public ResourceInformer<ReplicationController> getReplicationControllers() {
+        return replicationControllers;
+    }
+
+    /**
+     * Returns the pods selected by the given service
+     */
+    public List<Pod> getPodsForService(Service service) {
+        Map<String, String> selector = service != null && service.getSpec() != null ? service.getSpec().getSelector() : null;
+        if (selector == null || selector.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return pods.select(selector);
+    }
+
+    /**
+     * Returns the pods selected by the given replication controller
+     */
+    public List<Pod> getPodsForReplicationController(ReplicationController replicationController) {
+        Map<String, String> selector = replicationController != null && replicationController.getSpec() != null
+                ? replicationController.getSpec().getSelector() : null;
+        if (selector == null || selector.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return pods.select(selector);
+    }
+
+    private static String namespaceOf(KubernetesClient client, String namespace) {
+        return Strings.isNotBlank(namespace) ? namespace : client.getNamespace();
+    }
+}
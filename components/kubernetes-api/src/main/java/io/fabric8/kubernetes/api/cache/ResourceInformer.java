@@ -0,0 +1,330 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.kubernetes.api.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import io.fabric8.kubernetes.api.KubernetesHelper;
+import io.fabric8.kubernetes.api.Serialization;
+import io.fabric8.kubernetes.api.model.HasMetadata;
+import io.fabric8.kubernetes.api.model.KubernetesResourceList;
+import io.fabric8.kubernetes.client.KubernetesClientException;
+import io.fabric8.kubernetes.client.Watch;
+import io.fabric8.kubernetes.client.Watcher;
+import io.fabric8.utils.Strings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+
+/**
+ * Keeps a local copy of all the resources of one kind in a namespace, indexed by name and by label, which is
+ * listed once and then kept up to date by watching the resources.
+ * <p/>
+ * If the watch is closed because the version we are watching from is too old, or fails, the resources are
+ * listed again.
+ * <p/>
+ * The resources returned are copies of the cached ones, so callers may modify them without corrupting the
+ * cache or its label index.
+ */
+public class ResourceInformer<T extends HasMetadata> {
+    private static final transient Logger LOG = LoggerFactory.getLogger(ResourceInformer.class);
+
+    private final String kind;
+    private final Supplier<KubernetesResourceList> lister;
+    private final BiFunction<String, Watcher<T>, Watch> watcher;
+    private final ScheduledExecutorService executor;
+    private final long retryDelayMillis;
+    private final Map<String, T> resources = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> labelIndex = new ConcurrentHashMap<>();
+    private final Object lock = new Object();
+    private volatile String resourceVersion;
+    private volatile Watch watch;
+    private volatile boolean synced;
+    private volatile boolean closed;
+
+    /**
+     * @param kind the kind of resource for logging
+     * @param lister lists all the resources
+     * @param watcher watches the resources from the given version, or from now if it is null
+     * @param executor used to list the resources again when the watch closes
+     */
+    public ResourceInformer(String kind, Supplier<KubernetesResourceList> lister, BiFunction<String, Watcher<T>, Watch> watcher,
+                            ScheduledExecutorService executor, long retryDelayMillis) {
+        this.kind = kind;
+        this.lister = lister;
+        this.watcher = watcher;
+        this.executor = executor;
+        this.retryDelayMillis = retryDelayMillis;
+    }
+
+    /**
+     * Lists the resources and starts watching them
+     */
+    public void start() {
+        closed = false;
+        listAndWatch();
+    }
+
+    /**
+     * Stops watching the resources; a list and watch already in progress closes the watch it creates
+     */
+    public void close() {
+        closed = true;
+        synced = false;
+        Watch current = watch;
+        watch = null;
+        if (current != null) {
+            current.close();
+        }
+    }
+
+    /**
+     * Returns true if the resources have been listed and are being watched
+     */
+    public boolean isSynced() {
+        return synced;
+    }
+
+    public T get(String name) {
+        return name != null ? copy(resources.get(name)) : null;
+    }
+
+    public List<T> list() {
+        List<T> answer = new ArrayList<>(resources.size());
+        for (T resource : resources.values()) {
+            answer.add(copy(resource));
+        }
+        return answer;
+    }
+
+    /**
+     * Returns the resources indexed by name
+     */
+    public Map<String, T> toMap() {
+        Map<String, T> answer = new HashMap<>(resources.size() * 4 / 3 + 1);
+        for (Map.Entry<String, T> entry : resources.entrySet()) {
+            answer.put(entry.getKey(), copy(entry.getValue()));
+        }
+        return answer;
+    }
+
+    /**
+     * Returns the resources which have all of the given labels; looking up the fewest candidates in the label index
+     */
+    public List<T> select(Map<String, String> selector) {
+        if (selector == null || selector.isEmpty()) {
+            return list();
+        }
+        Set<String> candidates = null;
+        for (Map.Entry<String, String> entry : selector.entrySet()) {
+            Set<String> names = labelIndex.get(labelKey(entry.getKey(), entry.getValue()));
+            if (names == null) {
+                return new ArrayList<>();
+            }
+            if (candidates == null || names.size() < candidates.size()) {
+                candidates = names;
+            }
+        }
+        List<T> answer = new ArrayList<>();
+        for (String name : candidates) {
+            T resource = resources.get(name);
+            if (resource != null && KubernetesHelper.filterLabels(selector, KubernetesHelper.getLabels(resource))) {
+                answer.add(copy(resource));
+            }
+        }
+        return answer;
+    }
+
+    protected void listAndWatch() {
+        if (closed) {
+            return;
+        }
+        try {
+            KubernetesResourceList list = lister.get();
+            Map<String, T> listed = new HashMap<>();
+            String version = null;
+            if (list != null) {
+                List items = list.getItems();
+                if (items != null) {
+                    for (Object item : items) {
+                        T resource = (T) item;
+                        String name = KubernetesHelper.getName(resource);
+                        if (name != null) {
+                            listed.put(name, resource);
+                        }
+                    }
+                }
+                if (list.getMetadata() != null) {
+                    version = list.getMetadata().getResourceVersion();
+                }
+            }
+            synchronized (lock) {
+                for (String name : new ArrayList<>(resources.keySet())) {
+                    if (!listed.containsKey(name)) {
+                        remove(name);
+                    }
+                }
+                for (T resource : listed.values()) {
+                    put(resource);
+                }
+                resourceVersion = version;
+            }
+            Watch created = watcher.apply(version, new Watcher<T>() {
+                @Override
+                public void eventReceived(Action action, T resource) {
+                    onEvent(action, resource);
+                }
+
+                @Override
+                public void onClose(KubernetesClientException cause) {
+                    onWatchClosed(cause);
+                }
+            });
+            watch = created;
+            if (closed) {
+                // closed while we were listing, so close() may not have seen the new watch
+                watch = null;
+                if (created != null) {
+                    created.close();
+                }
+                return;
+            }
+            synced = true;
+            LOG.debug("Listed " + listed.size() + " " + kind + " resources at version " + version);
+        } catch (Exception e) {
+            synced = false;
+            LOG.warn("Failed to list and watch " + kind + " resources due " + e.getMessage() + ". Will retry in " + retryDelayMillis + "ms.", e);
+            schedule(retryDelayMillis);
+        }
+    }
+
+    protected void onEvent(Watcher.Action action, T resource) {
+        if (resource == null) {
+            return;
+        }
+        synchronized (lock) {
+            switch (action) {
+                case ADDED:
+                case MODIFIED:
+                    put(resource);
+                    break;
+                case DELETED:
+                    remove(KubernetesHelper.getName(resource));
+                    break;
+                default:
+                    break;
+            }
+            String version = resource.getMetadata() != null ? resource.getMetadata().getResourceVersion() : null;
+            if (Strings.isNotBlank(version)) {
+                resourceVersion = version;
+            }
+        }
+    }
+
+    protected void onWatchClosed(KubernetesClientException cause) {
+        if (closed || cause == null) {
+            return;
+        }
+        synced = false;
+        watch = null;
+        if (cause.getCode() == HttpURLConnection.HTTP_GONE) {
+            LOG.debug(kind + " resources changed too much since version " + resourceVersion + " so listing them again");
+            schedule(0);
+        } else {
+            LOG.warn("Watch of " + kind + " resources closed due " + cause.getMessage() + ". Will list them again in " + retryDelayMillis + "ms.", cause);
+            schedule(retryDelayMillis);
+        }
+    }
+
+    private void schedule(long delayMillis) {
+        if (!closed && !executor.isShutdown()) {
+            executor.schedule(this::listAndWatch, delayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Returns a deep copy of the cached resource by round tripping it through the JSON mapper
+     */
+    protected T copy(T resource) {
+        if (resource == null) {
+            return null;
+        }
+        ObjectMapper mapper = Serialization.jsonMapper();
+        try {
+            TokenBuffer buffer = new TokenBuffer(mapper, false);
+            mapper.writeValue(buffer, resource);
+            return (T) mapper.readValue(buffer.asParser(), resource.getClass());
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to copy " + kind + " " + KubernetesHelper.getName(resource) + " due " + e.getMessage(), e);
+        }
+    }
+
+    private void put(T resource) {
+        String name = KubernetesHelper.getName(resource);
+        if (name == null) {
+            return;
+        }
+        T old = resources.put(name, resource);
+        if (old != null) {
+            unindex(name, KubernetesHelper.getLabels(old));
+        }
+        Map<String, String> labels = KubernetesHelper.getLabels(resource);
+        for (Map.Entry<String, String> entry : labels.entrySet()) {
+            labelIndex.computeIfAbsent(labelKey(entry.getKey(), entry.getValue()), k -> Collections.newSetFromMap(new ConcurrentHashMap<>())).add(name);
+        }
+    }
+
+    private void remove(String name) {
+        if (name == null) {
+            return;
+        }
+        T old = resources.remove(name);
+        if (old != null) {
+            unindex(name, KubernetesHelper.getLabels(old));
+        }
+    }
+
+    private void unindex(String name, Map<String, String> labels) {
+        for (Map.Entry<String, String> entry : labels.entrySet()) {
+            String key = labelKey(entry.getKey(), entry.getValue());
+            Set<String> names = labelIndex.get(key);
+            if (names != null) {
+                names.remove(name);
+                if (names.isEmpty()) {
+                    labelIndex.remove(key);
+                }
+            }
+        }
+    }
+
+    private static String labelKey(String key, String value) {
+        return key + "=" + value;
+    }
+}
@@ -0,0 +1,269 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.kubernetes.api.cache;
+
+import io.fabric8.kubernetes.api.KubernetesHelper;
+import io.fabric8.kubernetes.api.model.Service;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.KubernetesClientException;
+import io.fabric8.kubernetes.client.Watch;
+import io.fabric8.kubernetes.client.Watcher;
+import io.fabric8.utils.Objects;
+import io.fabric8.utils.Strings;
+import io.fabric8.utils.Systems;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches the URLs returned by
+ * {@link KubernetesHelper#getServiceURL(KubernetesClient, String, String, String, String, boolean)} for a time to
+ * live, and remembers services which could not be found for a shorter time.
+ * <p/>
+ * The services of each namespace a URL is resolved in are watched so that the URLs of a service are resolved
+ * again as soon as it changes; changes to routes and ingresses are picked up when the cached URL expires.
+ */
+public class ServiceURLCache implements Closeable {
+    public static final String TTL_PROPERTY = "FABRIC8_SERVICE_URL_CACHE_TTL";
+    public static final String NEGATIVE_TTL_PROPERTY = "FABRIC8_SERVICE_URL_CACHE_NEGATIVE_TTL";
+    public static final long DEFAULT_TTL_MILLIS = 60000L;
+    public static final long DEFAULT_NEGATIVE_TTL_MILLIS = 5000L;
+
+    private static final transient Logger LOG = LoggerFactory.getLogger(ServiceURLCache.class);
+
+    private final KubernetesClient client;
+    private final Map<Key, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<String, Watch> watches = new ConcurrentHashMap<>();
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong invalidationCount = new AtomicLong();
+    private volatile long ttlMillis;
+    private volatile long negativeTtlMillis;
+    private volatile boolean watchServices = true;
+    private volatile boolean closed;
+
+    /**
+     * Creates a cache using the time to live from the {@link #TTL_PROPERTY} and {@link #NEGATIVE_TTL_PROPERTY}
+     * environment variables or system properties
+     */
+    public ServiceURLCache(KubernetesClient client) {
+        this(client, millisProperty(TTL_PROPERTY, DEFAULT_TTL_MILLIS), millisProperty(NEGATIVE_TTL_PROPERTY, DEFAULT_NEGATIVE_TTL_MILLIS));
+    }
+
+    public ServiceURLCache(KubernetesClient client, long ttlMillis, long negativeTtlMillis) {
+        this.client = client;
+        this.ttlMillis = ttlMillis;
+        this.negativeTtlMillis = negativeTtlMillis;
+    }
+
+    /**
+     * Returns the URL to access the service, see
+     * {@link KubernetesHelper#getServiceURL(KubernetesClient, String, String, String, String, boolean)}
+     *
+     * @throws IllegalArgumentException if the URL cannot be found for the serviceName and namespace
+     */
+    public String getServiceURL(String serviceName, String serviceNamespace, String serviceProtocol, String servicePortName, boolean serviceExternal) {
+        String namespace = Strings.isNotBlank(serviceNamespace) ? serviceNamespace : client.getNamespace();
+        Key key = new Key(namespace, serviceName, serviceProtocol, servicePortName, serviceExternal);
+        long now = System.currentTimeMillis();
+        Entry entry = entries.get(key);
+        if (entry != null && entry.expires > now) {
+            hitCount.incrementAndGet();
+            return entry.get();
+        }
+        missCount.incrementAndGet();
+        if (Strings.isNotBlank(namespace)) {
+            watchNamespace(namespace);
+        }
+        // don't cache what we resolved if a service changed meanwhile as we may have seen the old one
+        long invalidations = invalidationCount.get();
+        try {
+            String url = KubernetesHelper.getServiceURL(client, serviceName, namespace, serviceProtocol, servicePortName, serviceExternal);
+            if (ttlMillis > 0 && invalidations == invalidationCount.get()) {
+                entries.put(key, new Entry(url, null, now + ttlMillis));
+            }
+            return url;
+        } catch (IllegalArgumentException e) {
+            if (negativeTtlMillis > 0 && invalidations == invalidationCount.get()) {
+                entries.put(key, new Entry(null, e, now + negativeTtlMillis));
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Removes the cached URLs of the given service so they are resolved again next time
+     */
+    public void invalidate(String namespace, String serviceName) {
+        entries.keySet().removeIf(key -> Objects.equal(key.namespace, namespace) && Objects.equal(key.name, serviceName));
+        invalidationCount.incrementAndGet();
+    }
+
+    public void invalidateAll() {
+        entries.clear();
+        invalidationCount.incrementAndGet();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        for (Watch watch : watches.values()) {
+            watch.close();
+        }
+        watches.clear();
+        entries.clear();
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public long getInvalidationCount() {
+        return invalidationCount.get();
+    }
+
+    public int getSize() {
+        return entries.size();
+    }
+
+    public long getTtlMillis() {
+        return ttlMillis;
+    }
+
+    public void setTtlMillis(long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+    }
+
+    public long getNegativeTtlMillis() {
+        return negativeTtlMillis;
+    }
+
+    public void setNegativeTtlMillis(long negativeTtlMillis) {
+        this.negativeTtlMillis = negativeTtlMillis;
+    }
+
+    public boolean isWatchServices() {
+        return watchServices;
+    }
+
+    /**
+     * Sets whether the services are watched to remove the URLs of changed services; if not the URLs are only
+     * resolved again when they expire
+     */
+    public void setWatchServices(boolean watchServices) {
+        this.watchServices = watchServices;
+    }
+
+    protected synchronized void watchNamespace(final String namespace) {
+        if (!watchServices || closed || watches.containsKey(namespace)) {
+            return;
+        }
+        try {
+            Watch watch = client.services().inNamespace(namespace).watch(new Watcher<Service>() {
+                @Override
+                public void eventReceived(Action action, Service service) {
+                    invalidate(namespace, KubernetesHelper.getName(service));
+                }
+
+                @Override
+                public void onClose(KubernetesClientException cause) {
+                    // we may have missed some changes so lets resolve everything in the namespace again
+                    watches.remove(namespace);
+                    entries.keySet().removeIf(key -> Objects.equal(key.namespace, namespace));
+                    invalidationCount.incrementAndGet();
+                    if (cause != null) {
+                        LOG.debug("Watch of services in namespace " + namespace + " closed due " + cause.getMessage());
+                    }
+                }
+            });
+            watches.put(namespace, watch);
+        } catch (Exception e) {
+            LOG.warn("Could not watch services in namespace " + namespace + " due " + e.getMessage()
+                    + ". Service URLs will be cached for " + ttlMillis + "ms.");
+        }
+    }
+
+    private static long millisProperty(String name, long defaultValue) {
+        String value = Systems.getEnvVarOrSystemProperty(name, String.valueOf(defaultValue));
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            LOG.warn("Ignoring invalid value " + value + " of " + name + " due " + e.getMessage());
+            return defaultValue;
+        }
+    }
+
+    private static final class Entry {
+        private final String url;
+        private final IllegalArgumentException notFound;
+        private final long expires;
+
+        Entry(String url, IllegalArgumentException notFound, long expires) {
+            this.url = url;
+            this.notFound = notFound;
+            this.expires = expires;
+        }
+
+        String get() {
+            if (notFound != null) {
+                throw new IllegalArgumentException(notFound.getMessage());
+            }
+            return url;
+        }
+    }
+
+    private static final class Key {
+        private final String namespace;
+        private final String name;
+        private final String protocol;
+        private final String portName;
+        private final boolean external;
+
+        Key(String namespace, String name, String protocol, String portName, boolean external) {
+            this.namespace = namespace;
+            this.name = name;
+            this.protocol = protocol;
+            this.portName = portName;
+            this.external = external;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Key key = (Key) o;
+            return external == key.external && Objects.equal(namespace, key.namespace) && Objects.equal(name, key.name)
+                    && Objects.equal(protocol, key.protocol) && Objects.equal(portName, key.portName);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(namespace, name, protocol, portName, external);
+        }
+    }
+}
@@ -0,0 +1,268 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.kubernetes.api.dns;
+
+import org.xbill.DNS.ARecord;
+import org.xbill.DNS.ExtendedResolver;
+import org.xbill.DNS.Lookup;
+import org.xbill.DNS.Record;
+import org.xbill.DNS.Resolver;
+import org.xbill.DNS.SRVRecord;
+import org.xbill.DNS.TextParseException;
+import org.xbill.DNS.Type;
+
+import java.io.Closeable;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Looks up services in DNS without blocking the caller.
+ * <p/>
+ * The records found are cached for their TTL and names which are not found for a shorter time. Concurrent
+ * lookups of the same name share one query and every lookup fails with a {@link TimeoutException} if the
+ * DNS server does not answer within the timeout.
+ */
+public class DnsResolver implements Closeable {
+    public static final long DEFAULT_TIMEOUT_MILLIS = 5000L;
+    public static final long DEFAULT_NEGATIVE_TTL_MILLIS = 5000L;
+
+    private static DnsResolver defaultResolver;
+
+    private final Resolver resolver;
+    private final long timeoutMillis;
+    private final ExecutorService executor;
+    private final ScheduledExecutorService scheduler;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong queryCount = new AtomicLong();
+    private final AtomicLong hitCount = new AtomicLong();
+    private volatile long negativeTtlMillis = DEFAULT_NEGATIVE_TTL_MILLIS;
+
+    /**
+     * Creates a resolver using the DNS servers of this host
+     */
+    public DnsResolver() throws UnknownHostException {
+        this(new ExtendedResolver(), DEFAULT_TIMEOUT_MILLIS);
+    }
+
+    public DnsResolver(Resolver resolver, long timeoutMillis) {
+        this.resolver = resolver;
+        this.timeoutMillis = timeoutMillis;
+        this.resolver.setTimeout((int) (timeoutMillis / 1000), (int) (timeoutMillis % 1000));
+        this.executor = Executors.newCachedThreadPool(daemonThreads("DnsResolver"));
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(daemonThreads("DnsResolver-timeout"));
+    }
+
+    /**
+     * Returns the resolver shared by the lookups in {@link io.fabric8.kubernetes.api.KubernetesHelper}
+     */
+    public static synchronized DnsResolver getDefault() throws UnknownHostException {
+        if (defaultResolver == null) {
+            defaultResolver = new DnsResolver();
+        }
+        return defaultResolver;
+    }
+
+    /**
+     * Looks up the endpoints of the service in the SRV records, in the format "host:port", ordered by priority
+     * and weight
+     */
+    public CompletableFuture<List<String>> lookupServiceEndpoints(String serviceName) {
+        return lookup(serviceName, Type.SRV).thenApply(DnsResolver::toEndpoints);
+    }
+
+    /**
+     * Looks up the addresses of the service in the A records; which are the endpoint IPs of a headless service
+     * or the service IP otherwise
+     */
+    public CompletableFuture<Set<String>> lookupService(String serviceName) {
+        return lookup(serviceName, Type.A).thenApply(DnsResolver::toAddresses);
+    }
+
+    /**
+     * Looks up the records of the given type, returning an empty array if there are none
+     */
+    public CompletableFuture<Record[]> lookup(String name, int type) {
+        String key = name + "/" + Type.string(type);
+        long now = System.currentTimeMillis();
+        Entry answer = entries.compute(key, (k, entry) -> {
+            if (entry != null && (!entry.future.isDone() || entry.expires > now)) {
+                hitCount.incrementAndGet();
+                return entry;
+            }
+            return new Entry();
+        });
+        if (answer.started.compareAndSet(false, true)) {
+            query(key, name, type, answer);
+        }
+        return answer.future;
+    }
+
+    /**
+     * Removes all of the cached records
+     */
+    public void clear() {
+        entries.clear();
+    }
+
+    @Override
+    public void close() {
+        entries.clear();
+        executor.shutdownNow();
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Returns the number of queries made to the DNS server
+     */
+    public long getQueryCount() {
+        return queryCount.get();
+    }
+
+    /**
+     * Returns the number of lookups answered by a cached or pending query
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    public long getNegativeTtlMillis() {
+        return negativeTtlMillis;
+    }
+
+    public void setNegativeTtlMillis(long negativeTtlMillis) {
+        this.negativeTtlMillis = negativeTtlMillis;
+    }
+
+    protected void query(String key, String name, int type, Entry entry) {
+        queryCount.incrementAndGet();
+        CompletableFuture<Record[]> future = entry.future;
+        ScheduledFuture<?> timeout = scheduler.schedule(() -> {
+            if (future.completeExceptionally(new TimeoutException("No answer from DNS for " + name + " within " + timeoutMillis + "ms"))) {
+                entries.remove(key, entry);
+            }
+        }, timeoutMillis, TimeUnit.MILLISECONDS);
+        executor.execute(() -> {
+            try {
+                Lookup lookup = new Lookup(name, type);
+                lookup.setResolver(resolver);
+                // we cache the answers ourselves
+                lookup.setCache(null);
+                Record[] records = lookup.run();
+                int result = lookup.getResult();
+                if (result == Lookup.SUCCESSFUL) {
+                    entry.expires = System.currentTimeMillis() + minTtlMillis(records);
+                    future.complete(records);
+                } else if (result == Lookup.HOST_NOT_FOUND || result == Lookup.TYPE_NOT_FOUND) {
+                    entry.expires = System.currentTimeMillis() + negativeTtlMillis;
+                    future.complete(new Record[0]);
+                } else {
+                    entries.remove(key, entry);
+                    future.completeExceptionally(new UnknownHostException("Lookup " + name + " result: " + lookup.getErrorString()));
+                }
+            } catch (TextParseException e) {
+                entries.remove(key, entry);
+                future.completeExceptionally(new IllegalArgumentException("Unparseable service name: " + name, e));
+            } catch (Exception e) {
+                entries.remove(key, entry);
+                future.completeExceptionally(e);
+            } finally {
+                timeout.cancel(false);
+            }
+        });
+    }
+
+    /**
+     * Returns the endpoints of the SRV records in the format "host:port" ordered by priority and weight
+     */
+    public static List<String> toEndpoints(Record[] records) {
+        if (records.length == 0) {
+            return Collections.EMPTY_LIST;
+        }
+        SRVRecord[] srvRecords = Arrays.copyOf(records, records.length, SRVRecord[].class);
+        Arrays.sort(srvRecords, (a, b) -> {
+            int ret = Integer.compare(b.getPriority(), a.getPriority());
+            if (ret == 0) {
+                ret = Integer.compare(b.getWeight(), a.getWeight());
+            }
+            return ret;
+        });
+        List<String> endpointAddresses = new ArrayList<>(srvRecords.length);
+        for (SRVRecord srvRecord : srvRecords) {
+            endpointAddresses.add(srvRecord.getTarget().toString(true).concat(":").concat(String.valueOf(srvRecord.getPort())));
+        }
+        return endpointAddresses;
+    }
+
+    /**
+     * Returns the addresses of the A records
+     */
+    public static Set<String> toAddresses(Record[] records) {
+        if (records.length == 0) {
+            return Collections.EMPTY_SET;
+        }
+        Set<String> endpointAddresses = new LinkedHashSet<>(records.length);
+        for (Record record : records) {
+            ARecord aRecord = (ARecord) record;
+            endpointAddresses.add(aRecord.getAddress().getHostAddress());
+        }
+        return endpointAddresses;
+    }
+
+    private static long minTtlMillis(Record[] records) {
+        long ttl = Long.MAX_VALUE;
+        for (Record record : records) {
+            ttl = Math.min(ttl, record.getTTL());
+        }
+        return records.length > 0 ? TimeUnit.SECONDS.toMillis(ttl) : 0;
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        AtomicInteger counter = new AtomicInteger();
+        return r -> {
+            Thread thread = new Thread(r, name + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static final class Entry {
+        private final CompletableFuture<Record[]> future = new CompletableFuture<>();
+        private final AtomicBoolean started = new AtomicBoolean();
+        private volatile long expires;
+    }
+}
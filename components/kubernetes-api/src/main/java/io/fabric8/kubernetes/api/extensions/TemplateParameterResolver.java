@@ -0,0 +1,120 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.kubernetes.api.extensions;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Replaces <code>${NAME}</code> expressions in text with the values of template parameters in a single pass.
+ * <p/>
+ * Parameter values may themselves contain expressions which are resolved once and remembered. A parameter whose
+ * value refers back to itself, directly or through other parameters, cannot be resolved so its expression is left
+ * unchanged as <code>${NAME}</code>, as are the expressions of the parameters which refer to it. Expressions which do
+ * not refer to a parameter are left unchanged too.
+ */
+public class TemplateParameterResolver {
+    private static final transient Logger LOG = LoggerFactory.getLogger(TemplateParameterResolver.class);
+
+    private final Map<String, String> values;
+    private final Map<String, String> resolved = new HashMap<>();
+    private final Set<String> resolving = new HashSet<>();
+    private final Set<String> cyclic = new HashSet<>();
+    private int cycles;
+
+    public TemplateParameterResolver(Map<String, String> values) {
+        this.values = values;
+    }
+
+    /**
+     * Returns the text with all the parameter expressions replaced, or the same text if it contains none
+     */
+    public String resolve(String text) {
+        if (text == null) {
+            return null;
+        }
+        int start = text.indexOf("${");
+        if (start < 0) {
+            return text;
+        }
+        StringBuilder builder = null;
+        int idx = 0;
+        while (start >= 0) {
+            int end = text.indexOf('}', start + 2);
+            if (end < 0) {
+                break;
+            }
+            String name = text.substring(start + 2, end);
+            String value = resolveParameter(name);
+            if (value != null) {
+                if (builder == null) {
+                    builder = new StringBuilder(text.length() + 16);
+                }
+                builder.append(text, idx, start).append(value);
+                idx = end + 1;
+                start = text.indexOf("${", idx);
+            } else {
+                start = text.indexOf("${", start + 2);
+            }
+        }
+        if (builder == null) {
+            return text;
+        }
+        return builder.append(text, idx, text.length()).toString();
+    }
+
+    /**
+     * Returns the resolved value of the parameter or null if there is no such parameter or its value refers back
+     * to itself, in which case nothing resolved along the way is remembered
+     */
+    protected String resolveParameter(String name) {
+        String answer = resolved.get(name);
+        if (answer != null) {
+            return answer;
+        }
+        String value = values.get(name);
+        if (value == null) {
+            return null;
+        }
+        if (cyclic.contains(name)) {
+            cycles++;
+            return null;
+        }
+        if (!resolving.add(name)) {
+            LOG.warn("Template parameter " + name + " refers to itself so it cannot be resolved");
+            cycles++;
+            return null;
+        }
+        int before = cycles;
+        try {
+            answer = resolve(value);
+        } finally {
+            resolving.remove(name);
+        }
+        if (cycles != before) {
+            // the value is only partially expanded, so leave the expression as it is
+            cyclic.add(name);
+            return null;
+        }
+        resolved.put(name, answer);
+        return answer;
+    }
+}
@@ -15,8 +15,12 @@
  */
 package io.fabric8.kubernetes.api.extensions;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.util.JsonGeneratorDelegate;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
 import io.fabric8.kubernetes.api.KubernetesHelper;
+import io.fabric8.kubernetes.api.Serialization;
 import io.fabric8.kubernetes.api.model.HasMetadata;
 import io.fabric8.kubernetes.api.model.KubernetesList;
 import io.fabric8.openshift.api.model.Parameter;
@@ -39,7 +43,6 @@ import java.util.TreeSet;
  */
 public class Templates {
 
-    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
     private static final transient Logger LOG = LoggerFactory.getLogger(Templates.class);
 
     /**
@@ -196,35 +199,88 @@ public class Templates {
         }
         List<Parameter> parameters = entity != null ? entity.getParameters() : null;
         if (parameters != null && !parameters.isEmpty()) {
-            String json = "{\"kind\": \"List\", \"apiVersion\": \"" +
-                    KubernetesHelper.defaultApiVersion + "\",\n" +
-                    "  \"items\": " +
-                    KubernetesHelper.toJson(objects) +
-                    " }";
-
-            // lets make a few passes in case there's expressions in values
-            for (int i = 0; i < 5; i++) {
-                for (Parameter parameter : parameters) {
-                    String name = parameter.getName();
-                    String regex = "${" + name + "}";
-                    String value = parameter.getValue();
-
-                    // TODO generate random strings for passwords etc!
-                    if (Strings.isNullOrBlank(value)) {
-                        if (failOnMissingParameterValue) {
-                            throw new IllegalArgumentException("No value available for parameter name: " + name);
-                        } else {
-                            value = "";
-                        }
+            Map<String, String> values = new HashMap<>();
+            for (Parameter parameter : parameters) {
+                String name = parameter.getName();
+                String value = parameter.getValue();
+
+                // TODO generate random strings for passwords etc!
+                if (Strings.isNullOrBlank(value)) {
+                    if (failOnMissingParameterValue) {
+                        throw new IllegalArgumentException("No value available for parameter name: " + name);
+                    } else {
+                        value = "";
                     }
-                    json = Strings.replaceAllWithoutRegex(json, regex, value);
                 }
+                values.put(name, value);
+            }
+
+            // lets replace the expressions in each field name and string value as the objects are written
+            // as tokens which we then read back, rather than replacing them in the JSON text
+            TokenBuffer buffer = new TokenBuffer(Serialization.jsonMapper(), false);
+            try (JsonGenerator generator = new ParameterSubstitutingGenerator(buffer, new TemplateParameterResolver(values))) {
+                generator.writeStartObject();
+                generator.writeStringField("kind", "List");
+                generator.writeStringField("apiVersion", KubernetesHelper.defaultApiVersion);
+                generator.writeFieldName("items");
+                generator.writeObject(objects);
+                generator.writeEndObject();
             }
-            return  OBJECT_MAPPER.readerFor(KubernetesList.class).readValue(json);
+            return Serialization.jsonReader(KubernetesList.class).readValue(buffer.asParser());
         } else {
             KubernetesList answer = new KubernetesList();
             answer.setItems(objects);
             return answer;
         }
     }
+
+    /**
+     * Replaces the template parameter expressions in the field names and string values written to the delegate
+     */
+    private static class ParameterSubstitutingGenerator extends JsonGeneratorDelegate {
+        private final TemplateParameterResolver resolver;
+
+        ParameterSubstitutingGenerator(JsonGenerator delegate, TemplateParameterResolver resolver) {
+            // we must not pass objects straight to the delegate or their values would not be substituted
+            super(delegate, false);
+            this.resolver = resolver;
+        }
+
+        @Override
+        public void writeFieldName(String name) throws IOException {
+            super.writeFieldName(resolver.resolve(name));
+        }
+
+        @Override
+        public void writeFieldName(SerializableString name) throws IOException {
+            String value = name.getValue();
+            String resolved = resolver.resolve(value);
+            if (resolved == value) {
+                super.writeFieldName(name);
+            } else {
+                super.writeFieldName(resolved);
+            }
+        }
+
+        @Override
+        public void writeString(String text) throws IOException {
+            super.writeString(resolver.resolve(text));
+        }
+
+        @Override
+        public void writeString(char[] text, int offset, int len) throws IOException {
+            writeString(new String(text, offset, len));
+        }
+
+        @Override
+        public void writeString(SerializableString text) throws IOException {
+            String value = text.getValue();
+            String resolved = resolver.resolve(value);
+            if (resolved == value) {
+                super.writeString(text);
+            } else {
+                super.writeString(resolved);
+            }
+        }
+    }
 }
@@ -0,0 +1,243 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.kubernetes.api;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.fabric8.kubernetes.client.Config;
+import io.fabric8.kubernetes.client.ConfigBuilder;
+import io.fabric8.kubernetes.client.DefaultKubernetesClient;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A minimal in-process Kubernetes API server which stores whatever is created in memory and
+ * adds a fixed latency to every request, so we can test how many round trips a client makes
+ * and how long they take.
+ */
+public class FakeKubernetesApiServer {
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final MockWebServer server = new MockWebServer();
+    private final Map<String, String> resources = new ConcurrentHashMap<>();
+    private final List<String> requests = new CopyOnWriteArrayList<>();
+    private final List<String> created = new CopyOnWriteArrayList<>();
+    private final AtomicInteger requestCount = new AtomicInteger();
+    private final AtomicInteger activeRequests = new AtomicInteger();
+    private final AtomicInteger peakActiveRequests = new AtomicInteger();
+    private volatile long latencyMillis;
+
+    public FakeKubernetesApiServer(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                int active = activeRequests.incrementAndGet();
+                peakActiveRequests.accumulateAndGet(active, Math::max);
+                try {
+                    return handle(request);
+                } finally {
+                    activeRequests.decrementAndGet();
+                }
+            }
+        });
+    }
+
+    public void start() throws IOException {
+        server.start();
+    }
+
+    public void shutdown() throws IOException {
+        server.shutdown();
+    }
+
+    public KubernetesClient createClient(String namespace) {
+        Config config = new ConfigBuilder()
+                .withMasterUrl(server.url("/").toString())
+                .withNamespace(namespace)
+                .withTrustCerts(true)
+                .build();
+        return new DefaultKubernetesClient(config);
+    }
+
+    /**
+     * Stores a resource as if it had been created
+     */
+    public void put(String path, String json) {
+        resources.put(path, json);
+    }
+
+    public boolean contains(String path) {
+        return resources.containsKey(path);
+    }
+
+    /**
+     * Returns the paths of the created resources in the order the create requests arrived
+     */
+    public List<String> getCreated() {
+        return new ArrayList<>(created);
+    }
+
+    /**
+     * Returns the method and path of every request in the order they arrived
+     */
+    public List<String> getRequests() {
+        return new ArrayList<>(requests);
+    }
+
+    public int getRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * Returns the most requests that were being handled at the same time
+     */
+    public int getPeakActiveRequests() {
+        return peakActiveRequests.get();
+    }
+
+    public void resetRequests() {
+        requests.clear();
+        created.clear();
+        requestCount.set(0);
+        peakActiveRequests.set(0);
+    }
+
+    public void setLatencyMillis(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+    protected MockResponse handle(RecordedRequest request) throws InterruptedException {
+        String method = request.getMethod();
+        String path = request.getPath();
+        int idx = path.indexOf('?');
+        if (idx >= 0) {
+            // query parameters such as label selectors are ignored
+            path = path.substring(0, idx);
+        }
+        if (path.length() > 1 && path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
+        }
+        requestCount.incrementAndGet();
+        requests.add(method + " " + path);
+        if (method.equals("POST")) {
+            // lets record the order the creates arrive in, not when they complete
+            String body = request.getBody().readUtf8();
+            String name = nameOf(body);
+            if (name == null) {
+                return status(422, "No name");
+            }
+            String resourcePath = path + "/" + name;
+            created.add(resourcePath);
+            sleep();
+            if (resources.putIfAbsent(resourcePath, body) != null) {
+                return status(409, resourcePath + " already exists");
+            }
+            return new MockResponse().setResponseCode(201).setBody(body);
+        }
+        sleep();
+        if (path.equals("/")) {
+            return new MockResponse().setResponseCode(200).setBody("{\"paths\":[\"/api\",\"/api/v1\",\"/apis\",\"/apis/extensions\",\"/apis/extensions/v1beta1\"]}");
+        }
+        switch (method) {
+            case "GET":
+                String json = resources.get(path);
+                if (json != null) {
+                    return new MockResponse().setResponseCode(200).setBody(json);
+                }
+                if (isCollection(path)) {
+                    return new MockResponse().setResponseCode(200).setBody(list(path));
+                }
+                return status(404, path + " not found");
+            case "PUT":
+                String body = request.getBody().readUtf8();
+                if (resources.replace(path, body) == null) {
+                    return status(404, path + " not found");
+                }
+                return new MockResponse().setResponseCode(200).setBody(body);
+            case "DELETE":
+                if (resources.remove(path) == null) {
+                    return status(404, path + " not found");
+                }
+                return status(200, "deleted");
+            default:
+                return status(405, method + " not supported");
+        }
+    }
+
+    /**
+     * Returns true if the path is of a collection of resources, such as /api/v1/namespaces/foo/services
+     */
+    protected boolean isCollection(String path) {
+        String[] segments = path.substring(1).split("/");
+        // api/v1/<kind> or api/v1/namespaces/<namespace>/<kind> and apis/<group>/<version>/...
+        int prefix = segments[0].equals("apis") ? 3 : 2;
+        int remaining = segments.length - prefix;
+        if (remaining > 1 && segments[prefix].equals("namespaces")) {
+            remaining -= 2;
+        }
+        return remaining == 1;
+    }
+
+    protected String list(String path) {
+        StringBuilder builder = new StringBuilder("{\"kind\":\"List\",\"apiVersion\":\"v1\",\"metadata\":{},\"items\":[");
+        boolean first = true;
+        String prefix = path + "/";
+        for (Map.Entry<String, String> entry : resources.entrySet()) {
+            String key = entry.getKey();
+            if (key.startsWith(prefix) && key.indexOf('/', prefix.length()) < 0) {
+                if (!first) {
+                    builder.append(',');
+                }
+                builder.append(entry.getValue());
+                first = false;
+            }
+        }
+        return builder.append("]}").toString();
+    }
+
+    private void sleep() throws InterruptedException {
+        if (latencyMillis > 0) {
+            Thread.sleep(latencyMillis);
+        }
+    }
+
+    private static String nameOf(String json) {
+        try {
+            JsonNode name = OBJECT_MAPPER.readTree(json).path("metadata").path("name");
+            return name.isTextual() ? name.asText() : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static MockResponse status(int code, String message) {
+        String body = "{\"kind\":\"Status\",\"apiVersion\":\"v1\",\"metadata\":{},\"status\":\"" + (code < 400 ? "Success" : "Failure")
+                + "\",\"message\":\"" + message + "\",\"code\":" + code + "}";
+        return new MockResponse().setResponseCode(code).setBody(body);
+    }
+}
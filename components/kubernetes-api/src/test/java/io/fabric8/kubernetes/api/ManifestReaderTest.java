@@ -0,0 +1,187 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.kubernetes.api;
+
+import io.fabric8.kubernetes.api.model.ConfigMap;
+import io.fabric8.kubernetes.api.model.HasMetadata;
+import io.fabric8.kubernetes.api.model.Service;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ManifestReaderTest {
+
+    @Test
+    public void testMultipleYamlDocuments() throws Exception {
+        String yaml = "apiVersion: v1\n" +
+                "kind: Service\n" +
+                "metadata:\n" +
+                "  name: first\n" +
+                "---\n" +
+                "---\n" +
+                "apiVersion: v1\n" +
+                "kind: List\n" +
+                "items:\n" +
+                "- apiVersion: v1\n" +
+                "  kind: ConfigMap\n" +
+                "  metadata:\n" +
+                "    name: second\n" +
+                "- apiVersion: v1\n" +
+                "  kind: Service\n" +
+                "  metadata:\n" +
+                "    name: third\n";
+
+        List<HasMetadata> entities = readAll(yaml, true);
+        assertThat(entities).extracting(KubernetesHelper::getName).containsExactly("first", "second", "third");
+        assertThat(entities.get(1)).isInstanceOf(ConfigMap.class);
+    }
+
+    @Test
+    public void testControllerAppliesEveryDocumentOfAYamlFile() throws Exception {
+        String yaml = "apiVersion: v1\n" +
+                "kind: ConfigMap\n" +
+                "metadata:\n" +
+                "  name: first\n" +
+                "---\n" +
+                "apiVersion: v1\n" +
+                "kind: ConfigMap\n" +
+                "metadata:\n" +
+                "  name: second\n";
+        File file = File.createTempFile("manifest", ".yaml");
+        file.deleteOnExit();
+        Files.write(file.toPath(), yaml.getBytes(StandardCharsets.UTF_8));
+
+        FakeKubernetesApiServer server = new FakeKubernetesApiServer(0);
+        server.start();
+        server.put("/api/v1/namespaces/test", "{\"kind\":\"Namespace\",\"apiVersion\":\"v1\",\"metadata\":{\"name\":\"test\"}}");
+        try (KubernetesClient client = server.createClient("test")) {
+            Controller controller = new Controller(client);
+            controller.setNamespace("test");
+            controller.apply(file);
+
+            assertThat(server.contains("/api/v1/namespaces/test/configmaps/first")).isTrue();
+            assertThat(server.contains("/api/v1/namespaces/test/configmaps/second")).isTrue();
+            assertThat(controller.getLastApplyReport().getEntries()).hasSize(2);
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    @Test
+    public void testJsonListWithKindAfterItems() throws Exception {
+        String json = "{\"items\": [" +
+                "{\"apiVersion\": \"v1\", \"kind\": \"Service\", \"metadata\": {\"name\": \"first\"}}," +
+                "{\"apiVersion\": \"v1\", \"kind\": \"ConfigMap\", \"metadata\": {\"name\": \"second\"}, \"data\": {\"items\": \"not a list\"}}" +
+                "], \"apiVersion\": \"v1\", \"kind\": \"List\"}";
+
+        List<HasMetadata> entities = readAll(json, false);
+        assertThat(entities).extracting(KubernetesHelper::getName).containsExactly("first", "second");
+        assertThat(((ConfigMap) entities.get(1)).getData()).containsEntry("items", "not a list");
+    }
+
+    @Test
+    public void testJsonArrayAndSingleEntity() throws Exception {
+        assertThat(readAll("[{\"apiVersion\": \"v1\", \"kind\": \"Service\", \"metadata\": {\"name\": \"a\"}}]", false)).hasSize(1);
+        List<HasMetadata> entities = readAll("{\"apiVersion\": \"v1\", \"kind\": \"Service\", \"metadata\": {\"name\": \"b\"}}", false);
+        assertThat(entities).hasSize(1);
+        assertThat(entities.get(0)).isInstanceOf(Service.class);
+    }
+
+    @Test
+    public void testEntitiesAreReadBeforeTheWholeStream() throws Exception {
+        int count = 100000;
+        GeneratedListInputStream in = new GeneratedListInputStream(count);
+        try (ManifestReader reader = ManifestReader.forStream(in, false)) {
+            HasMetadata first = reader.read();
+            assertThat(KubernetesHelper.getName(first)).isEqualTo("config-0");
+            assertThat(in.getRead()).isLessThan(in.getLength() / 100);
+
+            int read = 1;
+            while (reader.read() != null) {
+                read++;
+            }
+            assertThat(read).isEqualTo(count);
+        }
+    }
+
+    protected static List<HasMetadata> readAll(String text, boolean yaml) throws Exception {
+        List<HasMetadata> answer = new ArrayList<>();
+        try (ManifestReader reader = ManifestReader.forStream(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)), yaml)) {
+            while (reader.hasNext()) {
+                answer.add(reader.next());
+            }
+        }
+        return answer;
+    }
+
+    /**
+     * Generates a JSON list of ConfigMaps as it is read so the manifest is never held in memory
+     */
+    private static class GeneratedListInputStream extends InputStream {
+        private final int count;
+        private final long length;
+        private byte[] chunk = "{\"apiVersion\": \"v1\", \"kind\": \"List\", \"items\": [".getBytes(StandardCharsets.UTF_8);
+        private int index;
+        private int position;
+        private long read;
+
+        GeneratedListInputStream(int count) {
+            this.count = count;
+            long total = chunk.length + 2;
+            for (int i = 0; i < count; i++) {
+                total += item(i).length;
+            }
+            this.length = total;
+        }
+
+        @Override
+        public int read() {
+            if (position >= chunk.length) {
+                if (index > count) {
+                    return -1;
+                }
+                chunk = index < count ? item(index) : "]}".getBytes(StandardCharsets.UTF_8);
+                index++;
+                position = 0;
+            }
+            read++;
+            return chunk[position++] & 0xff;
+        }
+
+        long getRead() {
+            return read;
+        }
+
+        long getLength() {
+            return length;
+        }
+
+        private byte[] item(int i) {
+            String json = (i > 0 ? "," : "") + "{\"apiVersion\": \"v1\", \"kind\": \"ConfigMap\", \"metadata\": {\"name\": \"config-" + i
+                    + "\"}, \"data\": {\"application.properties\": \"some.property." + i + " = some value which makes the manifest larger\"}}";
+            return json.getBytes(StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.kubernetes.api;
+
+import io.fabric8.kubernetes.api.model.ConfigMapBuilder;
+import io.fabric8.kubernetes.api.model.HasMetadata;
+import io.fabric8.kubernetes.api.model.KubernetesList;
+import io.fabric8.kubernetes.api.model.ReplicationControllerBuilder;
+import io.fabric8.kubernetes.api.model.SecretBuilder;
+import io.fabric8.kubernetes.api.model.ServiceBuilder;
+import io.fabric8.kubernetes.api.model.extensions.IngressBuilder;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class ParallelApplyTest {
+    private static final String NAMESPACE = "test";
+    private static final int COUNT = 10;
+
+    private FakeKubernetesApiServer server;
+    private KubernetesClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new FakeKubernetesApiServer(20);
+        server.start();
+        server.put("/api/v1/namespaces/" + NAMESPACE, "{\"kind\":\"Namespace\",\"apiVersion\":\"v1\",\"metadata\":{\"name\":\"" + NAMESPACE + "\"}}");
+        client = server.createClient(NAMESPACE);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        client.close();
+        server.shutdown();
+    }
+
+    @Test
+    public void testRanks() {
+        assertThat(ParallelApplier.getRank(new ConfigMapBuilder().build())).isLessThan(ParallelApplier.getRank(new ServiceBuilder().build()));
+        assertThat(ParallelApplier.getRank(new ServiceBuilder().build())).isLessThan(ParallelApplier.getRank(new ReplicationControllerBuilder().build()));
+        assertThat(ParallelApplier.getRank(new ReplicationControllerBuilder().build())).isLessThan(ParallelApplier.getRank(new IngressBuilder().build()));
+    }
+
+    @Test
+    public void testParallelApplyIsOrderedAndConcurrent() throws Exception {
+        Controller sequential = createController(1);
+        sequential.applyList(createList("a"), "sequential");
+        assertThat(server.getPeakActiveRequests()).isEqualTo(1);
+
+        server.resetRequests();
+        Controller parallel = createController(8);
+        parallel.applyList(createList("b"), "parallel");
+        ApplyReport parallelReport = parallel.getLastApplyReport();
+
+        assertThat(parallelReport.getEntries()).hasSize(COUNT * 4);
+        assertThat(parallelReport.getFailures()).isEmpty();
+        // the entities have no namespace of their own, so are reported in the one they were applied to
+        assertThat(parallelReport.getEntries()).extracting(ApplyReport.Entry::getNamespace).containsOnly(NAMESPACE);
+        for (int i = 0; i < COUNT; i++) {
+            assertThat(server.contains("/api/v1/namespaces/test/configmaps/b-config-" + i)).isTrue();
+            assertThat(server.contains("/api/v1/namespaces/test/services/b-service-" + i)).isTrue();
+            assertThat(server.contains("/api/v1/namespaces/test/replicationcontrollers/b-rc-" + i)).isTrue();
+            assertThat(server.contains("/apis/extensions/v1beta1/namespaces/test/ingresses/b-ingress-" + i)).isTrue();
+        }
+
+        // each kind must have been created before any of the kinds which depend on it
+        List<String> created = server.getCreated();
+        assertCreatedBefore(created, "/configmaps/", "/services/");
+        assertCreatedBefore(created, "/services/", "/replicationcontrollers/");
+        assertCreatedBefore(created, "/replicationcontrollers/", "/ingresses/");
+
+        // the entities of a layer are applied at the same time
+        assertThat(server.getPeakActiveRequests()).isGreaterThan(1);
+    }
+
+    @Test
+    public void testFailureSkipsLaterLayers() throws Exception {
+        List<HasMetadata> items = new ArrayList<>();
+        for (int i = 0; i < COUNT; i++) {
+            items.add(new ServiceBuilder().withNewMetadata().withName("c-service-" + i).endMetadata()
+                    .withNewSpec().addToSelector("app", "c" + i).endSpec().build());
+            items.add(new ReplicationControllerBuilder().withNewMetadata().withName("c-rc-" + i).endMetadata()
+                    .withNewSpec().withReplicas(1).addToSelector("app", "c" + i).endSpec().build());
+        }
+        items.add(new ConfigMapBuilder().withNewMetadata().withName("c-config").endMetadata().addToData("key", "value").build());
+        // a config map without a name fails to apply
+        items.add(new ConfigMapBuilder().withNewMetadata().endMetadata().addToData("key", "value").build());
+        KubernetesList list = new KubernetesList();
+        list.setItems(items);
+
+        Controller controller = createController(4);
+        try {
+            controller.applyList(list, "failing");
+            fail("Should have failed to apply the config map without a name");
+        } catch (Exception e) {
+            // expected
+        }
+        ApplyReport report = controller.getLastApplyReport();
+        assertThat(report.getEntries()).hasSize(2);
+        assertThat(report.getFailures()).hasSize(1);
+        assertThat(report.getSkipped()).isEqualTo(COUNT * 2);
+        assertThat(server.contains("/api/v1/namespaces/test/configmaps/c-config")).isTrue();
+        assertThat(server.contains("/api/v1/namespaces/test/services/c-service-0")).isFalse();
+    }
+
+    @Test
+    public void testApplyNamespace() throws Exception {
+        Controller controller = createController(4);
+        // only some kinds are applied to the namespace in their metadata
+        assertThat(controller.getApplyNamespace(new ConfigMapBuilder().withNewMetadata().withName("a").withNamespace("other").endMetadata().build()))
+                .isEqualTo(NAMESPACE);
+        assertThat(controller.getApplyNamespace(new SecretBuilder().withNewMetadata().withName("a").withNamespace("other").endMetadata().build()))
+                .isEqualTo("other");
+        assertThat(controller.getApplyNamespace(new SecretBuilder().withNewMetadata().withName("a").endMetadata().build()))
+                .isEqualTo(NAMESPACE);
+    }
+
+    protected Controller createController(int threads) {
+        Controller controller = new Controller(client);
+        controller.setNamespace(NAMESPACE);
+        controller.setApplyThreads(threads);
+        return controller;
+    }
+
+    protected KubernetesList createList(String prefix) {
+        List<HasMetadata> items = new ArrayList<>();
+        for (int i = 0; i < COUNT; i++) {
+            items.add(new IngressBuilder().withNewMetadata().withName(prefix + "-ingress-" + i).endMetadata()
+                    .withNewSpec().withNewBackend().withServiceName(prefix + "-service-" + i).endBackend().endSpec().build());
+            items.add(new ReplicationControllerBuilder().withNewMetadata().withName(prefix + "-rc-" + i).endMetadata()
+                    .withNewSpec().withReplicas(1).addToSelector("app", prefix + i).endSpec().build());
+            items.add(new ServiceBuilder().withNewMetadata().withName(prefix + "-service-" + i).endMetadata()
+                    .withNewSpec().addToSelector("app", prefix + i).endSpec().build());
+            items.add(new ConfigMapBuilder().withNewMetadata().withName(prefix + "-config-" + i).endMetadata()
+                    .addToData("key", "value").build());
+        }
+        // the order in the list should not matter
+        Collections.shuffle(items);
+        KubernetesList list = new KubernetesList();
+        list.setItems(items);
+        return list;
+    }
+
+    private static void assertCreatedBefore(List<String> created, String first, String then) {
+        int lastFirst = -1;
+        int firstThen = Integer.MAX_VALUE;
+        for (int i = 0; i < created.size(); i++) {
+            String path = created.get(i);
+            if (path.contains(first)) {
+                lastFirst = i;
+            } else if (path.contains(then) && firstThen == Integer.MAX_VALUE) {
+                firstThen = i;
+            }
+        }
+        assertThat(lastFirst).as("last " + first + " created before first " + then).isLessThan(firstThen);
+    }
+}
@@ -0,0 +1,142 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.kubernetes.api;
+
+import io.fabric8.kubernetes.api.model.ConfigMapBuilder;
+import io.fabric8.kubernetes.api.model.HasMetadata;
+import io.fabric8.kubernetes.api.model.KubernetesList;
+import io.fabric8.kubernetes.api.model.ServiceBuilder;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PrefetchApplyTest {
+    private static final String NAMESPACE = "test";
+    private static final int COUNT = 20;
+
+    private FakeKubernetesApiServer server;
+    private KubernetesClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new FakeKubernetesApiServer(0);
+        server.start();
+        server.put("/api/v1/namespaces/" + NAMESPACE, "{\"kind\":\"Namespace\",\"apiVersion\":\"v1\",\"metadata\":{\"name\":\"" + NAMESPACE + "\"}}");
+        client = server.createClient(NAMESPACE);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        client.close();
+        server.shutdown();
+    }
+
+    @Test
+    public void testPrefetchAvoidsGetPerEntity() throws Exception {
+        // half of each list already exists
+        for (String prefix : new String[]{"a", "b"}) {
+            for (int i = 0; i < COUNT / 2; i++) {
+                server.put("/api/v1/namespaces/test/configmaps/" + prefix + "-config-" + i,
+                        "{\"kind\":\"ConfigMap\",\"apiVersion\":\"v1\",\"metadata\":{\"name\":\"" + prefix + "-config-" + i + "\",\"namespace\":\"test\"},\"data\":{\"key\":\"value\"}}");
+            }
+        }
+
+        server.resetRequests();
+        Controller withoutPrefetch = createController(false);
+        withoutPrefetch.applyList(createList("a"), "without");
+        int without = server.getRequestCount();
+
+        server.resetRequests();
+        Controller withPrefetch = createController(true);
+        withPrefetch.applyList(createList("b"), "with");
+        int with = server.getRequestCount();
+
+        for (int i = 0; i < COUNT; i++) {
+            assertThat(server.contains("/api/v1/namespaces/test/configmaps/b-config-" + i)).isTrue();
+            assertThat(server.contains("/api/v1/namespaces/test/services/b-service-" + i)).isTrue();
+        }
+        // one list per kind rather than a get per entity
+        assertThat(server.getRequests()).filteredOn(r -> r.startsWith("GET /api/v1/namespaces/test/services/")).isEmpty();
+        assertThat(server.getRequests()).filteredOn(r -> r.startsWith("GET /api/v1/namespaces/test/configmaps/")).isEmpty();
+        assertThat(with).isLessThan(without - COUNT);
+    }
+
+    @Test
+    public void testSameEntityTwiceIsLookedUpAgain() throws Exception {
+        List<HasMetadata> items = new ArrayList<>();
+        items.add(new ConfigMapBuilder().withNewMetadata().withName("twice").endMetadata().addToData("key", "first").build());
+        items.add(new ConfigMapBuilder().withNewMetadata().withName("twice").endMetadata().addToData("key", "second").build());
+        KubernetesList list = new KubernetesList();
+        list.setItems(items);
+
+        createController(true).applyList(list, "twice");
+
+        // the second one must see the first one was created and replace it rather than create it again
+        assertThat(server.getCreated()).containsOnlyOnce("/api/v1/namespaces/test/configmaps/twice");
+        assertThat(server.getRequests()).contains("PUT /api/v1/namespaces/test/configmaps/twice");
+    }
+
+    @Test
+    public void testNotListedByDefault() throws Exception {
+        Controller controller = new Controller(client);
+        controller.setNamespace(NAMESPACE);
+        controller.applyList(createList("c"), "default");
+
+        assertThat(server.getRequests()).doesNotContain("GET /api/v1/namespaces/test/services", "GET /api/v1/namespaces/test/configmaps");
+        assertThat(server.contains("/api/v1/namespaces/test/services/c-service-0")).isTrue();
+    }
+
+    @Test
+    public void testSingleEntityOfAKindIsNotListed() throws Exception {
+        List<HasMetadata> items = new ArrayList<>();
+        items.add(new ConfigMapBuilder().withNewMetadata().withName("single").endMetadata().addToData("key", "value").build());
+        items.add(new ServiceBuilder().withNewMetadata().withName("first").endMetadata().withNewSpec().addToSelector("app", "first").endSpec().build());
+        items.add(new ServiceBuilder().withNewMetadata().withName("second").endMetadata().withNewSpec().addToSelector("app", "second").endSpec().build());
+        KubernetesList list = new KubernetesList();
+        list.setItems(items);
+
+        createController(true).applyList(list, "single");
+
+        assertThat(server.getRequests()).doesNotContain("GET /api/v1/namespaces/test/configmaps");
+        assertThat(server.getRequests()).contains("GET /api/v1/namespaces/test/services", "GET /api/v1/namespaces/test/configmaps/single");
+    }
+
+    protected Controller createController(boolean prefetch) {
+        Controller controller = new Controller(client);
+        controller.setNamespace(NAMESPACE);
+        controller.setPrefetchExistingState(prefetch);
+        return controller;
+    }
+
+    protected KubernetesList createList(String prefix) {
+        List<HasMetadata> items = new ArrayList<>();
+        for (int i = 0; i < COUNT; i++) {
+            items.add(new ServiceBuilder().withNewMetadata().withName(prefix + "-service-" + i).endMetadata()
+                    .withNewSpec().addToSelector("app", prefix + i).endSpec().build());
+            items.add(new ConfigMapBuilder().withNewMetadata().withName(prefix + "-config-" + i).endMetadata()
+                    .addToData("key", "value").build());
+        }
+        KubernetesList list = new KubernetesList();
+        list.setItems(items);
+        return list;
+    }
+}
@@ -15,17 +15,23 @@
  */
 package io.fabric8.kubernetes.api;
 
+import io.fabric8.kubernetes.api.extensions.TemplateParameterResolver;
 import io.fabric8.kubernetes.api.extensions.Templates;
+import io.fabric8.kubernetes.api.model.ConfigMap;
+import io.fabric8.kubernetes.api.model.ConfigMapBuilder;
 import io.fabric8.kubernetes.api.model.HasMetadata;
 import io.fabric8.kubernetes.api.model.KubernetesList;
 import io.fabric8.kubernetes.api.model.ReplicationController;
 import io.fabric8.openshift.api.model.Template;
+import io.fabric8.openshift.api.model.TemplateBuilder;
 
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static io.fabric8.kubernetes.api.KubernetesHelper.toJson;
 import static io.fabric8.kubernetes.api.ParseExamplesTest.assertNotEmpty;
@@ -57,4 +63,51 @@ public class ProcessTemplateLocallyTest {
         System.out.println("Created JSON: " + toJson(list));
     }
 
+    @Test
+    public void testNestedParametersAndSpecialCharacters() throws Exception {
+        ConfigMap configMap = new ConfigMapBuilder().withNewMetadata().withName("${NAME}-config").addToLabels("${LABEL}", "${NAME}").endMetadata()
+                .addToData("url", "${URL}").addToData("quoted", "${QUOTED}").addToData("unknown", "${UNKNOWN}").addToData("cycle", "${CYCLE}").build();
+        Template template = new TemplateBuilder().withNewMetadata().withName("test").endMetadata()
+                .addNewParameter().withName("NAME").withValue("cheese").endParameter()
+                .addNewParameter().withName("LABEL").withValue("app").endParameter()
+                .addNewParameter().withName("HOST").withValue("${NAME}.example.com").endParameter()
+                .addNewParameter().withName("URL").withValue("http://${HOST}:${PORT}/").endParameter()
+                .addNewParameter().withName("PORT").withValue("8080").endParameter()
+                .addNewParameter().withName("QUOTED").withValue("say \"hello\" \\ ${NAME}").endParameter()
+                .addNewParameter().withName("CYCLE").withValue("a${CYCLE}").endParameter()
+                .addToObjects(configMap).build();
+
+        KubernetesList list = Templates.processTemplatesLocally(template, true);
+        ConfigMap result = (ConfigMap) list.getItems().get(0);
+        assertEquals("cheese-config", result.getMetadata().getName());
+        assertEquals("cheese", result.getMetadata().getLabels().get("app"));
+        assertEquals("http://cheese.example.com:8080/", result.getData().get("url"));
+        assertEquals("say \"hello\" \\ cheese", result.getData().get("quoted"));
+        assertEquals("${UNKNOWN}", result.getData().get("unknown"));
+        assertEquals("${CYCLE}", result.getData().get("cycle"));
+    }
+
+    @Test
+    public void testResolverLeavesCyclesUnresolved() throws Exception {
+        Map<String, String> values = new HashMap<>();
+        values.put("A", "a${B}");
+        values.put("B", "b${A}");
+        values.put("C", "c${B}");
+        values.put("D", "d${E}");
+        values.put("E", "e");
+        TemplateParameterResolver resolver = new TemplateParameterResolver(values);
+        assertEquals("${A} ${B} ${C} de", resolver.resolve("${A} ${B} ${C} ${D}"));
+        // nothing partially expanded is remembered
+        assertEquals("${B}-${A}-${C}", resolver.resolve("${B}-${A}-${C}"));
+    }
+
+    @Test
+    public void testResolverReturnsSameTextWithoutExpressions() throws Exception {
+        Map<String, String> values = new HashMap<>();
+        values.put("A", "1");
+        TemplateParameterResolver resolver = new TemplateParameterResolver(values);
+        String text = "no expressions ${ here";
+        assertThat(resolver.resolve(text)).isSameAs(text);
+        assertEquals("1-1-${B}", resolver.resolve("${A}-${A}-${B}"));
+    }
 }
@@ -0,0 +1,119 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.kubernetes.api;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import io.fabric8.kubernetes.api.model.ContainerBuilder;
+import io.fabric8.kubernetes.api.model.KubernetesResource;
+import io.fabric8.kubernetes.api.model.extensions.Deployment;
+import io.fabric8.kubernetes.api.model.extensions.DeploymentBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of loading and writing manifests with the shared {@link Serialization} readers
+ * and writers used by {@link KubernetesHelper} - compared with creating a new mapper for each call, as before.
+ * <p/>
+ * Run with <code>mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=io.fabric8.kubernetes.api.SerializationBenchmark</code>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+
+    private Deployment deployment;
+    private String yaml;
+
+    @Setup
+    public void setUp() throws Exception {
+        ContainerBuilder container = new ContainerBuilder().withName("app").withImage("fabric8/app:1.0");
+        for (int i = 0; i < 20; i++) {
+            container.addNewEnv().withName("ENV_" + i).withValue("value-" + i).endEnv();
+        }
+        deployment = new DeploymentBuilder()
+                .withNewMetadata().withName("app").addToLabels("project", "app").endMetadata()
+                .withNewSpec().withReplicas(1)
+                .withNewTemplate().withNewMetadata().addToLabels("project", "app").endMetadata()
+                .withNewSpec().withContainers(container.build()).endSpec().endTemplate()
+                .endSpec().build();
+        yaml = KubernetesHelper.toYaml(deployment);
+    }
+
+    @Benchmark
+    public Object loadYaml() throws Exception {
+        return KubernetesHelper.loadYaml(yaml, KubernetesResource.class);
+    }
+
+    @Benchmark
+    public Object loadYamlNewMapper() throws Exception {
+        return createYamlObjectMapper().readValue(yaml.getBytes(), KubernetesResource.class);
+    }
+
+    @Benchmark
+    public String toYaml() throws Exception {
+        return KubernetesHelper.toYaml(deployment);
+    }
+
+    @Benchmark
+    public String toYamlNewMapper() throws Exception {
+        return createYamlObjectMapper().writeValueAsString(deployment);
+    }
+
+    @Benchmark
+    public String toPrettyJson() throws Exception {
+        return KubernetesHelper.toPrettyJson(deployment);
+    }
+
+    @Benchmark
+    public String toPrettyJsonNewMapper() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.enable(SerializationFeature.INDENT_OUTPUT);
+        return objectMapper.writerFor(Deployment.class).writeValueAsString(deployment);
+    }
+
+    private static ObjectMapper createYamlObjectMapper() {
+        ObjectMapper objectMapper = new ObjectMapper(new YAMLFactory());
+        objectMapper.setSerializationInclusion(JsonInclude.Include.NON_EMPTY);
+        return objectMapper;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+            .include(SerializationBenchmark.class.getSimpleName())
+            .build();
+        new Runner(options).run();
+    }
+}
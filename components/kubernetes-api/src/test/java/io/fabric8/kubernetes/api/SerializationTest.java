@@ -0,0 +1,80 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.kubernetes.api;
+
+import io.fabric8.kubernetes.api.model.Service;
+import io.fabric8.kubernetes.api.model.ServiceBuilder;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SerializationTest {
+
+    @Test
+    public void testReadersAndWritersAreShared() throws Exception {
+        assertThat(Serialization.yamlReader(Service.class)).isSameAs(Serialization.yamlReader(Service.class));
+        assertThat(Serialization.jsonWriter(Service.class)).isSameAs(Serialization.jsonWriter(Service.class));
+    }
+
+    @Test
+    public void testStreamsAreNotClosed() throws Exception {
+        Service service = new ServiceBuilder().withNewMetadata().withName("cheese").endMetadata()
+                .withNewSpec().addToSelector("app", "cheese").endSpec().build();
+
+        CloseTrackingOutputStream out = new CloseTrackingOutputStream();
+        Serialization.writeYaml(service, out);
+        assertThat(out.closed).isFalse();
+
+        CloseTrackingInputStream in = new CloseTrackingInputStream(out.toByteArray());
+        Service loaded = Serialization.readYaml(in, Service.class);
+        assertThat(in.closed).isFalse();
+        assertThat(KubernetesHelper.getName(loaded)).isEqualTo("cheese");
+        assertThat(KubernetesHelper.toYaml(loaded)).isEqualTo(KubernetesHelper.toYaml(service));
+
+        out = new CloseTrackingOutputStream();
+        Serialization.writeJson(service, out);
+        assertThat(out.closed).isFalse();
+        assertThat(Serialization.readJson(new ByteArrayInputStream(out.toByteArray()), Service.class).getSpec().getSelector()).containsEntry("app", "cheese");
+    }
+
+    private static class CloseTrackingOutputStream extends ByteArrayOutputStream {
+        private boolean closed;
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            super.close();
+        }
+    }
+
+    private static class CloseTrackingInputStream extends ByteArrayInputStream {
+        private boolean closed;
+
+        CloseTrackingInputStream(byte[] data) {
+            super(data);
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            super.close();
+        }
+    }
+}
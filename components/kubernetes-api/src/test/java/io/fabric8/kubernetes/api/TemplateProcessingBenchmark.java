@@ -0,0 +1,120 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.kubernetes.api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.fabric8.kubernetes.api.extensions.Templates;
+import io.fabric8.kubernetes.api.model.ConfigMapBuilder;
+import io.fabric8.kubernetes.api.model.HasMetadata;
+import io.fabric8.kubernetes.api.model.KubernetesList;
+import io.fabric8.openshift.api.model.Parameter;
+import io.fabric8.openshift.api.model.Template;
+import io.fabric8.openshift.api.model.TemplateBuilder;
+import io.fabric8.utils.Strings;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures processing a template locally with hundreds of parameters and large ConfigMaps - comparing
+ * {@link Templates#processTemplatesLocally(Template, boolean)} with replacing each parameter in the whole
+ * JSON text a few times over, as before.
+ * <p/>
+ * Run with <code>mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=io.fabric8.kubernetes.api.TemplateProcessingBenchmark</code>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(1)
+public class TemplateProcessingBenchmark {
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final int CONFIG_MAP_SIZE = 10 * 1024;
+
+    @Param({"1", "10"})
+    public int megabytes;
+
+    @Param({"200"})
+    public int parameterCount;
+
+    private Template template;
+
+    @Setup
+    public void setUp() {
+        TemplateBuilder builder = new TemplateBuilder().withNewMetadata().withName("large").endMetadata();
+        for (int i = 0; i < parameterCount; i++) {
+            builder.addNewParameter().withName("PARAM_" + i).withValue("value-" + i).endParameter();
+        }
+        List<HasMetadata> objects = new ArrayList<>();
+        int configMaps = megabytes * 1024 * 1024 / CONFIG_MAP_SIZE;
+        for (int i = 0; i < configMaps; i++) {
+            StringBuilder data = new StringBuilder(CONFIG_MAP_SIZE);
+            int line = 0;
+            while (data.length() < CONFIG_MAP_SIZE) {
+                data.append("property.").append(line).append(" = some configuration value for line ").append(line).append('\n');
+                line++;
+            }
+            data.append("parameter = ${PARAM_").append(i % parameterCount).append("}\n");
+            objects.add(new ConfigMapBuilder().withNewMetadata().withName("config-" + i).addToLabels("app", "${PARAM_0}").endMetadata()
+                    .addToData("application.properties", data.toString()).build());
+        }
+        template = builder.withObjects(objects).build();
+    }
+
+    @Benchmark
+    public KubernetesList streaming() throws Exception {
+        return Templates.processTemplatesLocally(template, true);
+    }
+
+    @Benchmark
+    public KubernetesList replaceInJson() throws Exception {
+        String json = "{\"kind\": \"List\", \"apiVersion\": \"" +
+                KubernetesHelper.defaultApiVersion + "\",\n" +
+                "  \"items\": " +
+                KubernetesHelper.toJson(template.getObjects()) +
+                " }";
+        for (int i = 0; i < 5; i++) {
+            for (Parameter parameter : template.getParameters()) {
+                json = Strings.replaceAllWithoutRegex(json, "${" + parameter.getName() + "}", parameter.getValue());
+            }
+        }
+        return OBJECT_MAPPER.readerFor(KubernetesList.class).readValue(json);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+            .include(TemplateProcessingBenchmark.class.getSimpleName())
+            .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,230 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.kubernetes.api;
+
+import io.fabric8.kubernetes.api.model.ConfigMapBuilder;
+import io.fabric8.kubernetes.api.model.Container;
+import io.fabric8.kubernetes.api.model.ContainerBuilder;
+import io.fabric8.kubernetes.api.model.HasMetadata;
+import io.fabric8.kubernetes.api.model.ObjectMeta;
+import io.fabric8.kubernetes.api.model.ServiceBuilder;
+import io.fabric8.kubernetes.api.model.extensions.Deployment;
+import io.fabric8.kubernetes.api.model.extensions.DeploymentBuilder;
+import io.fabric8.openshift.api.model.Template;
+import io.fabric8.openshift.api.model.TemplateBuilder;
+import io.fabric8.utils.Objects;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.beans.BeanInfo;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures comparing the desired and existing configuration of a Deployment and a Template, as done for
+ * every entity when applying - comparing {@link UserConfigurationCompare} with introspecting each class
+ * and matching every pair of collection items, as before.
+ * <p/>
+ * Run with <code>mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=io.fabric8.kubernetes.api.UserConfigurationCompareBenchmark</code>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserConfigurationCompareBenchmark {
+
+    @Param({"50"})
+    public int envCount;
+
+    @Param({"60"})
+    public int templateObjectCount;
+
+    private Deployment deployment1;
+    private Deployment deployment2;
+    private Template template1;
+    private Template template2;
+
+    @Setup
+    public void setUp() {
+        deployment1 = createDeployment();
+        deployment2 = createDeployment();
+        template1 = createTemplate();
+        template2 = createTemplate();
+    }
+
+    @Benchmark
+    public boolean deployment() {
+        return UserConfigurationCompare.configEqual(deployment1, deployment2);
+    }
+
+    @Benchmark
+    public boolean deploymentIntrospecting() {
+        return IntrospectingCompare.configEqual(deployment1, deployment2);
+    }
+
+    @Benchmark
+    public boolean template() {
+        return UserConfigurationCompare.configEqual(template1, template2);
+    }
+
+    @Benchmark
+    public boolean templateIntrospecting() {
+        return IntrospectingCompare.configEqual(template1, template2);
+    }
+
+    protected Deployment createDeployment() {
+        List<Container> containers = new ArrayList<>();
+        for (int c = 0; c < 3; c++) {
+            ContainerBuilder builder = new ContainerBuilder().withName("container-" + c).withImage("fabric8/app-" + c + ":1.0");
+            for (int i = 0; i < envCount; i++) {
+                builder.addNewEnv().withName("ENV_" + i).withValue("value-" + i).endEnv();
+            }
+            for (int i = 0; i < 5; i++) {
+                builder.addNewPort().withName("port-" + i).withContainerPort(8080 + i).withProtocol("TCP").endPort();
+                builder.addNewVolumeMount().withName("volume-" + i).withMountPath("/data/" + i).endVolumeMount();
+            }
+            containers.add(builder.build());
+        }
+        return new DeploymentBuilder()
+                .withNewMetadata().withName("app").withNamespace("test").addToLabels("project", "app").addToLabels("provider", "fabric8").endMetadata()
+                .withNewSpec().withReplicas(2)
+                .withNewTemplate().withNewMetadata().addToLabels("project", "app").endMetadata()
+                .withNewSpec().withContainers(containers).endSpec().endTemplate()
+                .endSpec().build();
+    }
+
+    protected Template createTemplate() {
+        List<HasMetadata> objects = new ArrayList<>();
+        for (int i = 0; i < templateObjectCount / 3; i++) {
+            objects.add(new ServiceBuilder().withNewMetadata().withName("service-" + i).addToLabels("project", "app-" + i).endMetadata()
+                    .withNewSpec().addToSelector("project", "app-" + i).addNewPort().withPort(80).endPort().endSpec().build());
+            objects.add(new ConfigMapBuilder().withNewMetadata().withName("config-" + i).endMetadata()
+                    .addToData("application.properties", "name=app-" + i + "\nport=8080\n").build());
+            objects.add(createDeployment());
+        }
+        TemplateBuilder builder = new TemplateBuilder().withNewMetadata().withName("app-template").endMetadata();
+        for (int i = 0; i < 10; i++) {
+            builder.addNewParameter().withName("PARAM_" + i).withValue("value-" + i).endParameter();
+        }
+        return builder.withObjects(objects).build();
+    }
+
+    /**
+     * The comparison as it was before the property accessors were cached and collections were indexed
+     */
+    static class IntrospectingCompare {
+
+        static boolean configEqual(Object entity1, Object entity2) {
+            if (entity1 == entity2) {
+                return true;
+            } else if (entity1 == null || entity2 == null) {
+                return false;
+            } else if (entity1 instanceof Map || entity2 instanceof Map) {
+                return configEqualMap((Map) entity1, (Map) entity2);
+            } else if (entity2 instanceof ObjectMeta) {
+                ObjectMeta metadata1 = (ObjectMeta) entity1;
+                ObjectMeta metadata2 = (ObjectMeta) entity2;
+                return Objects.equal(metadata1.getName(), metadata2.getName()) &&
+                        Objects.equal(metadata1.getNamespace(), metadata2.getNamespace()) &&
+                        configEqualMap(metadata1.getLabels(), metadata2.getLabels()) &&
+                        configEqualMap(metadata1.getAnnotations(), metadata2.getAnnotations());
+            } else if (entity1 instanceof Collection && entity2 instanceof Collection) {
+                return subCollection((Collection) entity1, (Collection) entity2) && subCollection((Collection) entity2, (Collection) entity1);
+            } else {
+                Class<?> aClass = UserConfigurationCompare.getCommonDenominator(entity1.getClass(), entity2.getClass());
+                if (aClass != null && aClass.getPackage().getName().startsWith("io.fabric8")) {
+                    return configEqualKubernetesDTO(entity1, entity2, aClass);
+                }
+                return Objects.equal(entity1, entity2);
+            }
+        }
+
+        static boolean subCollection(Collection<?> left, Collection<?> right) {
+            for (Object candidate : left) {
+                boolean found = false;
+                for (Object item : right) {
+                    if (configEqual(candidate, item)) {
+                        found = true;
+                        break;
+                    }
+                }
+                if (!found) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        static boolean configEqualKubernetesDTO(Object entity1, Object entity2, Class<?> clazz) {
+            try {
+                BeanInfo beanInfo = Introspector.getBeanInfo(clazz);
+                for (PropertyDescriptor propertyDescriptor : beanInfo.getPropertyDescriptors()) {
+                    Method readMethod = propertyDescriptor.getReadMethod();
+                    if (readMethod != null && !UserConfigurationCompare.ignoredProperties.contains(propertyDescriptor.getName())) {
+                        if (!configEqual(readMethod.invoke(entity1), readMethod.invoke(entity2))) {
+                            return false;
+                        }
+                    }
+                }
+                return true;
+            } catch (Exception e) {
+                return false;
+            }
+        }
+
+        static boolean configEqualMap(Map<?, ?> entity1, Map<?, ?> entity2) {
+            if (entity1 == entity2) {
+                return true;
+            } else if (entity1 == null || entity2 == null || entity1.size() != entity2.size()) {
+                return false;
+            }
+            for (Map.Entry<?, ?> entry : entity1.entrySet()) {
+                if (!configEqual(entry.getValue(), entity2.get(entry.getKey()))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+            .include(UserConfigurationCompareBenchmark.class.getSimpleName())
+            .build();
+        new Runner(options).run();
+    }
+}
@@ -15,10 +15,16 @@
  */
 package io.fabric8.kubernetes.api;
 
+import io.fabric8.kubernetes.api.model.EnvVar;
+import io.fabric8.kubernetes.api.model.EnvVarBuilder;
 import io.fabric8.kubernetes.api.model.Pod;
 import io.fabric8.kubernetes.api.model.ReplicationController;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 import static org.junit.Assert.*;
 
 public class UserConfigurationCompareTest {
@@ -33,4 +39,34 @@ public class UserConfigurationCompareTest {
 
         assertEquals(null, UserConfigurationCompare.getCommonDenominator(ReplicationController.class, Pod.class));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testLargeCollectionsIgnoreOrder() {
+        List<EnvVar> env1 = createEnv(200);
+        List<EnvVar> env2 = createEnv(200);
+        Collections.shuffle(env2);
+        assertTrue(UserConfigurationCompare.configEqual(env1, env2));
+
+        env2.set(100, new EnvVarBuilder().withName("ENV_100").withValue("changed").build());
+        assertFalse(UserConfigurationCompare.configEqual(env1, env2));
+        assertFalse(UserConfigurationCompare.configEqual(env2, env1));
+
+        assertFalse(UserConfigurationCompare.configEqual(env1, createEnv(199)));
+        assertFalse(UserConfigurationCompare.configEqual(env1, new ArrayList<EnvVar>()));
+    }
+
+    @Test
+    public void testConfigEqualItemsHaveTheSameHashCode() {
+        List<EnvVar> env = createEnv(10);
+        assertEquals(UserConfigurationCompare.configHashCode(env), UserConfigurationCompare.configHashCode(createEnv(10)));
+        assertEquals(UserConfigurationCompare.configHashCode(env.get(3)), UserConfigurationCompare.configHashCode(createEnv(10).get(3)));
+    }
+
+    protected static List<EnvVar> createEnv(int count) {
+        List<EnvVar> answer = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            answer.add(new EnvVarBuilder().withName("ENV_" + i).withValue("value-" + i).build());
+        }
+        return answer;
+    }
+}
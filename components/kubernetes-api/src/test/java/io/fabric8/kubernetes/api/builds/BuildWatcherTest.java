@@ -0,0 +1,115 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.kubernetes.api.builds;
+
+import io.fabric8.kubernetes.api.model.StatusBuilder;
+import io.fabric8.kubernetes.api.model.WatchEvent;
+import io.fabric8.openshift.api.model.Build;
+import io.fabric8.openshift.api.model.BuildBuilder;
+import io.fabric8.openshift.api.model.BuildList;
+import io.fabric8.openshift.api.model.BuildListBuilder;
+import io.fabric8.openshift.client.server.mock.OpenShiftServer;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BuildWatcherTest {
+    private static final String NAMESPACE = "test";
+    private static final String BUILDS_PATH = "/oapi/v1/namespaces/" + NAMESPACE + "/builds";
+
+    @Rule
+    public OpenShiftServer server = new OpenShiftServer();
+
+    @Test
+    public void testWatchListsAgainWhenVersionIsGone() throws Exception {
+        Build first = createBuild("first", "Complete", "2");
+        Build secondRunning = createBuild("second", "Running", "3");
+        Build secondComplete = createBuild("second", "Complete", "4");
+        Build third = createBuild("third", "Failed", "12");
+
+        server.expect().withPath(BUILDS_PATH).andReturn(200, createList("1", first)).once();
+        server.expect().withPath(BUILDS_PATH + "?resourceVersion=1&watch=true").andUpgradeToWebSocket().open()
+                .waitFor(50).andEmit(new WatchEvent(secondRunning, "ADDED"))
+                .waitFor(50).andEmit(new WatchEvent(secondComplete, "MODIFIED"))
+                .waitFor(50).andEmit(new WatchEvent(new StatusBuilder().withCode(410).withMessage("too old resource version").build(), "ERROR"))
+                .done().once();
+        // the second listing includes the builds already notified
+        server.expect().withPath(BUILDS_PATH).andReturn(200, createList("20", first, secondComplete, third)).once();
+        server.expect().withPath(BUILDS_PATH + "?resourceVersion=20&watch=true").andUpgradeToWebSocket().open().done().once();
+
+        BlockingQueue<BuildFinishedEvent> events = new LinkedBlockingQueue<>();
+        BuildWatcher watcher = new BuildWatcher(server.getOpenshiftClient(), events::add, NAMESPACE, "http://fabric8");
+        watcher.setReconnectDelayMillis(100);
+        watcher.watch();
+        try {
+            BuildFinishedEvent event = events.poll(10, TimeUnit.SECONDS);
+            assertThat(event.getUid()).isEqualTo("first-uid");
+            assertThat(event.isLoading()).isTrue();
+
+            event = events.poll(10, TimeUnit.SECONDS);
+            assertThat(event.getUid()).isEqualTo("second-uid");
+            assertThat(event.isLoading()).isFalse();
+
+            event = events.poll(10, TimeUnit.SECONDS);
+            assertThat(event.getUid()).isEqualTo("third-uid");
+
+            assertThat(events.poll(500, TimeUnit.MILLISECONDS)).isNull();
+        } finally {
+            watcher.stop();
+        }
+    }
+
+    @Test
+    public void testPollOnlyRemembersListedBuilds() throws Exception {
+        Build first = createBuild("first", "Complete", "2");
+        Build second = createBuild("second", "Failed", "3");
+        Build running = createBuild("third", "Running", "4");
+        Build third = createBuild("third", "Complete", "5");
+
+        server.expect().withPath(BUILDS_PATH).andReturn(200, createList("1", first, second, running)).once();
+        // the first build has been pruned
+        server.expect().withPath(BUILDS_PATH).andReturn(200, createList("6", second, third)).times(2);
+
+        BlockingQueue<BuildFinishedEvent> events = new LinkedBlockingQueue<>();
+        BuildWatcher watcher = new BuildWatcher(server.getOpenshiftClient(), events::add, NAMESPACE, "http://fabric8");
+        watcher.poll();
+        assertThat(events).extracting(BuildFinishedEvent::getUid).containsExactly("first-uid", "second-uid");
+        assertThat(events).extracting(BuildFinishedEvent::isLoading).containsOnly(true);
+        assertThat(watcher.getSeenBuildCount()).isEqualTo(2);
+        events.clear();
+
+        watcher.poll();
+        watcher.poll();
+        assertThat(events).extracting(BuildFinishedEvent::getUid).containsExactly("third-uid");
+        assertThat(events.peek().isLoading()).isFalse();
+        assertThat(watcher.getSeenBuildCount()).isEqualTo(2);
+    }
+
+    protected static Build createBuild(String name, String phase, String resourceVersion) {
+        return new BuildBuilder().withNewMetadata().withName(name).withNamespace(NAMESPACE).withUid(name + "-uid").withResourceVersion(resourceVersion).endMetadata()
+                .withNewStatus().withPhase(phase).endStatus().build();
+    }
+
+    protected static BuildList createList(String resourceVersion, Build... builds) {
+        return new BuildListBuilder().withNewMetadata().withResourceVersion(resourceVersion).endMetadata().withItems(builds).build();
+    }
+}
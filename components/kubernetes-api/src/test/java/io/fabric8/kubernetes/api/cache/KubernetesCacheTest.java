@@ -0,0 +1,158 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.kubernetes.api.cache;
+
+import io.fabric8.kubernetes.api.Annotations;
+import io.fabric8.kubernetes.api.KubernetesHelper;
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.PodBuilder;
+import io.fabric8.kubernetes.api.model.PodListBuilder;
+import io.fabric8.kubernetes.api.model.ReplicationControllerListBuilder;
+import io.fabric8.kubernetes.api.model.Service;
+import io.fabric8.kubernetes.api.model.ServiceBuilder;
+import io.fabric8.kubernetes.api.model.ServiceListBuilder;
+import io.fabric8.kubernetes.api.model.WatchEvent;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.Watch;
+import io.fabric8.kubernetes.client.Watcher;
+import io.fabric8.openshift.client.server.mock.OpenShiftServer;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class KubernetesCacheTest {
+    private static final String NAMESPACE = "test";
+    private static final String API_PATH = "/api/v1/namespaces/" + NAMESPACE;
+
+    @Rule
+    public OpenShiftServer server = new OpenShiftServer();
+
+    @Test
+    public void testLookupsAreAnsweredFromTheWatchedCache() throws Exception {
+        Pod web1 = createPod("web-1", "web", "2");
+        Pod web2 = createPod("web-2", "web", "3");
+        Pod db1 = createPod("db-1", "db", "4");
+        Service web = new ServiceBuilder().withNewMetadata().withName("web").withNamespace(NAMESPACE).withResourceVersion("5")
+                .addToAnnotations(Annotations.Service.EXPOSE_URL, "http://web.fabric8.io").endMetadata()
+                .withNewSpec().addToSelector("app", "web").endSpec().build();
+
+        // each kind is only listed once
+        server.expect().withPath(API_PATH + "/pods").andReturn(200, new PodListBuilder().withNewMetadata().withResourceVersion("10").endMetadata()
+                .withItems(web1, db1).build()).once();
+        server.expect().withPath(API_PATH + "/services").andReturn(200, new ServiceListBuilder().withNewMetadata().withResourceVersion("10").endMetadata()
+                .withItems(web).build()).once();
+        server.expect().withPath(API_PATH + "/replicationcontrollers").andReturn(200, new ReplicationControllerListBuilder().withNewMetadata().withResourceVersion("10").endMetadata().build()).once();
+
+        server.expect().withPath(API_PATH + "/pods?resourceVersion=10&watch=true").andUpgradeToWebSocket().open()
+                .waitFor(200).andEmit(new WatchEvent(web2, "ADDED"))
+                .waitFor(50).andEmit(new WatchEvent(db1, "DELETED"))
+                .done().once();
+        server.expect().withPath(API_PATH + "/services?resourceVersion=10&watch=true").andUpgradeToWebSocket().open().done().once();
+        server.expect().withPath(API_PATH + "/replicationcontrollers?resourceVersion=10&watch=true").andUpgradeToWebSocket().open().done().once();
+
+        KubernetesClient client = server.getOpenshiftClient();
+        KubernetesCache cache = KubernetesCache.start(client, NAMESPACE);
+        try {
+            assertThat(cache.isSynced()).isTrue();
+            assertThat(KubernetesCache.start(client, NAMESPACE)).isSameAs(cache);
+            assertThat(KubernetesCache.find(client, NAMESPACE)).isSameAs(cache);
+
+            for (int i = 0; i < 3; i++) {
+                assertThat(KubernetesHelper.getServiceMap(client, NAMESPACE)).containsOnlyKeys("web");
+                assertThat(KubernetesHelper.getServiceURL(client, "web", NAMESPACE, "http", true)).isEqualTo("http://web.fabric8.io");
+            }
+            assertThat(KubernetesHelper.getPodMap(client, NAMESPACE)).containsOnlyKeys("web-1", "db-1");
+
+            waitForPods(cache, 2, 10000);
+            Map<String, Pod> pods = KubernetesHelper.getPodMap(client, NAMESPACE);
+            assertThat(pods).containsOnlyKeys("web-1", "web-2");
+            assertThat(cache.getPodsForService(web)).extracting(KubernetesHelper::getName).containsOnly("web-1", "web-2");
+            assertThat(KubernetesHelper.getPodsForService(client, web)).extracting(KubernetesHelper::getName).containsOnly("web-1", "web-2");
+            assertThat(KubernetesHelper.getSelectedPodMap(client, NAMESPACE, "app=db")).isEmpty();
+            assertThat(KubernetesHelper.getSelectedPodMap(client, NAMESPACE, "app=web")).containsOnlyKeys("web-1", "web-2");
+            assertThat(KubernetesHelper.getSelectedPodMap(client, NAMESPACE, "web-2")).containsOnlyKeys("web-2");
+        } finally {
+            cache.close();
+        }
+        assertThat(KubernetesCache.find(client, NAMESPACE)).isNull();
+    }
+
+    @Test
+    public void testLabelIndexIsUpdatedWhenLabelsChange() throws Exception {
+        ResourceInformer<Pod> informer = new ResourceInformer<>("Pod", () -> new PodListBuilder().withNewMetadata().endMetadata()
+                .withItems(createPod("a", "web", "1"), createPod("b", "web", "2")).build(), (version, watcher) -> null, null, 1000);
+        informer.start();
+
+        assertThat(informer.select(KubernetesHelper.toLabelsMap("app=web"))).hasSize(2);
+        informer.onEvent(Watcher.Action.MODIFIED, createPod("a", "db", "3"));
+        assertThat(informer.select(KubernetesHelper.toLabelsMap("app=web"))).extracting(KubernetesHelper::getName).containsOnly("b");
+        assertThat(informer.select(KubernetesHelper.toLabelsMap("app=db"))).extracting(KubernetesHelper::getName).containsOnly("a");
+        assertThat(informer.select(KubernetesHelper.toLabelsMap("app=db,tier=backend"))).isEmpty();
+    }
+
+    @Test
+    public void testReturnedResourcesAreCopies() throws Exception {
+        ResourceInformer<Pod> informer = new ResourceInformer<>("Pod", () -> new PodListBuilder().withNewMetadata().endMetadata()
+                .withItems(createPod("a", "web", "1")).build(), (version, watcher) -> null, null, 1000);
+        informer.start();
+
+        Pod pod = informer.get("a");
+        pod.getMetadata().getLabels().put("app", "db");
+        informer.list().get(0).getMetadata().setName("b");
+        informer.toMap().get("a").getMetadata().getLabels().clear();
+
+        assertThat(informer.get("a").getMetadata().getLabels()).containsEntry("app", "web");
+        assertThat(informer.select(KubernetesHelper.toLabelsMap("app=web"))).extracting(KubernetesHelper::getName).containsOnly("a");
+        assertThat(informer.select(KubernetesHelper.toLabelsMap("app=db"))).isEmpty();
+    }
+
+    @Test
+    public void testCloseWhileListingClosesTheNewWatch() throws Exception {
+        AtomicReference<ResourceInformer<Pod>> informer = new AtomicReference<>();
+        AtomicInteger closedWatches = new AtomicInteger();
+        informer.set(new ResourceInformer<>("Pod", () -> new PodListBuilder().withNewMetadata().withResourceVersion("1").endMetadata().build(),
+                (version, watcher) -> {
+                    // the informer is closed after it listed but before the watch is handed back
+                    informer.get().close();
+                    Watch watch = closedWatches::incrementAndGet;
+                    return watch;
+                }, null, 1000));
+        informer.get().start();
+
+        assertThat(closedWatches.get()).isEqualTo(1);
+        assertThat(informer.get().isSynced()).isFalse();
+    }
+
+    protected static void waitForPods(KubernetesCache cache, int count, long timeoutMillis) throws InterruptedException {
+        long end = System.currentTimeMillis() + timeoutMillis;
+        while (System.currentTimeMillis() < end) {
+            if (cache.getPods().list().size() == count && cache.getPods().get("db-1") == null) {
+                return;
+            }
+            Thread.sleep(50);
+        }
+    }
+
+    protected static Pod createPod(String name, String app, String resourceVersion) {
+        return new PodBuilder().withNewMetadata().withName(name).withNamespace(NAMESPACE).withResourceVersion(resourceVersion)
+                .addToLabels("app", app).endMetadata().build();
+    }
+}
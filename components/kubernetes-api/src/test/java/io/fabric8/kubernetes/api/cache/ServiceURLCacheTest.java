@@ -0,0 +1,83 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.kubernetes.api.cache;
+
+import io.fabric8.kubernetes.api.Annotations;
+import io.fabric8.kubernetes.api.model.Service;
+import io.fabric8.kubernetes.api.model.ServiceBuilder;
+import io.fabric8.kubernetes.api.model.WatchEvent;
+import io.fabric8.openshift.client.server.mock.OpenShiftServer;
+import org.junit.Rule;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class ServiceURLCacheTest {
+    private static final String NAMESPACE = "test";
+    private static final String SERVICES_PATH = "/api/v1/namespaces/" + NAMESPACE + "/services";
+
+    @Rule
+    public OpenShiftServer server = new OpenShiftServer();
+
+    @Test
+    public void testURLsAreCachedUntilTheServiceChanges() throws Exception {
+        server.expect().withPath(SERVICES_PATH + "?watch=true").andUpgradeToWebSocket().open()
+                .waitFor(500).andEmit(new WatchEvent(createService("web", "http://web2.fabric8.io"), "MODIFIED"))
+                .done().once();
+        server.expect().withPath(SERVICES_PATH + "/web").andReturn(200, createService("web", "http://web.fabric8.io")).once();
+        server.expect().withPath(SERVICES_PATH + "/web").andReturn(200, createService("web", "http://web2.fabric8.io")).once();
+
+        try (ServiceURLCache cache = new ServiceURLCache(server.getOpenshiftClient(), 60000, 60000)) {
+            for (int i = 0; i < 5; i++) {
+                assertThat(cache.getServiceURL("web", NAMESPACE, "http", null, true)).isEqualTo("http://web.fabric8.io");
+            }
+            assertThat(cache.getMissCount()).isEqualTo(1);
+            assertThat(cache.getHitCount()).isEqualTo(4);
+
+            long end = System.currentTimeMillis() + 10000;
+            while (cache.getSize() > 0 && System.currentTimeMillis() < end) {
+                Thread.sleep(50);
+            }
+            assertThat(cache.getServiceURL("web", NAMESPACE, "http", null, true)).isEqualTo("http://web2.fabric8.io");
+            assertThat(cache.getMissCount()).isEqualTo(2);
+        }
+    }
+
+    @Test
+    public void testMissingServicesAreRemembered() throws Exception {
+        server.expect().withPath(SERVICES_PATH + "?watch=true").andUpgradeToWebSocket().open().done().once();
+        server.expect().withPath(SERVICES_PATH + "/missing").andReturn(404, "").once();
+
+        try (ServiceURLCache cache = new ServiceURLCache(server.getOpenshiftClient(), 60000, 60000)) {
+            for (int i = 0; i < 3; i++) {
+                try {
+                    cache.getServiceURL("missing", NAMESPACE, "http", null, true);
+                    fail("Should not have found the service");
+                } catch (IllegalArgumentException e) {
+                    assertThat(e.getMessage()).contains("missing");
+                }
+            }
+            assertThat(cache.getMissCount()).isEqualTo(1);
+            assertThat(cache.getHitCount()).isEqualTo(2);
+        }
+    }
+
+    protected static Service createService(String name, String exposeUrl) {
+        return new ServiceBuilder().withNewMetadata().withName(name).withNamespace(NAMESPACE)
+                .addToAnnotations(Annotations.Service.EXPOSE_URL, exposeUrl).endMetadata().build();
+    }
+}
@@ -0,0 +1,113 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.kubernetes.api.dns;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.xbill.DNS.ARecord;
+import org.xbill.DNS.DClass;
+import org.xbill.DNS.Name;
+import org.xbill.DNS.SRVRecord;
+import org.xbill.DNS.SimpleResolver;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class DnsResolverTest {
+    private StubDnsServer server;
+    private DnsResolver resolver;
+
+    @Before
+    public void init() throws Exception {
+        server = new StubDnsServer();
+        SimpleResolver simpleResolver = new SimpleResolver("127.0.0.1");
+        simpleResolver.setPort(server.getPort());
+        resolver = new DnsResolver(simpleResolver, 1000);
+    }
+
+    @After
+    public void cleanup() {
+        resolver.close();
+        server.close();
+    }
+
+    @Test
+    public void testConcurrentLookupsShareOneQueryAndAreCached() throws Exception {
+        server.addRecord(new ARecord(Name.fromString("web.test."), DClass.IN, 60, InetAddress.getByName("10.0.0.1")));
+        server.addRecord(new ARecord(Name.fromString("web.test."), DClass.IN, 60, InetAddress.getByName("10.0.0.2")));
+        server.setDelayMillis(200);
+
+        CompletableFuture<Set<String>> first = resolver.lookupService("web.test.");
+        CompletableFuture<Set<String>> second = resolver.lookupService("web.test.");
+        assertThat(first.get(5, TimeUnit.SECONDS)).containsOnly("10.0.0.1", "10.0.0.2");
+        assertThat(second.get(5, TimeUnit.SECONDS)).containsOnly("10.0.0.1", "10.0.0.2");
+        assertThat(resolver.lookupService("web.test.").get(5, TimeUnit.SECONDS)).containsOnly("10.0.0.1", "10.0.0.2");
+
+        assertThat(server.getQueryCount()).isEqualTo(1);
+        assertThat(resolver.getQueryCount()).isEqualTo(1);
+        assertThat(resolver.getHitCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void testRecordsExpireWithTheirTtl() throws Exception {
+        server.addRecord(new ARecord(Name.fromString("short.test."), DClass.IN, 0, InetAddress.getByName("10.0.0.3")));
+
+        assertThat(resolver.lookupService("short.test.").get(5, TimeUnit.SECONDS)).containsOnly("10.0.0.3");
+        Thread.sleep(10);
+        assertThat(resolver.lookupService("short.test.").get(5, TimeUnit.SECONDS)).containsOnly("10.0.0.3");
+        assertThat(server.getQueryCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void testServiceEndpointsAreOrdered() throws Exception {
+        Name name = Name.fromString("_http._tcp.web.test.");
+        server.addRecord(new SRVRecord(name, DClass.IN, 60, 10, 50, 8080, Name.fromString("pod-a.test.")));
+        server.addRecord(new SRVRecord(name, DClass.IN, 60, 20, 50, 8081, Name.fromString("pod-b.test.")));
+
+        List<String> endpoints = resolver.lookupServiceEndpoints("_http._tcp.web.test.").get(5, TimeUnit.SECONDS);
+        assertThat(endpoints).containsExactly("pod-b.test:8081", "pod-a.test:8080");
+    }
+
+    @Test
+    public void testMissingNamesAreCachedAsEmpty() throws Exception {
+        assertThat(resolver.lookupService("missing.test.").get(5, TimeUnit.SECONDS)).isEmpty();
+        assertThat(resolver.lookupService("missing.test.").get(5, TimeUnit.SECONDS)).isEmpty();
+        assertThat(server.getQueryCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testLookupTimesOut() throws Exception {
+        server.ignore("slow.test.");
+        long start = System.currentTimeMillis();
+        try {
+            resolver.lookupService("slow.test.").get(10, TimeUnit.SECONDS);
+            fail("Should have timed out");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause()).isInstanceOfAny(TimeoutException.class, UnknownHostException.class);
+        }
+        assertThat(System.currentTimeMillis() - start).isLessThan(5000);
+    }
+}
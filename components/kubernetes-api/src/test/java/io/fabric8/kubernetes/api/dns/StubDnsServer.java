@@ -0,0 +1,130 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.kubernetes.api.dns;
+
+import org.xbill.DNS.Flags;
+import org.xbill.DNS.Message;
+import org.xbill.DNS.Rcode;
+import org.xbill.DNS.Record;
+import org.xbill.DNS.Section;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A DNS server on localhost which answers UDP queries with the records it has been given
+ */
+public class StubDnsServer implements Closeable {
+    private final DatagramSocket socket;
+    private final Map<String, List<Record>> records = new ConcurrentHashMap<>();
+    private final Set<String> silentNames = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger queryCount = new AtomicInteger();
+    private volatile long delayMillis;
+    private final Thread thread;
+
+    public StubDnsServer() throws IOException {
+        socket = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+        thread = new Thread(this::serve, "StubDnsServer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public int getPort() {
+        return socket.getLocalPort();
+    }
+
+    public int getQueryCount() {
+        return queryCount.get();
+    }
+
+    /**
+     * Adds a record which is returned for queries of its name and type
+     */
+    public void addRecord(Record record) {
+        records.computeIfAbsent(key(record.getName().toString(), record.getType()), k -> new ArrayList<>()).add(record);
+    }
+
+    /**
+     * Queries of the given name are never answered
+     */
+    public void ignore(String name) {
+        silentNames.add(name);
+    }
+
+    /**
+     * Delays each answer by the given time
+     */
+    public void setDelayMillis(long delayMillis) {
+        this.delayMillis = delayMillis;
+    }
+
+    @Override
+    public void close() {
+        socket.close();
+    }
+
+    protected void serve() {
+        byte[] buffer = new byte[512];
+        while (!socket.isClosed()) {
+            try {
+                DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+                socket.receive(packet);
+                queryCount.incrementAndGet();
+                Message query = new Message(Arrays.copyOf(packet.getData(), packet.getLength()));
+                Record question = query.getQuestion();
+                String name = question.getName().toString();
+                if (silentNames.contains(name)) {
+                    continue;
+                }
+                if (delayMillis > 0) {
+                    Thread.sleep(delayMillis);
+                }
+                Message response = new Message(query.getHeader().getID());
+                response.getHeader().setFlag(Flags.QR);
+                response.getHeader().setFlag(Flags.AA);
+                response.addRecord(question, Section.QUESTION);
+                List<Record> answers = records.get(key(name, question.getType()));
+                if (answers == null) {
+                    response.getHeader().setRcode(Rcode.NXDOMAIN);
+                } else {
+                    for (Record answer : answers) {
+                        response.addRecord(answer, Section.ANSWER);
+                    }
+                }
+                byte[] data = response.toWire();
+                socket.send(new DatagramPacket(data, data.length, packet.getSocketAddress()));
+            } catch (IOException e) {
+                // closed
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private static String key(String name, int type) {
+        return name + "/" + type;
+    }
+}